@@ -0,0 +1,14 @@
+package com.example.sourcecompare;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Runs the {@code @Scheduled} jobs. The batch profile turns it off: beans with scheduled methods
+ * would otherwise be created eagerly, and with them the result store they write to.
+ */
+@Configuration(proxyBeanMethods = false)
+@EnableScheduling
+@ConditionalOnProperty(name = "comparison.scheduling.enabled", matchIfMissing = true)
+class SchedulingConfiguration {}
@@ -0,0 +1,105 @@
+package com.example.sourcecompare;
+
+import com.example.sourcecompare.application.BatchComparisonService;
+import com.example.sourcecompare.application.ComparisonContext;
+import com.example.sourcecompare.domain.BatchManifest;
+import com.example.sourcecompare.web.ComparisonInputResolver;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.Banner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs a batch manifest without the web server, for CI pipelines:
+ *
+ * <pre>
+ * java -Dloader.main=com.example.sourcecompare.SourceCompareBatch -cp source-compare.jar \
+ *     org.springframework.boot.loader.launch.PropertiesLauncher manifest.json [--spring.*=...]
+ * </pre>
+ *
+ * <p>Paths in the manifest are resolved against the working directory, which is the only server
+ * path root unless {@code --comparison.server-paths.roots} says otherwise. One JSON line per pair
+ * is written to standard output as each pair finishes; logging goes to standard error. The {@code
+ * batch} profile leaves out the database and the background jobs, so results are not stored. The
+ * exit code is 0 when every pair succeeded, 1 when any did not and 2 when the manifest could not be
+ * read.
+ */
+public final class SourceCompareBatch {
+    private static final int EXIT_PAIRS_FAILED = 1;
+    private static final int EXIT_USAGE = 2;
+
+    private SourceCompareBatch() {}
+
+    public static void main(String[] args) {
+        // Before anything logs, so that log4j starts with the stderr appender of the batch profile.
+        System.setProperty("log4j2.configurationFile", "log4j2-batch.xml");
+        if (args.length < 1 || args[0].startsWith("--")) {
+            System.err.println("Usage: SourceCompareBatch <manifest.json> [--property=value ...]");
+            System.exit(EXIT_USAGE);
+        }
+
+        SpringApplication application = new SpringApplication(SourceCompareApplication.class);
+        application.setWebApplicationType(WebApplicationType.NONE);
+        application.setBannerMode(Banner.Mode.OFF);
+        application.setAdditionalProfiles("batch");
+        application.setDefaultProperties(
+                Map.of("comparison.server-paths.roots", Path.of("").toAbsolutePath().toString()));
+        int exitCode;
+        try (ConfigurableApplicationContext context =
+                application.run(Arrays.copyOfRange(args, 1, args.length))) {
+            exitCode = run(context, Path.of(args[0]), System.out);
+        }
+        System.exit(exitCode);
+    }
+
+    private static int run(
+            ConfigurableApplicationContext context, Path manifestPath, PrintStream out) {
+        ObjectMapper objectMapper = context.getBean(ObjectMapper.class);
+        ComparisonInputResolver inputResolver = context.getBean(ComparisonInputResolver.class);
+        BatchComparisonService batchService = context.getBean(BatchComparisonService.class);
+        BatchManifest manifest;
+        try {
+            byte[] json = Files.readAllBytes(manifestPath);
+            manifest = objectMapper.readValue(json, BatchManifest.class);
+        } catch (IOException e) {
+            System.err.println("Could not read manifest " + manifestPath + ": " + e.getMessage());
+            return EXIT_USAGE;
+        }
+
+        // Server paths create no temp files.
+        try {
+            int unsuccessful =
+                    batchService.run(
+                            manifest,
+                            (label, path, ref) ->
+                                    inputResolver.resolve(
+                                            label,
+                                            new ComparisonInputResolver.Side(null, path, ref),
+                                            List.of()),
+                            false,
+                            ComparisonContext.detached(),
+                            summary -> {
+                                try {
+                                    out.println(objectMapper.writeValueAsString(summary));
+                                    out.flush();
+                                } catch (IOException e) {
+                                    throw new UncheckedIOException(e);
+                                }
+                            });
+            return unsuccessful == 0 ? 0 : EXIT_PAIRS_FAILED;
+        } catch (IOException e) {
+            System.err.println("Batch stopped: " + e.getMessage());
+            return EXIT_PAIRS_FAILED;
+        }
+    }
+}
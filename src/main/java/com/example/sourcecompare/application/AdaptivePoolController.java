@@ -0,0 +1,213 @@
+package com.example.sourcecompare.application;
+
+import com.example.sourcecompare.application.ComparisonScheduler.Pool;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Resizes the decompile and format pools of the {@link ComparisonScheduler} from live load. Every
+ * interval it looks at system CPU utilization, the share of time spent in garbage collection and
+ * each pool's queue, and moves the pool size within its configured bounds:
+ *
+ * <ul>
+ *   <li>GC above {@code gc-high} shrinks by one thread, since more threads mean more live sources;
+ *   <li>CPU above {@code cpu-high} shrinks by one thread;
+ *   <li>queued tasks with CPU below {@code cpu-target} grow the pool by half the remaining room,
+ *       but not beyond the number of queued tasks;
+ *   <li>an idle queue with idle threads shrinks by one thread.
+ * </ul>
+ *
+ * <p>Sizes, inputs and every adjustment are published under {@code comparison.pools.*}.
+ */
+@Component
+public class AdaptivePoolController {
+    private static final Logger log = LogManager.getLogger(AdaptivePoolController.class);
+
+    enum Reason {
+        GC,
+        CPU,
+        QUEUE,
+        IDLE,
+        NONE
+    }
+
+    record Bounds(int min, int max) {
+        int clamp(int threads) {
+            return Math.max(min, Math.min(max, threads));
+        }
+    }
+
+    /** CPU utilization is negative when the platform does not report it, which counts as idle. */
+    record Load(double cpu, double gcFraction, int queued, int active) {}
+
+    record Decision(int threads, Reason reason) {}
+
+    /** Inputs of the last adjustment, kept apart so the constructor can register their gauges. */
+    private static final class LastSample {
+        private volatile double cpu = -1;
+        private volatile double gcFraction;
+    }
+
+    private final ComparisonScheduler scheduler;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final double cpuTarget;
+    private final double cpuHigh;
+    private final double gcHigh;
+    private final Map<Pool, Bounds> bounds = new EnumMap<>(Pool.class);
+    private final OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+    private final LastSample lastSample = new LastSample();
+    private long lastGcMillis = totalGcMillis();
+    private long lastSampleNanos = System.nanoTime();
+
+    public AdaptivePoolController(
+            ComparisonScheduler scheduler,
+            MeterRegistry meterRegistry,
+            @Value("${comparison.pools.adaptive.enabled:true}") boolean enabled,
+            @Value("${comparison.pools.adaptive.cpu-target:0.75}") double cpuTarget,
+            @Value("${comparison.pools.adaptive.cpu-high:0.9}") double cpuHigh,
+            @Value("${comparison.pools.adaptive.gc-high:0.1}") double gcHigh,
+            @Value("${comparison.pools.decompile.min-threads:1}") int decompileMin,
+            @Value("${comparison.pools.decompile.max-threads:0}") int decompileMax,
+            @Value("${comparison.pools.format.min-threads:1}") int formatMin,
+            @Value("${comparison.pools.format.max-threads:0}") int formatMax) {
+        this.scheduler = scheduler;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.cpuTarget = cpuTarget;
+        this.cpuHigh = cpuHigh;
+        this.gcHigh = gcHigh;
+        bounds.put(Pool.DECOMPILE, bounds(decompileMin, decompileMax));
+        bounds.put(Pool.FORMAT, bounds(formatMin, formatMax));
+
+        Gauge.builder("comparison.pools.cpu", lastSample, sample -> sample.cpu)
+                .description("System CPU utilization seen by the pool controller")
+                .register(meterRegistry);
+        Gauge.builder("comparison.pools.gc", lastSample, sample -> sample.gcFraction)
+                .description(
+                        "Share of time spent in garbage collection seen by the pool controller")
+                .register(meterRegistry);
+        for (Pool pool : Pool.values()) {
+            String tag = pool.name().toLowerCase(Locale.ROOT);
+            Gauge.builder("comparison.pools.size", scheduler, s -> s.poolSize(pool))
+                    .description("Threads the pool is sized to")
+                    .tag("pool", tag)
+                    .register(meterRegistry);
+            Gauge.builder("comparison.pools.active", scheduler, s -> s.activeTasks(pool))
+                    .description("Pool threads running a task")
+                    .tag("pool", tag)
+                    .register(meterRegistry);
+            if (enabled) {
+                scheduler.resizePool(pool, bounds.get(pool).clamp(scheduler.poolSize(pool)));
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${comparison.pools.adaptive.interval-ms:2000}")
+    void adjust() {
+        if (!enabled) {
+            return;
+        }
+        double cpu = systemCpu();
+        double gcFraction = gcFractionSinceLastSample();
+        lastSample.cpu = cpu;
+        lastSample.gcFraction = gcFraction;
+        for (Pool pool : Pool.values()) {
+            int current = scheduler.poolSize(pool);
+            Load load =
+                    new Load(
+                            cpu,
+                            gcFraction,
+                            scheduler.queuedTasks(pool),
+                            scheduler.activeTasks(pool));
+            Decision decision = decide(current, bounds.get(pool), load);
+            if (decision.threads() == current) {
+                continue;
+            }
+            scheduler.resizePool(pool, decision.threads());
+            meterRegistry
+                    .counter(
+                            "comparison.pools.adjustments",
+                            "pool",
+                            pool.name().toLowerCase(Locale.ROOT),
+                            "direction",
+                            decision.threads() > current ? "up" : "down",
+                            "reason",
+                            decision.reason().name().toLowerCase(Locale.ROOT))
+                    .increment();
+            log.debug(
+                    "Resized {} pool from {} to {} threads"
+                            + " ({}; cpu {}, gc {}, queued {}, active {})",
+                    pool,
+                    current,
+                    decision.threads(),
+                    decision.reason(),
+                    cpu,
+                    gcFraction,
+                    load.queued(),
+                    load.active());
+        }
+    }
+
+    Decision decide(int current, Bounds bounds, Load load) {
+        int threads = bounds.clamp(current);
+        if (load.gcFraction() > gcHigh && threads > bounds.min()) {
+            return new Decision(threads - 1, Reason.GC);
+        }
+        if (load.cpu() > cpuHigh && threads > bounds.min()) {
+            return new Decision(threads - 1, Reason.CPU);
+        }
+        if (load.queued() > 0 && load.cpu() < cpuTarget && threads < bounds.max()) {
+            int step = Math.min(load.queued(), Math.max(1, (bounds.max() - threads + 1) / 2));
+            return new Decision(threads + step, Reason.QUEUE);
+        }
+        if (load.queued() == 0 && load.active() < threads && threads > bounds.min()) {
+            return new Decision(threads - 1, Reason.IDLE);
+        }
+        return new Decision(threads, Reason.NONE);
+    }
+
+    private double systemCpu() {
+        if (os instanceof com.sun.management.OperatingSystemMXBean platform) {
+            return platform.getCpuLoad();
+        }
+        double loadAverage = os.getSystemLoadAverage();
+        return loadAverage < 0 ? -1 : loadAverage / os.getAvailableProcessors();
+    }
+
+    private double gcFractionSinceLastSample() {
+        long now = System.nanoTime();
+        long gcMillis = totalGcMillis();
+        double elapsedMillis = (now - lastSampleNanos) / 1_000_000.0;
+        double fraction = elapsedMillis > 0 ? (gcMillis - lastGcMillis) / elapsedMillis : 0;
+        lastSampleNanos = now;
+        lastGcMillis = gcMillis;
+        return Math.max(0, Math.min(1, fraction));
+    }
+
+    private static long totalGcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(collector.getCollectionTime(), 0);
+        }
+        return total;
+    }
+
+    private static Bounds bounds(int min, int max) {
+        int processors = Runtime.getRuntime().availableProcessors();
+        int upper = max > 0 ? max : processors;
+        return new Bounds(Math.max(1, Math.min(min, upper)), Math.max(upper, 1));
+    }
+}
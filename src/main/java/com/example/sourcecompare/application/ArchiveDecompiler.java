@@ -9,5 +9,14 @@ import java.util.Map;
 public interface ArchiveDecompiler {
     String CONTENT_NOT_READ = "CONTENT_NOT_READ";
 
-    Map<String, FileInfo> decompileClasses(ArchiveInput archive) throws IOException;
+    default Map<String, FileInfo> decompileClasses(ArchiveInput archive) throws IOException {
+        return decompileClasses(archive, ComparisonContext.detached(), null);
+    }
+
+    /**
+     * Decompiles an archive on the workers of the context's requester, reporting entries read and
+     * classes decompiled for {@code side}.
+     */
+    Map<String, FileInfo> decompileClasses(
+            ArchiveInput archive, ComparisonContext context, String side) throws IOException;
 }
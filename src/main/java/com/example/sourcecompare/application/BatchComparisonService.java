@@ -0,0 +1,223 @@
+package com.example.sourcecompare.application;
+
+import com.example.sourcecompare.domain.ArchiveInput;
+import com.example.sourcecompare.domain.BatchManifest;
+import com.example.sourcecompare.domain.ComparisonRequest;
+import com.example.sourcecompare.domain.ComparisonResult;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Compares the pairs of a {@link BatchManifest}, a bounded number at a time, and reports each pair
+ * as soon as it finishes. Pairs go through the same {@link ComparisonUseCase} as single
+ * comparisons, so they are admitted by the scheduler and share its snapshots and directory
+ * manifests: an artifact that appears in several pairs is decompiled and formatted once.
+ *
+ * <p>A failing pair is reported and the batch goes on; cancelling the batch's context cancels every
+ * pair still running.
+ */
+@Service
+public class BatchComparisonService {
+    private static final Logger log = LogManager.getLogger(BatchComparisonService.class);
+
+    /** Opens one side of a pair; {@code label} names the side in error messages. */
+    @FunctionalInterface
+    public interface ArchiveOpener {
+        ArchiveInput open(String label, String path, String ref) throws IOException;
+    }
+
+    public enum Outcome {
+        SUCCEEDED,
+        FAILED,
+        CANCELLED
+    }
+
+    /**
+     * What became of one pair. {@code comparisonId} is set when the result was stored; the counts
+     * are zero and {@code error} is set unless the pair succeeded.
+     */
+    public record PairSummary(
+            int index,
+            String name,
+            Outcome outcome,
+            Long comparisonId,
+            int added,
+            int deleted,
+            int modified,
+            int renamed,
+            int unchanged,
+            double seconds,
+            String error) {
+
+        static PairSummary succeeded(
+                int index,
+                String name,
+                Long comparisonId,
+                ComparisonResult result,
+                double seconds) {
+            return new PairSummary(
+                    index,
+                    name,
+                    Outcome.SUCCEEDED,
+                    comparisonId,
+                    size(result.getAdded()),
+                    size(result.getDeleted()),
+                    size(result.getModified()),
+                    result.getRenamed() == null ? 0 : result.getRenamed().size(),
+                    result.getUnchanged() == null ? 0 : result.getUnchanged().size(),
+                    seconds,
+                    null);
+        }
+
+        static PairSummary failed(
+                int index, String name, Outcome outcome, String error, double seconds) {
+            return new PairSummary(index, name, outcome, null, 0, 0, 0, 0, 0, seconds, error);
+        }
+
+        private static int size(Map<?, ?> files) {
+            return files == null ? 0 : files.size();
+        }
+    }
+
+    private final ComparisonUseCase comparisonUseCase;
+    private final ComparisonWriteBehindQueue writeBehindQueue;
+    private final int maxParallelism;
+
+    public BatchComparisonService(
+            ComparisonUseCase comparisonUseCase,
+            // Lazy so that a batch that stores nothing never starts the writer and its store.
+            @Lazy ComparisonWriteBehindQueue writeBehindQueue,
+            @Value("${comparison.batch.max-parallelism:4}") int maxParallelism) {
+        this.comparisonUseCase = comparisonUseCase;
+        this.writeBehindQueue = writeBehindQueue;
+        this.maxParallelism = Math.max(maxParallelism, 1);
+    }
+
+    /**
+     * Runs every pair of {@code manifest} and hands each summary to {@code sink} in the order the
+     * pairs finish, always from the calling thread. With {@code store} each result is saved as a
+     * comparison under the pair's name. Returns how many pairs did not succeed.
+     *
+     * @throws InterruptedIOException when the calling thread is interrupted
+     */
+    public int run(
+            BatchManifest manifest,
+            ArchiveOpener opener,
+            boolean store,
+            ComparisonContext context,
+            Consumer<PairSummary> sink)
+            throws IOException {
+        int requested = manifest.parallelism() != null ? manifest.parallelism() : maxParallelism;
+        int parallelism = Math.max(1, Math.min(requested, maxParallelism));
+        ExecutorService threads =
+                Executors.newFixedThreadPool(
+                        parallelism, Thread.ofVirtual().name("comparison-batch-", 1).factory());
+        CompletionService<PairSummary> completions = new ExecutorCompletionService<>(threads);
+        boolean finished = false;
+        try {
+            for (int i = 0; i < manifest.pairs().size(); i++) {
+                int index = i;
+                BatchManifest.Pair pair = manifest.pairs().get(i);
+                completions.submit(() -> runPair(index, pair, manifest, opener, store, context));
+            }
+            int unsuccessful = 0;
+            for (int i = 0; i < manifest.pairs().size(); i++) {
+                PairSummary summary = completions.take().get();
+                if (summary.outcome() != Outcome.SUCCEEDED) {
+                    unsuccessful++;
+                }
+                sink.accept(summary);
+            }
+            finished = true;
+            return unsuccessful;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while running the batch");
+        } catch (ExecutionException e) {
+            // runPair reports its own failures, so this is a bug rather than a failed pair.
+            throw new IllegalStateException("Batch pair failed unexpectedly", e.getCause());
+        } finally {
+            if (!finished) {
+                context.cancel("Batch stopped");
+            }
+            threads.shutdownNow();
+        }
+    }
+
+    private PairSummary runPair(
+            int index,
+            BatchManifest.Pair pair,
+            BatchManifest manifest,
+            ArchiveOpener opener,
+            boolean store,
+            ComparisonContext batchContext) {
+        String name = pairName(pair);
+        long start = System.nanoTime();
+        // Each pair gets its own context, but stops with the batch.
+        ComparisonContext context =
+                new ComparisonContext(batchContext.requester(), ComparisonProgressListener.NONE);
+        Runnable unlink = batchContext.onCancel(() -> context.cancel("Batch cancelled"));
+        try {
+            String label = "pair " + (index + 1);
+            ComparisonRequest request =
+                    new ComparisonRequest(
+                            opener.open("left of " + label, pair.left(), pair.leftRef()),
+                            opener.open("right of " + label, pair.right(), pair.rightRef()),
+                            manifest.modeOf(pair),
+                            manifest.contextSizeOrDefault(),
+                            false);
+            ComparisonResult result = comparisonUseCase.compare(request, context);
+            Long id =
+                    store ? writeBehindQueue.submit(name, batchContext.requester(), result) : null;
+            return PairSummary.succeeded(index, name, id, result, secondsSince(start));
+        } catch (ComparisonCancelledException e) {
+            return PairSummary.failed(
+                    index, name, Outcome.CANCELLED, e.getMessage(), secondsSince(start));
+        } catch (Exception e) {
+            log.warn("Batch pair {} ({}) failed", index + 1, name, e);
+            return PairSummary.failed(
+                    index, name, Outcome.FAILED, errorMessage(e), secondsSince(start));
+        } finally {
+            unlink.run();
+        }
+    }
+
+    private static String pairName(BatchManifest.Pair pair) {
+        if (pair.name() != null && !pair.name().isBlank()) {
+            return pair.name().trim();
+        }
+        return describe(pair.left(), pair.leftRef())
+                + " vs "
+                + describe(pair.right(), pair.rightRef());
+    }
+
+    private static String describe(String path, String ref) {
+        String side = path == null ? "?" : path.trim();
+        return ref == null || ref.isBlank() ? side : side + "@" + ref.trim();
+    }
+
+    private static String errorMessage(Exception e) {
+        if (e instanceof ResponseStatusException status && status.getReason() != null) {
+            return status.getReason();
+        }
+        return e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+    }
+
+    private static double secondsSince(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000_000.0;
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.sourcecompare.application;
+
+import com.example.sourcecompare.domain.ComparisonResult;
+import com.example.sourcecompare.domain.RenameInfo;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Which files changed in which candidate of a baseline-against-many comparison. There is a row for
+ * every path changed in at least one candidate and a column for every candidate's comparison. Paths
+ * of the baseline that a candidate leaves alone are {@link Change#UNCHANGED}; paths new in other
+ * candidates that a candidate does not have are {@link Change#ABSENT}.
+ */
+public record ChangeMatrix(List<Column> columns, List<Row> rows) {
+
+    public enum Change {
+        ADDED,
+        DELETED,
+        MODIFIED,
+        RENAMED,
+        UNCHANGED,
+        ABSENT
+    }
+
+    /** One candidate, as the stored comparison of the baseline with it. */
+    public record Column(long comparisonId, String name) {}
+
+    /** {@code otherPath} is the path on the other side of a rename, otherwise null. */
+    public record Cell(Change change, String otherPath) {}
+
+    public record Row(String path, List<Cell> cells) {
+        public long changedIn() {
+            return cells.stream()
+                    .filter(cell -> cell.change() != Change.UNCHANGED)
+                    .filter(cell -> cell.change() != Change.ABSENT)
+                    .count();
+        }
+    }
+
+    /** {@code results} holds the result of each column's comparison, in column order. */
+    public static ChangeMatrix of(List<Column> columns, List<ComparisonResult> results) {
+        int width = columns.size();
+        Map<String, Cell[]> cells = new TreeMap<>();
+        Set<String> baselinePaths = new HashSet<>();
+        for (int i = 0; i < width; i++) {
+            ComparisonResult result = results.get(i);
+            for (String path : keys(result.getModified())) {
+                cell(cells, path, width)[i] = new Cell(Change.MODIFIED, null);
+                baselinePaths.add(path);
+            }
+            for (String path : keys(result.getDeleted())) {
+                cell(cells, path, width)[i] = new Cell(Change.DELETED, null);
+                baselinePaths.add(path);
+            }
+            for (String path : keys(result.getAdded())) {
+                cell(cells, path, width)[i] = new Cell(Change.ADDED, null);
+            }
+            for (RenameInfo rename : renames(result)) {
+                cell(cells, rename.getFrom(), width)[i] = new Cell(Change.RENAMED, rename.getTo());
+                baselinePaths.add(rename.getFrom());
+            }
+        }
+        // A rename target listed because another candidate added it is present, not absent.
+        for (int i = 0; i < width; i++) {
+            for (RenameInfo rename : renames(results.get(i))) {
+                Cell[] row = cells.get(rename.getTo());
+                if (row != null && row[i] == null) {
+                    row[i] = new Cell(Change.RENAMED, rename.getFrom());
+                }
+            }
+        }
+
+        List<Row> rows = new ArrayList<>(cells.size());
+        for (Map.Entry<String, Cell[]> entry : cells.entrySet()) {
+            Cell[] row = entry.getValue();
+            Change missing =
+                    baselinePaths.contains(entry.getKey()) ? Change.UNCHANGED : Change.ABSENT;
+            for (int i = 0; i < width; i++) {
+                if (row[i] == null) {
+                    row[i] = new Cell(missing, null);
+                }
+            }
+            rows.add(new Row(entry.getKey(), List.of(row)));
+        }
+        return new ChangeMatrix(List.copyOf(columns), rows);
+    }
+
+    private static Cell[] cell(Map<String, Cell[]> cells, String path, int width) {
+        return cells.computeIfAbsent(path, p -> new Cell[width]);
+    }
+
+    private static Set<String> keys(Map<String, ?> files) {
+        return files == null ? Set.of() : files.keySet();
+    }
+
+    private static List<RenameInfo> renames(ComparisonResult result) {
+        return result.getRenamed() == null ? List.of() : result.getRenamed();
+    }
+}
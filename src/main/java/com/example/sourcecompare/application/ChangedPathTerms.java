@@ -0,0 +1,84 @@
+package com.example.sourcecompare.application;
+
+import com.example.sourcecompare.domain.ComparisonResult;
+import com.example.sourcecompare.domain.DiffInfo;
+import com.example.sourcecompare.domain.RenameInfo;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Search terms for the changed files of a comparison. Every added, deleted, modified or renamed
+ * file is findable by its lowercased path without a {@code .java}/{@code .class} extension and by
+ * its simple name, so that {@code com/acme/billing/InvoiceService}, {@code com.acme.billing} and
+ * {@code InvoiceService} all match it as prefixes.
+ */
+public final class ChangedPathTerms {
+
+    public record Term(String term, String category, String path) {}
+
+    private ChangedPathTerms() {}
+
+    public static List<Term> of(ComparisonResult result) {
+        List<Term> terms = new ArrayList<>();
+        addAll(terms, "ADDED", result.getAdded());
+        addAll(terms, "DELETED", result.getDeleted());
+        addAll(terms, "MODIFIED", result.getModified());
+        if (result.getRenamed() != null) {
+            for (RenameInfo rename : result.getRenamed()) {
+                add(terms, "RENAMED", rename.getTo());
+                if (rename.getFrom() != null && !rename.getFrom().equals(rename.getTo())) {
+                    add(terms, "RENAMED", rename.getFrom());
+                }
+            }
+        }
+        return terms;
+    }
+
+    /** The prefixes to look up for a query: the query itself and, for dotted names, as a path. */
+    public static Set<String> queryPrefixes(String query) {
+        Set<String> prefixes = new LinkedHashSet<>();
+        String term = normalize(query);
+        prefixes.add(term);
+        prefixes.add(term.replace('.', '/'));
+        return prefixes;
+    }
+
+    /**
+     * Lowercases a path or query, unifies separators and drops a Java source or class extension.
+     */
+    public static String normalize(String value) {
+        String term = value.trim().replace('\\', '/').toLowerCase(Locale.ROOT);
+        if (term.endsWith(".java")) {
+            term = term.substring(0, term.length() - ".java".length());
+        } else if (term.endsWith(".class")) {
+            term = term.substring(0, term.length() - ".class".length());
+        }
+        return term;
+    }
+
+    private static void addAll(List<Term> terms, String category, Map<String, DiffInfo> diffs) {
+        if (diffs == null) {
+            return;
+        }
+        for (String path : diffs.keySet()) {
+            add(terms, category, path);
+        }
+    }
+
+    private static void add(List<Term> terms, String category, String path) {
+        if (path == null || path.isBlank()) {
+            return;
+        }
+        String term = normalize(path);
+        terms.add(new Term(term, category, path));
+        String simpleName = term.substring(term.lastIndexOf('/') + 1);
+        if (!simpleName.equals(term)) {
+            terms.add(new Term(simpleName, category, path));
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.sourcecompare.application;
+
+import java.util.concurrent.CancellationException;
+
+/** Thrown by the pipeline once its {@link ComparisonContext} has been cancelled. */
+public class ComparisonCancelledException extends CancellationException {
+    public ComparisonCancelledException(String reason) {
+        super(reason);
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.sourcecompare.application;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Per-comparison state handed down the pipeline: who asked for it, which decides how worker threads
+ * are shared, where progress goes, and whether it has been cancelled.
+ *
+ * <p>Cancellation is cooperative. Stages call {@link #throwIfCancelled()} between units of work,
+ * and code that blocks or holds queued work registers a callback with {@link #onCancel} to release
+ * it at once.
+ */
+public final class ComparisonContext {
+    private static final Logger log = LogManager.getLogger(ComparisonContext.class);
+
+    private final String requester;
+    private final ComparisonProgressListener progress;
+    private final List<Runnable> cancelCallbacks = new CopyOnWriteArrayList<>();
+    private volatile String cancelReason;
+
+    public ComparisonContext(String requester, ComparisonProgressListener progress) {
+        this.requester = requester != null ? requester : "";
+        this.progress = Objects.requireNonNullElse(progress, ComparisonProgressListener.NONE);
+    }
+
+    /** A context for callers that neither identify a requester nor follow progress. */
+    public static ComparisonContext detached() {
+        return new ComparisonContext("", ComparisonProgressListener.NONE);
+    }
+
+    public String requester() {
+        return requester;
+    }
+
+    public ComparisonProgressListener progress() {
+        return progress;
+    }
+
+    /** Cancels the comparison; only the first reason is kept and later calls do nothing. */
+    public void cancel(String reason) {
+        synchronized (this) {
+            if (cancelReason != null) {
+                return;
+            }
+            cancelReason = reason != null ? reason : "Comparison cancelled";
+        }
+        for (Runnable callback : cancelCallbacks) {
+            try {
+                callback.run();
+            } catch (RuntimeException e) {
+                log.warn("Cancellation callback failed", e);
+            }
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelReason != null;
+    }
+
+    /**
+     * @throws ComparisonCancelledException once the comparison has been cancelled
+     */
+    public void throwIfCancelled() {
+        String reason = cancelReason;
+        if (reason != null) {
+            throw new ComparisonCancelledException(reason);
+        }
+    }
+
+    /**
+     * Runs {@code callback} when the comparison is cancelled, or right away if it already is. The
+     * callback may run more than once when registration races with cancellation. Returns the action
+     * that unregisters it.
+     */
+    public Runnable onCancel(Runnable callback) {
+        cancelCallbacks.add(callback);
+        if (isCancelled()) {
+            callback.run();
+        }
+        return () -> cancelCallbacks.remove(callback);
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.sourcecompare.application;
+
+import com.example.sourcecompare.application.ComparisonProgressListener.Stage;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * A comparison running in the background. Subscribers receive a {@link Status} snapshot on every
+ * state change and, at most every {@value #PROGRESS_INTERVAL_MILLIS} ms, on progress.
+ */
+public class ComparisonJob implements ComparisonProgressListener {
+    static final long PROGRESS_INTERVAL_MILLIS = 250;
+
+    public enum State {
+        QUEUED,
+        RUNNING,
+        SUCCEEDED,
+        FAILED,
+        CANCELLED;
+
+        public boolean isFinished() {
+            return this == SUCCEEDED || this == FAILED || this == CANCELLED;
+        }
+    }
+
+    public record Progress(Stage stage, String label, String side, int completed, int total) {}
+
+    public record Status(
+            String jobId, State state, Long resultId, String error, List<Progress> progress) {}
+
+    private final String id;
+    private final String ipRequest;
+    private final ComparisonContext context;
+    private final Map<String, Progress> progress = new ConcurrentSkipListMap<>();
+    private final List<Consumer<Status>> subscribers = new CopyOnWriteArrayList<>();
+    private volatile State state = State.QUEUED;
+    private volatile Long resultId;
+    private volatile String error;
+    private volatile Instant finishedAt;
+    private volatile long lastPublishedNanos;
+
+    ComparisonJob(String id, String ipRequest) {
+        this.id = id;
+        this.ipRequest = ipRequest;
+        this.context = new ComparisonContext(ipRequest, this);
+    }
+
+    public String id() {
+        return id;
+    }
+
+    public String ipRequest() {
+        return ipRequest;
+    }
+
+    public State state() {
+        return state;
+    }
+
+    ComparisonContext context() {
+        return context;
+    }
+
+    Instant finishedAt() {
+        return finishedAt;
+    }
+
+    public Status status() {
+        return new Status(id, state, resultId, error, new ArrayList<>(progress.values()));
+    }
+
+    /**
+     * Sends the current status to {@code subscriber} and then every later change until the job
+     * finishes; returns the action that unsubscribes it.
+     */
+    public Runnable subscribe(Consumer<Status> subscriber) {
+        subscribers.add(subscriber);
+        subscriber.accept(status());
+        return () -> subscribers.remove(subscriber);
+    }
+
+    @Override
+    public void onProgress(Stage stage, String side, int completed, int total) {
+        String key = stage.ordinal() + ":" + (side == null ? "" : side);
+        progress.put(key, new Progress(stage, stage.label(), side, completed, total));
+        long now = System.nanoTime();
+        if (completed == total
+                || now - lastPublishedNanos >= PROGRESS_INTERVAL_MILLIS * 1_000_000) {
+            lastPublishedNanos = now;
+            publish();
+        }
+    }
+
+    synchronized void started() {
+        if (state != State.QUEUED) {
+            return;
+        }
+        state = State.RUNNING;
+        publish();
+    }
+
+    void succeeded(long resultId) {
+        this.resultId = resultId;
+        finish(State.SUCCEEDED);
+    }
+
+    void failed(String error) {
+        this.error = error;
+        finish(State.FAILED);
+    }
+
+    void cancelled(String reason) {
+        this.error = reason;
+        finish(State.CANCELLED);
+    }
+
+    private synchronized void finish(State finalState) {
+        if (state.isFinished()) {
+            return;
+        }
+        finishedAt = Instant.now();
+        state = finalState;
+        publish();
+        subscribers.clear();
+    }
+
+    private void publish() {
+        Status status = status();
+        for (Consumer<Status> subscriber : subscribers) {
+            subscriber.accept(status);
+        }
+    }
+}
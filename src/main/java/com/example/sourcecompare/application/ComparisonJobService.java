@@ -0,0 +1,162 @@
+package com.example.sourcecompare.application;
+
+import com.example.sourcecompare.domain.ComparisonRequest;
+import com.example.sourcecompare.domain.ComparisonResult;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs comparisons in the background on a fixed number of workers. Jobs beyond the workers wait in
+ * a bounded queue; when that is full, submissions are refused with 503 instead of piling up uploads
+ * on disk. Finished jobs are kept for a while so that their status can still be fetched.
+ */
+@Service
+public class ComparisonJobService {
+    private static final Logger log = LogManager.getLogger(ComparisonJobService.class);
+
+    private final ComparisonUseCase comparisonUseCase;
+    private final ComparisonWriteBehindQueue writeBehindQueue;
+    private final ThreadPoolExecutor executor;
+    private final Duration retention;
+    private final Map<String, ComparisonJob> jobs = new ConcurrentHashMap<>();
+    private final Map<String, QueuedJob> queued = new ConcurrentHashMap<>();
+
+    public ComparisonJobService(
+            ComparisonUseCase comparisonUseCase,
+            ComparisonWriteBehindQueue writeBehindQueue,
+            MeterRegistry meterRegistry,
+            @Value("${comparison.jobs.workers:2}") int workers,
+            @Value("${comparison.jobs.queue-capacity:8}") int queueCapacity,
+            @Value("${comparison.jobs.retention-minutes:30}") long retentionMinutes) {
+        this.comparisonUseCase = comparisonUseCase;
+        this.writeBehindQueue = writeBehindQueue;
+        this.retention = Duration.ofMinutes(Math.max(retentionMinutes, 1));
+        AtomicInteger threadNumber = new AtomicInteger();
+        int poolSize = Math.max(workers, 1);
+        this.executor =
+                new ThreadPoolExecutor(
+                        poolSize,
+                        poolSize,
+                        0L,
+                        TimeUnit.MILLISECONDS,
+                        new ArrayBlockingQueue<>(Math.max(queueCapacity, 1)),
+                        runnable -> {
+                            Thread thread =
+                                    new Thread(
+                                            runnable,
+                                            "comparison-job-" + threadNumber.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+        Gauge.builder("comparison.jobs.queued", executor, e -> e.getQueue().size())
+                .description("Comparison jobs waiting for a worker")
+                .register(meterRegistry);
+        Gauge.builder("comparison.jobs.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Comparison jobs running")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues a comparison and returns its job right away. {@code cleanup} runs once the job has
+     * finished, or immediately when it is refused, to release the uploaded files.
+     */
+    public ComparisonJob submit(
+            ComparisonRequest request, String name, String ipRequest, Runnable cleanup) {
+        ComparisonJob job = new ComparisonJob(UUID.randomUUID().toString(), ipRequest);
+        QueuedJob task = new QueuedJob(() -> run(job, request, name, cleanup), cleanup);
+        jobs.put(job.id(), job);
+        queued.put(job.id(), task);
+        try {
+            executor.execute(task.runnable());
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id());
+            queued.remove(job.id());
+            cleanup.run();
+            throw new ResponseStatusException(
+                    HttpStatus.SERVICE_UNAVAILABLE,
+                    "Too many comparisons are waiting, please try again later");
+        }
+        return job;
+    }
+
+    public Optional<ComparisonJob> find(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+
+    /**
+     * Cancels a job on behalf of {@code requester}, who must be the one that submitted it. A queued
+     * job is dropped at once; a running one stops at its next cancellation check.
+     */
+    public ComparisonJob cancel(String jobId, String requester) {
+        ComparisonJob job =
+                find(jobId)
+                        .orElseThrow(
+                                () ->
+                                        new ResponseStatusException(
+                                                HttpStatus.NOT_FOUND, "Job not found"));
+        if (!job.ipRequest().equals(requester)) {
+            throw new ResponseStatusException(
+                    HttpStatus.FORBIDDEN, "Only the requester can cancel this job");
+        }
+        job.context().cancel("Cancelled by the user");
+        QueuedJob task = queued.remove(jobId);
+        if (task != null && executor.remove(task.runnable())) {
+            job.cancelled("Cancelled by the user");
+            task.cleanup().run();
+        }
+        return job;
+    }
+
+    private void run(ComparisonJob job, ComparisonRequest request, String name, Runnable cleanup) {
+        queued.remove(job.id());
+        ComparisonContext context = job.context();
+        try {
+            context.throwIfCancelled();
+            job.started();
+            ComparisonResult result = comparisonUseCase.compare(request, context);
+            job.succeeded(writeBehindQueue.submit(name, job.ipRequest(), result));
+        } catch (ComparisonCancelledException e) {
+            log.info("Comparison job {} cancelled: {}", job.id(), e.getMessage());
+            job.cancelled(e.getMessage());
+        } catch (Exception e) {
+            log.error("Comparison job {} failed", job.id(), e);
+            job.failed(e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+        } finally {
+            cleanup.run();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${comparison.jobs.expiry-check-ms:60000}")
+    void expireFinishedJobs() {
+        Instant cutoff = Instant.now().minus(retention);
+        jobs.values()
+                .removeIf(job -> job.state().isFinished() && job.finishedAt().isBefore(cutoff));
+    }
+
+    private record QueuedJob(Runnable runnable, Runnable cleanup) {}
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.sourcecompare.application;
+
+/**
+ * Receives stage-level progress of a running comparison. Calls arrive on the threads doing the
+ * work, so implementations must be thread-safe and cheap.
+ */
+@FunctionalInterface
+public interface ComparisonProgressListener {
+    ComparisonProgressListener NONE = (stage, side, completed, total) -> {};
+
+    enum Stage {
+        READ_ENTRIES("Entries read"),
+        DECOMPILE("Classes decompiled"),
+        FORMAT("Files formatted"),
+        RENDER("Diffs rendered");
+
+        private final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+
+        public String label() {
+            return label;
+        }
+    }
+
+    /**
+     * Reports that {@code completed} items of a stage are done on one side ({@code "left"}, {@code
+     * "right"}, or {@code null} for stages covering both). {@code total} is -1 while unknown.
+     */
+    void onProgress(Stage stage, String side, int completed, int total);
+}
@@ -1,28 +1,38 @@
 package com.example.sourcecompare.application;
 
+import com.example.sourcecompare.application.ComparisonResultStore.ComparisonSummary;
+import com.example.sourcecompare.application.ComparisonResultStore.PathMatch;
+import com.example.sourcecompare.application.ComparisonResultStore.StoredComparison;
+import com.example.sourcecompare.application.ComparisonResultStore.StoredFileDiff;
 import com.example.sourcecompare.domain.ComparisonResult;
-import com.example.sourcecompare.infrastructure.persistence.StoredComparisonResult;
-import com.example.sourcecompare.infrastructure.persistence.StoredComparisonResultRepository;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.sourcecompare.domain.DiffInfo;
+import com.example.sourcecompare.domain.EditScript;
+import com.example.sourcecompare.domain.RenameInfo;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 @Service
 public class ComparisonResultPersistenceService {
     private static final int DEFAULT_PAGE_SIZE = 20;
     private static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_PATH_MATCHES = 500;
 
     private static final List<MarkColorOption> MARK_COLOR_OPTIONS =
             List.of(
@@ -37,124 +47,345 @@ public class ComparisonResultPersistenceService {
 
     private static final String DEFAULT_MARK_COLOR = MARK_COLOR_OPTIONS.get(0).value();
 
-    private final StoredComparisonResultRepository repository;
-    private final ObjectMapper objectMapper;
+    private final ComparisonResultStore store;
+    private final DiffRenderer diffRenderer;
+    private final ComparisonViewCache viewCache;
 
     public ComparisonResultPersistenceService(
-            StoredComparisonResultRepository repository, ObjectMapper objectMapper) {
-        this.repository = repository;
-        this.objectMapper = objectMapper;
+            ComparisonResultStore store, DiffRenderer diffRenderer, ComparisonViewCache viewCache) {
+        this.store = store;
+        this.diffRenderer = diffRenderer;
+        this.viewCache = viewCache;
     }
 
-    @Transactional
     public long saveComparison(String name, String ipRequest, ComparisonResult result) {
-        StoredComparisonResult entity = new StoredComparisonResult();
-        entity.setName(name);
-        entity.setIpRequest(ipRequest);
-        entity.setDiffResultJson(toJson(result));
-        entity.setMarkColor(DEFAULT_MARK_COLOR);
-        StoredComparisonResult saved = repository.save(entity);
-        return saved.getId();
+        long id = allocateComparisonId();
+        saveComparison(id, name, ipRequest, result);
+        return id;
+    }
+
+    /**
+     * Draws a comparison ID ahead of {@link #saveComparison(long, String, String,
+     * ComparisonResult)}.
+     */
+    public long allocateComparisonId() {
+        return store.allocateId();
+    }
+
+    public void saveComparison(long id, String name, String ipRequest, ComparisonResult result) {
+        ComparisonSummary summary =
+                new ComparisonSummary(id, name, ipRequest, null, DEFAULT_MARK_COLOR);
+        try {
+            store.save(new StoredComparison(summary, result));
+        } catch (UncheckedIOException ex) {
+            throw new ResponseStatusException(
+                    HttpStatus.INTERNAL_SERVER_ERROR, "Failed to store comparison result", ex);
+        }
     }
 
-    @Transactional(readOnly = true)
     public StoredComparisonResultView loadComparison(long id) {
-        StoredComparisonResult entity =
-                repository
-                        .findById(id)
+        return viewCache.get(id, this::readComparison);
+    }
+
+    private StoredComparisonResultView readComparison(long id) {
+        StoredComparison comparison =
+                readPayload(() -> store.find(id))
                         .orElseThrow(
                                 () ->
                                         new ResponseStatusException(
                                                 HttpStatus.NOT_FOUND, "Comparison not found"));
-        ComparisonResult result = fromJson(entity.getDiffResultJson());
-        String markColor = normalizeMarkColor(entity.getMarkColor());
+        ComparisonResult result = comparison.result();
+        if (result == null) {
+            throw new ResponseStatusException(
+                    HttpStatus.INTERNAL_SERVER_ERROR, "Comparison result payload is missing");
+        }
+        renderEditScripts(result);
+        ComparisonSummary summary = comparison.summary();
+        String markColor = normalizeMarkColor(summary.markColor());
         return new StoredComparisonResultView(
-                entity.getId(),
-                entity.getName(),
-                entity.getIpRequest(),
-                entity.getCreated(),
+                summary.id(),
+                summary.name(),
+                summary.ipRequest(),
+                summary.created(),
                 markColor,
                 describeMarkColor(markColor),
                 result);
     }
 
-    @Transactional(readOnly = true)
+    /**
+     * The newest stored comparison made from the same uploads and options as a request with {@code
+     * resultKey}; see {@link ComparisonUseCase#resultKey}.
+     */
+    public Optional<Long> findByResultKey(String resultKey) {
+        return store.findByResultKey(resultKey);
+    }
+
+    /**
+     * Reads a stored comparison with the diff of every modified file inline and edit scripts left
+     * unrendered, as the base of a recompare. Unlike {@link #loadComparison} the result is read
+     * afresh, so it can be changed and stored again.
+     */
+    public ComparisonResult loadStoredResult(long id) {
+        ComparisonResult result =
+                readPayload(() -> store.find(id))
+                        .orElseThrow(
+                                () ->
+                                        new ResponseStatusException(
+                                                HttpStatus.NOT_FOUND, "Comparison not found"))
+                        .result();
+        if (result == null) {
+            throw new ResponseStatusException(
+                    HttpStatus.INTERNAL_SERVER_ERROR, "Comparison result payload is missing");
+        }
+        if (result.getModified() != null) {
+            for (DiffInfo info : result.getModified().values()) {
+                Integer fileIndex = info.getFileIndex();
+                if (fileIndex != null) {
+                    readPayload(() -> store.findFile(id, fileIndex))
+                            .ifPresent(
+                                    file -> {
+                                        info.setDiff(file.diff());
+                                        info.setEditScript(file.editScript());
+                                    });
+                    info.setFileIndex(null);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Builds the view of a comparison that has not been written yet. Edit scripts are rendered into
+     * copies so the result being written is left untouched.
+     */
+    public StoredComparisonResultView pendingView(
+            long id,
+            String name,
+            String ipRequest,
+            LocalDateTime created,
+            ComparisonResult result) {
+        return new StoredComparisonResultView(
+                id,
+                name,
+                ipRequest,
+                created,
+                DEFAULT_MARK_COLOR,
+                describeMarkColor(DEFAULT_MARK_COLOR),
+                renderedCopy(result));
+    }
+
     public List<StoredComparisonResultSummary> loadRecentComparisons() {
         return searchComparisons(null, null, 0, DEFAULT_PAGE_SIZE).getContent();
     }
 
-    @Transactional(readOnly = true)
     public Page<StoredComparisonResultSummary> searchComparisons(
             String nameFilter, String ipFilter, int page, int size) {
-        String nameQuery = sanitizeFilter(nameFilter);
-        String ipQuery = sanitizeFilter(ipFilter);
+        String nameQuery = sanitizeFilter(nameFilter).toLowerCase(Locale.ROOT);
+        String ipQuery = sanitizeFilter(ipFilter).toLowerCase(Locale.ROOT);
         Pageable pageable =
                 PageRequest.of(sanitizePage(page), sanitizeSize(size), sortByCreatedDesc());
 
-        return repository
-                .findByNameContainingIgnoreCaseAndIpRequestContainingIgnoreCase(
-                        nameQuery, ipQuery, pageable)
-                .map(
-                        result -> {
-                            String markColor = normalizeMarkColor(result.getMarkColor());
-                            return new StoredComparisonResultSummary(
-                                    result.getId(),
-                                    result.getName(),
-                                    result.getIpRequest(),
-                                    result.getCreated(),
-                                    markColor,
-                                    describeMarkColor(markColor));
-                        });
-    }
-
-    @Transactional
-    public void updateComparison(long id, String requesterIp, String markColor, String name) {
-        StoredComparisonResult entity =
-                repository
-                        .findById(id)
-                        .orElseThrow(
-                                () ->
-                                        new ResponseStatusException(
-                                                HttpStatus.NOT_FOUND, "Comparison not found"));
+        return store.search(nameQuery, ipQuery, pageable).map(this::toSummary);
+    }
 
-        if (!Objects.equals(entity.getIpRequest(), requesterIp)) {
-            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Not allowed to edit this comparison");
+    /**
+     * Lists the comparisons that added, deleted, modified or renamed a file whose path or class
+     * name starts with {@code query}, newest first, together with the matching files.
+     */
+    public List<PathSearchResult> searchByPath(String query) {
+        String sanitized = sanitizeFilter(query);
+        if (sanitized.isEmpty()) {
+            return List.of();
         }
-
-        if (markColor != null) {
-            if (!isValidMarkColor(markColor)) {
-                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid color value");
+        Map<Long, List<PathSearchMatch>> matches = new LinkedHashMap<>();
+        for (PathMatch match : store.searchPaths(sanitized, MAX_PATH_MATCHES)) {
+            matches.computeIfAbsent(match.resultId(), id -> new ArrayList<>())
+                    .add(new PathSearchMatch(match.category(), match.path()));
+        }
+        if (matches.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, ComparisonSummary> summaries = new HashMap<>();
+        for (ComparisonSummary summary : store.findSummaries(matches.keySet())) {
+            summaries.put(summary.id(), summary);
+        }
+        List<PathSearchResult> results = new ArrayList<>();
+        for (Map.Entry<Long, List<PathSearchMatch>> e : matches.entrySet()) {
+            ComparisonSummary summary = summaries.get(e.getKey());
+            if (summary != null) {
+                results.add(new PathSearchResult(toSummary(summary), e.getValue()));
             }
-            entity.setMarkColor(markColor);
         }
+        return results;
+    }
 
+    public void updateComparison(long id, String requesterIp, String markColor, String name) {
+        findEditableComparison(id, requesterIp);
+
+        if (markColor != null && !isValidMarkColor(markColor)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid color value");
+        }
+
+        String sanitizedName = null;
         if (name != null) {
-            String sanitizedName = name.trim();
+            sanitizedName = name.trim();
             if (sanitizedName.isEmpty()) {
                 throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Name cannot be empty");
             }
-            entity.setName(sanitizedName);
         }
+
+        store.update(id, markColor, sanitizedName);
+        viewCache.invalidate(id);
     }
 
-    private String toJson(ComparisonResult result) {
-        try {
-            return objectMapper.writeValueAsString(result);
-        } catch (JsonProcessingException ex) {
+    /**
+     * Deletes a comparison and its file rows. Shared content that is no longer referenced by any
+     * comparison is removed as well.
+     */
+    public void deleteComparison(long id, String requesterIp) {
+        findEditableComparison(id, requesterIp);
+        store.delete(id);
+        viewCache.invalidate(id);
+    }
+
+    private ComparisonSummary findEditableComparison(long id, String requesterIp) {
+        ComparisonSummary summary =
+                store.findSummary(id)
+                        .orElseThrow(
+                                () ->
+                                        new ResponseStatusException(
+                                                HttpStatus.NOT_FOUND, "Comparison not found"));
+
+        if (!Objects.equals(summary.ipRequest(), requesterIp)) {
             throw new ResponseStatusException(
-                    HttpStatus.INTERNAL_SERVER_ERROR, "Failed to store comparison result", ex);
+                    HttpStatus.FORBIDDEN, "Not allowed to edit this comparison");
         }
+        return summary;
     }
 
-    private ComparisonResult fromJson(String json) {
+    /**
+     * Returns the diff text of a single file of a chunked comparison, as referenced by the file
+     * index of its {@code DiffInfo} or {@code RenameInfo}. Edit scripts are rendered with the given
+     * number of context lines.
+     */
+    public String loadFileDiff(long id, int fileIndex, int contextSize) {
+        StoredFileDiff file =
+                readPayload(() -> store.findFile(id, fileIndex))
+                        .orElseThrow(
+                                () ->
+                                        new ResponseStatusException(
+                                                HttpStatus.NOT_FOUND, "File diff not found"));
+        if (file.editScript() != null) {
+            return renderEditScript(file.path(), file.editScript(), contextSize);
+        }
+        if (file.diff() == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "File diff not found");
+        }
+        return file.diff();
+    }
+
+    private static <T> T readPayload(Supplier<T> read) {
         try {
-            return objectMapper.readValue(json, ComparisonResult.class);
-        } catch (JsonProcessingException ex) {
+            return read.get();
+        } catch (UncheckedIOException ex) {
             throw new ResponseStatusException(
                     HttpStatus.INTERNAL_SERVER_ERROR, "Failed to read comparison result", ex);
         }
     }
 
+    private StoredComparisonResultSummary toSummary(ComparisonSummary summary) {
+        String markColor = normalizeMarkColor(summary.markColor());
+        return new StoredComparisonResultSummary(
+                summary.id(),
+                summary.name(),
+                summary.ipRequest(),
+                summary.created(),
+                markColor,
+                describeMarkColor(markColor));
+    }
+
+    /** Replaces every inline edit script with its unified diff text for the result page. */
+    private void renderEditScripts(ComparisonResult result) {
+        renderEditScripts(result.getAdded(), result.getContextSize());
+        renderEditScripts(result.getDeleted(), result.getContextSize());
+        renderEditScripts(result.getModified(), result.getContextSize());
+        if (result.getRenamed() != null) {
+            for (RenameInfo rename : result.getRenamed()) {
+                if (rename.getEditScript() != null) {
+                    rename.setDiff(
+                            renderEditScript(
+                                    rename.getTo(),
+                                    rename.getEditScript(),
+                                    result.getContextSize()));
+                    rename.setEditScript(null);
+                }
+            }
+        }
+    }
+
+    private ComparisonResult renderedCopy(ComparisonResult result) {
+        int contextSize = result.getContextSize();
+        List<RenameInfo> renamed = null;
+        if (result.getRenamed() != null) {
+            renamed = new ArrayList<>(result.getRenamed().size());
+            for (RenameInfo rename : result.getRenamed()) {
+                String diff =
+                        rename.getEditScript() != null
+                                ? renderEditScript(
+                                        rename.getTo(), rename.getEditScript(), contextSize)
+                                : rename.getDiff();
+                renamed.add(new RenameInfo(rename.getFrom(), rename.getTo(), diff));
+            }
+        }
+        ComparisonResult copy =
+                new ComparisonResult(
+                        renderedCopy(result.getAdded(), contextSize),
+                        renderedCopy(result.getDeleted(), contextSize),
+                        renderedCopy(result.getModified(), contextSize),
+                        renamed,
+                        result.getUnchanged());
+        copy.setTiming(result.getTiming());
+        copy.setContextSize(contextSize);
+        copy.setInputs(result.getInputs());
+        return copy;
+    }
+
+    private Map<String, DiffInfo> renderedCopy(Map<String, DiffInfo> diffs, int contextSize) {
+        if (diffs == null) {
+            return null;
+        }
+        Map<String, DiffInfo> copy = new LinkedHashMap<>();
+        for (Map.Entry<String, DiffInfo> e : diffs.entrySet()) {
+            DiffInfo info = e.getValue();
+            copy.put(
+                    e.getKey(),
+                    new DiffInfo(
+                            info.getEditScript() != null
+                                    ? renderEditScript(
+                                            e.getKey(), info.getEditScript(), contextSize)
+                                    : info.getDiff()));
+        }
+        return copy;
+    }
+
+    private void renderEditScripts(Map<String, DiffInfo> diffs, int contextSize) {
+        if (diffs == null) {
+            return;
+        }
+        for (Map.Entry<String, DiffInfo> e : diffs.entrySet()) {
+            DiffInfo info = e.getValue();
+            if (info.getEditScript() != null) {
+                info.setDiff(renderEditScript(e.getKey(), info.getEditScript(), contextSize));
+                info.setEditScript(null);
+            }
+        }
+    }
+
+    private String renderEditScript(String fileName, EditScript editScript, int contextSize) {
+        return diffRenderer.render(
+                fileName, editScript, contextSize, ArchiveDecompiler.CONTENT_NOT_READ);
+    }
+
     public record StoredComparisonResultView(
             Long id,
             String name,
@@ -174,6 +405,11 @@ public class ComparisonResultPersistenceService {
 
     public record MarkColorOption(String value, String label) {}
 
+    public record PathSearchResult(
+            StoredComparisonResultSummary comparison, List<PathSearchMatch> files) {}
+
+    public record PathSearchMatch(String category, String path) {}
+
     public List<MarkColorOption> getAvailableMarkColors() {
         return MARK_COLOR_OPTIONS;
     }
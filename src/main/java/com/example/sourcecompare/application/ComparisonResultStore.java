@@ -0,0 +1,78 @@
+package com.example.sourcecompare.application;
+
+import com.example.sourcecompare.domain.ComparisonResult;
+import com.example.sourcecompare.domain.EditScript;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Storage backend for comparison results behind {@link ComparisonResultPersistenceService}. The
+ * backend is chosen with {@code comparison.store}: {@code jpa} (the default) keeps results in the
+ * database, {@code segment} in append-only files on local disk.
+ *
+ * <p>Name and requester filters passed to {@link #search} are already trimmed and lowercased and
+ * match as substrings; an empty filter matches everything. Payload failures are reported as {@link
+ * java.io.UncheckedIOException}.
+ */
+public interface ComparisonResultStore {
+    /** Reserves an ID for a comparison that is saved later. */
+    long allocateId();
+
+    /** Stores a comparison under an ID from {@link #allocateId()}; {@code created} is ignored. */
+    void save(StoredComparison comparison);
+
+    /**
+     * Loads a comparison. Its result may list files by file index only, to be fetched through
+     * {@link #findFile}, and may hold edit scripts that are not rendered yet.
+     */
+    Optional<StoredComparison> find(long id);
+
+    Optional<ComparisonSummary> findSummary(long id);
+
+    Optional<StoredFileDiff> findFile(long id, int fileIndex);
+
+    /**
+     * Lists comparisons whose name contains {@code nameFilter} and whose requester starts with
+     * {@code ipFilter}; both filters are lowercase and may be empty. A name filter shorter than
+     * three characters only matches names that start with it, so that every filter can be answered
+     * from an index.
+     */
+    Page<ComparisonSummary> search(String nameFilter, String ipFilter, Pageable pageable);
+
+    List<ComparisonSummary> findSummaries(Collection<Long> ids);
+
+    /**
+     * Finds changed files whose path or class name starts with {@code query}, newest comparison
+     * first; see {@link ChangedPathTerms}.
+     */
+    List<PathMatch> searchPaths(String query, int limit);
+
+    /**
+     * The newest comparison whose inputs have {@code resultKey}; see {@link
+     * ComparisonUseCase#resultKey}.
+     */
+    Optional<Long> findByResultKey(String resultKey);
+
+    /**
+     * Changes the mark color and/or name of a comparison; {@code null} leaves a value unchanged.
+     */
+    void update(long id, String markColor, String name);
+
+    void delete(long id);
+
+    record ComparisonSummary(
+            Long id, String name, String ipRequest, LocalDateTime created, String markColor) {}
+
+    /** A comparison with its result; the result is {@code null} when the payload is missing. */
+    record StoredComparison(ComparisonSummary summary, ComparisonResult result) {}
+
+    /** Stored diff of one file; exactly one of {@code diff} and {@code editScript} is set. */
+    record StoredFileDiff(String path, String diff, EditScript editScript) {}
+
+    record PathMatch(long resultId, String category, String path) {}
+}
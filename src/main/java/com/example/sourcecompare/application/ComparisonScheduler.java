@@ -0,0 +1,414 @@
+package com.example.sourcecompare.application;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Decides when comparisons may start and shares the worker threads between the running ones.
+ *
+ * <p>A comparison is admitted while fewer than {@code max-concurrent} are running and its memory
+ * estimate fits into what is left of the memory budget; a comparison larger than the whole budget
+ * runs only on its own. Waiting comparisons are admitted smallest first, except that one that has
+ * waited longer than {@code starvation-ms} goes ahead of all others.
+ *
+ * <p>CPU-bound work of admitted comparisons runs on two fixed pools, one for decompilation and one
+ * for formatting. Tasks on each pool are queued per requester and taken round-robin, so a requester
+ * with two huge archives gets no more worker time than one with a single small class. Everything
+ * else, reading archives and waiting for workers, runs on virtual threads.
+ */
+@Component
+public class ComparisonScheduler {
+    /** The worker pools comparisons hand CPU-bound tasks to. */
+    public enum Pool {
+        DECOMPILE,
+        FORMAT
+    }
+
+    private final int maxConcurrent;
+    private final long memoryBudgetBytes;
+    private final long bytesPerInputByte;
+    private final long defaultEstimateBytes;
+    private final int maxWaiting;
+    private final long starvationNanos;
+    private final MeterRegistry meterRegistry;
+    private final Map<Pool, ThreadPoolExecutor> workers = new EnumMap<>(Pool.class);
+    private final ExecutorService comparisonThreads =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("comparison-", 1).factory());
+    private final ScheduledExecutorService deadlines =
+            Executors.newSingleThreadScheduledExecutor(daemonThreads("comparison-deadline-"));
+    private final Timer admissionWait;
+    private final PriorityQueue<Waiter> waiting =
+            new PriorityQueue<>(
+                    Comparator.comparingLong(Waiter::estimateBytes)
+                            .thenComparingLong(Waiter::sequence));
+    private final AtomicLong sequence = new AtomicLong();
+    // A lock rather than a monitor: comparisons wait here on virtual threads, which a monitor pins.
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private int running;
+    private long reservedBytes;
+
+    public ComparisonScheduler(
+            MeterRegistry meterRegistry,
+            @Value("${decompile.thread-pool-size:0}") int decompileThreads,
+            @Value("${format.thread-pool-size:0}") int formatThreads,
+            @Value("${comparison.scheduler.max-concurrent:0}") int maxConcurrent,
+            @Value("${comparison.scheduler.memory-budget-bytes:0}") long memoryBudgetBytes,
+            @Value("${comparison.scheduler.memory-per-input-byte:8}") long bytesPerInputByte,
+            @Value("${comparison.scheduler.default-estimate-bytes:67108864}")
+                    long defaultEstimateBytes,
+            @Value("${comparison.scheduler.max-waiting:32}") int maxWaiting,
+            @Value("${comparison.scheduler.starvation-ms:120000}") long starvationMillis) {
+        int processors = Runtime.getRuntime().availableProcessors();
+        this.maxConcurrent = maxConcurrent > 0 ? maxConcurrent : Math.max(1, processors / 2);
+        this.memoryBudgetBytes =
+                memoryBudgetBytes > 0 ? memoryBudgetBytes : Runtime.getRuntime().maxMemory() / 2;
+        this.bytesPerInputByte = Math.max(bytesPerInputByte, 1);
+        this.defaultEstimateBytes = Math.max(defaultEstimateBytes, 0);
+        this.maxWaiting = Math.max(maxWaiting, 0);
+        this.starvationNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(starvationMillis, 0));
+        this.meterRegistry = meterRegistry;
+        workers.put(
+                Pool.DECOMPILE,
+                fixedPool(
+                        decompileThreads > 0 ? decompileThreads : processors, "decompile-worker-"));
+        workers.put(
+                Pool.FORMAT,
+                fixedPool(formatThreads > 0 ? formatThreads : processors, "format-worker-"));
+        this.admissionWait =
+                Timer.builder("comparison.scheduler.admission.wait")
+                        .description("Time comparisons waited to be admitted")
+                        .register(meterRegistry);
+        workers.forEach(
+                (pool, executor) -> {
+                    FairWorkQueue queue = (FairWorkQueue) executor.getQueue();
+                    String tag = pool.name().toLowerCase(Locale.ROOT);
+                    Gauge.builder("comparison.scheduler.worker.queue", queue, FairWorkQueue::size)
+                            .description("Worker tasks waiting for a thread")
+                            .tag("pool", tag)
+                            .register(meterRegistry);
+                    Gauge.builder(
+                                    "comparison.scheduler.worker.requesters",
+                                    queue,
+                                    FairWorkQueue::keyCount)
+                            .description("Requesters with worker tasks waiting")
+                            .tag("pool", tag)
+                            .register(meterRegistry);
+                });
+    }
+
+    /** Registers the gauges that read the admission state, once the scheduler is fully built. */
+    @PostConstruct
+    void registerGauges() {
+        Gauge.builder("comparison.scheduler.running", this, ComparisonScheduler::runningCount)
+                .description("Comparisons admitted and running")
+                .register(meterRegistry);
+        Gauge.builder("comparison.scheduler.waiting", this, ComparisonScheduler::waitingCount)
+                .description("Comparisons waiting for admission")
+                .register(meterRegistry);
+        Gauge.builder("comparison.scheduler.reserved", this, ComparisonScheduler::reservedBytes)
+                .description("Memory reserved by running comparisons")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Blocks until a comparison over {@code inputBytes} of archives (negative when unknown) may
+     * start. Closing the returned admission releases its share of the budget.
+     *
+     * @throws ResponseStatusException 503 when too many comparisons are already waiting
+     * @throws ComparisonCancelledException when the comparison is cancelled while waiting
+     */
+    public Admission admit(ComparisonContext context, long inputBytes) throws InterruptedException {
+        long estimate = estimate(inputBytes);
+        long start = System.nanoTime();
+        Waiter waiter = new Waiter(estimate, sequence.incrementAndGet(), start);
+        Runnable unregister = context.onCancel(this::wakeWaiters);
+        lock.lock();
+        try {
+            if (!canStart(waiter) && waiting.size() >= maxWaiting) {
+                throw new ResponseStatusException(
+                        HttpStatus.SERVICE_UNAVAILABLE,
+                        "Too many comparisons are waiting, please try again later");
+            }
+            waiting.add(waiter);
+            try {
+                while (next() != waiter || !canStart(waiter)) {
+                    context.throwIfCancelled();
+                    changed.await(Math.max(starvationNanos, 1_000_000), TimeUnit.NANOSECONDS);
+                }
+                context.throwIfCancelled();
+            } finally {
+                waiting.remove(waiter);
+                changed.signalAll();
+            }
+            running++;
+            reservedBytes += estimate;
+        } finally {
+            lock.unlock();
+            unregister.run();
+        }
+        admissionWait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return new Admission(context.requester(), estimate);
+    }
+
+    /** Runs {@code task} on a thread of {@code pool}, taking turns with other requesters' tasks. */
+    public <T> Future<T> submit(Pool pool, String requester, Callable<T> task) {
+        return submit(pool, requester, 0, task);
+    }
+
+    /**
+     * Like {@link #submit(Pool, String, Callable)}, but among the requester's queued tasks those
+     * with a higher {@code priority} start first.
+     */
+    public <T> Future<T> submit(Pool pool, String requester, long priority, Callable<T> task) {
+        FairTask<T> future = new FairTask<>(pool, requester, priority, task);
+        workers.get(pool).execute(future);
+        return future;
+    }
+
+    /** Starts a batch of {@code pool} tasks for the comparison of {@code context}. */
+    public <T> WorkBatch<T> batch(Pool pool, ComparisonContext context) {
+        return new WorkBatch<>(this, pool, context);
+    }
+
+    /**
+     * Cancels a task from {@link #submit}, interrupting it if it runs and dropping it from the
+     * queue if it does not, so that its input is released right away.
+     */
+    public void cancel(Future<?> task) {
+        task.cancel(true);
+        if (task instanceof FairTask<?> fairTask) {
+            workers.get(fairTask.pool).remove(fairTask);
+        }
+    }
+
+    /**
+     * Cancels {@code context} with {@code reason} unless the returned handle is cancelled first.
+     */
+    public ScheduledFuture<?> cancelAfter(
+            ComparisonContext context, Duration timeout, String reason) {
+        return deadlines.schedule(
+                () -> context.cancel(reason), timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public int poolSize(Pool pool) {
+        return workers.get(pool).getCorePoolSize();
+    }
+
+    public int queuedTasks(Pool pool) {
+        return workers.get(pool).getQueue().size();
+    }
+
+    public int activeTasks(Pool pool) {
+        return workers.get(pool).getActiveCount();
+    }
+
+    /** Sets the thread count of {@code pool}; surplus threads leave once their task is done. */
+    public void resizePool(Pool pool, int threads) {
+        ThreadPoolExecutor executor = workers.get(pool);
+        synchronized (executor) {
+            // Core may never exceed maximum, so the order depends on the direction.
+            if (threads > executor.getMaximumPoolSize()) {
+                executor.setMaximumPoolSize(threads);
+                executor.setCorePoolSize(threads);
+            } else {
+                executor.setCorePoolSize(threads);
+                executor.setMaximumPoolSize(threads);
+            }
+        }
+    }
+
+    /** Executor that runs each task on a new virtual thread, for driving comparisons. */
+    public Executor comparisonExecutor() {
+        return comparisonThreads;
+    }
+
+    private long estimate(long inputBytes) {
+        if (inputBytes < 0) {
+            return defaultEstimateBytes;
+        }
+        return inputBytes > Long.MAX_VALUE / bytesPerInputByte
+                ? Long.MAX_VALUE
+                : inputBytes * bytesPerInputByte;
+    }
+
+    // The longest-waiting comparison once it starves, otherwise the smallest.
+    private Waiter next() {
+        long now = System.nanoTime();
+        Waiter starved = null;
+        for (Waiter candidate : waiting) {
+            if (now - candidate.since() >= starvationNanos
+                    && (starved == null || candidate.sequence() < starved.sequence())) {
+                starved = candidate;
+            }
+        }
+        return starved != null ? starved : waiting.peek();
+    }
+
+    private boolean canStart(Waiter waiter) {
+        if (running == 0) {
+            return true;
+        }
+        return running < maxConcurrent
+                && reservedBytes + waiter.estimateBytes() <= memoryBudgetBytes;
+    }
+
+    private void wakeWaiters() {
+        lock.lock();
+        try {
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(long estimate) {
+        lock.lock();
+        try {
+            running--;
+            reservedBytes -= estimate;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int runningCount() {
+        lock.lock();
+        try {
+            return running;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int waitingCount() {
+        lock.lock();
+        try {
+            return waiting.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long reservedBytes() {
+        lock.lock();
+        try {
+            return reservedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.values().forEach(ThreadPoolExecutor::shutdownNow);
+        comparisonThreads.shutdownNow();
+        deadlines.shutdownNow();
+    }
+
+    private static ThreadPoolExecutor fixedPool(int threads, String prefix) {
+        return new ThreadPoolExecutor(
+                threads,
+                threads,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new FairWorkQueue(),
+                daemonThreads(prefix));
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /** A running comparison's claim on the budget. */
+    public final class Admission implements AutoCloseable {
+        private final String requester;
+        private final long estimateBytes;
+        private boolean closed;
+
+        private Admission(String requester, long estimateBytes) {
+            this.requester = requester;
+            this.estimateBytes = estimateBytes;
+        }
+
+        public String requester() {
+            return requester;
+        }
+
+        public long estimateBytes() {
+            return estimateBytes;
+        }
+
+        @Override
+        public void close() {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+            }
+            release(estimateBytes);
+        }
+    }
+
+    private record Waiter(long estimateBytes, long sequence, long since) {}
+
+    private static final class FairTask<T> extends FutureTask<T> implements FairWorkQueue.Keyed {
+        private final Pool pool;
+        private final String requester;
+        private final long priority;
+
+        FairTask(Pool pool, String requester, long priority, Callable<T> task) {
+            super(task);
+            this.pool = pool;
+            this.priority = priority;
+            this.requester = requester != null ? requester : "";
+        }
+
+        @Override
+        public String fairnessKey() {
+            return requester;
+        }
+
+        @Override
+        public long priority() {
+            return priority;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.sourcecompare.application;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Subtasks of one comparison that start and finish together. Each {@link #fork} runs on its own
+ * virtual thread; {@link #join()} returns once all of them have finished. The first subtask to fail
+ * cancels the comparison, which stops its siblings and the worker tasks they queued, and its
+ * failure is what {@link #join()} throws.
+ *
+ * <p>This follows {@code StructuredTaskScope.ShutdownOnFailure}, which Java 21 only offers as a
+ * preview API. Forks and joins belong to the thread that opened the scope.
+ */
+public final class ComparisonScope implements AutoCloseable {
+    private final ComparisonContext context;
+    private final ExecutorService threads;
+    private final List<Future<?>> forks = new ArrayList<>();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private boolean joined;
+
+    public ComparisonScope(String name, ComparisonContext context) {
+        this.context = context;
+        this.threads =
+                Executors.newThreadPerTaskExecutor(
+                        Thread.ofVirtual().name(name + "-", 1).factory());
+    }
+
+    /**
+     * Starts {@code task}; the returned supplier yields its result once {@link #join()} returned.
+     */
+    public <T> Supplier<T> fork(Callable<T> task) {
+        Future<T> future =
+                threads.submit(
+                        () -> {
+                            try {
+                                return task.call();
+                            } catch (Exception | Error e) {
+                                failed(e);
+                                throw e;
+                            }
+                        });
+        forks.add(future);
+        return future::resultNow;
+    }
+
+    /**
+     * Waits for every subtask and rethrows the failure that stopped the scope, if any.
+     *
+     * @throws ComparisonCancelledException when the comparison was cancelled
+     */
+    public void join() throws IOException {
+        joined = true;
+        try {
+            for (Future<?> fork : forks) {
+                try {
+                    fork.get();
+                } catch (ExecutionException | CancellationException e) {
+                    // Recorded by failed(); the remaining subtasks are already stopping.
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            context.cancel("Comparison interrupted");
+            threads.shutdownNow();
+            throw new InterruptedIOException("Interrupted while waiting for the comparison");
+        }
+        Throwable cause = failure.get();
+        if (cause == null) {
+            return;
+        }
+        if (cause instanceof IOException io) {
+            throw io;
+        }
+        if (cause instanceof RuntimeException runtime) {
+            throw runtime;
+        }
+        if (cause instanceof Error error) {
+            throw error;
+        }
+        throw new IOException("Comparison step failed", cause);
+    }
+
+    // Later failures are mostly the cancellation or interrupt that the first one caused.
+    private void failed(Throwable cause) {
+        if (!failure.compareAndSet(null, cause)) {
+            return;
+        }
+        context.cancel("Another step of the comparison failed");
+        threads.shutdownNow();
+    }
+
+    /** Waits for the subtasks to finish, stopping them first when the scope was not joined. */
+    @Override
+    public void close() {
+        if (!joined) {
+            context.cancel("Comparison abandoned");
+            threads.shutdownNow();
+        }
+        threads.close();
+    }
+}
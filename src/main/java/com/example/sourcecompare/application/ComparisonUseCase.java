@@ -1,426 +1,305 @@
 package com.example.sourcecompare.application;
 
+import com.example.sourcecompare.application.FileMapDiffer.RenameScores;
+import com.example.sourcecompare.application.SideLoader.LoadedSide;
 import com.example.sourcecompare.domain.ArchiveInput;
+import com.example.sourcecompare.domain.ComparisonInputs;
 import com.example.sourcecompare.domain.ComparisonRequest;
 import com.example.sourcecompare.domain.ComparisonResult;
 import com.example.sourcecompare.domain.ComparisonTiming;
-import com.example.sourcecompare.domain.DiffInfo;
-import com.example.sourcecompare.domain.FileInfo;
-import com.example.sourcecompare.domain.RenameInfo;
+import com.example.sourcecompare.domain.ContentAddressedArchive;
+import com.example.sourcecompare.domain.MultiComparisonRequest;
 import com.example.sourcecompare.domain.StepTiming;
-import com.github.difflib.DiffUtils;
-import com.github.difflib.patch.Patch;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.util.*;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.CompletionException;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
-
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Entry point of every comparison: admits it through the {@link ComparisonScheduler} and limits it
+ * in time. Pairs are compared here; comparing many candidates and recomparing are left to {@link
+ * MultiComparison} and {@link Recomparison}, and loading a side to {@link SideLoader}.
+ */
 @Service
 public class ComparisonUseCase {
     private static final Logger log = LogManager.getLogger(ComparisonUseCase.class);
 
-    private final ArchiveDecompiler archiveDecompiler;
-    private final JavaSourceNormalizer javaSourceNormalizer;
-    private final SourceFormatter sourceFormatter;
-    private final DiffRenderer diffRenderer;
+    /** Part of every result key; bump it when the same inputs start giving a different result. */
+    private static final String RESULT_KEY_VERSION = "r1";
 
-    public ComparisonUseCase(
-            ArchiveDecompiler archiveDecompiler,
-            JavaSourceNormalizer javaSourceNormalizer,
-            SourceFormatter sourceFormatter,
-            DiffRenderer diffRenderer) {
-        this.archiveDecompiler = archiveDecompiler;
-        this.javaSourceNormalizer = javaSourceNormalizer;
-        this.sourceFormatter = sourceFormatter;
-        this.diffRenderer = diffRenderer;
-    }
+    private final SideLoader sideLoader;
+    private final FileMapDiffer differ;
+    private final MultiComparison multiComparison;
+    private final Recomparison recomparison;
+    private final ComparisonScheduler scheduler;
+    private final Duration maxDuration;
 
-    private static double nanosToSeconds(long nanos) {
-        return nanos / 1_000_000_000.0;
+    public ComparisonUseCase(
+            SideLoader sideLoader,
+            FileMapDiffer differ,
+            MultiComparison multiComparison,
+            Recomparison recomparison,
+            ComparisonScheduler scheduler,
+            @Value("${comparison.max-duration-ms:1800000}") long maxDurationMillis) {
+        this.sideLoader = sideLoader;
+        this.differ = differ;
+        this.multiComparison = multiComparison;
+        this.recomparison = recomparison;
+        this.scheduler = scheduler;
+        this.maxDuration = Duration.ofMillis(Math.max(maxDurationMillis, 1));
     }
 
-    private double recordStep(List<StepTiming> timings, String label, long startNanos) {
-        long duration = System.nanoTime() - startNanos;
-        double seconds = nanosToSeconds(duration);
-        if (timings != null) {
-            timings.add(new StepTiming(label, seconds));
+    /**
+     * Identifies what {@code request} computes by the upload digests of both sides and the options,
+     * so that a stored result of the same uploads can be served instead of comparing again. Empty
+     * when either side was not hashed as it was uploaded.
+     */
+    public static Optional<String> resultKey(ComparisonRequest request) {
+        String left = request.left().uploadDigest();
+        String right = request.right().uploadDigest();
+        if (left == null || right == null) {
+            return Optional.empty();
+        }
+        String key =
+                String.join(
+                        "|",
+                        RESULT_KEY_VERSION,
+                        left,
+                        right,
+                        request.mode().name(),
+                        Integer.toString(request.contextSize()),
+                        Boolean.toString(request.includeUnchanged()));
+        try {
+            byte[] digest =
+                    MessageDigest.getInstance("SHA-256")
+                            .digest(key.getBytes(StandardCharsets.UTF_8));
+            return Optional.of(HexFormat.of().formatHex(digest));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
         }
-        return seconds;
     }
 
     public ComparisonResult compare(ComparisonRequest request) throws IOException {
-        int normalizedContextSize = Math.max(0, request.contextSize());
-        List<StepTiming> timings = Collections.synchronizedList(new ArrayList<>());
-        long overallStart = System.nanoTime();
-
-        ComparisonResult result;
-        switch (request.mode()) {
-            case CLASS_VS_SOURCE ->
-                    result =
-                            compareClassToSource(
-                                    request.left(),
-                                    request.right(),
-                                    normalizedContextSize,
-                                    request.includeUnchanged(),
-                                    timings);
-            case CLASS_VS_CLASS ->
-                    result =
-                            compareClassToClass(
-                                    request.left(),
-                                    request.right(),
-                                    normalizedContextSize,
-                                    request.includeUnchanged(),
-                                    timings);
-            case SOURCE_VS_SOURCE ->
-                    result =
-                            compareSourceToSource(
-                                    request.left(),
-                                    request.right(),
-                                    normalizedContextSize,
-                                    request.includeUnchanged(),
-                                    timings);
-            default -> throw new IllegalStateException("Unexpected comparison mode " + request.mode());
-        }
-
-        double totalSeconds = nanosToSeconds(System.nanoTime() - overallStart);
-        List<StepTiming> stepSnapshot;
-        synchronized (timings) {
-            stepSnapshot = List.copyOf(timings);
-        }
-        result.setTiming(new ComparisonTiming(stepSnapshot, totalSeconds));
-        return result;
+        return compare(request, ComparisonContext.detached());
     }
 
-    private ComparisonResult compareClassToSource(
-            ArchiveInput classArchive,
-            ArchiveInput sourceArchive,
-            int contextSize,
-            boolean includeUnchanged,
-            List<StepTiming> timings)
+    /**
+     * Compares once the scheduler admits the comparison; the requester of {@code context} decides
+     * how worker threads are shared with other comparisons. The comparison is cancelled when it
+     * runs, admission wait included, longer than {@code comparison.max-duration-ms}.
+     *
+     * @throws ComparisonCancelledException when {@code context} is cancelled
+     */
+    public ComparisonResult compare(ComparisonRequest request, ComparisonContext context)
             throws IOException {
-        long leftDecompileStart = System.nanoTime();
-        Map<String, FileInfo> leftRaw = archiveDecompiler.decompileClasses(classArchive);
-        recordStep(timings, "Decompile classes (left)", leftDecompileStart);
-
-        long rightReadStart = System.nanoTime();
-        Map<String, FileInfo> rightRaw = readSources(sourceArchive);
-        recordStep(timings, "Read sources (right)", rightReadStart);
-
-        long leftNormalizeStart = System.nanoTime();
-        Map<String, FileInfo> left = new HashMap<>();
-        for (Map.Entry<String, FileInfo> e : leftRaw.entrySet()) {
-            String name = e.getKey().replace(".class", ".java");
-            left.put(
-                    name,
-                    new FileInfo(
-                            name,
-                            javaSourceNormalizer.normalizeJava(e.getValue().getContent())));
-        }
-        recordStep(timings, "Normalize decompiled sources (left)", leftNormalizeStart);
-
-        long rightNormalizeStart = System.nanoTime();
-        Map<String, FileInfo> right = new HashMap<>();
-        for (Map.Entry<String, FileInfo> e : rightRaw.entrySet()) {
-            String name = e.getKey();
-            right.put(
-                    name,
-                    new FileInfo(
-                            name,
-                            javaSourceNormalizer.normalizeJava(e.getValue().getContent())));
-        }
-        recordStep(timings, "Normalize sources (right)", rightNormalizeStart);
-
-        return diffFileMaps(left, right, contextSize, includeUnchanged, timings);
-    }
-
-    private ComparisonResult compareClassToClass(
-            ArchiveInput leftArchive,
-            ArchiveInput rightArchive,
-            int contextSize,
-            boolean includeUnchanged,
-            List<StepTiming> timings) {
-        CompletableFuture<Map<String, FileInfo>> leftFuture =
-                CompletableFuture.supplyAsync(
-                        () -> {
-                            try {
-                                return decompileAndFormat(leftArchive, "left", timings);
-                            } catch (IOException e) {
-                                throw new CompletionException(e);
-                            }
-                        });
-        CompletableFuture<Map<String, FileInfo>> rightFuture =
-                CompletableFuture.supplyAsync(
-                        () -> {
-                            try {
-                                return decompileAndFormat(rightArchive, "right", timings);
-                            } catch (IOException e) {
-                                throw new CompletionException(e);
-                            }
-                        });
-        Map<String, FileInfo> left = leftFuture.join();
-        Map<String, FileInfo> right = rightFuture.join();
-        return diffFileMaps(left, right, contextSize, includeUnchanged, timings);
+        return admitted(
+                context,
+                totalSize(List.of(request.left(), request.right())),
+                () -> compareAdmitted(request, context));
     }
 
-    private Map<String, FileInfo> decompileAndFormat(
-            ArchiveInput archive, String label, List<StepTiming> timings) throws IOException {
-        long decompileStart = System.nanoTime();
-        Map<String, FileInfo> raw = archiveDecompiler.decompileClasses(archive);
-        double decompileSeconds = recordStep(timings, "Decompile classes (" + label + ")", decompileStart);
-        log.info("Decompiled {} archive in {}s", label, decompileSeconds);
-
-        long formatStart = System.nanoTime();
-        Map<String, FileInfo> formatted = new HashMap<>();
-        raw.values().stream()
-                .map(fi -> sourceFormatter.formatFile(fi.getName(), fi.getContent()))
-                .forEach(fi -> formatted.put(fi.getName(), fi));
-        double formatSeconds = recordStep(timings, "Format sources (" + label + ")", formatStart);
-        log.info("Formatted {} archive in {}s", label, formatSeconds);
-        return formatted;
+    /**
+     * Compares one baseline with each candidate, admitted and limited in time as one comparison.
+     * The baseline is loaded once while the candidates load in parallel, then every pair is diffed
+     * in parallel. The pairs share the content digests of the baseline and the similarity scores of
+     * rename candidates. Results are in candidate order; each one's timing includes the baseline's
+     * steps.
+     *
+     * @throws ComparisonCancelledException when {@code context} is cancelled
+     */
+    public List<ComparisonResult> compareMany(
+            MultiComparisonRequest request, ComparisonContext context) throws IOException {
+        List<ArchiveInput> archives = new ArrayList<>();
+        archives.add(request.baseline());
+        archives.addAll(request.candidates());
+        return admitted(
+                context, totalSize(archives), () -> multiComparison.compare(request, context));
     }
 
-    private ComparisonResult compareSourceToSource(
-            ArchiveInput leftArchive,
-            ArchiveInput rightArchive,
-            int contextSize,
-            boolean includeUnchanged,
-            List<StepTiming> timings)
+    /**
+     * Compares again after one side of {@code previous} was replaced by {@code replacement}. The
+     * kept side is loaded from its snapshot, and only the entries of the replacement whose bytes
+     * differ from the replaced archive are processed. Paths whose file on the replaced side did not
+     * change keep their classification and diff from {@code previous}; only the others are diffed
+     * again, with the same context size.
+     *
+     * @param previous a stored result with its diffs inline, as from {@link
+     *     ComparisonResultPersistenceService#loadStoredResult}
+     * @throws ResponseStatusException 409 when the snapshots of {@code previous} are not kept
+     * @throws ComparisonCancelledException when {@code context} is cancelled
+     */
+    public ComparisonResult recompare(
+            ComparisonResult previous,
+            ComparisonInputs.Side replaced,
+            ArchiveInput replacement,
+            ComparisonContext context)
             throws IOException {
-        long leftReadStart = System.nanoTime();
-        Map<String, FileInfo> leftRaw = readSources(leftArchive);
-        double leftReadSeconds = recordStep(timings, "Read sources (left)", leftReadStart);
-        log.info("Read left sources in {}s", leftReadSeconds);
-
-        long rightReadStart = System.nanoTime();
-        Map<String, FileInfo> rightRaw = readSources(rightArchive);
-        double rightReadSeconds = recordStep(timings, "Read sources (right)", rightReadStart);
-        log.info("Read right sources in {}s", rightReadSeconds);
-
-        long leftFormatStart = System.nanoTime();
-        Map<String, FileInfo> left = new HashMap<>();
-        leftRaw.values().stream()
-                .map(fi -> sourceFormatter.formatFile(fi.getName(), fi.getContent()))
-                .forEach(fi -> left.put(fi.getName(), fi));
-        double leftFormatSeconds = recordStep(timings, "Format sources (left)", leftFormatStart);
-        log.info("Formatted left sources in {}s", leftFormatSeconds);
-
-        long rightFormatStart = System.nanoTime();
-        Map<String, FileInfo> right = new HashMap<>();
-        rightRaw.values().stream()
-                .map(fi -> sourceFormatter.formatFile(fi.getName(), fi.getContent()))
-                .forEach(fi -> right.put(fi.getName(), fi));
-        double rightFormatSeconds = recordStep(timings, "Format sources (right)", rightFormatStart);
-        log.info("Formatted right sources in {}s", rightFormatSeconds);
-
-        return diffFileMaps(left, right, contextSize, includeUnchanged, timings);
+        return admitted(
+                context,
+                replacement.size(),
+                () -> recomparison.recompare(previous, replaced, replacement, context));
     }
 
-    private Map<String, FileInfo> readSources(ArchiveInput archive) throws IOException {
-        Map<String, FileInfo> result = new HashMap<>();
-        try (InputStream inputStream = archive.openStream();
-                ZipInputStream zis = new ZipInputStream(inputStream)) {
-            ZipEntry entry;
-            while ((entry = zis.getNextEntry()) != null) {
-                if (!entry.isDirectory() && entry.getName().endsWith(".java")) {
-                    String name = entry.getName();
-                    result.put(name, new FileInfo(name, new String(zis.readAllBytes())));
-                }
-            }
-        }
-        return result;
+    /** Work done once the scheduler admits a comparison. */
+    @FunctionalInterface
+    private interface AdmittedWork<T> {
+        T run() throws IOException;
     }
 
-    private ComparisonResult diffFileMaps(
-            Map<String, FileInfo> left,
-            Map<String, FileInfo> right,
-            int contextSize,
-            boolean includeUnchanged,
-            List<StepTiming> timings) {
-        long classifyStart = System.nanoTime();
-        Map<String, FileInfo> added = new LinkedHashMap<>();
-        Map<String, FileInfo> deleted = new LinkedHashMap<>();
-        Map<String, FileInfo[]> modified = new LinkedHashMap<>();
-        List<String> unchanged = new ArrayList<>();
-
-        Set<String> allNames = new TreeSet<>();
-        allNames.addAll(left.keySet());
-        allNames.addAll(right.keySet());
-        for (String name : allNames) {
-            boolean inLeft = left.containsKey(name);
-            boolean inRight = right.containsKey(name);
-            if (inLeft && !inRight) {
-                deleted.put(name, left.get(name));
-            } else if (!inLeft && inRight) {
-                added.put(name, right.get(name));
-            } else {
-                FileInfo l = left.get(name);
-                FileInfo r = right.get(name);
-                if (!Objects.equals(l.getContent(), r.getContent())) {
-                    modified.put(name, new FileInfo[] {l, r});
-                } else if (includeUnchanged) {
-                    unchanged.add(name);
-                }
-            }
+    private <T> T admitted(ComparisonContext context, long inputBytes, AdmittedWork<T> work)
+            throws IOException {
+        ScheduledFuture<?> deadline =
+                scheduler.cancelAfter(
+                        context, maxDuration, "Comparison exceeded its maximum duration");
+        try (ComparisonScheduler.Admission admission = scheduler.admit(context, inputBytes)) {
+            log.debug(
+                    "Admitted comparison for {} with an estimate of {} bytes",
+                    admission.requester(),
+                    admission.estimateBytes());
+            return work.run();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to start the comparison");
+        } finally {
+            deadline.cancel(false);
         }
-        double classifySeconds = recordStep(timings, "Classify file changes", classifyStart);
-        log.info("Classified file changes in {}s", classifySeconds);
+    }
 
-        long renameStart = System.nanoTime();
-        Map<String, FileInfo[]> renames = new LinkedHashMap<>();
-        Iterator<Map.Entry<String, FileInfo>> delIt = deleted.entrySet().iterator();
-        while (delIt.hasNext()) {
-            Map.Entry<String, FileInfo> del = delIt.next();
-            FileInfo leftInfo = del.getValue();
-            String bestName = null;
-            double bestScore = 0.0;
-            for (Map.Entry<String, FileInfo> add : added.entrySet()) {
-                FileInfo rightInfo = add.getValue();
-                if (!isRenameCandidate(leftInfo, rightInfo)) {
-                    continue;
-                }
-                double score = similarity(leftInfo.getContent(), rightInfo.getContent());
-                if (score > 0.85 && score > bestScore) {
-                    bestScore = score;
-                    bestName = add.getKey();
-                }
-            }
-            if (bestName != null) {
-                FileInfo rightInfo = added.remove(bestName);
-                renames.put(del.getKey() + "->" + bestName, new FileInfo[] {leftInfo, rightInfo});
-                delIt.remove();
+    /** Total size of the archives, or -1 when any size is unknown. */
+    private static long totalSize(List<ArchiveInput> archives) {
+        long total = 0;
+        for (ArchiveInput archive : archives) {
+            if (archive.size() < 0) {
+                return -1;
             }
+            total += archive.size();
         }
-        double renameSeconds = recordStep(timings, "Detect renames", renameStart);
-        log.info("Detected renames in {}s", renameSeconds);
+        return total;
+    }
 
-        long renderStart = System.nanoTime();
-        Map<String, DiffInfo> addedDiffs = new LinkedHashMap<>();
-        for (Map.Entry<String, FileInfo> e : added.entrySet()) {
-            addedDiffs.put(
-                    e.getKey(),
-                    new DiffInfo(
-                            diffRenderer.render(
-                                    e.getKey(),
-                                    "",
-                                    e.getValue().getContent(),
-                                    contextSize,
-                                    ArchiveDecompiler.CONTENT_NOT_READ)));
-        }
-        Map<String, DiffInfo> deletedDiffs = new LinkedHashMap<>();
-        for (Map.Entry<String, FileInfo> e : deleted.entrySet()) {
-            deletedDiffs.put(
-                    e.getKey(),
-                    new DiffInfo(
-                            diffRenderer.render(
-                                    e.getKey(),
-                                    e.getValue().getContent(),
-                                    "",
-                                    contextSize,
-                                    ArchiveDecompiler.CONTENT_NOT_READ)));
-        }
-        Map<String, DiffInfo> modifiedDiffs = new LinkedHashMap<>();
-        for (Map.Entry<String, FileInfo[]> e : modified.entrySet()) {
-            modifiedDiffs.put(
-                    e.getKey(),
-                    new DiffInfo(
-                            diffRenderer.render(
-                                    e.getKey(),
-                                    e.getValue()[0].getContent(),
-                                    e.getValue()[1].getContent(),
-                                    contextSize,
-                                    ArchiveDecompiler.CONTENT_NOT_READ)));
-        }
-        double renderSeconds = recordStep(timings, "Render file diffs", renderStart);
-        log.info("Rendered file diffs in {}s", renderSeconds);
+    private ComparisonResult compareAdmitted(ComparisonRequest request, ComparisonContext context)
+            throws IOException {
+        int normalizedContextSize = Math.max(0, request.contextSize());
+        List<StepTiming> timings = new ArrayList<>();
+        long overallStart = System.nanoTime();
 
-        long renameRenderStart = System.nanoTime();
-        List<RenameInfo> renamedDiffs = new ArrayList<>();
-        for (Map.Entry<String, FileInfo[]> e : renames.entrySet()) {
-            String[] names = e.getKey().split("->", 2);
-            renamedDiffs.add(
-                    new RenameInfo(
-                            names[0],
-                            names[1],
-                            diffRenderer.render(
-                                    names[1],
-                                    e.getValue()[0].getContent(),
-                                    e.getValue()[1].getContent(),
-                                    contextSize,
-                                    ArchiveDecompiler.CONTENT_NOT_READ)));
-        }
-        renamedDiffs.sort(Comparator.comparing(RenameInfo::getTo));
-        double renameRenderSeconds = recordStep(timings, "Render rename diffs", renameRenderStart);
-        log.info("Rendered rename diffs in {}s", renameRenderSeconds);
-        return new ComparisonResult(
-                addedDiffs,
-                deletedDiffs,
-                modifiedDiffs,
-                renamedDiffs,
-                includeUnchanged ? unchanged : null);
+        SideStep leftStep = SideStep.left(request.mode());
+        SideStep rightStep = SideStep.right(request.mode());
+        Inputs inputs = skipIdenticalEntries(request.left(), request.right(), leftStep, rightStep);
+        Sides sides =
+                loadSides(context, timings, inputs.left(), leftStep, inputs.right(), rightStep);
+        ComparisonResult result =
+                differ.diff(
+                        sides.left().files(),
+                        sides.right().files(),
+                        inputs.identical(),
+                        normalizedContextSize,
+                        request.includeUnchanged(),
+                        timings,
+                        context,
+                        RenameScores.uncached());
+        // Sides left without their identical entries are not snapshots of the whole archives.
+        boolean kept = inputs.identical().isEmpty();
+        result.setInputs(
+                new ComparisonInputs(
+                        request.mode(),
+                        kept ? sides.left().snapshotKey() : null,
+                        kept ? sides.right().snapshotKey() : null,
+                        resultKey(request).orElse(null)));
+
+        double totalSeconds = StepTimings.seconds(System.nanoTime() - overallStart);
+        result.setTiming(new ComparisonTiming(List.copyOf(timings), totalSeconds));
+        return result;
     }
 
-    private double similarity(String a, String b) {
-        List<String> aLines = Arrays.asList(a.split("\\R"));
-        List<String> bLines = Arrays.asList(b.split("\\R"));
-        double firstHundredSimilarity = calculateSimilarity(aLines, bLines, 100);
-        if (firstHundredSimilarity < 0.2) {
-            return firstHundredSimilarity;
-        }
-        return calculateSimilarity(aLines, bLines, -1);
-    }
+    private record Sides(LoadedSide left, LoadedSide right) {}
 
-    private double calculateSimilarity(List<String> aLines, List<String> bLines, int limit) {
-        List<String> leftLines = aLines;
-        List<String> rightLines = bLines;
-        if (limit > 0) {
-            leftLines = aLines.subList(0, Math.min(limit, aLines.size()));
-            rightLines = bLines.subList(0, Math.min(limit, bLines.size()));
-        }
-        if (leftLines.isEmpty() && rightLines.isEmpty()) {
-            return 1.0;
-        }
-        Patch<String> patch = DiffUtils.diff(leftLines, rightLines);
-        int total = Math.max(leftLines.size(), rightLines.size());
-        if (total == 0) {
-            return 1.0;
-        }
-        int changes =
-                patch.getDeltas().stream()
-                        .mapToInt(d -> Math.max(d.getSource().size(), d.getTarget().size()))
-                        .sum();
-        return 1.0 - (double) changes / total;
-    }
+    /** The archives left to load, and outputs already known to be equal on both sides. */
+    private record Inputs(ArchiveInput left, ArchiveInput right, List<String> identical) {}
 
-    private boolean isRenameCandidate(FileInfo leftInfo, FileInfo rightInfo) {
-        if (!Objects.equals(getExtension(leftInfo.getName()), getExtension(rightInfo.getName()))) {
-            return false;
+    // Entries with the same content ID on both sides, such as equal Git blobs at the same path,
+    // are identical; both sides drop them before any content is read. Only the names of their
+    // outputs are kept, to list them as unchanged.
+    private Inputs skipIdenticalEntries(
+            ArchiveInput left, ArchiveInput right, SideStep leftStep, SideStep rightStep)
+            throws IOException {
+        if (leftStep != rightStep
+                || !(left instanceof ContentAddressedArchive leftIds)
+                || !(right instanceof ContentAddressedArchive rightIds)) {
+            return new Inputs(left, right, List.of());
         }
-        return hasSimilarSize(leftInfo.getContent(), rightInfo.getContent());
-    }
-
-    private String getExtension(String fileName) {
-        int lastSeparator = Math.max(fileName.lastIndexOf('/'), fileName.lastIndexOf('\\'));
-        int lastDot = fileName.lastIndexOf('.');
-        if (lastDot > lastSeparator) {
-            return fileName.substring(lastDot + 1).toLowerCase(Locale.ROOT);
+        Map<String, String> rightContent = rightIds.contentIds();
+        Set<String> identical = new HashSet<>();
+        leftIds.contentIds()
+                .forEach(
+                        (name, id) -> {
+                            if (id.equals(rightContent.get(name))) {
+                                identical.add(name);
+                            }
+                        });
+        if (identical.isEmpty()) {
+            return new Inputs(left, right, List.of());
+        }
+        log.info("Skipping {} entries with identical content on both sides", identical.size());
+        UnaryOperator<String> outputName = leftStep.outputName();
+        List<String> outputs = new ArrayList<>();
+        for (String name : identical) {
+            if (leftStep.producesOutput(name)) {
+                outputs.add(outputName.apply(name));
+            }
         }
-        return "";
+        return new Inputs(leftIds.without(identical), rightIds.without(identical), outputs);
     }
 
-    private boolean hasSimilarSize(String leftContent, String rightContent) {
-        int leftLength = leftContent.length();
-        int rightLength = rightContent.length();
-        int maxLength = Math.max(leftLength, rightLength);
-        if (maxLength == 0) {
-            return true;
+    // Both sides load at once in one scope; a failing side stops the other instead of letting it
+    // run to the end. Their steps are appended left first, whichever finished first.
+    private Sides loadSides(
+            ComparisonContext context,
+            List<StepTiming> timings,
+            ArchiveInput leftArchive,
+            SideStep leftStep,
+            ArchiveInput rightArchive,
+            SideStep rightStep)
+            throws IOException {
+        List<StepTiming> leftTimings = new ArrayList<>();
+        List<StepTiming> rightTimings = new ArrayList<>();
+        try (ComparisonScope scope = new ComparisonScope("comparison-side", context)) {
+            Supplier<LoadedSide> left =
+                    scope.fork(
+                            () ->
+                                    sideLoader.load(
+                                            leftArchive, leftStep, "left", leftTimings, context));
+            Supplier<LoadedSide> right =
+                    scope.fork(
+                            () ->
+                                    sideLoader.load(
+                                            rightArchive,
+                                            rightStep,
+                                            "right",
+                                            rightTimings,
+                                            context));
+            scope.join();
+            timings.addAll(leftTimings);
+            timings.addAll(rightTimings);
+            return new Sides(left.get(), right.get());
         }
-        return Math.abs(leftLength - rightLength) <= maxLength * 0.2;
     }
 }
@@ -0,0 +1,113 @@
+package com.example.sourcecompare.application;
+
+import com.example.sourcecompare.application.ComparisonResultPersistenceService.StoredComparisonResultView;
+import com.example.sourcecompare.domain.ComparisonResult;
+import com.example.sourcecompare.domain.DiffInfo;
+import com.example.sourcecompare.domain.RenameInfo;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Keeps loaded comparison views in memory so that a result opened by many reviewers is read and
+ * deserialized once. Entries are weighed by the approximate heap taken by their strings and evicted
+ * once the configured budget is used up. Hit, miss and eviction counts are published as {@code
+ * cache.*} metrics tagged {@code cache=comparison.views}.
+ */
+@Component
+public class ComparisonViewCache {
+    private static final int ENTRY_OVERHEAD_BYTES = 64;
+
+    private final Cache<Long, StoredComparisonResultView> cache;
+
+    public ComparisonViewCache(
+            @Value("${comparison.view-cache.max-bytes:268435456}") long maxBytes,
+            MeterRegistry meterRegistry) {
+        this.cache =
+                Caffeine.newBuilder()
+                        .maximumWeight(Math.max(maxBytes, 0))
+                        .weigher((Long id, StoredComparisonResultView view) -> weigh(view))
+                        .recordStats()
+                        .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "comparison.views");
+    }
+
+    public StoredComparisonResultView get(
+            long id, Function<Long, StoredComparisonResultView> loader) {
+        return cache.get(id, loader);
+    }
+
+    /**
+     * Drops the cached view of a comparison. Inside a transaction the entry is dropped again after
+     * commit, so a reader cannot cache the old row while the change is still uncommitted.
+     */
+    public void invalidate(long id) {
+        cache.invalidate(id);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                    new TransactionSynchronization() {
+                        @Override
+                        public void afterCompletion(int status) {
+                            cache.invalidate(id);
+                        }
+                    });
+        }
+    }
+
+    static int weigh(StoredComparisonResultView view) {
+        long bytes = ENTRY_OVERHEAD_BYTES + sizeOf(view.name()) + sizeOf(view.ipRequest());
+        ComparisonResult result = view.result();
+        if (result != null) {
+            bytes += sizeOf(result.getAdded());
+            bytes += sizeOf(result.getDeleted());
+            bytes += sizeOf(result.getModified());
+            if (result.getRenamed() != null) {
+                for (RenameInfo rename : result.getRenamed()) {
+                    bytes +=
+                            ENTRY_OVERHEAD_BYTES
+                                    + sizeOf(rename.getFrom())
+                                    + sizeOf(rename.getTo())
+                                    + sizeOf(rename.getDiff());
+                }
+            }
+            bytes += sizeOf(result.getUnchanged());
+        }
+        return (int) Math.min(bytes, Integer.MAX_VALUE);
+    }
+
+    private static long sizeOf(Map<String, DiffInfo> diffs) {
+        if (diffs == null) {
+            return 0;
+        }
+        long bytes = 0;
+        for (Map.Entry<String, DiffInfo> e : diffs.entrySet()) {
+            bytes += ENTRY_OVERHEAD_BYTES + sizeOf(e.getKey()) + sizeOf(e.getValue().getDiff());
+        }
+        return bytes;
+    }
+
+    private static long sizeOf(Collection<String> values) {
+        if (values == null) {
+            return 0;
+        }
+        long bytes = 0;
+        for (String value : values) {
+            bytes += ENTRY_OVERHEAD_BYTES + sizeOf(value);
+        }
+        return bytes;
+    }
+
+    /** Counts two bytes per character, the worst case for a compact string. */
+    private static long sizeOf(String value) {
+        return value == null ? 0 : 2L * value.length();
+    }
+}
@@ -0,0 +1,249 @@
+package com.example.sourcecompare.application;
+
+import com.example.sourcecompare.domain.ComparisonResult;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Writes comparison results to the database after the request that produced them has returned. The
+ * ID is drawn from the sequence up front and the result is served from memory until its write
+ * commits. When the queue is full the caller writes the result itself, so memory held by unwritten
+ * results stays bounded. A result that still cannot be written after the last retry is lost; its ID
+ * is remembered so that opening it reports the failure rather than a missing comparison.
+ */
+@Component
+public class ComparisonWriteBehindQueue {
+    private static final Logger log = LogManager.getLogger(ComparisonWriteBehindQueue.class);
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+    private static final int MAX_REMEMBERED_FAILURES = 10_000;
+
+    private final ComparisonResultPersistenceService persistenceService;
+    private final BlockingQueue<PendingComparison> queue;
+    private final Map<Long, PendingComparison> pending = new ConcurrentHashMap<>();
+    private final Cache<Long, LocalDateTime> failed =
+            Caffeine.newBuilder().maximumSize(MAX_REMEMBERED_FAILURES).build();
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final Timer flushTimer;
+    private final Counter retryCounter;
+    private final Counter failureCounter;
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    public ComparisonWriteBehindQueue(
+            ComparisonResultPersistenceService persistenceService,
+            MeterRegistry meterRegistry,
+            @Value("${comparison.write-behind.capacity:16}") int capacity,
+            @Value("${comparison.write-behind.max-attempts:5}") int maxAttempts,
+            @Value("${comparison.write-behind.initial-backoff-ms:500}") long initialBackoffMillis) {
+        this.persistenceService = persistenceService;
+        this.queue = new ArrayBlockingQueue<>(Math.max(capacity, 1));
+        this.maxAttempts = Math.max(maxAttempts, 1);
+        this.initialBackoffMillis = Math.max(initialBackoffMillis, 1);
+        Gauge.builder("comparison.write_behind.queue.depth", queue, BlockingQueue::size)
+                .description("Comparison results waiting to be written")
+                .register(meterRegistry);
+        Gauge.builder("comparison.write_behind.pending", pending, Map::size)
+                .description("Comparison results served from memory until their write commits")
+                .register(meterRegistry);
+        this.flushTimer =
+                Timer.builder("comparison.write_behind.flush")
+                        .description("Time to write one comparison result, including retries")
+                        .register(meterRegistry);
+        this.retryCounter = meterRegistry.counter("comparison.write_behind.retries");
+        this.failureCounter = meterRegistry.counter("comparison.write_behind.failures");
+        this.worker = new Thread(this::drain, "comparison-writer");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Reserves an ID for the result and schedules its write; returns the reserved ID. The view
+     * served until the write commits is rendered here once rather than on every lookup.
+     */
+    public long submit(String name, String ipRequest, ComparisonResult result) {
+        long id = persistenceService.allocateComparisonId();
+        PendingComparison comparison =
+                new PendingComparison(
+                        id,
+                        name,
+                        ipRequest,
+                        result,
+                        persistenceService.pendingView(
+                                id, name, ipRequest, LocalDateTime.now(), result),
+                        new CompletableFuture<>());
+        pending.put(id, comparison);
+        if (!running || !queue.offer(comparison)) {
+            log.debug(
+                    "Write-behind queue is full, writing comparison {} on the request thread", id);
+            write(comparison);
+        }
+        return id;
+    }
+
+    /**
+     * Returns the view of a comparison whose write has not committed yet.
+     *
+     * @throws ResponseStatusException with 500 when the comparison could not be written
+     */
+    public Optional<ComparisonResultPersistenceService.StoredComparisonResultView> findPending(
+            long id) {
+        PendingComparison comparison = pending.get(id);
+        if (comparison == null) {
+            rejectIfFailed(id);
+            return Optional.empty();
+        }
+        return Optional.of(comparison.view());
+    }
+
+    /**
+     * Blocks until a pending comparison has been written, so that changes to it find its row.
+     * Returns immediately for comparisons that are not pending.
+     *
+     * @throws ResponseStatusException with 500 when the comparison could not be written
+     */
+    public void awaitWritten(long id, long timeout, TimeUnit unit) {
+        PendingComparison comparison = pending.get(id);
+        if (comparison != null) {
+            try {
+                comparison.written().get(timeout, unit);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (TimeoutException e) {
+                log.warn("Comparison {} is still not written: {}", id, e.toString());
+            } catch (ExecutionException e) {
+                // Recorded as failed before the future completed.
+            }
+        }
+        rejectIfFailed(id);
+    }
+
+    private void rejectIfFailed(long id) {
+        LocalDateTime failedAt = failed.getIfPresent(id);
+        if (failedAt != null) {
+            throw new ResponseStatusException(
+                    HttpStatus.INTERNAL_SERVER_ERROR,
+                    "Comparison "
+                            + id
+                            + " could not be saved at "
+                            + failedAt.withNano(0)
+                            + ", compare the archives again");
+        }
+    }
+
+    private void drain() {
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingComparison comparison = queue.poll(1, TimeUnit.SECONDS);
+                if (comparison != null) {
+                    write(comparison);
+                }
+            } catch (InterruptedException e) {
+                if (!running) {
+                    break;
+                }
+            }
+        }
+    }
+
+    private void write(PendingComparison comparison) {
+        long start = System.nanoTime();
+        RuntimeException failure = writeWithRetries(comparison);
+        flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (failure != null) {
+            // Before it leaves pending, so that a lookup always finds it in one of the two.
+            failed.put(comparison.id(), LocalDateTime.now());
+        }
+        pending.remove(comparison.id());
+        if (failure == null) {
+            comparison.written().complete(null);
+        } else {
+            comparison.written().completeExceptionally(failure);
+        }
+    }
+
+    private RuntimeException writeWithRetries(PendingComparison comparison) {
+        long backoff = initialBackoffMillis;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                persistenceService.saveComparison(
+                        comparison.id(),
+                        comparison.name(),
+                        comparison.ipRequest(),
+                        comparison.result());
+                return null;
+            } catch (RuntimeException ex) {
+                if (attempt >= maxAttempts) {
+                    failureCounter.increment();
+                    log.error(
+                            "Giving up on comparison {} after {} attempts",
+                            comparison.id(),
+                            attempt,
+                            ex);
+                    return ex;
+                }
+                retryCounter.increment();
+                log.warn(
+                        "Writing comparison {} failed (attempt {}), retrying in {} ms",
+                        comparison.id(),
+                        attempt,
+                        backoff,
+                        ex);
+                if (!sleep(backoff)) {
+                    return ex;
+                }
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+            }
+        }
+    }
+
+    private static boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /** Stops accepting work and gives the worker a chance to write what is still queued. */
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        running = false;
+        worker.join(TimeUnit.SECONDS.toMillis(60));
+        if (!queue.isEmpty()) {
+            log.error("Shutting down with {} comparison results not written", queue.size());
+        }
+    }
+
+    private record PendingComparison(
+            long id,
+            String name,
+            String ipRequest,
+            ComparisonResult result,
+            ComparisonResultPersistenceService.StoredComparisonResultView view,
+            CompletableFuture<Void> written) {}
+}
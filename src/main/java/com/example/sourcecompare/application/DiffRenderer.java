@@ -1,5 +1,7 @@
 package com.example.sourcecompare.application;
 
+import com.example.sourcecompare.domain.EditScript;
+
 public interface DiffRenderer {
     String render(
             String fileName,
@@ -7,4 +9,9 @@ public interface DiffRenderer {
             String revised,
             int contextSize,
             String unreadPlaceholder);
+
+    EditScript diff(String original, String revised);
+
+    String render(
+            String fileName, EditScript editScript, int contextSize, String unreadPlaceholder);
 }
@@ -0,0 +1,220 @@
+package com.example.sourcecompare.application;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Unbounded work queue that hands out tasks round-robin across their {@link Keyed#fairnessKey()
+ * fairness keys} instead of in arrival order, so that one key with thousands of queued tasks delays
+ * another key's next task by at most one task per other key. Tasks without a key share the empty
+ * key. Within one key, tasks with a higher {@link Keyed#priority()} go first and equal priorities
+ * keep their arrival order.
+ */
+final class FairWorkQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+
+    interface Keyed {
+        String fairnessKey();
+
+        default long priority() {
+            return 0;
+        }
+    }
+
+    private record Queued(Runnable task, long priority, long sequence) {}
+
+    private static final Comparator<Queued> SERVICE_ORDER =
+            Comparator.comparingLong(Queued::priority)
+                    .reversed()
+                    .thenComparingLong(Queued::sequence);
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    // Iteration order is the service order: the key served last moves to the end.
+    private final LinkedHashMap<String, PriorityQueue<Queued>> queues = new LinkedHashMap<>();
+    private long sequence;
+    private int size;
+
+    @Override
+    public boolean offer(Runnable task) {
+        String key = task instanceof Keyed keyed ? keyed.fairnessKey() : "";
+        long priority = task instanceof Keyed keyed ? keyed.priority() : 0;
+        lock.lock();
+        try {
+            queues.computeIfAbsent(key, k -> new PriorityQueue<>(SERVICE_ORDER))
+                    .add(new Queued(task, priority, sequence++));
+            size++;
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(Runnable task) {
+        offer(task);
+    }
+
+    @Override
+    public boolean offer(Runnable task, long timeout, TimeUnit unit) {
+        return offer(task);
+    }
+
+    @Override
+    public Runnable poll() {
+        lock.lock();
+        try {
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (size == 0) {
+                notEmpty.await();
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (size == 0) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable peek() {
+        lock.lock();
+        try {
+            return size == 0 ? null : queues.values().iterator().next().peek().task();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object task) {
+        lock.lock();
+        try {
+            Iterator<PriorityQueue<Queued>> it = queues.values().iterator();
+            while (it.hasNext()) {
+                PriorityQueue<Queued> queue = it.next();
+                if (queue.removeIf(queued -> queued.task() == task)) {
+                    size--;
+                    if (queue.isEmpty()) {
+                        it.remove();
+                    }
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    /** Number of keys with queued tasks. */
+    int keyCount() {
+        lock.lock();
+        try {
+            return queues.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> target) {
+        return drainTo(target, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> target, int maxElements) {
+        lock.lock();
+        try {
+            int drained = 0;
+            while (drained < maxElements && size > 0) {
+                target.add(dequeue());
+                drained++;
+            }
+            return drained;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** A snapshot in service order; removing through it is not supported. */
+    @Override
+    public Iterator<Runnable> iterator() {
+        lock.lock();
+        try {
+            List<Runnable> snapshot = new ArrayList<>(size);
+            for (PriorityQueue<Queued> queue : queues.values()) {
+                queue.stream().sorted(SERVICE_ORDER).map(Queued::task).forEach(snapshot::add);
+            }
+            return List.copyOf(snapshot).iterator();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Runnable dequeue() {
+        if (size == 0) {
+            return null;
+        }
+        Iterator<Map.Entry<String, PriorityQueue<Queued>>> it = queues.entrySet().iterator();
+        Map.Entry<String, PriorityQueue<Queued>> next = it.next();
+        PriorityQueue<Queued> queue = next.getValue();
+        Runnable task = queue.poll().task();
+        it.remove();
+        if (!queue.isEmpty()) {
+            queues.put(next.getKey(), queue);
+        }
+        size--;
+        return task;
+    }
+}
@@ -0,0 +1,269 @@
+package com.example.sourcecompare.application;
+
+import com.example.sourcecompare.application.ComparisonProgressListener.Stage;
+import com.example.sourcecompare.domain.ComparisonResult;
+import com.example.sourcecompare.domain.DiffInfo;
+import com.example.sourcecompare.domain.FileInfo;
+import com.example.sourcecompare.domain.RenameInfo;
+import com.example.sourcecompare.domain.StepTiming;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.difflib.DiffUtils;
+import com.github.difflib.patch.Patch;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Compares two processed sides file by file: classifies paths as added, deleted, modified or
+ * unchanged, pairs deleted and added files that are similar enough into renames, and renders the
+ * edit script of every change.
+ */
+@Component
+public class FileMapDiffer {
+    private static final Logger log = LogManager.getLogger(FileMapDiffer.class);
+
+    private final DiffRenderer diffRenderer;
+
+    public FileMapDiffer(DiffRenderer diffRenderer) {
+        this.diffRenderer = diffRenderer;
+    }
+
+    /**
+     * Diffs {@code left} against {@code right}. {@code identical} names outputs already known to be
+     * equal on both sides, which are only listed as unchanged.
+     */
+    ComparisonResult diff(
+            Map<String, FileInfo> left,
+            Map<String, FileInfo> right,
+            List<String> identical,
+            int contextSize,
+            boolean includeUnchanged,
+            List<StepTiming> timings,
+            ComparisonContext context,
+            RenameScores scores) {
+        long classifyStart = System.nanoTime();
+        Map<String, FileInfo> added = new LinkedHashMap<>();
+        Map<String, FileInfo> deleted = new LinkedHashMap<>();
+        Map<String, FileInfo[]> modified = new LinkedHashMap<>();
+        List<String> unchanged = new ArrayList<>();
+
+        Set<String> allNames = new TreeSet<>();
+        allNames.addAll(left.keySet());
+        allNames.addAll(right.keySet());
+        for (String name : allNames) {
+            boolean inLeft = left.containsKey(name);
+            boolean inRight = right.containsKey(name);
+            if (inLeft && !inRight) {
+                deleted.put(name, left.get(name));
+            } else if (!inLeft && inRight) {
+                added.put(name, right.get(name));
+            } else {
+                FileInfo l = left.get(name);
+                FileInfo r = right.get(name);
+                if (!l.hasSameContent(r)) {
+                    modified.put(name, new FileInfo[] {l, r});
+                } else if (includeUnchanged) {
+                    unchanged.add(name);
+                }
+            }
+        }
+        if (includeUnchanged && !identical.isEmpty()) {
+            unchanged.addAll(identical);
+            Collections.sort(unchanged);
+        }
+        double classifySeconds =
+                StepTimings.record(timings, "Classify file changes", classifyStart);
+        log.info("Classified file changes in {}s", classifySeconds);
+
+        long renameStart = System.nanoTime();
+        Map<String, FileInfo[]> renames = new LinkedHashMap<>();
+        Iterator<Map.Entry<String, FileInfo>> delIt = deleted.entrySet().iterator();
+        while (delIt.hasNext()) {
+            context.throwIfCancelled();
+            Map.Entry<String, FileInfo> del = delIt.next();
+            FileInfo leftInfo = del.getValue();
+            String bestName = null;
+            double bestScore = 0.0;
+            for (Map.Entry<String, FileInfo> add : added.entrySet()) {
+                FileInfo rightInfo = add.getValue();
+                if (!isRenameCandidate(leftInfo, rightInfo)) {
+                    continue;
+                }
+                double score = scores.score(leftInfo, rightInfo);
+                if (score > 0.85 && score > bestScore) {
+                    bestScore = score;
+                    bestName = add.getKey();
+                }
+            }
+            if (bestName != null) {
+                FileInfo rightInfo = added.remove(bestName);
+                renames.put(del.getKey() + "->" + bestName, new FileInfo[] {leftInfo, rightInfo});
+                delIt.remove();
+            }
+        }
+        double renameSeconds = StepTimings.record(timings, "Detect renames", renameStart);
+        log.info("Detected renames in {}s", renameSeconds);
+
+        long renderStart = System.nanoTime();
+        int renderTotal = added.size() + deleted.size() + modified.size() + renames.size();
+        int rendered = 0;
+        Map<String, DiffInfo> addedDiffs = new LinkedHashMap<>();
+        for (Map.Entry<String, FileInfo> e : added.entrySet()) {
+            context.throwIfCancelled();
+            addedDiffs.put(
+                    e.getKey(), DiffInfo.of(diffRenderer.diff("", e.getValue().getContent())));
+            context.progress().onProgress(Stage.RENDER, null, ++rendered, renderTotal);
+        }
+        Map<String, DiffInfo> deletedDiffs = new LinkedHashMap<>();
+        for (Map.Entry<String, FileInfo> e : deleted.entrySet()) {
+            context.throwIfCancelled();
+            deletedDiffs.put(
+                    e.getKey(), DiffInfo.of(diffRenderer.diff(e.getValue().getContent(), "")));
+            context.progress().onProgress(Stage.RENDER, null, ++rendered, renderTotal);
+        }
+        Map<String, DiffInfo> modifiedDiffs = new LinkedHashMap<>();
+        for (Map.Entry<String, FileInfo[]> e : modified.entrySet()) {
+            context.throwIfCancelled();
+            modifiedDiffs.put(
+                    e.getKey(),
+                    DiffInfo.of(
+                            diffRenderer.diff(
+                                    e.getValue()[0].getContent(), e.getValue()[1].getContent())));
+            context.progress().onProgress(Stage.RENDER, null, ++rendered, renderTotal);
+        }
+        double renderSeconds =
+                StepTimings.record(timings, "Compute file edit scripts", renderStart);
+        log.info("Computed file edit scripts in {}s", renderSeconds);
+
+        long renameRenderStart = System.nanoTime();
+        List<RenameInfo> renamedDiffs = new ArrayList<>();
+        for (Map.Entry<String, FileInfo[]> e : renames.entrySet()) {
+            context.throwIfCancelled();
+            String[] names = e.getKey().split("->", 2);
+            RenameInfo rename = new RenameInfo(names[0], names[1], null);
+            rename.setEditScript(
+                    diffRenderer.diff(e.getValue()[0].getContent(), e.getValue()[1].getContent()));
+            renamedDiffs.add(rename);
+            context.progress().onProgress(Stage.RENDER, null, ++rendered, renderTotal);
+        }
+        renamedDiffs.sort(Comparator.comparing(RenameInfo::getTo));
+        double renameRenderSeconds =
+                StepTimings.record(timings, "Compute rename edit scripts", renameRenderStart);
+        log.info("Computed rename edit scripts in {}s", renameRenderSeconds);
+        ComparisonResult result =
+                new ComparisonResult(
+                        addedDiffs,
+                        deletedDiffs,
+                        modifiedDiffs,
+                        renamedDiffs,
+                        includeUnchanged ? unchanged : null);
+        result.setContextSize(contextSize);
+        return result;
+    }
+
+    /**
+     * Similarity of a possible rename. Across the candidates of one baseline the same pair of
+     * contents recurs, so scores may be remembered by the digests of both files.
+     */
+    static final class RenameScores {
+        private final Cache<String, Double> memo;
+
+        private RenameScores(Cache<String, Double> memo) {
+            this.memo = memo;
+        }
+
+        /** Computes every score. */
+        static RenameScores uncached() {
+            return new RenameScores(null);
+        }
+
+        /** Remembers up to {@code maximumSize} scores of files whose digests are known. */
+        static RenameScores memoized(long maximumSize) {
+            return new RenameScores(Caffeine.newBuilder().maximumSize(maximumSize).build());
+        }
+
+        double score(FileInfo left, FileInfo right) {
+            byte[] leftDigest = left.knownDigest();
+            byte[] rightDigest = right.knownDigest();
+            if (memo == null || leftDigest == null || rightDigest == null) {
+                return similarity(left.getContent(), right.getContent());
+            }
+            HexFormat hex = HexFormat.of();
+            String key = hex.formatHex(leftDigest) + hex.formatHex(rightDigest);
+            return memo.get(key, k -> similarity(left.getContent(), right.getContent()));
+        }
+    }
+
+    private static double similarity(String a, String b) {
+        List<String> aLines = Arrays.asList(a.split("\\R"));
+        List<String> bLines = Arrays.asList(b.split("\\R"));
+        double firstHundredSimilarity = calculateSimilarity(aLines, bLines, 100);
+        if (firstHundredSimilarity < 0.2) {
+            return firstHundredSimilarity;
+        }
+        return calculateSimilarity(aLines, bLines, -1);
+    }
+
+    private static double calculateSimilarity(List<String> aLines, List<String> bLines, int limit) {
+        List<String> leftLines = aLines;
+        List<String> rightLines = bLines;
+        if (limit > 0) {
+            leftLines = aLines.subList(0, Math.min(limit, aLines.size()));
+            rightLines = bLines.subList(0, Math.min(limit, bLines.size()));
+        }
+        if (leftLines.isEmpty() && rightLines.isEmpty()) {
+            return 1.0;
+        }
+        Patch<String> patch = DiffUtils.diff(leftLines, rightLines);
+        int total = Math.max(leftLines.size(), rightLines.size());
+        if (total == 0) {
+            return 1.0;
+        }
+        int changes =
+                patch.getDeltas().stream()
+                        .mapToInt(d -> Math.max(d.getSource().size(), d.getTarget().size()))
+                        .sum();
+        return 1.0 - (double) changes / total;
+    }
+
+    private static boolean isRenameCandidate(FileInfo leftInfo, FileInfo rightInfo) {
+        if (!Objects.equals(getExtension(leftInfo.getName()), getExtension(rightInfo.getName()))) {
+            return false;
+        }
+        return hasSimilarSize(leftInfo.getContent(), rightInfo.getContent());
+    }
+
+    private static String getExtension(String fileName) {
+        int lastSeparator = Math.max(fileName.lastIndexOf('/'), fileName.lastIndexOf('\\'));
+        int lastDot = fileName.lastIndexOf('.');
+        if (lastDot > lastSeparator) {
+            return fileName.substring(lastDot + 1).toLowerCase(Locale.ROOT);
+        }
+        return "";
+    }
+
+    private static boolean hasSimilarSize(String leftContent, String rightContent) {
+        int leftLength = leftContent.length();
+        int rightLength = rightContent.length();
+        int maxLength = Math.max(leftLength, rightLength);
+        if (maxLength == 0) {
+            return true;
+        }
+        return Math.abs(leftLength - rightLength) <= maxLength * 0.2;
+    }
+}
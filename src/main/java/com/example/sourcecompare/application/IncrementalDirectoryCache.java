@@ -0,0 +1,236 @@
+package com.example.sourcecompare.application;
+
+import com.example.sourcecompare.domain.DirectoryArchiveInput;
+import com.example.sourcecompare.domain.DirectoryArchiveInput.FileStat;
+import com.example.sourcecompare.domain.FileInfo;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+/**
+ * Remembers what each file of an exploded directory produced, so that comparing the directory again
+ * only processes the files that changed since. The manifest of a directory keeps every file's size,
+ * modification time and SHA-256 hash next to its processed output, separately for each processing
+ * step since decompiling and formatting produce different outputs.
+ *
+ * <p>A file whose size and modification time are unchanged is reused without being read. Any other
+ * file is hashed, and reused anyway when only its timestamps moved, as after a rebuild that writes
+ * identical class files. Manifests are weighed by their output and evicted beyond {@code
+ * comparison.incremental.max-bytes}; hit and miss counts are published as {@code cache.*} metrics
+ * tagged {@code cache=comparison.directory-manifests}.
+ */
+@Component
+public class IncrementalDirectoryCache {
+    private static final Logger log = LogManager.getLogger(IncrementalDirectoryCache.class);
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+    private static final int READ_BUFFER_BYTES = 8192;
+
+    private record Key(Path directory, String step) {}
+
+    private record FileState(long size, long lastModifiedMillis, String sha256) {}
+
+    /** A file and what it produced; {@code output} is null when it produced nothing. */
+    private record Entry(FileState state, FileInfo output) {}
+
+    private record Manifest(Map<String, Entry> entries) {}
+
+    /**
+     * The files of a directory split into those reused from its manifest and those to process. Pass
+     * the outputs of processing {@link #changed()} to {@link #complete}.
+     */
+    public static final class Scan {
+        private final Key key;
+        private final List<String> order;
+        private final Map<String, Entry> reused;
+        private final Map<String, FileState> changed;
+        private final DirectoryArchiveInput changedInput;
+
+        private Scan(
+                Key key,
+                List<String> order,
+                Map<String, Entry> reused,
+                Map<String, FileState> changed,
+                DirectoryArchiveInput changedInput) {
+            this.key = key;
+            this.order = order;
+            this.reused = reused;
+            this.changed = changed;
+            this.changedInput = changedInput;
+        }
+
+        /** The changed files as a directory input, or null when nothing changed. */
+        public DirectoryArchiveInput changed() {
+            return changedInput;
+        }
+
+        public int reusedFiles() {
+            return reused.size();
+        }
+
+        public int changedFiles() {
+            return changed.size();
+        }
+    }
+
+    private final Cache<Key, Manifest> manifests;
+    private final Counter reusedCounter;
+    private final Counter processedCounter;
+
+    public IncrementalDirectoryCache(
+            @Value("${comparison.incremental.max-bytes:268435456}") long maxBytes,
+            MeterRegistry meterRegistry) {
+        this.manifests =
+                Caffeine.newBuilder()
+                        .maximumWeight(Math.max(maxBytes, 0))
+                        .weigher((Key key, Manifest manifest) -> weigh(manifest))
+                        .recordStats()
+                        .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, manifests, "comparison.directory-manifests");
+        this.reusedCounter =
+                Counter.builder("comparison.incremental.files")
+                        .description("Directory files of a repeated comparison by outcome")
+                        .tag("outcome", "reused")
+                        .register(meterRegistry);
+        this.processedCounter =
+                Counter.builder("comparison.incremental.files")
+                        .description("Directory files of a repeated comparison by outcome")
+                        .tag("outcome", "processed")
+                        .register(meterRegistry);
+    }
+
+    /** Compares the files of {@code directory} with its manifest for {@code step}. */
+    public Scan scan(DirectoryArchiveInput directory, String step, ComparisonContext context)
+            throws IOException {
+        Key key = new Key(directory.directory(), step);
+        Manifest previous = manifests.getIfPresent(key);
+        Map<String, Entry> before = previous == null ? Map.of() : previous.entries();
+        Map<String, Entry> reused = new LinkedHashMap<>();
+        Map<String, FileState> changed = new LinkedHashMap<>();
+        List<String> order = new ArrayList<>();
+        for (FileStat stat : directory.listFiles()) {
+            context.throwIfCancelled();
+            order.add(stat.name());
+            Entry known = before.get(stat.name());
+            if (known != null
+                    && known.state().size() == stat.size()
+                    && known.state().lastModifiedMillis() == stat.lastModifiedMillis()) {
+                reused.put(stat.name(), known);
+                continue;
+            }
+            FileState state =
+                    new FileState(
+                            stat.size(), stat.lastModifiedMillis(), sha256(directory, stat.name()));
+            if (known != null && known.state().sha256().equals(state.sha256())) {
+                reused.put(stat.name(), new Entry(state, known.output()));
+            } else {
+                changed.put(stat.name(), state);
+            }
+        }
+        reusedCounter.increment(reused.size());
+        processedCounter.increment(changed.size());
+        return new Scan(
+                key,
+                order,
+                reused,
+                changed,
+                changed.isEmpty() ? null : directory.only(changed.keySet()));
+    }
+
+    /**
+     * Combines the reused outputs with {@code processed}, the outputs of the changed files keyed by
+     * name, and stores the result as the directory's new manifest. {@code outputName} maps a file
+     * to the name of its output. Outputs it cannot attribute to a changed file are still returned,
+     * but the manifest is dropped so that the next comparison processes every file.
+     */
+    public Map<String, FileInfo> complete(
+            Scan scan, Map<String, FileInfo> processed, UnaryOperator<String> outputName) {
+        // Reused and changed files are merged back in directory order.
+        Map<String, Entry> entries = new LinkedHashMap<>();
+        Set<String> attributed = new HashSet<>();
+        for (String file : scan.order) {
+            FileState changed = scan.changed.get(file);
+            if (changed == null) {
+                entries.put(file, scan.reused.get(file));
+                continue;
+            }
+            String name = outputName.apply(file);
+            FileInfo output = processed.get(name);
+            if (output != null) {
+                attributed.add(name);
+            }
+            entries.put(file, new Entry(changed, output));
+        }
+
+        Map<String, FileInfo> files = new LinkedHashMap<>();
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            FileInfo output = entry.getValue().output();
+            if (output != null) {
+                files.put(outputName.apply(entry.getKey()), output);
+            }
+        }
+        if (attributed.size() == processed.size()) {
+            manifests.put(scan.key, new Manifest(Collections.unmodifiableMap(entries)));
+        } else {
+            log.warn(
+                    "Could not attribute {} outputs to files of {}; not keeping its manifest",
+                    processed.size() - attributed.size(),
+                    scan.key.directory());
+            manifests.invalidate(scan.key);
+            for (Map.Entry<String, FileInfo> output : processed.entrySet()) {
+                files.putIfAbsent(output.getKey(), output.getValue());
+            }
+        }
+        return files;
+    }
+
+    private static String sha256(DirectoryArchiveInput directory, String entryName)
+            throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        try (InputStream in = new DigestInputStream(directory.openEntry(entryName), digest)) {
+            byte[] buffer = new byte[READ_BUFFER_BYTES];
+            while (in.read(buffer) >= 0) {
+                // Reading feeds the digest.
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static int weigh(Manifest manifest) {
+        long bytes = 0;
+        for (Map.Entry<String, Entry> entry : manifest.entries().entrySet()) {
+            bytes += ENTRY_OVERHEAD_BYTES + 2L * entry.getKey().length();
+            FileInfo output = entry.getValue().output();
+            if (output != null && output.getContent() != null) {
+                bytes += 2L * output.getContent().length();
+            }
+        }
+        return (int) Math.min(bytes, Integer.MAX_VALUE);
+    }
+}
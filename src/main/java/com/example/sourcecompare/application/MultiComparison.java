@@ -0,0 +1,167 @@
+package com.example.sourcecompare.application;
+
+import com.example.sourcecompare.application.FileMapDiffer.RenameScores;
+import com.example.sourcecompare.application.SideLoader.LoadedSide;
+import com.example.sourcecompare.domain.ArchiveInput;
+import com.example.sourcecompare.domain.ComparisonInputs;
+import com.example.sourcecompare.domain.ComparisonResult;
+import com.example.sourcecompare.domain.ComparisonTiming;
+import com.example.sourcecompare.domain.FileInfo;
+import com.example.sourcecompare.domain.MultiComparisonRequest;
+import com.example.sourcecompare.domain.StepTiming;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Compares one baseline with each of several candidates. The baseline is loaded once while the
+ * candidates load in parallel, then every pair is diffed in parallel. The pairs share the content
+ * digests of the baseline and the similarity scores of rename candidates. Every result records the
+ * same {@link ComparisonInputs#getBaseline() baseline}.
+ */
+@Component
+public class MultiComparison {
+    private static final int RENAME_SCORE_MEMO_SIZE = 100_000;
+
+    private final SideLoader sideLoader;
+    private final FileMapDiffer differ;
+
+    public MultiComparison(SideLoader sideLoader, FileMapDiffer differ) {
+        this.sideLoader = sideLoader;
+        this.differ = differ;
+    }
+
+    /**
+     * Results are in candidate order; each one's timing includes the baseline's steps. Run only
+     * once the scheduler has admitted the comparison.
+     */
+    List<ComparisonResult> compare(MultiComparisonRequest request, ComparisonContext context)
+            throws IOException {
+        int normalizedContextSize = Math.max(0, request.contextSize());
+        long overallStart = System.nanoTime();
+        SideStep baselineStep = SideStep.left(request.mode());
+        SideStep candidateStep = SideStep.right(request.mode());
+        int count = request.candidates().size();
+
+        List<StepTiming> baselineTimings = new ArrayList<>();
+        List<List<StepTiming>> candidateTimings = new ArrayList<>();
+        LoadedSide baseline;
+        List<LoadedSide> candidates = new ArrayList<>();
+        try (ComparisonScope scope = new ComparisonScope("comparison-side", context)) {
+            Supplier<LoadedSide> baselineSide =
+                    scope.fork(
+                            () ->
+                                    withDigests(
+                                            sideLoader.load(
+                                                    request.baseline(),
+                                                    baselineStep,
+                                                    "baseline",
+                                                    baselineTimings,
+                                                    context)));
+            List<Supplier<LoadedSide>> candidateSides = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                ArchiveInput candidate = request.candidates().get(i);
+                String label = "candidate " + (i + 1);
+                List<StepTiming> timings = new ArrayList<>();
+                candidateTimings.add(timings);
+                candidateSides.add(
+                        scope.fork(
+                                () ->
+                                        withDigests(
+                                                sideLoader.load(
+                                                        candidate,
+                                                        candidateStep,
+                                                        label,
+                                                        timings,
+                                                        context))));
+            }
+            scope.join();
+            baseline = baselineSide.get();
+            for (Supplier<LoadedSide> side : candidateSides) {
+                candidates.add(side.get());
+            }
+        }
+
+        RenameScores scores = RenameScores.memoized(RENAME_SCORE_MEMO_SIZE);
+        List<List<StepTiming>> diffTimings = new ArrayList<>();
+        List<ComparisonResult> results = new ArrayList<>();
+        try (ComparisonScope scope = new ComparisonScope("comparison-diff", context)) {
+            List<Supplier<ComparisonResult>> diffs = new ArrayList<>();
+            for (LoadedSide candidate : candidates) {
+                List<StepTiming> timings = new ArrayList<>();
+                diffTimings.add(timings);
+                diffs.add(
+                        scope.fork(
+                                () ->
+                                        differ.diff(
+                                                baseline.files(),
+                                                candidate.files(),
+                                                List.of(),
+                                                normalizedContextSize,
+                                                request.includeUnchanged(),
+                                                timings,
+                                                context,
+                                                scores)));
+            }
+            scope.join();
+            for (Supplier<ComparisonResult> diff : diffs) {
+                results.add(diff.get());
+            }
+        }
+
+        double totalSeconds = StepTimings.seconds(System.nanoTime() - overallStart);
+        String baselineId =
+                baseline.snapshotKey() != null
+                        ? baseline.snapshotKey()
+                        : "run-" + UUID.randomUUID();
+        for (int i = 0; i < count; i++) {
+            List<StepTiming> timings = new ArrayList<>(baselineTimings);
+            timings.addAll(candidateTimings.get(i));
+            timings.addAll(diffTimings.get(i));
+            results.get(i).setTiming(new ComparisonTiming(List.copyOf(timings), totalSeconds));
+            results.get(i)
+                    .setInputs(
+                            new ComparisonInputs(
+                                    request.mode(),
+                                    baseline.snapshotKey(),
+                                    candidates.get(i).snapshotKey(),
+                                    null,
+                                    baselineId));
+        }
+        return results;
+    }
+
+    // Digests are computed once per file and then shared by every pair the file is part of.
+    private static LoadedSide withDigests(LoadedSide side) {
+        Map<String, FileInfo> digested = new LinkedHashMap<>();
+        for (Map.Entry<String, FileInfo> file : side.files().entrySet()) {
+            FileInfo info = file.getValue();
+            digested.put(
+                    file.getKey(),
+                    info.knownDigest() != null
+                            ? info
+                            : new DigestedFileInfo(info.getName(), info.getContent()));
+        }
+        return new LoadedSide(digested, side.snapshotKey());
+    }
+
+    private static final class DigestedFileInfo extends FileInfo {
+        private final byte[] digest;
+
+        DigestedFileInfo(String name, String content) {
+            super(name, content);
+            this.digest = digestOf(content);
+        }
+
+        @Override
+        public byte[] knownDigest() {
+            return digest.clone();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.sourcecompare.application;
+
+import com.example.sourcecompare.application.FileMapDiffer.RenameScores;
+import com.example.sourcecompare.application.SideLoader.LoadedSide;
+import com.example.sourcecompare.domain.ArchiveInput;
+import com.example.sourcecompare.domain.ComparisonInputs;
+import com.example.sourcecompare.domain.ComparisonResult;
+import com.example.sourcecompare.domain.ComparisonTiming;
+import com.example.sourcecompare.domain.DiffInfo;
+import com.example.sourcecompare.domain.FileInfo;
+import com.example.sourcecompare.domain.RenameInfo;
+import com.example.sourcecompare.domain.StepTiming;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Compares again after one side of a stored comparison was replaced. The kept side is loaded from
+ * its snapshot and only the entries of the replacement that changed are processed. Paths whose file
+ * on the replaced side did not change keep their classification and diff from the stored result;
+ * only the others are diffed again.
+ */
+@Component
+public class Recomparison {
+    private static final Logger log = LogManager.getLogger(Recomparison.class);
+
+    private final SideLoader sideLoader;
+    private final SideSnapshotStore snapshotStore;
+    private final FileMapDiffer differ;
+
+    public Recomparison(
+            SideLoader sideLoader, SideSnapshotStore snapshotStore, FileMapDiffer differ) {
+        this.sideLoader = sideLoader;
+        this.snapshotStore = snapshotStore;
+        this.differ = differ;
+    }
+
+    /**
+     * Run only once the scheduler has admitted the comparison.
+     *
+     * @throws ResponseStatusException 409 when the snapshots of {@code previous} are not kept
+     */
+    ComparisonResult recompare(
+            ComparisonResult previous,
+            ComparisonInputs.Side replaced,
+            ArchiveInput replacement,
+            ComparisonContext context)
+            throws IOException {
+        ComparisonInputs inputs = previous.getInputs();
+        if (inputs == null
+                || inputs.getLeftSnapshot() == null
+                || inputs.getRightSnapshot() == null) {
+            throw new ResponseStatusException(
+                    HttpStatus.CONFLICT,
+                    "This comparison did not keep its processed sides;"
+                            + " compare both archives again");
+        }
+        boolean left = replaced == ComparisonInputs.Side.LEFT;
+        String label = left ? "left" : "right";
+        SideStep step = left ? SideStep.left(inputs.getMode()) : SideStep.right(inputs.getMode());
+        List<StepTiming> timings = new ArrayList<>();
+        long overallStart = System.nanoTime();
+
+        long loadStart = System.nanoTime();
+        SideSnapshotStore.Snapshot kept =
+                keptSnapshot(left ? inputs.getRightSnapshot() : inputs.getLeftSnapshot());
+        SideSnapshotStore.Snapshot before =
+                keptSnapshot(left ? inputs.getLeftSnapshot() : inputs.getRightSnapshot());
+        StepTimings.record(timings, "Load snapshots", loadStart);
+        LoadedSide after = sideLoader.reload(replacement, step, label, before, timings, context);
+        Map<String, FileInfo> leftFiles = left ? after.files() : kept.files();
+        Map<String, FileInfo> rightFiles = left ? kept.files() : after.files();
+
+        // Added, deleted and renamed paths are diffed again, since renames pair them across paths.
+        Set<String> paired = new HashSet<>();
+        paired.addAll(previous.getAdded() == null ? Set.of() : previous.getAdded().keySet());
+        paired.addAll(previous.getDeleted() == null ? Set.of() : previous.getDeleted().keySet());
+        if (previous.getRenamed() != null) {
+            for (RenameInfo rename : previous.getRenamed()) {
+                paired.add(rename.getFrom());
+                paired.add(rename.getTo());
+            }
+        }
+        Map<String, DiffInfo> reusedDiffs = new TreeMap<>();
+        List<String> reusedUnchanged = new ArrayList<>();
+        Map<String, FileInfo> changedLeft = new LinkedHashMap<>(leftFiles);
+        Map<String, FileInfo> changedRight = new LinkedHashMap<>(rightFiles);
+        for (Map.Entry<String, FileInfo> file : after.files().entrySet()) {
+            String path = file.getKey();
+            FileInfo old = before.files().get(path);
+            if (old == null
+                    || paired.contains(path)
+                    || !leftFiles.containsKey(path)
+                    || !rightFiles.containsKey(path)
+                    || !file.getValue().hasSameContent(old)) {
+                continue;
+            }
+            DiffInfo diff =
+                    previous.getModified() == null ? null : previous.getModified().get(path);
+            if (diff != null) {
+                reusedDiffs.put(path, diff);
+            } else {
+                reusedUnchanged.add(path);
+            }
+            changedLeft.remove(path);
+            changedRight.remove(path);
+        }
+        log.info(
+                "Recomparing {} side: reusing {} paths, diffing {} again",
+                label,
+                reusedDiffs.size() + reusedUnchanged.size(),
+                Math.max(changedLeft.size(), changedRight.size()));
+
+        ComparisonResult result =
+                differ.diff(
+                        changedLeft,
+                        changedRight,
+                        reusedUnchanged,
+                        previous.getContextSize(),
+                        previous.getUnchanged() != null,
+                        timings,
+                        context,
+                        RenameScores.uncached());
+        if (!reusedDiffs.isEmpty()) {
+            Map<String, DiffInfo> modified = new TreeMap<>(result.getModified());
+            modified.putAll(reusedDiffs);
+            result.setModified(new LinkedHashMap<>(modified));
+        }
+        result.setInputs(
+                new ComparisonInputs(
+                        inputs.getMode(),
+                        left ? after.snapshotKey() : inputs.getLeftSnapshot(),
+                        left ? inputs.getRightSnapshot() : after.snapshotKey(),
+                        null));
+
+        double totalSeconds = StepTimings.seconds(System.nanoTime() - overallStart);
+        result.setTiming(new ComparisonTiming(List.copyOf(timings), totalSeconds));
+        return result;
+    }
+
+    private SideSnapshotStore.Snapshot keptSnapshot(String key) {
+        return snapshotStore
+                .load(key)
+                .orElseThrow(
+                        () ->
+                                new ResponseStatusException(
+                                        HttpStatus.CONFLICT,
+                                        "The processed sides of this comparison are no longer"
+                                                + " kept; compare both archives again"));
+    }
+}
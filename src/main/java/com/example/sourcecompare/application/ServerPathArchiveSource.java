@@ -0,0 +1,124 @@
+package com.example.sourcecompare.application;
+
+import com.example.sourcecompare.domain.ArchiveInput;
+import com.example.sourcecompare.domain.DirectoryArchiveInput;
+import com.example.sourcecompare.domain.ZipFileArchiveInput;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Opens archives that already sit on the server's filesystem, so that build artifacts on a shared
+ * volume are compared in place instead of being uploaded. A path may name a ZIP, JAR or WAR file or
+ * an exploded directory; relative paths are resolved against the first root. Git repositories below
+ * the roots are opened by {@code GitRefArchiveSource} through {@link #resolve}.
+ *
+ * <p>Only paths below one of {@code comparison.server-paths.roots} are accepted, checked both
+ * before and after resolving symbolic links. With no roots configured the source is disabled.
+ */
+@Component
+public class ServerPathArchiveSource {
+    private static final Set<String> ARCHIVE_EXTENSIONS = Set.of(".zip", ".jar", ".war");
+
+    private final List<Path> roots = new ArrayList<>();
+
+    public ServerPathArchiveSource(@Value("${comparison.server-paths.roots:}") String[] roots) {
+        for (String root : roots) {
+            if (root != null && !root.isBlank()) {
+                this.roots.add(Path.of(root.trim()).toAbsolutePath().normalize());
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return !roots.isEmpty();
+    }
+
+    /**
+     * @throws ResponseStatusException 403 when server paths are disabled or the path is outside the
+     *     roots, 400 when it does not name a readable archive or directory
+     */
+    public ArchiveInput open(String requestedPath) throws IOException {
+        Path path = resolve(requestedPath);
+        if (Files.isDirectory(path)) {
+            return new DirectoryArchiveInput(path);
+        }
+        if (Files.isRegularFile(path) && isArchive(path)) {
+            return new ZipFileArchiveInput(path);
+        }
+        throw new ResponseStatusException(
+                HttpStatus.BAD_REQUEST,
+                "Server path must be a ZIP, JAR or WAR file or a directory");
+    }
+
+    /**
+     * Resolves a requested path to the real path of an existing file or directory below a root.
+     *
+     * @throws ResponseStatusException 403 when server paths are disabled or the path is outside the
+     *     roots, 400 when it does not exist
+     */
+    public Path resolve(String requestedPath) {
+        if (!isEnabled()) {
+            throw new ResponseStatusException(
+                    HttpStatus.FORBIDDEN, "Comparing server paths is not enabled");
+        }
+        Path candidate;
+        try {
+            candidate = Path.of(requestedPath.trim());
+        } catch (InvalidPathException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid server path");
+        }
+        if (!candidate.isAbsolute()) {
+            candidate = roots.get(0).resolve(candidate);
+        }
+        candidate = candidate.normalize();
+        if (!isUnderRoot(candidate, false)) {
+            throw outsideRoots();
+        }
+        Path path;
+        try {
+            path = candidate.toRealPath();
+        } catch (IOException e) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST, "Server path not found: " + requestedPath);
+        }
+        if (!isUnderRoot(path, true)) {
+            throw outsideRoots();
+        }
+        return path;
+    }
+
+    private boolean isUnderRoot(Path path, boolean real) {
+        for (Path root : roots) {
+            try {
+                if (path.startsWith(real ? root.toRealPath() : root)) {
+                    return true;
+                }
+            } catch (IOException e) {
+                // A root that does not exist admits nothing.
+            }
+        }
+        return false;
+    }
+
+    private static boolean isArchive(Path path) {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        int dot = name.lastIndexOf('.');
+        return dot >= 0 && ARCHIVE_EXTENSIONS.contains(name.substring(dot));
+    }
+
+    private static ResponseStatusException outsideRoots() {
+        return new ResponseStatusException(
+                HttpStatus.FORBIDDEN, "Server path is outside the allowed directories");
+    }
+}
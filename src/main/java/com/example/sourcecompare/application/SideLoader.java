@@ -0,0 +1,284 @@
+package com.example.sourcecompare.application;
+
+import com.example.sourcecompare.domain.ArchiveInput;
+import com.example.sourcecompare.domain.DirectoryArchiveInput;
+import com.example.sourcecompare.domain.FileInfo;
+import com.example.sourcecompare.domain.StepTiming;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.UnaryOperator;
+
+/**
+ * Loads the processed side of a comparison with as little processing as possible: from the manifest
+ * of an exploded directory, from a snapshot of the same archive, or from a comparison already
+ * processing the same archive at the same time. Only what none of them covers is processed.
+ */
+@Component
+public class SideLoader {
+    private static final Logger log = LogManager.getLogger(SideLoader.class);
+
+    /** Part of every snapshot key; bump it when processing a side produces different output. */
+    private static final String SNAPSHOT_VERSION = "v2";
+
+    private final SideProcessor processor;
+    private final IncrementalDirectoryCache directoryCache;
+    private final SideSnapshotStore snapshotStore;
+    private final Map<String, CompletableFuture<Map<String, FileInfo>>> inFlight =
+            new ConcurrentHashMap<>();
+
+    public SideLoader(
+            SideProcessor processor,
+            IncrementalDirectoryCache directoryCache,
+            SideSnapshotStore snapshotStore) {
+        this.processor = processor;
+        this.directoryCache = directoryCache;
+        this.snapshotStore = snapshotStore;
+    }
+
+    /** {@code snapshotKey} is null when the side was not saved as a snapshot. */
+    record LoadedSide(Map<String, FileInfo> files, String snapshotKey) {}
+
+    // An exploded directory seen before only processes the files that changed since; the outputs
+    // of the others are taken from its manifest.
+    LoadedSide load(
+            ArchiveInput archive,
+            SideStep step,
+            String label,
+            List<StepTiming> timings,
+            ComparisonContext context)
+            throws IOException {
+        if (!(archive instanceof DirectoryArchiveInput directory)) {
+            return loadOrProcess(archive, step, label, timings, context);
+        }
+        long scanStart = System.nanoTime();
+        IncrementalDirectoryCache.Scan scan = directoryCache.scan(directory, step.name(), context);
+        StepTimings.record(timings, "Check directory manifest (" + label + ")", scanStart);
+        log.info(
+                "Reusing {} unchanged files of the {} directory and processing {}",
+                scan.reusedFiles(),
+                label,
+                scan.changedFiles());
+        Map<String, FileInfo> processed =
+                scan.changed() == null
+                        ? Map.of()
+                        : processor.process(scan.changed(), step, label, timings, context);
+        return new LoadedSide(directoryCache.complete(scan, processed, step.outputName()), null);
+    }
+
+    // Any other archive is looked up by its content in the snapshot store, and saved there after
+    // processing, so that a baseline compared again costs only reading its snapshot. Without a
+    // store the archive is not fingerprinted, since that reads all of it for nothing.
+    private LoadedSide loadOrProcess(
+            ArchiveInput archive,
+            SideStep step,
+            String label,
+            List<StepTiming> timings,
+            ComparisonContext context)
+            throws IOException {
+        if (!snapshotStore.isEnabled()) {
+            String upload = archive.uploadDigest();
+            String sharedKey = upload != null ? "upload-" + upload + "-" + step.name() : null;
+            return processShared(sharedKey, null, archive, step, label, timings, context);
+        }
+        long fingerprintStart = System.nanoTime();
+        String key = snapshotKey(archive, step);
+        StepTimings.record(timings, "Fingerprint archive (" + label + ")", fingerprintStart);
+        context.throwIfCancelled();
+
+        long loadStart = System.nanoTime();
+        Optional<SideSnapshotStore.Snapshot> snapshot = snapshotStore.load(key);
+        if (snapshot.isPresent()) {
+            double loadSeconds =
+                    StepTimings.record(timings, "Load snapshot (" + label + ")", loadStart);
+            log.info("Loaded {} side from snapshot {} in {}s", label, key, loadSeconds);
+            return new LoadedSide(snapshot.get().files(), key);
+        }
+        return processShared(key, key, archive, step, label, timings, context);
+    }
+
+    /**
+     * Processes {@code archive} and saves it under {@code snapshotKey} unless that is null.
+     * Comparisons running at the same time, such as the pairs of a batch, often share an archive;
+     * of those with the same {@code sharedKey} only the first one processes it and the others wait
+     * for its result. A null {@code sharedKey} always processes.
+     */
+    private LoadedSide processShared(
+            String sharedKey,
+            String snapshotKey,
+            ArchiveInput archive,
+            SideStep step,
+            String label,
+            List<StepTiming> timings,
+            ComparisonContext context)
+            throws IOException {
+        CompletableFuture<Map<String, FileInfo>> own = null;
+        if (sharedKey != null) {
+            own = new CompletableFuture<>();
+            CompletableFuture<Map<String, FileInfo>> running = inFlight.putIfAbsent(sharedKey, own);
+            if (running != null) {
+                long waitStart = System.nanoTime();
+                Map<String, FileInfo> shared = awaitShared(running, context);
+                if (shared != null) {
+                    StepTimings.record(
+                            timings, "Wait for shared processing (" + label + ")", waitStart);
+                    return new LoadedSide(shared, snapshotKey);
+                }
+                own = null;
+            }
+        }
+        try {
+            // The entries are hashed as they are processed, only for the store, so that a later
+            // version of the archive can be recompared by processing just the entries that differ.
+            Map<String, String> digests = new LinkedHashMap<>();
+            ArchiveInput source = snapshotKey != null ? archive.digestingInto(digests) : archive;
+            Map<String, FileInfo> processed =
+                    processor.process(source, step, label, timings, context);
+            if (snapshotKey != null) {
+                saveSnapshot(snapshotKey, processed, digests, label, timings);
+            }
+            if (own != null) {
+                own.complete(processed);
+            }
+            return new LoadedSide(processed, snapshotKey);
+        } catch (IOException | RuntimeException | Error e) {
+            if (own != null) {
+                own.completeExceptionally(e);
+            }
+            throw e;
+        } finally {
+            if (own != null) {
+                inFlight.remove(sharedKey, own);
+            }
+        }
+    }
+
+    /**
+     * Loads {@code replacement}, a new version of the archive {@code before} was processed from.
+     * Only its entries whose bytes differ are processed; the outputs of the others are taken from
+     * {@code before}. Falls back to processing every entry when outputs cannot be attributed to the
+     * changed entries.
+     */
+    LoadedSide reload(
+            ArchiveInput replacement,
+            SideStep step,
+            String label,
+            SideSnapshotStore.Snapshot before,
+            List<StepTiming> timings,
+            ComparisonContext context)
+            throws IOException {
+        long fingerprintStart = System.nanoTime();
+        String key = snapshotKey(replacement, step);
+        StepTimings.record(timings, "Fingerprint archive (" + label + ")", fingerprintStart);
+        Optional<SideSnapshotStore.Snapshot> known = snapshotStore.load(key);
+        if (known.isPresent()) {
+            return new LoadedSide(known.get().files(), key);
+        }
+
+        long hashStart = System.nanoTime();
+        Map<String, String> digests = replacement.entryDigests();
+        Set<String> changed = new LinkedHashSet<>();
+        digests.forEach(
+                (name, digest) -> {
+                    if (!digest.equals(before.inputDigests().get(name))) {
+                        changed.add(name);
+                    }
+                });
+        Set<String> stale = new HashSet<>(changed);
+        for (String name : before.inputDigests().keySet()) {
+            if (!digests.containsKey(name)) {
+                stale.add(name);
+            }
+        }
+        StepTimings.record(timings, "Find changed entries (" + label + ")", hashStart);
+        context.throwIfCancelled();
+
+        UnaryOperator<String> outputName = step.outputName();
+        Map<String, FileInfo> files = new LinkedHashMap<>(before.files());
+        for (String name : stale) {
+            files.remove(outputName.apply(name));
+        }
+        Map<String, FileInfo> processed =
+                changed.isEmpty()
+                        ? Map.of()
+                        : processor.process(
+                                replacement.only(changed), step, label, timings, context);
+        Set<String> expected = new HashSet<>();
+        for (String name : changed) {
+            expected.add(outputName.apply(name));
+        }
+        if (expected.containsAll(processed.keySet())) {
+            files.putAll(processed);
+            log.info(
+                    "Reprocessed {} of {} entries of the {} side",
+                    changed.size(),
+                    digests.size(),
+                    label);
+        } else {
+            log.warn(
+                    "Could not attribute the outputs of the {} side to its changed entries;"
+                            + " processing all of it",
+                    label);
+            files = processor.process(replacement, step, label, timings, context);
+        }
+
+        long saveStart = System.nanoTime();
+        snapshotStore.save(key, new SideSnapshotStore.Snapshot(files, digests));
+        StepTimings.record(timings, "Save snapshot (" + label + ")", saveStart);
+        return new LoadedSide(files, key);
+    }
+
+    private static String snapshotKey(ArchiveInput archive, SideStep step) throws IOException {
+        return SNAPSHOT_VERSION + "-" + archive.fingerprint() + "-" + step.name();
+    }
+
+    private void saveSnapshot(
+            String key,
+            Map<String, FileInfo> files,
+            Map<String, String> inputDigests,
+            String label,
+            List<StepTiming> timings) {
+        long saveStart = System.nanoTime();
+        snapshotStore.save(key, new SideSnapshotStore.Snapshot(files, inputDigests));
+        StepTimings.record(timings, "Save snapshot (" + label + ")", saveStart);
+    }
+
+    /**
+     * Waits for another comparison's processing of the same archive. Returns null when that
+     * comparison failed or was cancelled, so that the caller processes the archive itself.
+     *
+     * @throws ComparisonCancelledException when {@code context} is cancelled while waiting
+     */
+    private static Map<String, FileInfo> awaitShared(
+            CompletableFuture<Map<String, FileInfo>> running, ComparisonContext context)
+            throws InterruptedIOException {
+        CompletableFuture<Void> cancelled = new CompletableFuture<>();
+        Runnable unregister = context.onCancel(() -> cancelled.complete(null));
+        try {
+            CompletableFuture.anyOf(running, cancelled).get();
+        } catch (ExecutionException | CancellationException e) {
+            // A failed or cancelled run leaves the archive to this comparison.
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for shared processing");
+        } finally {
+            unregister.run();
+        }
+        context.throwIfCancelled();
+        return running.isDone() && !running.isCompletedExceptionally() ? running.resultNow() : null;
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.sourcecompare.application;
+
+import com.example.sourcecompare.application.ComparisonProgressListener.Stage;
+import com.example.sourcecompare.domain.ArchiveInput;
+import com.example.sourcecompare.domain.FileInfo;
+import com.example.sourcecompare.domain.StepTiming;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Turns one side of a comparison into comparable sources: classes are decompiled and sources are
+ * read, then both are normalized or formatted depending on the {@link SideStep}.
+ */
+@Component
+public class SideProcessor {
+    private static final Logger log = LogManager.getLogger(SideProcessor.class);
+
+    private final ArchiveDecompiler archiveDecompiler;
+    private final JavaSourceNormalizer javaSourceNormalizer;
+    private final SourceFormatter sourceFormatter;
+    private final ComparisonScheduler scheduler;
+
+    public SideProcessor(
+            ArchiveDecompiler archiveDecompiler,
+            JavaSourceNormalizer javaSourceNormalizer,
+            SourceFormatter sourceFormatter,
+            ComparisonScheduler scheduler) {
+        this.archiveDecompiler = archiveDecompiler;
+        this.javaSourceNormalizer = javaSourceNormalizer;
+        this.sourceFormatter = sourceFormatter;
+        this.scheduler = scheduler;
+    }
+
+    /** Processes every entry of {@code archive}, keyed by the {@link SideStep#outputName}. */
+    Map<String, FileInfo> process(
+            ArchiveInput archive,
+            SideStep step,
+            String label,
+            List<StepTiming> timings,
+            ComparisonContext context)
+            throws IOException {
+        return switch (step) {
+            case DECOMPILE_AND_NORMALIZE -> decompileAndNormalize(archive, label, timings, context);
+            case READ_AND_NORMALIZE -> readAndNormalize(archive, label, timings, context);
+            case DECOMPILE_AND_FORMAT -> decompileAndFormat(archive, label, timings, context);
+            case READ_AND_FORMAT -> readAndFormat(archive, label, timings, context);
+        };
+    }
+
+    private Map<String, FileInfo> decompileAndNormalize(
+            ArchiveInput classArchive,
+            String label,
+            List<StepTiming> timings,
+            ComparisonContext context)
+            throws IOException {
+        long decompileStart = System.nanoTime();
+        Map<String, FileInfo> raw =
+                archiveDecompiler.decompileClasses(classArchive, context, label);
+        StepTimings.record(timings, "Decompile classes (" + label + ")", decompileStart);
+
+        long normalizeStart = System.nanoTime();
+        Map<String, FileInfo> normalized = new HashMap<>();
+        for (Map.Entry<String, FileInfo> e : raw.entrySet()) {
+            context.throwIfCancelled();
+            String name = SideStep.sourceName(e.getKey());
+            normalized.put(
+                    name,
+                    new FileInfo(
+                            name, javaSourceNormalizer.normalizeJava(e.getValue().getContent())));
+        }
+        StepTimings.record(timings, "Normalize decompiled sources (" + label + ")", normalizeStart);
+        return normalized;
+    }
+
+    private Map<String, FileInfo> readAndNormalize(
+            ArchiveInput sourceArchive,
+            String label,
+            List<StepTiming> timings,
+            ComparisonContext context)
+            throws IOException {
+        long readStart = System.nanoTime();
+        Map<String, FileInfo> raw = readSources(sourceArchive, context, label);
+        StepTimings.record(timings, "Read sources (" + label + ")", readStart);
+
+        long normalizeStart = System.nanoTime();
+        Map<String, FileInfo> normalized = new HashMap<>();
+        for (Map.Entry<String, FileInfo> e : raw.entrySet()) {
+            context.throwIfCancelled();
+            String name = e.getKey();
+            normalized.put(
+                    name,
+                    new FileInfo(
+                            name, javaSourceNormalizer.normalizeJava(e.getValue().getContent())));
+        }
+        StepTimings.record(timings, "Normalize sources (" + label + ")", normalizeStart);
+        return normalized;
+    }
+
+    private Map<String, FileInfo> decompileAndFormat(
+            ArchiveInput archive, String label, List<StepTiming> timings, ComparisonContext context)
+            throws IOException {
+        long decompileStart = System.nanoTime();
+        Map<String, FileInfo> raw = archiveDecompiler.decompileClasses(archive, context, label);
+        double decompileSeconds =
+                StepTimings.record(timings, "Decompile classes (" + label + ")", decompileStart);
+        log.info("Decompiled {} archive in {}s", label, decompileSeconds);
+
+        long formatStart = System.nanoTime();
+        Map<String, FileInfo> formatted = formatAll(raw, label, context);
+        double formatSeconds =
+                StepTimings.record(timings, "Format sources (" + label + ")", formatStart);
+        log.info("Formatted {} archive in {}s", label, formatSeconds);
+        return formatted;
+    }
+
+    private Map<String, FileInfo> readAndFormat(
+            ArchiveInput archive, String label, List<StepTiming> timings, ComparisonContext context)
+            throws IOException {
+        long readStart = System.nanoTime();
+        Map<String, FileInfo> raw = readSources(archive, context, label);
+        double readSeconds = StepTimings.record(timings, "Read sources (" + label + ")", readStart);
+        log.info("Read {} sources in {}s", label, readSeconds);
+
+        long formatStart = System.nanoTime();
+        Map<String, FileInfo> formatted = formatAll(raw, label, context);
+        double formatSeconds =
+                StepTimings.record(timings, "Format sources (" + label + ")", formatStart);
+        log.info("Formatted {} sources in {}s", label, formatSeconds);
+        return formatted;
+    }
+
+    private Map<String, FileInfo> formatAll(
+            Map<String, FileInfo> raw, String side, ComparisonContext context) throws IOException {
+        Map<String, FileInfo> formatted = new HashMap<>();
+        try (WorkBatch<FileInfo> batch =
+                scheduler.batch(ComparisonScheduler.Pool.FORMAT, context)) {
+            for (FileInfo fi : raw.values()) {
+                batch.submit(() -> sourceFormatter.formatFile(fi.getName(), fi.getContent()));
+            }
+            int total = batch.size();
+            batch.awaitAll(
+                    (result, completed) -> {
+                        formatted.put(result.getName(), result);
+                        context.progress().onProgress(Stage.FORMAT, side, completed, total);
+                    });
+        }
+        return formatted;
+    }
+
+    private static Map<String, FileInfo> readSources(
+            ArchiveInput archive, ComparisonContext context, String side) throws IOException {
+        Map<String, FileInfo> result = new HashMap<>();
+        int[] entriesRead = {0};
+        archive.forEachEntry(
+                entry -> {
+                    context.throwIfCancelled();
+                    context.progress().onProgress(Stage.READ_ENTRIES, side, ++entriesRead[0], -1);
+                    if (entry.name().endsWith(".java")) {
+                        String name = entry.name();
+                        result.put(name, new FileInfo(name, new String(entry.readAllBytes())));
+                    }
+                });
+        context.progress().onProgress(Stage.READ_ENTRIES, side, entriesRead[0], entriesRead[0]);
+        return result;
+    }
+}
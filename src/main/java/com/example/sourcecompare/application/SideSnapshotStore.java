@@ -0,0 +1,29 @@
+package com.example.sourcecompare.application;
+
+import com.example.sourcecompare.domain.FileInfo;
+
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Keeps processed sides of comparisons, so that an archive compared again, such as a pinned release
+ * baseline, is loaded instead of being decompiled and formatted again. Keys identify the archive's
+ * content and how it was processed. Failures are logged and behave like a missing snapshot, since a
+ * snapshot only ever saves work.
+ */
+public interface SideSnapshotStore {
+
+    /**
+     * A processed side. {@code inputDigests} holds the SHA-256 of each archive entry it was
+     * processed from, so that a later version of the archive only processes the entries that
+     * differ.
+     */
+    record Snapshot(Map<String, FileInfo> files, Map<String, String> inputDigests) {}
+
+    boolean isEnabled();
+
+    /** The snapshot saved under {@code key}; file contents may be read lazily. */
+    Optional<Snapshot> load(String key);
+
+    void save(String key, Snapshot snapshot);
+}
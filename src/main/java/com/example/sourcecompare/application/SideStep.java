@@ -0,0 +1,46 @@
+package com.example.sourcecompare.application;
+
+import com.example.sourcecompare.domain.ComparisonMode;
+
+import java.util.function.UnaryOperator;
+
+/** How one side of a comparison is turned into comparable sources. */
+enum SideStep {
+    DECOMPILE_AND_NORMALIZE,
+    READ_AND_NORMALIZE,
+    DECOMPILE_AND_FORMAT,
+    READ_AND_FORMAT;
+
+    static SideStep left(ComparisonMode mode) {
+        return switch (mode) {
+            case CLASS_VS_SOURCE -> DECOMPILE_AND_NORMALIZE;
+            case CLASS_VS_CLASS -> DECOMPILE_AND_FORMAT;
+            case SOURCE_VS_SOURCE -> READ_AND_FORMAT;
+        };
+    }
+
+    static SideStep right(ComparisonMode mode) {
+        return switch (mode) {
+            case CLASS_VS_SOURCE -> READ_AND_NORMALIZE;
+            case CLASS_VS_CLASS -> DECOMPILE_AND_FORMAT;
+            case SOURCE_VS_SOURCE -> READ_AND_FORMAT;
+        };
+    }
+
+    /** Decompiled and formatted files are named after the source file of the class. */
+    static String sourceName(String entryName) {
+        return entryName.replace(".class", ".java");
+    }
+
+    UnaryOperator<String> outputName() {
+        return this == READ_AND_NORMALIZE ? UnaryOperator.identity() : SideStep::sourceName;
+    }
+
+    /** Reading sources keeps only Java files; decompiling keeps every entry. */
+    boolean producesOutput(String entryName) {
+        return switch (this) {
+            case DECOMPILE_AND_NORMALIZE, DECOMPILE_AND_FORMAT -> true;
+            case READ_AND_NORMALIZE, READ_AND_FORMAT -> entryName.endsWith(".java");
+        };
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.sourcecompare.application;
+
+import com.example.sourcecompare.domain.StepTiming;
+
+import java.util.List;
+
+/** Records the steps of a comparison as they finish. */
+final class StepTimings {
+
+    private StepTimings() {}
+
+    static double seconds(long nanos) {
+        return nanos / 1_000_000_000.0;
+    }
+
+    /**
+     * Adds a step that started at {@code startNanos} and ends now; {@code timings} may be null.
+     *
+     * @return the step's duration in seconds
+     */
+    static double record(List<StepTiming> timings, String label, long startNanos) {
+        double seconds = seconds(System.nanoTime() - startNanos);
+        if (timings != null) {
+            timings.add(new StepTiming(label, seconds));
+        }
+        return seconds;
+    }
+}
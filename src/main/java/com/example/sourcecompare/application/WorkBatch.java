@@ -0,0 +1,106 @@
+package com.example.sourcecompare.application;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Worker tasks of one comparison stage on a {@link ComparisonScheduler} pool. Cancelling the
+ * comparison cancels the tasks that have not finished, and closing the batch cancels those left
+ * over when the stage ends early.
+ */
+public final class WorkBatch<T> implements AutoCloseable {
+    private final ComparisonScheduler scheduler;
+    private final ComparisonScheduler.Pool pool;
+    private final ComparisonContext context;
+    private final List<Future<T>> submitted = Collections.synchronizedList(new ArrayList<>());
+    private final Runnable unregister;
+
+    WorkBatch(
+            ComparisonScheduler scheduler,
+            ComparisonScheduler.Pool pool,
+            ComparisonContext context) {
+        this.scheduler = scheduler;
+        this.pool = pool;
+        this.context = context;
+        this.unregister = context.onCancel(this::cancelPending);
+    }
+
+    /** Queues {@code task} behind the requester's earlier tasks on the pool. */
+    public void submit(Callable<T> task) {
+        submit(0, task);
+    }
+
+    /** Queues {@code task} ahead of the requester's queued tasks of lower {@code priority}. */
+    public void submit(long priority, Callable<T> task) {
+        context.throwIfCancelled();
+        submitted.add(scheduler.submit(pool, context.requester(), priority, task));
+    }
+
+    public int size() {
+        return submitted.size();
+    }
+
+    /**
+     * Waits for the tasks in submission order and hands each result to {@code consumer} with the
+     * number of tasks completed so far.
+     *
+     * @throws ComparisonCancelledException when the comparison is cancelled meanwhile
+     */
+    public void awaitAll(ObjIntConsumer<T> consumer) throws IOException {
+        for (int i = 0; i < submitted.size(); i++) {
+            consumer.accept(await(submitted.get(i)), i + 1);
+        }
+    }
+
+    private T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + pool + " workers");
+        } catch (CancellationException e) {
+            context.throwIfCancelled();
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            if (cause instanceof UncheckedIOException unchecked) {
+                throw unchecked.getCause();
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IOException("Worker task failed", cause);
+        }
+    }
+
+    private void cancelPending() {
+        synchronized (submitted) {
+            for (Future<T> future : submitted) {
+                if (!future.isDone()) {
+                    scheduler.cancel(future);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        unregister.run();
+        cancelPending();
+    }
+}
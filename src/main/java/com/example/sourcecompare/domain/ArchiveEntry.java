@@ -0,0 +1,16 @@
+package com.example.sourcecompare.domain;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A file inside an {@link ArchiveInput} while it is being visited. The content stream is only valid
+ * during the visit and is closed by the archive, not by the visitor; an entry whose content is not
+ * read is skipped without being decompressed.
+ */
+public record ArchiveEntry(String name, InputStream content) {
+
+    public byte[] readAllBytes() throws IOException {
+        return content.readAllBytes();
+    }
+}
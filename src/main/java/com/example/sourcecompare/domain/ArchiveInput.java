@@ -1,31 +1,159 @@
 package com.example.sourcecompare.domain;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Objects;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
 
 /**
- * Represents an uploaded archive in a framework-agnostic way.
+ * One side of a comparison as a set of named entries, in a framework-agnostic way. Consumers read
+ * it through {@link #forEachEntry}, which lets subclasses present other layouts, such as several
+ * archives at once or an exploded directory, as one set of entries. Only a {@link
+ * ZipStreamArchiveInput} is backed by a single stream of ZIP bytes.
  */
-public class ArchiveInput {
+public abstract class ArchiveInput {
     private final String filename;
-    private final InputStreamSupplier inputStreamSupplier;
+    private final long size;
 
-    public ArchiveInput(String filename, InputStreamSupplier inputStreamSupplier) {
+    protected ArchiveInput(String filename, long size) {
         this.filename = filename != null ? filename : "";
-        this.inputStreamSupplier = Objects.requireNonNull(inputStreamSupplier, "inputStreamSupplier");
+        this.size = size;
     }
 
     public String filename() {
         return filename;
     }
 
-    public InputStream openStream() throws IOException {
-        return inputStreamSupplier.openStream();
+    /** Size of the archive in bytes, or -1 when it is not known up front. */
+    public long size() {
+        return size;
+    }
+
+    /** Visits every file entry in archive order; directories are skipped. */
+    public abstract void forEachEntry(EntryVisitor visitor) throws IOException;
+
+    /**
+     * SHA-256 identifying the content of this archive, independent of its file name. This hashes
+     * every entry; subclasses that know a cheaper identity override it.
+     */
+    public String fingerprint() throws IOException {
+        return fingerprintEntries();
+    }
+
+    /**
+     * SHA-256 of the bytes as they were uploaded, taken while they were spooled, or {@code null}
+     * when they were not hashed then. Unlike {@link #fingerprint()} this never reads the archive.
+     */
+    public String uploadDigest() {
+        return null;
+    }
+
+    /** Hashes the name, length and bytes of every entry, in archive order. */
+    protected final String fingerprintEntries() throws IOException {
+        MessageDigest digest = sha256();
+        digest.update("entries:".getBytes(StandardCharsets.UTF_8));
+        forEachEntry(
+                entry -> {
+                    byte[] content = entry.readAllBytes();
+                    digest.update(entry.name().getBytes(StandardCharsets.UTF_8));
+                    digest.update(
+                            ByteBuffer.allocate(1 + Long.BYTES)
+                                    .put((byte) 0)
+                                    .putLong(content.length)
+                                    .array());
+                    digest.update(content);
+                });
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * SHA-256 of every entry's bytes, as hex by entry name, to tell which entries differ between
+     * two versions of an archive.
+     */
+    public Map<String, String> entryDigests() throws IOException {
+        Map<String, String> digests = new LinkedHashMap<>();
+        HexFormat hex = HexFormat.of();
+        forEachEntry(
+                entry ->
+                        digests.put(
+                                entry.name(),
+                                hex.formatHex(sha256().digest(entry.readAllBytes()))));
+        return digests;
+    }
+
+    /**
+     * This archive, putting the hex SHA-256 of every entry into {@code digests} as it is visited,
+     * as {@link #entryDigests()} would. Content a visitor leaves unread is read to the end, so that
+     * one pass both processes and hashes the entries.
+     */
+    public ArchiveInput digestingInto(Map<String, String> digests) {
+        ArchiveInput whole = this;
+        return new ArchiveInput(filename, size) {
+            @Override
+            public void forEachEntry(EntryVisitor visitor) throws IOException {
+                HexFormat hex = HexFormat.of();
+                whole.forEachEntry(
+                        entry -> {
+                            MessageDigest digest = sha256();
+                            InputStream content = new DigestInputStream(entry.content(), digest);
+                            visitor.visit(new ArchiveEntry(entry.name(), unclosable(content)));
+                            content.transferTo(OutputStream.nullOutputStream());
+                            digests.put(entry.name(), hex.formatHex(digest.digest()));
+                        });
+            }
+        };
+    }
+
+    /** This archive restricted to the entries named in {@code entryNames}. */
+    public ArchiveInput only(Collection<String> entryNames) throws IOException {
+        Set<String> subset = Set.copyOf(entryNames);
+        ArchiveInput whole = this;
+        return new ArchiveInput(filename, -1) {
+            @Override
+            public void forEachEntry(EntryVisitor visitor) throws IOException {
+                whole.forEachEntry(
+                        entry -> {
+                            if (subset.contains(entry.name())) {
+                                visitor.visit(entry);
+                            }
+                        });
+            }
+        };
+    }
+
+    protected static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /** Wraps {@code stream} so that a visitor closing it leaves the underlying stream open. */
+    protected static InputStream unclosable(InputStream stream) {
+        return new FilterInputStream(stream) {
+            @Override
+            public void close() {}
+        };
     }
 
     @FunctionalInterface
     public interface InputStreamSupplier {
         InputStream openStream() throws IOException;
     }
+
+    @FunctionalInterface
+    public interface EntryVisitor {
+        void visit(ArchiveEntry entry) throws IOException;
+    }
 }
@@ -0,0 +1,38 @@
+package com.example.sourcecompare.domain;
+
+import java.util.List;
+
+/**
+ * Pairs of archives to compare in one batch, as read from a JSON manifest. Each side is a server
+ * path, or a commit of the Git repository at that path when a ref is given. {@code mode} and {@code
+ * contextSize} apply to every pair that does not set its own mode; {@code parallelism} asks for at
+ * most that many pairs at once.
+ */
+public record BatchManifest(
+        ComparisonMode mode, Integer contextSize, Integer parallelism, List<Pair> pairs) {
+    private static final int DEFAULT_CONTEXT_SIZE = 5;
+
+    /** {@code name} defaults to the two paths; {@code mode} to the manifest's. */
+    public record Pair(
+            String name,
+            String left,
+            String leftRef,
+            String right,
+            String rightRef,
+            ComparisonMode mode) {}
+
+    public BatchManifest {
+        pairs = pairs == null ? List.of() : List.copyOf(pairs);
+    }
+
+    public ComparisonMode modeOf(Pair pair) {
+        if (pair.mode() != null) {
+            return pair.mode();
+        }
+        return mode != null ? mode : ComparisonMode.CLASS_VS_CLASS;
+    }
+
+    public int contextSizeOrDefault() {
+        return contextSize != null ? Math.max(contextSize, 0) : DEFAULT_CONTEXT_SIZE;
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.sourcecompare.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * What a comparison was made from: its mode and the snapshot keys of its processed sides. A key is
+ * null when that side was not saved as a snapshot, such as an exploded directory, and the
+ * comparison cannot then be recompared against it. {@code resultKey} identifies the uploads and
+ * options the comparison was made from, when both sides were hashed as they were uploaded.
+ *
+ * <p>{@code baseline} is set on each result of comparing one baseline with several candidates. It
+ * is the baseline's snapshot key, or an ID shared by the results of that run when the baseline was
+ * not saved as a snapshot, so that results can be checked to share their baseline.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ComparisonInputs {
+    public enum Side {
+        LEFT,
+        RIGHT
+    }
+
+    private ComparisonMode mode;
+    private String leftSnapshot;
+    private String rightSnapshot;
+    private String resultKey;
+    private String baseline;
+
+    public ComparisonInputs(
+            ComparisonMode mode, String leftSnapshot, String rightSnapshot, String resultKey) {
+        this(mode, leftSnapshot, rightSnapshot, resultKey, null);
+    }
+}
@@ -21,6 +21,12 @@ public class ComparisonResult {
     private List<String> unchanged;
     private ComparisonTiming timing;
 
+    /** Context lines used when rendering edit scripts as unified diffs. */
+    private int contextSize;
+
+    /** What the sides were processed into; null for comparisons stored before it was recorded. */
+    private ComparisonInputs inputs;
+
     public ComparisonResult(
             Map<String, DiffInfo> added,
             Map<String, DiffInfo> deleted,
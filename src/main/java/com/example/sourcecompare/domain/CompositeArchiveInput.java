@@ -0,0 +1,111 @@
+package com.example.sourcecompare.domain;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Several archives and plain files presented as one archive. Entries of each part are visited in
+ * order under the part's prefix ({@code prefix/entry}, or just {@code entry} for an empty prefix);
+ * the parts are read where they are and no bytes are rewritten, so there is no combined ZIP stream.
+ */
+public final class CompositeArchiveInput extends ArchiveInput {
+    private final List<Part> parts;
+
+    /**
+     * An archive whose entries are listed under {@code prefix}, or a single plain file. {@code
+     * fileDigest} is the {@link ArchiveInput#uploadDigest()} of a plain file, when it is known.
+     */
+    public record Part(
+            String prefix,
+            ArchiveInput archive,
+            String fileName,
+            InputStreamSupplier file,
+            String fileDigest) {
+
+        public static Part archive(String prefix, ArchiveInput archive) {
+            return new Part(prefix, archive, null, null, null);
+        }
+
+        public static Part file(String prefix, String fileName, InputStreamSupplier content) {
+            return file(prefix, fileName, content, null);
+        }
+
+        public static Part file(
+                String prefix, String fileName, InputStreamSupplier content, String digest) {
+            return new Part(prefix, null, fileName, content, digest);
+        }
+
+        private String uploadDigest() {
+            return archive != null ? archive.uploadDigest() : fileDigest;
+        }
+
+        private String entryName(String name) {
+            String sanitized = sanitize(name);
+            return prefix == null || prefix.isEmpty() ? sanitized : prefix + "/" + sanitized;
+        }
+    }
+
+    public CompositeArchiveInput(String filename, long size, List<Part> parts) {
+        super(filename, size);
+        this.parts = List.copyOf(parts);
+    }
+
+    public List<Part> parts() {
+        return parts;
+    }
+
+    /** Combines the upload digests of the parts with their prefixes; null unless all are known. */
+    @Override
+    public String uploadDigest() {
+        MessageDigest digest = sha256();
+        digest.update("parts:".getBytes(StandardCharsets.UTF_8));
+        for (Part part : parts) {
+            String partDigest = part.uploadDigest();
+            if (partDigest == null) {
+                return null;
+            }
+            String fileName = part.fileName() != null ? part.fileName() : "";
+            String line = part.prefix() + "\0" + fileName + "\0" + partDigest + "\n";
+            digest.update(line.getBytes(StandardCharsets.UTF_8));
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    @Override
+    public void forEachEntry(EntryVisitor visitor) throws IOException {
+        for (Part part : parts) {
+            if (part.archive() != null) {
+                part.archive()
+                        .forEachEntry(
+                                entry -> {
+                                    String name = part.entryName(entry.name());
+                                    if (!name.isEmpty()) {
+                                        visitor.visit(new ArchiveEntry(name, entry.content()));
+                                    }
+                                });
+            } else {
+                try (InputStream content = part.file().openStream()) {
+                    visitor.visit(
+                            new ArchiveEntry(part.entryName(part.fileName()), unclosable(content)));
+                }
+            }
+        }
+    }
+
+    // Entry names become map keys and display paths; drop empty and parent segments.
+    private static String sanitize(String entryName) {
+        String normalized = entryName == null ? "" : entryName.replace('\\', '/');
+        List<String> segments = new ArrayList<>();
+        for (String segment : normalized.split("/")) {
+            if (!segment.isEmpty() && !segment.equals("..")) {
+                segments.add(segment);
+            }
+        }
+        return String.join("/", segments);
+    }
+}
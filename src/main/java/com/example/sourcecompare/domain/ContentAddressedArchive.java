@@ -0,0 +1,19 @@
+package com.example.sourcecompare.domain;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An archive that knows an identifier of each entry's content without reading it, such as a Git
+ * blob ID. Identifiers carry their scheme, so equal identifiers mean equal content even across
+ * different implementations.
+ */
+public interface ContentAddressedArchive {
+
+    /** Content identifier per entry name. */
+    Map<String, String> contentIds();
+
+    /** The same archive without the entries named in {@code entryNames}. */
+    ArchiveInput without(Set<String> entryNames) throws IOException;
+}
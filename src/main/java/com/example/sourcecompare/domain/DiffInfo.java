@@ -1,20 +1,36 @@
 package com.example.sourcecompare.domain;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 /**
- * Holds diff text for a file.
+ * Holds the diff of a file, either as rendered unified diff text or as an {@link EditScript} that
+ * is rendered when the result is viewed.
  */
+@JsonInclude(JsonInclude.Include.NON_NULL)
 @Getter
 @Setter
 @NoArgsConstructor
 public class DiffInfo {
     private String diff;
 
+    /**
+     * Position of the stored file row when {@link #diff} is loaded lazily, otherwise {@code null}.
+     */
+    private Integer fileIndex;
+
+    private EditScript editScript;
+
     public DiffInfo(String diff) {
         this.diff = diff;
     }
+
+    public static DiffInfo of(EditScript editScript) {
+        DiffInfo info = new DiffInfo();
+        info.setEditScript(editScript);
+        return info;
+    }
 }
 
@@ -0,0 +1,106 @@
+package com.example.sourcecompare.domain;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * An exploded archive: the regular files below a directory, visited in path order and named
+ * relative to it with {@code /} separators. Symbolic links are not followed.
+ */
+public final class DirectoryArchiveInput extends ArchiveInput {
+    private final Path directory;
+    private final Set<String> included;
+
+    /** Size and modification time of one file when the directory was listed. */
+    public record FileStat(String name, long size, long lastModifiedMillis) {}
+
+    public DirectoryArchiveInput(Path directory) throws IOException {
+        this(directory, null, totalSize(directory, null));
+    }
+
+    private DirectoryArchiveInput(Path directory, Set<String> included, long size) {
+        super(directory.getFileName() + "/", size);
+        this.directory = directory;
+        this.included = included;
+    }
+
+    public Path directory() {
+        return directory;
+    }
+
+    /** The same directory restricted to the files named in {@code entryNames}. */
+    @Override
+    public DirectoryArchiveInput only(Collection<String> entryNames) throws IOException {
+        Set<String> subset = Set.copyOf(entryNames);
+        return new DirectoryArchiveInput(directory, subset, totalSize(directory, subset));
+    }
+
+    /** Lists the files this input visits, in visiting order, without reading them. */
+    public List<FileStat> listFiles() throws IOException {
+        List<FileStat> stats = new ArrayList<>();
+        for (Path file : files(directory, included)) {
+            BasicFileAttributes attributes =
+                    Files.readAttributes(
+                            file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            stats.add(
+                    new FileStat(
+                            entryName(directory, file),
+                            attributes.size(),
+                            attributes.lastModifiedTime().toMillis()));
+        }
+        return stats;
+    }
+
+    /** Opens the file behind an entry name returned by {@link #listFiles()}. */
+    public InputStream openEntry(String entryName) throws IOException {
+        Path file = directory.resolve(entryName).normalize();
+        if (!file.startsWith(directory) || !Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS)) {
+            throw new IOException("No file " + entryName + " in " + directory);
+        }
+        return Files.newInputStream(file);
+    }
+
+    @Override
+    public void forEachEntry(EntryVisitor visitor) throws IOException {
+        for (Path file : files(directory, included)) {
+            try (InputStream content = Files.newInputStream(file)) {
+                visitor.visit(new ArchiveEntry(entryName(directory, file), unclosable(content)));
+            }
+        }
+    }
+
+    private static String entryName(Path directory, Path file) {
+        String separator = file.getFileSystem().getSeparator();
+        return directory.relativize(file).toString().replace(separator, "/");
+    }
+
+    private static List<Path> files(Path directory, Set<String> included) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            // Links could point outside the directory the caller was allowed to read.
+            return paths.filter(path -> Files.isRegularFile(path, LinkOption.NOFOLLOW_LINKS))
+                    .filter(
+                            path ->
+                                    included == null
+                                            || included.contains(entryName(directory, path)))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static long totalSize(Path directory, Set<String> included) throws IOException {
+        long total = 0;
+        for (Path file : files(directory, included)) {
+            total += Files.size(file);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.sourcecompare.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Line-level edit script between two versions of a file. Both sides are stored as indexes into a
+ * table of distinct lines, and every changed range is one {@code (originalPosition, originalLength,
+ * revisedPosition, revisedLength)} quadruple in {@code deltas}. Unified diff text is rendered from
+ * it on demand.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class EditScript {
+    private List<String> lines;
+    private int[] original;
+    private int[] revised;
+    private int[] deltas;
+
+    /** Builds an edit script for the given sides, sharing one table entry per distinct line. */
+    public static EditScript of(
+            List<String> originalLines, List<String> revisedLines, int[] deltas) {
+        List<String> table = new ArrayList<>();
+        Map<String, Integer> tableIndex = new HashMap<>();
+        int[] original = toTableIndexes(originalLines, table, tableIndex);
+        int[] revised = toTableIndexes(revisedLines, table, tableIndex);
+        return new EditScript(table, original, revised, deltas);
+    }
+
+    public List<String> originalLines() {
+        return resolve(original);
+    }
+
+    public List<String> revisedLines() {
+        return resolve(revised);
+    }
+
+    private List<String> resolve(int[] indexes) {
+        if (indexes == null) {
+            return List.of();
+        }
+        List<String> resolved = new ArrayList<>(indexes.length);
+        for (int index : indexes) {
+            resolved.add(lines.get(index));
+        }
+        return resolved;
+    }
+
+    private static int[] toTableIndexes(
+            List<String> lines, List<String> table, Map<String, Integer> tableIndex) {
+        int[] indexes = new int[lines.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] =
+                    tableIndex.computeIfAbsent(
+                            lines.get(i),
+                            line -> {
+                                table.add(line);
+                                return table.size() - 1;
+                            });
+        }
+        return indexes;
+    }
+}
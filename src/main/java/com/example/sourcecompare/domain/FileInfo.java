@@ -1,7 +1,14 @@
 package com.example.sourcecompare.domain;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Objects;
+
 /**
- * Simple container for file metadata used during comparisons.
+ * Simple container for file metadata used during comparisons. Subclasses may load the content
+ * lazily; they report a {@link #knownDigest()} so that equal files are recognised without it.
  */
 public class FileInfo {
     private final String name;
@@ -19,5 +26,32 @@ public class FileInfo {
     public String getContent() {
         return content;
     }
-}
 
+    /** SHA-256 of the content when it is known without reading the content, otherwise null. */
+    public byte[] knownDigest() {
+        return null;
+    }
+
+    /** Compares contents, by digest when either side knows its digest. */
+    public boolean hasSameContent(FileInfo other) {
+        byte[] digest = knownDigest();
+        byte[] otherDigest = other.knownDigest();
+        if (digest == null && otherDigest == null) {
+            return Objects.equals(getContent(), other.getContent());
+        }
+        return Arrays.equals(
+                digest != null ? digest : digestOf(getContent()),
+                otherDigest != null ? otherDigest : digestOf(other.getContent()));
+    }
+
+    /** SHA-256 of the UTF-8 bytes of {@code content}; null digests like the empty string. */
+    public static byte[] digestOf(String content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return digest.digest(
+                    content == null ? new byte[0] : content.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.sourcecompare.domain;
+
+import java.util.List;
+import java.util.Objects;
+
+/** One baseline compared with several candidates, each pair as in a {@link ComparisonRequest}. */
+public record MultiComparisonRequest(
+        ArchiveInput baseline,
+        List<ArchiveInput> candidates,
+        ComparisonMode mode,
+        int contextSize,
+        boolean includeUnchanged) {
+    public MultiComparisonRequest {
+        Objects.requireNonNull(baseline, "baseline");
+        Objects.requireNonNull(mode, "mode");
+        candidates = List.copyOf(candidates);
+        if (candidates.isEmpty()) {
+            throw new IllegalArgumentException("At least one candidate is required");
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.sourcecompare.domain;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
@@ -7,6 +8,7 @@ import lombok.Setter;
 /**
  * Holds information about a renamed file and its diff.
  */
+@JsonInclude(JsonInclude.Include.NON_NULL)
 @Getter
 @Setter
 @NoArgsConstructor
@@ -15,6 +17,13 @@ public class RenameInfo {
     private String to;
     private String diff;
 
+    /**
+     * Position of the stored file row when {@link #diff} is loaded lazily, otherwise {@code null}.
+     */
+    private Integer fileIndex;
+
+    private EditScript editScript;
+
     public RenameInfo(String from, String to, String diff) {
         this.from = from;
         this.to = to;
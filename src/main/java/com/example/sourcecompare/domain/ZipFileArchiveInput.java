@@ -0,0 +1,42 @@
+package com.example.sourcecompare.domain;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Enumeration;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * A ZIP, JAR or WAR file read in place. Entries are located through the central directory and read
+ * with random access, so the file is never copied or streamed as a whole.
+ */
+public final class ZipFileArchiveInput extends ZipStreamArchiveInput {
+    private final Path path;
+
+    public ZipFileArchiveInput(Path path) throws IOException {
+        super(path.getFileName().toString(), Files.size(path), () -> Files.newInputStream(path));
+        this.path = path;
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    @Override
+    public void forEachEntry(EntryVisitor visitor) throws IOException {
+        try (ZipFile zipFile = new ZipFile(path.toFile())) {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                try (InputStream content = zipFile.getInputStream(entry)) {
+                    visitor.visit(new ArchiveEntry(entry.getName(), unclosable(content)));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.sourcecompare.domain;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Objects;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * An archive read from a single stream of ZIP bytes, such as an upload. Its fingerprint hashes
+ * those bytes rather than the entries.
+ */
+public class ZipStreamArchiveInput extends ArchiveInput {
+    private final InputStreamSupplier inputStreamSupplier;
+    private final String uploadDigest;
+
+    public ZipStreamArchiveInput(String filename, InputStreamSupplier inputStreamSupplier) {
+        this(filename, -1, inputStreamSupplier);
+    }
+
+    public ZipStreamArchiveInput(
+            String filename, long size, InputStreamSupplier inputStreamSupplier) {
+        this(filename, size, null, inputStreamSupplier);
+    }
+
+    /**
+     * An archive whose bytes were hashed with {@link #fingerprintDigest()} while they were copied,
+     * so that neither {@link #uploadDigest()} nor {@link #fingerprint()} reads them again.
+     */
+    public ZipStreamArchiveInput(
+            String filename,
+            long size,
+            String uploadDigest,
+            InputStreamSupplier inputStreamSupplier) {
+        super(filename, size);
+        this.uploadDigest = uploadDigest;
+        this.inputStreamSupplier =
+                Objects.requireNonNull(inputStreamSupplier, "inputStreamSupplier");
+    }
+
+    /** The raw ZIP bytes of this archive. */
+    public InputStream openStream() throws IOException {
+        return inputStreamSupplier.openStream();
+    }
+
+    @Override
+    public void forEachEntry(EntryVisitor visitor) throws IOException {
+        try (InputStream inputStream = openStream();
+                ZipInputStream zis = new ZipInputStream(inputStream)) {
+            InputStream content = unclosable(zis);
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                if (!entry.isDirectory()) {
+                    visitor.visit(new ArchiveEntry(entry.getName(), content));
+                }
+            }
+        }
+    }
+
+    /** Hashes the raw bytes, or returns the digest taken while they were uploaded. */
+    @Override
+    public String fingerprint() throws IOException {
+        if (uploadDigest != null) {
+            return uploadDigest;
+        }
+        MessageDigest digest = fingerprintDigest();
+        try (InputStream in = new DigestInputStream(openStream(), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    @Override
+    public String uploadDigest() {
+        return uploadDigest;
+    }
+
+    /** A digest that, fed the raw bytes of an archive, yields its {@link #fingerprint()}. */
+    public static MessageDigest fingerprintDigest() {
+        MessageDigest digest = sha256();
+        digest.update("raw:".getBytes(StandardCharsets.UTF_8));
+        return digest;
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.sourcecompare.infrastructure;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Predicts how long a class file takes to decompile, so that expensive classes can start first. A
+ * class decompiled recently is predicted from its smoothed decompile time; any other class from its
+ * size plus a fixed weight per method, times the time per weighted byte seen so far.
+ *
+ * <p>Each decompile reports its actual time back, which refines both predictions. The ratio of
+ * actual to predicted time is published as {@code decompile.cost.ratio}, and the {@code
+ * decompile.cost} logger writes one line per class at debug level for offline tuning.
+ */
+@Component
+public class DecompileCostModel {
+    private static final Logger costLog = LogManager.getLogger("decompile.cost");
+    private static final int METHOD_WEIGHT_BYTES = 512;
+    private static final double INITIAL_NANOS_PER_BYTE = 2_000;
+    private static final double SMOOTHING = 0.2;
+
+    /** Predicted cost of one class; {@code nanos} doubles as its scheduling priority. */
+    public record Prediction(String className, int bytes, int methods, long nanos) {}
+
+    private final Cache<String, Long> history;
+    private final DistributionSummary ratio;
+    private final Timer actual;
+    private double nanosPerWeightedByte = INITIAL_NANOS_PER_BYTE;
+
+    public DecompileCostModel(
+            MeterRegistry meterRegistry,
+            @Value("${decompile.cost.history-size:100000}") long historySize) {
+        this.history = Caffeine.newBuilder().maximumSize(Math.max(historySize, 0)).build();
+        this.ratio =
+                DistributionSummary.builder("decompile.cost.ratio")
+                        .description("Actual decompile time divided by the predicted time")
+                        .publishPercentiles(0.5, 0.9)
+                        .register(meterRegistry);
+        this.actual =
+                Timer.builder("decompile.cost.actual")
+                        .description("Time to decompile one class")
+                        .register(meterRegistry);
+    }
+
+    public Prediction predict(String className, byte[] classBytes) {
+        int methods = countMethods(classBytes);
+        Long known = history.getIfPresent(className);
+        long nanos =
+                known != null
+                        ? known
+                        : Math.round(weight(classBytes.length, methods) * nanosPerWeightedByte());
+        return new Prediction(className, classBytes.length, methods, nanos);
+    }
+
+    public void record(Prediction prediction, long actualNanos) {
+        history.asMap()
+                .merge(
+                        prediction.className(),
+                        actualNanos,
+                        (previous, latest) ->
+                                Math.round(previous + SMOOTHING * (latest - previous)));
+        double observed = (double) actualNanos / weight(prediction.bytes(), prediction.methods());
+        synchronized (this) {
+            nanosPerWeightedByte += SMOOTHING * (observed - nanosPerWeightedByte);
+        }
+        ratio.record((double) actualNanos / Math.max(prediction.nanos(), 1));
+        actual.record(actualNanos, TimeUnit.NANOSECONDS);
+        costLog.debug(
+                "class={} bytes={} methods={} predictedNanos={} actualNanos={}",
+                prediction.className(),
+                prediction.bytes(),
+                prediction.methods(),
+                prediction.nanos(),
+                actualNanos);
+    }
+
+    private synchronized double nanosPerWeightedByte() {
+        return nanosPerWeightedByte;
+    }
+
+    private static long weight(int bytes, int methods) {
+        return Math.max(1, bytes + (long) methods * METHOD_WEIGHT_BYTES);
+    }
+
+    // Counts declared methods without reading their code; unreadable classes count none.
+    private static int countMethods(byte[] classBytes) {
+        int[] methods = {0};
+        try {
+            new ClassReader(classBytes)
+                    .accept(
+                            new ClassVisitor(Opcodes.ASM9) {
+                                @Override
+                                public MethodVisitor visitMethod(
+                                        int access,
+                                        String name,
+                                        String descriptor,
+                                        String signature,
+                                        String[] exceptions) {
+                                    methods[0]++;
+                                    return null;
+                                }
+                            },
+                            ClassReader.SKIP_CODE
+                                    | ClassReader.SKIP_DEBUG
+                                    | ClassReader.SKIP_FRAMES);
+        } catch (RuntimeException e) {
+            return 0;
+        }
+        return methods[0];
+    }
+}
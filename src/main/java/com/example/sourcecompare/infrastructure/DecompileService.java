@@ -1,106 +1,97 @@
 package com.example.sourcecompare.infrastructure;
 
 import com.example.sourcecompare.application.ArchiveDecompiler;
+import com.example.sourcecompare.application.ComparisonContext;
+import com.example.sourcecompare.application.ComparisonProgressListener;
+import com.example.sourcecompare.application.ComparisonScheduler;
+import com.example.sourcecompare.application.WorkBatch;
 import com.example.sourcecompare.domain.ArchiveInput;
 import com.example.sourcecompare.domain.FileInfo;
 import org.jetbrains.java.decompiler.main.decompiler.ConsoleDecompiler;
 import org.jetbrains.java.decompiler.main.extern.IFernflowerLogger;
 import org.jetbrains.java.decompiler.main.extern.IFernflowerPreferences;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
-import java.util.concurrent.*;
 import java.util.stream.Stream;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
 
 @Service
 public class DecompileService implements ArchiveDecompiler {
-    private final int decompileThreadPoolSize;
-    private final ExecutorService executor;
-
-    public DecompileService(@Value("${decompile.thread-pool-size:0}") int decompileThreadPoolSize) {
-        int defaultPoolSize = Runtime.getRuntime().availableProcessors();
-        int configuredPoolSize = decompileThreadPoolSize > 0 ? decompileThreadPoolSize : defaultPoolSize;
-        this.decompileThreadPoolSize = Math.max(1, configuredPoolSize);
-        this.executor = Executors.newFixedThreadPool(decompileThreadPoolSize);
+    private final ComparisonScheduler scheduler;
+    private final DecompileCostModel costModel;
+
+    public DecompileService(ComparisonScheduler scheduler, DecompileCostModel costModel) {
+        this.scheduler = scheduler;
+        this.costModel = costModel;
     }
 
     @Override
-    public Map<String, FileInfo> decompileClasses(ArchiveInput archive) throws IOException {
-        CompletionService<Map.Entry<String, FileInfo>> completionService =
-                new ExecutorCompletionService<>(executor);
-
+    public Map<String, FileInfo> decompileClasses(
+            ArchiveInput archive, ComparisonContext context, String side) throws IOException {
+        ComparisonProgressListener progress = context.progress();
         List<String> entryOrder = new ArrayList<>();
         Map<String, FileInfo> unorderedResults = new HashMap<>();
-        int submittedTasks = 0;
-
-        try (InputStream inputStream = archive.openStream();
-                ZipInputStream zis = new ZipInputStream(inputStream)) {
-            ZipEntry entry;
-            while ((entry = zis.getNextEntry()) != null) {
-                if (entry.isDirectory()) {
-                    continue;
-                }
-
-                String entryName = entry.getName();
-                entryOrder.add(entryName);
-
-                String lowerCaseName = entryName.toLowerCase(Locale.ROOT);
-                if (lowerCaseName.endsWith(".class")) {
-                    byte[] classBytes = zis.readAllBytes();
-                    zis.closeEntry();
-                    completionService.submit(
-                            () -> {
-                                try {
-                                    FileInfo info = new FileInfo(entryName, decompile(classBytes));
-                                    return Map.entry(entryName, info);
-                                } catch (IOException e) {
-                                    throw new UncheckedIOException(e);
-                                }
-                            });
-                    submittedTasks++;
-                } else if (isHumanReadable(lowerCaseName)) {
-                    byte[] entryBytes = zis.readAllBytes();
-                    zis.closeEntry();
-                    unorderedResults.put(
-                            entryName, new FileInfo(entryName, new String(entryBytes, StandardCharsets.UTF_8)));
-                } else {
-//                    drainEntry(zis);
-//                    zis.closeEntry();
-                    unorderedResults.put(
-                            entryName,
-                            new FileInfo(entryName, ArchiveDecompiler.CONTENT_NOT_READ));
-                }
-            }
-        }
 
-        for (int i = 0; i < submittedTasks; i++) {
-            try {
-                Future<Map.Entry<String, FileInfo>> future = completionService.take();
-                Map.Entry<String, FileInfo> entry = future.get();
-                unorderedResults.put(entry.getKey(), entry.getValue());
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                throw new IOException("Decompilation interrupted", e);
-            } catch (ExecutionException e) {
-                Throwable cause = e.getCause();
-                if (cause instanceof UncheckedIOException) {
-                    throw ((UncheckedIOException) cause).getCause();
-                }
-                if (cause instanceof RuntimeException) {
-                    throw (RuntimeException) cause;
-                }
-                throw new IOException("Failed to decompile class", cause);
-            }
+        try (WorkBatch<FileInfo> batch =
+                scheduler.batch(ComparisonScheduler.Pool.DECOMPILE, context)) {
+            archive.forEachEntry(
+                    entry -> {
+                        context.throwIfCancelled();
+                        String entryName = entry.name();
+                        entryOrder.add(entryName);
+                        progress.onProgress(
+                                ComparisonProgressListener.Stage.READ_ENTRIES,
+                                side,
+                                entryOrder.size(),
+                                -1);
+
+                        String lowerCaseName = entryName.toLowerCase(Locale.ROOT);
+                        if (lowerCaseName.endsWith(".class")) {
+                            byte[] classBytes = entry.readAllBytes();
+                            // Queued classes start most expensive first, so giant classes near
+                            // the end of the archive do not finish last.
+                            DecompileCostModel.Prediction prediction =
+                                    costModel.predict(entryName, classBytes);
+                            batch.submit(
+                                    prediction.nanos(),
+                                    () -> {
+                                        long start = System.nanoTime();
+                                        FileInfo info =
+                                                new FileInfo(entryName, decompile(classBytes));
+                                        costModel.record(prediction, System.nanoTime() - start);
+                                        return info;
+                                    });
+                        } else if (isHumanReadable(lowerCaseName)) {
+                            unorderedResults.put(
+                                    entryName,
+                                    new FileInfo(
+                                            entryName,
+                                            new String(
+                                                    entry.readAllBytes(), StandardCharsets.UTF_8)));
+                        } else {
+                            unorderedResults.put(
+                                    entryName,
+                                    new FileInfo(entryName, ArchiveDecompiler.CONTENT_NOT_READ));
+                        }
+                    });
+            progress.onProgress(
+                    ComparisonProgressListener.Stage.READ_ENTRIES,
+                    side,
+                    entryOrder.size(),
+                    entryOrder.size());
+
+            int total = batch.size();
+            batch.awaitAll(
+                    (info, completed) -> {
+                        unorderedResults.put(info.getName(), info);
+                        progress.onProgress(
+                                ComparisonProgressListener.Stage.DECOMPILE, side, completed, total);
+                    });
         }
 
         Map<String, FileInfo> orderedResult = new LinkedHashMap<>();
@@ -239,12 +230,4 @@ public class DecompileService implements ArchiveDecompiler {
         String extension = fileName.substring(dotIndex).toLowerCase();
         return HUMAN_READABLE_SUFFIXES.contains(extension);
     }
-
-
-    private static void drainEntry(ZipInputStream zis) throws IOException {
-        byte[] buffer = new byte[8192];
-        while (zis.read(buffer) != -1) {
-            // discard
-        }
-    }
 }
@@ -11,12 +11,9 @@ import org.objectweb.asm.*;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.*;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
 
 @Service
 public class GoogleFormatService implements JavaSourceNormalizer {
@@ -71,50 +68,47 @@ public class GoogleFormatService implements JavaSourceNormalizer {
 
     public Map<String, FileInfo> classStructures(ArchiveInput archive) throws IOException {
         Map<String, FileInfo> result = new HashMap<>();
-        try (InputStream inputStream = archive.openStream();
-                ZipInputStream zis = new ZipInputStream(inputStream)) {
-            ZipEntry entry;
-            while ((entry = zis.getNextEntry()) != null) {
-                if (!entry.isDirectory() && entry.getName().endsWith(".class")) {
-                    byte[] bytes = zis.readAllBytes();
-                    ClassReader reader = new ClassReader(bytes);
-                    List<String> lines = new ArrayList<>();
-                    reader.accept(
-                            new ClassVisitor(Opcodes.ASM9) {
-                                @Override
-                                public FieldVisitor visitField(
-                                        int access,
-                                        String name,
-                                        String descriptor,
-                                        String signature,
-                                        Object value) {
-                                    lines.add("FIELD " + name + " " + descriptor);
-                                    return super.visitField(access, name, descriptor, signature, value);
-                                }
+        archive.forEachEntry(
+                entry -> {
+                    if (entry.name().endsWith(".class")) {
+                        ClassReader reader = new ClassReader(entry.readAllBytes());
+                        List<String> lines = new ArrayList<>();
+                        reader.accept(
+                                new ClassVisitor(Opcodes.ASM9) {
+                                    @Override
+                                    public FieldVisitor visitField(
+                                            int access,
+                                            String name,
+                                            String descriptor,
+                                            String signature,
+                                            Object value) {
+                                        lines.add("FIELD " + name + " " + descriptor);
+                                        return super.visitField(
+                                                access, name, descriptor, signature, value);
+                                    }
 
-                                @Override
-                                public MethodVisitor visitMethod(
-                                        int access,
-                                        String name,
-                                        String descriptor,
-                                        String signature,
-                                        String[] exceptions) {
-                                    lines.add("METHOD " + name + descriptor);
-                                    return super.visitMethod(access, name, descriptor, signature, exceptions);
-                                }
-                            },
-                            0);
-                    Collections.sort(lines);
-                    String struct =
-                            "CLASS "
-                                    + reader.getClassName()
-                                    + System.lineSeparator()
-                                    + String.join(System.lineSeparator(), lines);
-                    String name = entry.getName();
-                    result.put(name, new FileInfo(name, struct));
-                }
-            }
-        }
+                                    @Override
+                                    public MethodVisitor visitMethod(
+                                            int access,
+                                            String name,
+                                            String descriptor,
+                                            String signature,
+                                            String[] exceptions) {
+                                        lines.add("METHOD " + name + descriptor);
+                                        return super.visitMethod(
+                                                access, name, descriptor, signature, exceptions);
+                                    }
+                                },
+                                0);
+                        Collections.sort(lines);
+                        String struct =
+                                "CLASS "
+                                        + reader.getClassName()
+                                        + System.lineSeparator()
+                                        + String.join(System.lineSeparator(), lines);
+                        result.put(entry.name(), new FileInfo(entry.name(), struct));
+                    }
+                });
         return result;
     }
 }
@@ -1,8 +1,14 @@
 package com.example.sourcecompare.infrastructure;
 
 import com.example.sourcecompare.application.DiffRenderer;
+import com.example.sourcecompare.domain.EditScript;
 import com.github.difflib.DiffUtils;
 import com.github.difflib.UnifiedDiffUtils;
+import com.github.difflib.patch.AbstractDelta;
+import com.github.difflib.patch.ChangeDelta;
+import com.github.difflib.patch.Chunk;
+import com.github.difflib.patch.DeleteDelta;
+import com.github.difflib.patch.InsertDelta;
 import com.github.difflib.patch.Patch;
 import org.springframework.stereotype.Component;
 
@@ -20,9 +26,45 @@ public class UnifiedDiffRenderer implements DiffRenderer {
             String revised,
             int contextSize,
             String unreadPlaceholder) {
+        return render(fileName, diff(original, revised), contextSize, unreadPlaceholder);
+    }
+
+    @Override
+    public EditScript diff(String original, String revised) {
         List<String> originalLines = Arrays.asList(original.split("\\R"));
         List<String> revisedLines = Arrays.asList(revised.split("\\R"));
         Patch<String> patch = DiffUtils.diff(originalLines, revisedLines);
+
+        List<AbstractDelta<String>> deltas = patch.getDeltas();
+        int[] ranges = new int[deltas.size() * 4];
+        int offset = 0;
+        for (AbstractDelta<String> delta : deltas) {
+            ranges[offset++] = delta.getSource().getPosition();
+            ranges[offset++] = delta.getSource().size();
+            ranges[offset++] = delta.getTarget().getPosition();
+            ranges[offset++] = delta.getTarget().size();
+        }
+        return EditScript.of(originalLines, revisedLines, ranges);
+    }
+
+    @Override
+    public String render(
+            String fileName, EditScript editScript, int contextSize, String unreadPlaceholder) {
+        List<String> originalLines = editScript.originalLines();
+        List<String> revisedLines = editScript.revisedLines();
+        Patch<String> patch = new Patch<>();
+        int[] ranges = editScript.getDeltas() != null ? editScript.getDeltas() : new int[0];
+        for (int i = 0; i + 3 < ranges.length; i += 4) {
+            Chunk<String> source =
+                    new Chunk<>(
+                            ranges[i], originalLines.subList(ranges[i], ranges[i] + ranges[i + 1]));
+            Chunk<String> target =
+                    new Chunk<>(
+                            ranges[i + 2],
+                            revisedLines.subList(ranges[i + 2], ranges[i + 2] + ranges[i + 3]));
+            patch.addDelta(toDelta(source, target));
+        }
+
         int safeContextSize = Math.max(0, contextSize);
         List<String> unified =
                 UnifiedDiffUtils.generateUnifiedDiff(
@@ -32,6 +74,7 @@ public class UnifiedDiffRenderer implements DiffRenderer {
                         patch,
                         safeContextSize);
         if (unified.isEmpty()) {
+            String original = String.join("\n", originalLines);
             String content =
                     original.equals(unreadPlaceholder)
                             ? original
@@ -45,4 +88,14 @@ public class UnifiedDiffRenderer implements DiffRenderer {
         }
         return String.join(System.lineSeparator(), unified) + System.lineSeparator();
     }
+
+    private static AbstractDelta<String> toDelta(Chunk<String> source, Chunk<String> target) {
+        if (source.size() == 0) {
+            return new InsertDelta<>(source, target);
+        }
+        if (target.size() == 0) {
+            return new DeleteDelta<>(source, target);
+        }
+        return new ChangeDelta<>(source, target);
+    }
 }
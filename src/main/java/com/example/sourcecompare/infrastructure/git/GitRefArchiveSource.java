@@ -0,0 +1,82 @@
+package com.example.sourcecompare.infrastructure.git;
+
+import com.example.sourcecompare.application.ServerPathArchiveSource;
+import com.example.sourcecompare.domain.ArchiveInput;
+import org.eclipse.jgit.errors.AmbiguousObjectException;
+import org.eclipse.jgit.errors.IncorrectObjectTypeException;
+import org.eclipse.jgit.errors.RevisionSyntaxException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+
+/**
+ * Opens a commit of a Git repository below the server path roots as an archive, so that tags of a
+ * local clone are compared without exporting them first. The repository may be a working clone or a
+ * bare repository, and the ref anything Git resolves to a commit: a tag, a branch or a commit ID.
+ */
+@Component
+public class GitRefArchiveSource {
+    private final ServerPathArchiveSource serverPaths;
+
+    public GitRefArchiveSource(ServerPathArchiveSource serverPaths) {
+        this.serverPaths = serverPaths;
+    }
+
+    /**
+     * @throws ResponseStatusException 403 as for {@link ServerPathArchiveSource#resolve}, 400 when
+     *     the path is not a repository or the ref does not name a commit
+     */
+    public ArchiveInput open(String repositoryPath, String ref) throws IOException {
+        Path directory = serverPaths.resolve(repositoryPath);
+        String revision = ref.trim();
+        try (Repository repository = openRepository(directory)) {
+            ObjectId commit = resolveCommit(repository, revision);
+            return GitTreeArchiveInput.list(
+                    repository, commit, directory.getFileName() + "@" + revision);
+        }
+    }
+
+    private static Repository openRepository(Path directory) throws IOException {
+        // A .git file could point anywhere, so only a .git directory inside the root is followed.
+        Path dotGit = directory.resolve(Constants.DOT_GIT);
+        Path gitDirectory =
+                Files.isDirectory(dotGit, LinkOption.NOFOLLOW_LINKS) ? dotGit : directory;
+        Repository repository =
+                new FileRepositoryBuilder()
+                        .setGitDir(gitDirectory.toFile())
+                        .setMustExist(true)
+                        .build();
+        if (!repository.getObjectDatabase().exists()) {
+            repository.close();
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST, "Not a Git repository: " + directory.getFileName());
+        }
+        return repository;
+    }
+
+    private static ObjectId resolveCommit(Repository repository, String revision)
+            throws IOException {
+        ObjectId commit;
+        try {
+            commit = repository.resolve(revision + "^{commit}");
+        } catch (RevisionSyntaxException
+                | AmbiguousObjectException
+                | IncorrectObjectTypeException e) {
+            commit = null;
+        }
+        if (commit == null) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST, "Git ref does not name a commit: " + revision);
+        }
+        return commit;
+    }
+}
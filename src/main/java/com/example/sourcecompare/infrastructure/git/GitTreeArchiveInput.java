@@ -0,0 +1,118 @@
+package com.example.sourcecompare.infrastructure.git;
+
+import com.example.sourcecompare.domain.ArchiveEntry;
+import com.example.sourcecompare.domain.ArchiveInput;
+import com.example.sourcecompare.domain.ContentAddressedArchive;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.treewalk.TreeWalk;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The files of one commit, read as blobs straight from a repository's object database instead of
+ * from an exported archive. The tree is listed once when the input is created; each visit reopens
+ * the repository and reads the listed blobs in path order. Symbolic links and submodules are
+ * skipped.
+ *
+ * <p>Blob IDs are known before any content is read, so {@link #contentIds()} lets a comparison drop
+ * paths that are identical on both sides up front.
+ */
+public final class GitTreeArchiveInput extends ArchiveInput implements ContentAddressedArchive {
+    private static final String ID_SCHEME = "git-blob:";
+
+    private record Blob(ObjectId id, long size) {}
+
+    private final Path gitDirectory;
+    private final Map<String, Blob> blobs;
+
+    private GitTreeArchiveInput(String name, Path gitDirectory, Map<String, Blob> blobs) {
+        super(name, blobs.values().stream().mapToLong(Blob::size).sum());
+        this.gitDirectory = gitDirectory;
+        this.blobs = blobs;
+    }
+
+    /** Lists the files of {@code commit}; {@code name} labels the input, as in {@code app@v1}. */
+    static GitTreeArchiveInput list(Repository repository, ObjectId commit, String name)
+            throws IOException {
+        Map<String, Blob> blobs = new LinkedHashMap<>();
+        try (RevWalk revWalk = new RevWalk(repository);
+                TreeWalk treeWalk = new TreeWalk(repository)) {
+            treeWalk.addTree(revWalk.parseCommit(commit).getTree());
+            treeWalk.setRecursive(true);
+            ObjectReader reader = treeWalk.getObjectReader();
+            while (treeWalk.next()) {
+                if ((treeWalk.getRawMode(0) & FileMode.TYPE_MASK) != FileMode.TYPE_FILE) {
+                    continue;
+                }
+                ObjectId id = treeWalk.getObjectId(0);
+                blobs.put(
+                        treeWalk.getPathString(),
+                        new Blob(id, reader.getObjectSize(id, Constants.OBJ_BLOB)));
+            }
+        }
+        return new GitTreeArchiveInput(
+                name, repository.getDirectory().toPath(), Collections.unmodifiableMap(blobs));
+    }
+
+    @Override
+    public void forEachEntry(EntryVisitor visitor) throws IOException {
+        try (Repository repository =
+                        new FileRepositoryBuilder()
+                                .setGitDir(gitDirectory.toFile())
+                                .setMustExist(true)
+                                .build();
+                ObjectReader reader = repository.newObjectReader()) {
+            for (Map.Entry<String, Blob> blob : blobs.entrySet()) {
+                try (InputStream content =
+                        reader.open(blob.getValue().id(), Constants.OBJ_BLOB).openStream()) {
+                    visitor.visit(new ArchiveEntry(blob.getKey(), unclosable(content)));
+                }
+            }
+        }
+    }
+
+    @Override
+    public Map<String, String> contentIds() {
+        Map<String, String> ids = new LinkedHashMap<>();
+        blobs.forEach((path, blob) -> ids.put(path, ID_SCHEME + blob.id().name()));
+        return ids;
+    }
+
+    /** Hashes paths and blob IDs only, so no content is read. */
+    @Override
+    public String fingerprint() {
+        MessageDigest digest = sha256();
+        digest.update("git:".getBytes(StandardCharsets.UTF_8));
+        blobs.forEach(
+                (path, blob) -> {
+                    digest.update(path.getBytes(StandardCharsets.UTF_8));
+                    digest.update((byte) 0);
+                    digest.update(blob.id().name().getBytes(StandardCharsets.UTF_8));
+                    digest.update((byte) 0);
+                });
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    @Override
+    public ArchiveInput without(Set<String> entryNames) {
+        Map<String, Blob> remaining = new LinkedHashMap<>(blobs);
+        remaining.keySet().removeAll(entryNames);
+        return new GitTreeArchiveInput(
+                filename(), gitDirectory, Collections.unmodifiableMap(remaining));
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.sourcecompare.infrastructure.persistence;
+
+import com.example.sourcecompare.domain.ComparisonResult;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Append-only segment files on local disk holding comparison results moved out of the database.
+ * Each record is a header of payload length and CRC32 followed by the result as deflated JSON; a
+ * record is addressed by its segment file name, offset and total length. A segment is closed once
+ * it reaches the configured size and the next record starts a new one.
+ */
+@Component
+@ConditionalOnJpaResultStore
+public class ColdSegmentStore {
+    private static final int HEADER_BYTES = Integer.BYTES + Long.BYTES;
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d{6})\\.seg");
+
+    /** Location of one record. */
+    public record Pointer(String segment, long offset, long length) {}
+
+    private final Path directory;
+    private final long maxSegmentBytes;
+    private final ObjectMapper objectMapper;
+    private int currentSegment = -1;
+
+    public ColdSegmentStore(
+            @Value("${comparison.cold-storage.directory:data/cold-segments}") Path directory,
+            @Value("${comparison.cold-storage.max-segment-bytes:268435456}") long maxSegmentBytes,
+            ObjectMapper objectMapper) {
+        this.directory = directory.toAbsolutePath().normalize();
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.objectMapper = objectMapper;
+    }
+
+    /** Appends {@code result} and forces it to disk before returning its location. */
+    public synchronized Pointer append(ComparisonResult result) {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        try (OutputStream out = new DeflaterOutputStream(payload)) {
+            objectMapper.writeValue(out, result);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] bytes = payload.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+
+        try {
+            Path segment = writableSegment();
+            try (FileChannel channel =
+                    FileChannel.open(
+                            segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                long offset = channel.size();
+                ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + bytes.length);
+                record.putInt(bytes.length).putLong(crc.getValue()).put(bytes).flip();
+                while (record.hasRemaining()) {
+                    channel.write(record, offset + record.position());
+                }
+                channel.force(true);
+                return new Pointer(segment.getFileName().toString(), offset, record.limit());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public ComparisonResult read(Pointer pointer) {
+        Path segment = resolve(pointer.segment());
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            ByteBuffer record = ByteBuffer.allocate(Math.toIntExact(pointer.length()));
+            while (record.hasRemaining()) {
+                if (channel.read(record, pointer.offset() + record.position()) < 0) {
+                    throw new IOException("Truncated record in " + pointer.segment());
+                }
+            }
+            record.flip();
+            int length = record.getInt();
+            long expectedCrc = record.getLong();
+            if (length != record.remaining()) {
+                throw new IOException("Record length mismatch in " + pointer.segment());
+            }
+            byte[] bytes = new byte[length];
+            record.get(bytes);
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            if (crc.getValue() != expectedCrc) {
+                throw new IOException("Checksum mismatch in " + pointer.segment());
+            }
+            try (InputStream in = new InflaterInputStream(new ByteArrayInputStream(bytes))) {
+                return objectMapper.readValue(in, ComparisonResult.class);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Path writableSegment() throws IOException {
+        Files.createDirectories(directory);
+        if (currentSegment < 0) {
+            currentSegment = Math.max(lastSegmentNumber(), 0);
+        }
+        Path segment = directory.resolve(segmentName(currentSegment));
+        if (Files.exists(segment) && Files.size(segment) >= maxSegmentBytes) {
+            currentSegment++;
+            segment = directory.resolve(segmentName(currentSegment));
+        }
+        return segment;
+    }
+
+    private int lastSegmentNumber() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> SEGMENT_NAME.matcher(path.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .mapToInt(matcher -> Integer.parseInt(matcher.group(1)))
+                    .max()
+                    .orElse(-1);
+        }
+    }
+
+    private Path resolve(String segment) {
+        if (segment == null || !SEGMENT_NAME.matcher(segment).matches()) {
+            throw new IllegalArgumentException("Invalid cold storage segment " + segment);
+        }
+        return directory.resolve(segment);
+    }
+
+    private static String segmentName(int number) {
+        return String.format("segment-%06d.seg", number);
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.sourcecompare.infrastructure.persistence;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves the payload of comparisons older than the configured age out of the database into cold
+ * storage segment files, keeping only the summary row and a pointer. Each run handles at most one
+ * batch and reports the bytes it reclaimed and how long it took, in the log and as {@code
+ * comparison.cold_storage.*} metrics.
+ */
+@Component
+@ConditionalOnJpaResultStore
+public class ComparisonColdStorageJob {
+    private static final Logger log = LogManager.getLogger(ComparisonColdStorageJob.class);
+
+    private final JpaComparisonResultStore resultStore;
+    private final boolean enabled;
+    private final Duration minAge;
+    private final int batchSize;
+    private final Counter movedCounter;
+    private final Counter reclaimedBytesCounter;
+    private final Timer runTimer;
+
+    public ComparisonColdStorageJob(
+            JpaComparisonResultStore resultStore,
+            MeterRegistry meterRegistry,
+            @Value("${comparison.cold-storage.enabled:false}") boolean enabled,
+            @Value("${comparison.cold-storage.min-age-days:180}") int minAgeDays,
+            @Value("${comparison.cold-storage.batch-size:200}") int batchSize) {
+        this.resultStore = resultStore;
+        this.enabled = enabled;
+        this.minAge = Duration.ofDays(Math.max(minAgeDays, 0));
+        this.batchSize = Math.max(batchSize, 1);
+        this.movedCounter = meterRegistry.counter("comparison.cold_storage.moved");
+        this.reclaimedBytesCounter =
+                Counter.builder("comparison.cold_storage.reclaimed")
+                        .baseUnit("bytes")
+                        .description("Payload bytes removed from the database by cold storage runs")
+                        .register(meterRegistry);
+        this.runTimer = meterRegistry.timer("comparison.cold_storage.run");
+    }
+
+    @Scheduled(cron = "${comparison.cold-storage.cron:0 30 2 * * *}")
+    public void scheduledRun() {
+        if (enabled) {
+            run();
+        }
+    }
+
+    public CompactionReport run() {
+        long start = System.nanoTime();
+        List<Long> ids =
+                resultStore.findComparisonsForColdStorage(
+                        LocalDateTime.now().minus(minAge), batchSize);
+        int moved = 0;
+        int failed = 0;
+        long reclaimedBytes = 0;
+        for (long id : ids) {
+            try {
+                reclaimedBytes += resultStore.moveToColdStorage(id);
+                moved++;
+            } catch (RuntimeException ex) {
+                failed++;
+                log.warn("Could not move comparison {} to cold storage", id, ex);
+            }
+        }
+        if (moved > 0) {
+            reclaimedBytes += resultStore.purgeUnreferencedContent();
+        }
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+        movedCounter.increment(moved);
+        reclaimedBytesCounter.increment(reclaimedBytes);
+        runTimer.record(elapsed.toNanos(), TimeUnit.NANOSECONDS);
+        CompactionReport report = new CompactionReport(moved, failed, reclaimedBytes, elapsed);
+        log.info(
+                "Cold storage run moved {} comparisons ({} failed), reclaimed {} bytes in {} ms",
+                moved,
+                failed,
+                reclaimedBytes,
+                elapsed.toMillis());
+        return report;
+    }
+
+    public record CompactionReport(int moved, int failed, long reclaimedBytes, Duration elapsed) {}
+}
@@ -0,0 +1,314 @@
+package com.example.sourcecompare.infrastructure.persistence;
+
+import com.example.sourcecompare.application.ComparisonResultStore.StoredFileDiff;
+import com.example.sourcecompare.domain.ComparisonResult;
+import com.example.sourcecompare.domain.DiffInfo;
+import com.example.sourcecompare.domain.EditScript;
+import com.example.sourcecompare.domain.RenameInfo;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Stores comparison results as one row per file in {@code COMPARE_RESULT_FILES}, each diff deflated
+ * on its own so that neither saving nor loading materializes the whole result as text. Rows hold
+ * unified diff text ({@code DIFF_ENCODING = 'U'} or {@code NULL}), a binary edit script ({@code
+ * 'E'}), or only the edit ranges with both sides kept in the {@link ContentBlobStore} ({@code
+ * 'R'}), which is what new rows use.
+ */
+@Repository
+@ConditionalOnJpaResultStore
+public class ComparisonFileStore {
+    private static final int BATCH_SIZE = 200;
+
+    private static final String INSERT_SQL =
+            "INSERT INTO COMPARE_RESULT_FILES"
+                    + " (RESULT_ID, FILE_INDEX, CATEGORY, PATH, FROM_PATH, DIFF_ENCODING,"
+                    + " DIFF_DATA, ORIGINAL_HASH, REVISED_HASH)"
+                    + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String SELECT_INDEX_SQL =
+            "SELECT FILE_INDEX, CATEGORY, PATH, FROM_PATH FROM COMPARE_RESULT_FILES"
+                    + " WHERE RESULT_ID = ? ORDER BY FILE_INDEX";
+    private static final String SELECT_DIFF_SQL =
+            "SELECT PATH, DIFF_ENCODING, DIFF_DATA, ORIGINAL_HASH, REVISED_HASH"
+                    + " FROM COMPARE_RESULT_FILES WHERE RESULT_ID = ? AND FILE_INDEX = ?";
+    private static final String SELECT_REFERENCES_SQL =
+            "SELECT ORIGINAL_HASH, REVISED_HASH FROM COMPARE_RESULT_FILES"
+                    + " WHERE RESULT_ID = ? AND DIFF_ENCODING = 'R'";
+    private static final String SELECT_SIZE_SQL =
+            "SELECT NVL(SUM(DBMS_LOB.GETLENGTH(DIFF_DATA)), 0) FROM COMPARE_RESULT_FILES"
+                    + " WHERE RESULT_ID = ?";
+    private static final String DELETE_SQL = "DELETE FROM COMPARE_RESULT_FILES WHERE RESULT_ID = ?";
+    private static final String ENCODING_UNIFIED = "U";
+    private static final String ENCODING_EDIT_SCRIPT = "E";
+    private static final String ENCODING_BLOB_REFERENCES = "R";
+
+    private enum FileCategory {
+        ADDED,
+        DELETED,
+        MODIFIED,
+        RENAMED,
+        UNCHANGED
+    }
+
+    private record FileRow(
+            int fileIndex,
+            FileCategory category,
+            String path,
+            String fromPath,
+            String encoding,
+            byte[] diffData,
+            String originalHash,
+            String revisedHash) {}
+
+    private record BlobReferenceRow(
+            String path, int[] deltas, String originalHash, String revisedHash) {}
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ContentBlobStore contentBlobStore;
+
+    public ComparisonFileStore(JdbcTemplate jdbcTemplate, ContentBlobStore contentBlobStore) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.contentBlobStore = contentBlobStore;
+    }
+
+    public void insertFiles(long resultId, ComparisonResult result) {
+        FileRowBatch batch = new FileRowBatch(resultId);
+        addDiffs(batch, FileCategory.ADDED, result.getAdded());
+        addDiffs(batch, FileCategory.DELETED, result.getDeleted());
+        addDiffs(batch, FileCategory.MODIFIED, result.getModified());
+        if (result.getRenamed() != null) {
+            for (RenameInfo rename : result.getRenamed()) {
+                batch.add(
+                        FileCategory.RENAMED,
+                        rename.getTo(),
+                        rename.getFrom(),
+                        rename.getDiff(),
+                        rename.getEditScript());
+            }
+        }
+        if (result.getUnchanged() != null) {
+            for (String name : result.getUnchanged()) {
+                batch.add(FileCategory.UNCHANGED, name, null, null, null);
+            }
+        }
+        batch.flush();
+    }
+
+    /**
+     * Loads the file list of a stored result without any diff text. Every {@link DiffInfo} and
+     * {@link RenameInfo} carries its file index so the diff can be fetched on demand.
+     */
+    public ComparisonResult loadFileIndex(long resultId) {
+        Map<String, DiffInfo> added = new LinkedHashMap<>();
+        Map<String, DiffInfo> deleted = new LinkedHashMap<>();
+        Map<String, DiffInfo> modified = new LinkedHashMap<>();
+        List<RenameInfo> renamed = new ArrayList<>();
+        List<String> unchanged = new ArrayList<>();
+
+        RowCallbackHandler handler =
+                rs -> {
+                    int fileIndex = rs.getInt("FILE_INDEX");
+                    String path = rs.getString("PATH");
+                    switch (FileCategory.valueOf(rs.getString("CATEGORY"))) {
+                        case ADDED -> added.put(path, lazyDiff(fileIndex));
+                        case DELETED -> deleted.put(path, lazyDiff(fileIndex));
+                        case MODIFIED -> modified.put(path, lazyDiff(fileIndex));
+                        case RENAMED -> {
+                            RenameInfo rename =
+                                    new RenameInfo(rs.getString("FROM_PATH"), path, null);
+                            rename.setFileIndex(fileIndex);
+                            renamed.add(rename);
+                        }
+                        case UNCHANGED -> unchanged.add(path);
+                    }
+                };
+        jdbcTemplate.query(SELECT_INDEX_SQL, handler, resultId);
+        return new ComparisonResult(added, deleted, modified, renamed, unchanged);
+    }
+
+    public Optional<StoredFileDiff> findFile(long resultId, int fileIndex) {
+        List<Object> files =
+                jdbcTemplate.query(
+                        SELECT_DIFF_SQL,
+                        (rs, rowNum) -> {
+                            String path = rs.getString("PATH");
+                            String encoding = rs.getString("DIFF_ENCODING");
+                            InputStream data = rs.getBinaryStream("DIFF_DATA");
+                            if (data == null) {
+                                return new StoredFileDiff(path, null, null);
+                            }
+                            try {
+                                if (ENCODING_BLOB_REFERENCES.equals(encoding)) {
+                                    return new BlobReferenceRow(
+                                            path,
+                                            EditScriptCodec.decodeDeltas(data),
+                                            rs.getString("ORIGINAL_HASH"),
+                                            rs.getString("REVISED_HASH"));
+                                }
+                                if (ENCODING_EDIT_SCRIPT.equals(encoding)) {
+                                    return new StoredFileDiff(
+                                            path, null, EditScriptCodec.decode(data));
+                                }
+                                return new StoredFileDiff(path, DeflateCodec.inflate(data), null);
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        },
+                        resultId,
+                        fileIndex);
+        return files.stream().findFirst().map(this::resolveFile);
+    }
+
+    /** Total bytes of the stored diff data of a result, not counting shared content. */
+    public long storedSize(long resultId) {
+        Long size = jdbcTemplate.queryForObject(SELECT_SIZE_SQL, Long.class, resultId);
+        return size == null ? 0 : size;
+    }
+
+    /** Deletes the file rows of a result and releases their references to shared content. */
+    public void deleteFiles(long resultId) {
+        Map<String, Integer> references = new HashMap<>();
+        jdbcTemplate.query(
+                SELECT_REFERENCES_SQL,
+                rs -> {
+                    references.merge(rs.getString("ORIGINAL_HASH"), 1, Integer::sum);
+                    references.merge(rs.getString("REVISED_HASH"), 1, Integer::sum);
+                },
+                resultId);
+        jdbcTemplate.update(DELETE_SQL, resultId);
+        contentBlobStore.release(references);
+    }
+
+    private StoredFileDiff resolveFile(Object row) {
+        if (row instanceof BlobReferenceRow reference) {
+            Map<String, List<String>> sides =
+                    contentBlobStore.loadLines(
+                            List.of(reference.originalHash(), reference.revisedHash()));
+            List<String> originalLines = sides.get(reference.originalHash());
+            List<String> revisedLines = sides.get(reference.revisedHash());
+            if (originalLines == null || revisedLines == null) {
+                throw new IllegalStateException("Missing stored content for " + reference.path());
+            }
+            return new StoredFileDiff(
+                    reference.path(),
+                    null,
+                    EditScript.of(originalLines, revisedLines, reference.deltas()));
+        }
+        return (StoredFileDiff) row;
+    }
+
+    private void addDiffs(FileRowBatch batch, FileCategory category, Map<String, DiffInfo> diffs) {
+        if (diffs == null) {
+            return;
+        }
+        for (Map.Entry<String, DiffInfo> e : diffs.entrySet()) {
+            batch.add(
+                    category,
+                    e.getKey(),
+                    null,
+                    e.getValue().getDiff(),
+                    e.getValue().getEditScript());
+        }
+    }
+
+    private static DiffInfo lazyDiff(int fileIndex) {
+        DiffInfo info = new DiffInfo(null);
+        info.setFileIndex(fileIndex);
+        return info;
+    }
+
+    /**
+     * Buffers at most {@link #BATCH_SIZE} compressed rows, and the content they reference, before
+     * handing them to the driver.
+     */
+    private final class FileRowBatch {
+        private final long resultId;
+        private final List<FileRow> rows = new ArrayList<>(BATCH_SIZE);
+        private final ContentBlobStore.References references = new ContentBlobStore.References();
+        private int nextFileIndex;
+
+        private FileRowBatch(long resultId) {
+            this.resultId = resultId;
+        }
+
+        private void add(
+                FileCategory category,
+                String path,
+                String fromPath,
+                String diff,
+                EditScript editScript) {
+            String encoding = null;
+            byte[] diffData = null;
+            String originalHash = null;
+            String revisedHash = null;
+            if (editScript != null) {
+                encoding = ENCODING_BLOB_REFERENCES;
+                diffData = EditScriptCodec.encodeDeltas(editScript.getDeltas());
+                originalHash =
+                        references.add(EditScriptCodec.encodeLines(editScript.originalLines()));
+                revisedHash =
+                        references.add(EditScriptCodec.encodeLines(editScript.revisedLines()));
+            } else if (diff != null) {
+                encoding = ENCODING_UNIFIED;
+                diffData = DeflateCodec.deflate(diff);
+            }
+            rows.add(
+                    new FileRow(
+                            nextFileIndex++,
+                            category,
+                            path,
+                            fromPath,
+                            encoding,
+                            diffData,
+                            originalHash,
+                            revisedHash));
+            if (rows.size() >= BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            if (rows.isEmpty()) {
+                return;
+            }
+            contentBlobStore.store(references);
+            references.clear();
+            jdbcTemplate.batchUpdate(
+                    INSERT_SQL,
+                    rows,
+                    rows.size(),
+                    (ps, row) -> {
+                        ps.setLong(1, resultId);
+                        ps.setInt(2, row.fileIndex());
+                        ps.setString(3, row.category().name());
+                        ps.setString(4, row.path());
+                        ps.setString(5, row.fromPath());
+                        ps.setString(6, row.encoding());
+                        if (row.diffData() != null) {
+                            ps.setBinaryStream(
+                                    7,
+                                    new ByteArrayInputStream(row.diffData()),
+                                    row.diffData().length);
+                        } else {
+                            ps.setNull(7, Types.BLOB);
+                        }
+                        ps.setString(8, row.originalHash());
+                        ps.setString(9, row.revisedHash());
+                    });
+            rows.clear();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.sourcecompare.infrastructure.persistence;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * One trigram of a lowercased comparison name. Mapped only so that searches can join it; rows are
+ * written by {@link ComparisonNameIndex}.
+ */
+@Entity
+@Table(name = "COMPARE_RESULT_NAME_GRAMS")
+@IdClass(ComparisonNameGram.Key.class)
+public class ComparisonNameGram {
+
+    @Id
+    @Column(name = "GRAM")
+    private String gram;
+
+    @Id
+    @Column(name = "RESULT_ID")
+    private Long resultId;
+
+    public String getGram() {
+        return gram;
+    }
+
+    public Long getResultId() {
+        return resultId;
+    }
+
+    public static class Key implements Serializable {
+        private String gram;
+        private Long resultId;
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key other
+                    && Objects.equals(gram, other.gram)
+                    && Objects.equals(resultId, other.resultId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(gram, resultId);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.sourcecompare.infrastructure.persistence;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Maintains {@code COMPARE_RESULT_NAME_GRAMS}, the trigrams of every lowercased comparison name. A
+ * name contains a filter of three or more characters only if it has all of the filter's trigrams,
+ * which lets substring searches start from the index instead of scanning every name.
+ */
+@Repository
+@ConditionalOnJpaResultStore
+public class ComparisonNameIndex {
+    public static final int GRAM_LENGTH = 3;
+
+    private static final String DELETE_SQL =
+            "DELETE FROM COMPARE_RESULT_NAME_GRAMS WHERE RESULT_ID = ?";
+    private static final String INSERT_SQL =
+            "INSERT INTO COMPARE_RESULT_NAME_GRAMS (GRAM, RESULT_ID) VALUES (?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ComparisonNameIndex(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /** Replaces the indexed trigrams of a comparison with those of {@code name}. */
+    public void index(long resultId, String name) {
+        jdbcTemplate.update(DELETE_SQL, resultId);
+        Set<String> grams = gramsOf(StoredComparisonResult.normalize(name));
+        if (grams.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(
+                INSERT_SQL,
+                new ArrayList<>(grams),
+                grams.size(),
+                (ps, gram) -> {
+                    ps.setString(1, gram);
+                    ps.setLong(2, resultId);
+                });
+    }
+
+    public void remove(long resultId) {
+        jdbcTemplate.update(DELETE_SQL, resultId);
+    }
+
+    /**
+     * Distinct trigrams of an already lowercased value; empty when it is shorter than a trigram.
+     */
+    public static Set<String> gramsOf(String value) {
+        Set<String> grams = new LinkedHashSet<>();
+        if (value == null) {
+            return grams;
+        }
+        for (int i = 0; i + GRAM_LENGTH <= value.length(); i++) {
+            grams.add(value.substring(i, i + GRAM_LENGTH));
+        }
+        return grams;
+    }
+}
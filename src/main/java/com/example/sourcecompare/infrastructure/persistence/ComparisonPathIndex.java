@@ -0,0 +1,118 @@
+package com.example.sourcecompare.infrastructure.persistence;
+
+import com.example.sourcecompare.application.ChangedPathTerms;
+import com.example.sourcecompare.domain.ComparisonResult;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Inverted index from changed file paths and class names to the comparisons that touched them, kept
+ * in {@code COMPARE_RESULT_PATHS}. Terms come from {@link ChangedPathTerms} and are looked up by
+ * prefix through a range scan of the term index.
+ */
+@Repository
+@ConditionalOnJpaResultStore
+public class ComparisonPathIndex {
+    private static final int BATCH_SIZE = 500;
+    private static final int MAX_TERM_LENGTH = 1000;
+
+    private static final String DELETE_SQL = "DELETE FROM COMPARE_RESULT_PATHS WHERE RESULT_ID = ?";
+    private static final String INSERT_SQL =
+            "INSERT INTO COMPARE_RESULT_PATHS (TERM, RESULT_ID, CATEGORY, PATH)"
+                    + " VALUES (?, ?, ?, ?)";
+    private static final String MARK_INDEXED_SQL =
+            "UPDATE COMPARE_RESULTS SET PATHS_INDEXED = ? WHERE ID = ?";
+    private static final int INDEXED = 1;
+    private static final int NOT_INDEXABLE = 0;
+    private static final String SELECT_UNINDEXED_SQL =
+            "SELECT ID FROM (SELECT ID FROM COMPARE_RESULTS"
+                    + " WHERE PATHS_INDEXED IS NULL ORDER BY ID DESC)"
+                    + " WHERE ROWNUM <= ?";
+    // Without DISTINCT, ROWNUM over the ordered subquery lets Oracle run a top-N sort that keeps
+    // only the first rows instead of sorting every match. A file has at most two terms, its path
+    // and its simple name, so twice the limit holds enough distinct files.
+    private static final String SEARCH_SQL =
+            "SELECT RESULT_ID, CATEGORY, PATH FROM ("
+                    + "SELECT RESULT_ID, CATEGORY, PATH FROM COMPARE_RESULT_PATHS"
+                    + " WHERE TERM LIKE ? ESCAPE '\\' OR TERM LIKE ? ESCAPE '\\'"
+                    + " ORDER BY RESULT_ID DESC, PATH, CATEGORY)"
+                    + " WHERE ROWNUM <= ?";
+    private static final int TERMS_PER_FILE = 2;
+
+    /** One indexed file of a comparison that matched a search. */
+    public record PathMatch(long resultId, String category, String path) {}
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ComparisonPathIndex(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /** Replaces the indexed paths of a comparison and marks it as indexed. */
+    public void index(long resultId, ComparisonResult result) {
+        jdbcTemplate.update(DELETE_SQL, resultId);
+        List<ChangedPathTerms.Term> terms = ChangedPathTerms.of(result);
+        for (int from = 0; from < terms.size(); from += BATCH_SIZE) {
+            List<ChangedPathTerms.Term> batch =
+                    terms.subList(from, Math.min(from + BATCH_SIZE, terms.size()));
+            jdbcTemplate.batchUpdate(
+                    INSERT_SQL,
+                    batch,
+                    batch.size(),
+                    (ps, term) -> {
+                        ps.setString(1, truncate(term.term()));
+                        ps.setLong(2, resultId);
+                        ps.setString(3, term.category());
+                        ps.setString(4, term.path());
+                    });
+        }
+        jdbcTemplate.update(MARK_INDEXED_SQL, INDEXED, resultId);
+    }
+
+    /** Records that a comparison could not be read, so that the backfill does not retry it. */
+    public void markNotIndexable(long resultId) {
+        jdbcTemplate.update(MARK_INDEXED_SQL, NOT_INDEXABLE, resultId);
+    }
+
+    public void remove(long resultId) {
+        jdbcTemplate.update(DELETE_SQL, resultId);
+    }
+
+    /** IDs of comparisons saved before the index existed, newest first. */
+    public List<Long> findUnindexedResultIds(int limit) {
+        return jdbcTemplate.queryForList(SELECT_UNINDEXED_SQL, Long.class, limit);
+    }
+
+    /**
+     * Finds indexed files whose path or simple name starts with {@code query}, newest comparison
+     * first. Dotted class names are also matched as paths.
+     */
+    public List<PathMatch> search(String query, int limit) {
+        List<String> prefixes = new ArrayList<>(ChangedPathTerms.queryPrefixes(query));
+        List<PathMatch> rows =
+                jdbcTemplate.query(
+                        SEARCH_SQL,
+                        (rs, rowNum) ->
+                                new PathMatch(
+                                        rs.getLong("RESULT_ID"),
+                                        rs.getString("CATEGORY"),
+                                        rs.getString("PATH")),
+                        prefixPattern(truncate(prefixes.get(0))),
+                        prefixPattern(truncate(prefixes.get(prefixes.size() - 1))),
+                        (long) limit * TERMS_PER_FILE);
+        // A file matched by both of its terms comes back twice, next to itself in the order.
+        return new LinkedHashSet<>(rows).stream().limit(limit).toList();
+    }
+
+    private static String truncate(String term) {
+        return term.length() > MAX_TERM_LENGTH ? term.substring(0, MAX_TERM_LENGTH) : term;
+    }
+
+    private static String prefixPattern(String term) {
+        return term.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.sourcecompare.infrastructure.persistence;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Adds comparisons stored before the path index existed to the index, a batch at a time, newest
+ * first. Each comparison is indexed in its own transaction; one that cannot be read is marked and
+ * skipped from then on.
+ */
+@Component
+@ConditionalOnJpaResultStore
+public class ComparisonPathIndexBackfill {
+    private static final Logger log = LogManager.getLogger(ComparisonPathIndexBackfill.class);
+
+    private final JpaComparisonResultStore resultStore;
+    private final int batchSize;
+
+    public ComparisonPathIndexBackfill(
+            JpaComparisonResultStore resultStore,
+            @Value("${comparison.path-index.backfill-batch-size:50}") int batchSize) {
+        this.resultStore = resultStore;
+        this.batchSize = Math.max(batchSize, 1);
+    }
+
+    @Scheduled(
+            initialDelayString = "${comparison.path-index.backfill-initial-delay-ms:60000}",
+            fixedDelayString = "${comparison.path-index.backfill-delay-ms:300000}")
+    public void backfill() {
+        List<Long> ids = resultStore.findComparisonsWithoutPathIndex(batchSize);
+        if (ids.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        int indexed = 0;
+        for (long id : ids) {
+            try {
+                resultStore.indexStoredPaths(id);
+                indexed++;
+            } catch (RuntimeException ex) {
+                log.warn("Could not index paths of comparison {}", id, ex);
+                resultStore.markPathIndexFailed(id);
+            }
+        }
+        log.info(
+                "Indexed paths of {} of {} stored comparisons in {} ms",
+                indexed,
+                ids.size(),
+                (System.nanoTime() - start) / 1_000_000);
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.sourcecompare.infrastructure.persistence;
+
+import com.example.sourcecompare.domain.ComparisonResult;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.PreparedStatement;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Reads and writes the LOB payload of a {@code COMPARE_RESULTS} row with Jackson's streaming
+ * generator and parser, so the serialized result never exists as one {@code String} on the heap.
+ */
+@Repository
+@ConditionalOnJpaResultStore
+public class ComparisonPayloadStore {
+    private static final String UPDATE_JSON_SQL =
+            "UPDATE COMPARE_RESULTS SET DIFF_RESULT = ? WHERE ID = ?";
+    private static final String SELECT_JSON_SQL =
+            "SELECT DIFF_RESULT FROM COMPARE_RESULTS WHERE ID = ?";
+    private static final String UPDATE_DATA_SQL =
+            "UPDATE COMPARE_RESULTS SET DIFF_RESULT_DATA = ? WHERE ID = ?";
+    private static final String SELECT_DATA_SQL =
+            "SELECT DIFF_RESULT_DATA FROM COMPARE_RESULTS WHERE ID = ?";
+
+    private static final String SELECT_SIZE_SQL =
+            "SELECT NVL(DBMS_LOB.GETLENGTH(DIFF_RESULT), 0)"
+                    + " + NVL(DBMS_LOB.GETLENGTH(DIFF_RESULT_DATA), 0)"
+                    + " FROM COMPARE_RESULTS WHERE ID = ?";
+    private static final String CLEAR_SQL =
+            "UPDATE COMPARE_RESULTS SET DIFF_RESULT = NULL, DIFF_RESULT_DATA = NULL WHERE ID = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    public ComparisonPayloadStore(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    /** Writes {@code result} as plain JSON into the {@code DIFF_RESULT} CLOB. */
+    public void writeJson(long resultId, ComparisonResult result) {
+        jdbcTemplate.execute(
+                (ConnectionCallback<Void>)
+                        con -> {
+                            Clob clob = con.createClob();
+                            try {
+                                try (Writer writer = clob.setCharacterStream(1);
+                                        JsonGenerator generator =
+                                                objectMapper.getFactory().createGenerator(writer)) {
+                                    objectMapper.writeValue(generator, result);
+                                } catch (IOException e) {
+                                    throw new UncheckedIOException(e);
+                                }
+                                try (PreparedStatement ps = con.prepareStatement(UPDATE_JSON_SQL)) {
+                                    ps.setClob(1, clob);
+                                    ps.setLong(2, resultId);
+                                    ps.executeUpdate();
+                                }
+                            } finally {
+                                clob.free();
+                            }
+                            return null;
+                        });
+    }
+
+    public ComparisonResult readJson(long resultId) {
+        return jdbcTemplate.query(
+                SELECT_JSON_SQL,
+                rs -> {
+                    if (!rs.next()) {
+                        return null;
+                    }
+                    Clob clob = rs.getClob(1);
+                    if (clob == null) {
+                        return null;
+                    }
+                    try (Reader reader = clob.getCharacterStream();
+                            JsonParser parser = objectMapper.getFactory().createParser(reader)) {
+                        return objectMapper.readValue(parser, ComparisonResult.class);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    } finally {
+                        clob.free();
+                    }
+                },
+                resultId);
+    }
+
+    /** Writes {@code result} as deflated JSON into the {@code DIFF_RESULT_DATA} BLOB. */
+    public void writeStreamed(long resultId, ComparisonResult result) {
+        jdbcTemplate.execute(
+                (ConnectionCallback<Void>)
+                        con -> {
+                            Blob blob = con.createBlob();
+                            try {
+                                try (OutputStream out =
+                                                new DeflaterOutputStream(blob.setBinaryStream(1));
+                                        JsonGenerator generator =
+                                                objectMapper.getFactory().createGenerator(out)) {
+                                    objectMapper.writeValue(generator, result);
+                                } catch (IOException e) {
+                                    throw new UncheckedIOException(e);
+                                }
+                                try (PreparedStatement ps = con.prepareStatement(UPDATE_DATA_SQL)) {
+                                    ps.setBlob(1, blob);
+                                    ps.setLong(2, resultId);
+                                    ps.executeUpdate();
+                                }
+                            } finally {
+                                blob.free();
+                            }
+                            return null;
+                        });
+    }
+
+    public ComparisonResult readStreamed(long resultId) {
+        return jdbcTemplate.query(
+                SELECT_DATA_SQL,
+                rs -> {
+                    if (!rs.next()) {
+                        return null;
+                    }
+                    Blob blob = rs.getBlob(1);
+                    if (blob == null) {
+                        return null;
+                    }
+                    try (InputStream in = new InflaterInputStream(blob.getBinaryStream());
+                            JsonParser parser = objectMapper.getFactory().createParser(in)) {
+                        return objectMapper.readValue(parser, ComparisonResult.class);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    } finally {
+                        blob.free();
+                    }
+                },
+                resultId);
+    }
+
+    /** Approximate size of both payload columns: characters of the CLOB plus bytes of the BLOB. */
+    public long payloadSize(long resultId) {
+        Long size = jdbcTemplate.queryForObject(SELECT_SIZE_SQL, Long.class, resultId);
+        return size == null ? 0 : size;
+    }
+
+    public void clear(long resultId) {
+        jdbcTemplate.update(CLEAR_SQL, resultId);
+    }
+}
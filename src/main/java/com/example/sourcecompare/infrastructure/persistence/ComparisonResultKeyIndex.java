@@ -0,0 +1,46 @@
+package com.example.sourcecompare.infrastructure.persistence;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Maintains {@code COMPARE_RESULT_KEYS}, which maps the result key of a comparison (the digests of
+ * both uploads and the options, see {@link
+ * com.example.sourcecompare.application.ComparisonUseCase#resultKey}) to the comparisons made from
+ * them, so that an upload of the same pair can be answered with a stored result.
+ */
+@Repository
+@ConditionalOnJpaResultStore
+public class ComparisonResultKeyIndex {
+    private static final String DELETE_SQL = "DELETE FROM COMPARE_RESULT_KEYS WHERE RESULT_ID = ?";
+    private static final String INSERT_SQL =
+            "INSERT INTO COMPARE_RESULT_KEYS (RESULT_KEY, RESULT_ID) VALUES (?, ?)";
+    private static final String FIND_SQL =
+            "SELECT MAX(RESULT_ID) FROM COMPARE_RESULT_KEYS WHERE RESULT_KEY = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ComparisonResultKeyIndex(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /** Records that comparison {@code resultId} was made from {@code resultKey}, if it has one. */
+    public void index(long resultId, String resultKey) {
+        if (resultKey != null) {
+            jdbcTemplate.update(INSERT_SQL, resultKey, resultId);
+        }
+    }
+
+    public void remove(long resultId) {
+        jdbcTemplate.update(DELETE_SQL, resultId);
+    }
+
+    /** The newest comparison made from {@code resultKey}. */
+    public Optional<Long> find(String resultKey) {
+        List<Long> ids = jdbcTemplate.queryForList(FIND_SQL, Long.class, resultKey);
+        return ids.isEmpty() ? Optional.empty() : Optional.ofNullable(ids.get(0));
+    }
+}
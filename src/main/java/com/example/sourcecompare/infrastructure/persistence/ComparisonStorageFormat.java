@@ -0,0 +1,41 @@
+package com.example.sourcecompare.infrastructure.persistence;
+
+/** Layout of the payload behind a {@code COMPARE_RESULTS} row, stored in {@code STORAGE_FORMAT}. */
+public enum ComparisonStorageFormat {
+    /** Whole result serialized as a single JSON document in {@code DIFF_RESULT}. */
+    JSON(0),
+    /**
+     * Summary JSON in {@code DIFF_RESULT} plus one deflated row per file in {@code
+     * COMPARE_RESULT_FILES}.
+     */
+    CHUNKED(1),
+    /** Whole result streamed as deflated JSON into {@code DIFF_RESULT_DATA}. */
+    STREAMED_JSON(2),
+    /**
+     * Whole result moved to a local segment file by the cold storage job; see {@link
+     * ColdSegmentStore}.
+     */
+    COLD(3);
+
+    private final int code;
+
+    ComparisonStorageFormat(int code) {
+        this.code = code;
+    }
+
+    public int code() {
+        return code;
+    }
+
+    public static ComparisonStorageFormat fromCode(Integer code) {
+        if (code == null) {
+            return JSON;
+        }
+        for (ComparisonStorageFormat format : values()) {
+            if (format.code == code) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unknown comparison storage format " + code);
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.sourcecompare.infrastructure.persistence;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Registers a bean only when comparisons are stored in the database ({@code comparison.store=jpa},
+ * the default), so that the application can start without a data source otherwise.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@ConditionalOnProperty(name = "comparison.store", havingValue = "jpa", matchIfMissing = true)
+public @interface ConditionalOnJpaResultStore {}
@@ -0,0 +1,235 @@
+package com.example.sourcecompare.infrastructure.persistence;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Deduplicated file content shared by all stored comparisons, keyed by the SHA-256 of the encoded
+ * content. Each comparison row referencing a blob holds one count in {@code REF_COUNT}; blobs whose
+ * count drops to zero are removed by {@link #purgeUnreferenced()} once the grace period has passed
+ * since their last release. Until then a comparison being saved can still reference them again.
+ */
+@Repository
+@ConditionalOnJpaResultStore
+public class ContentBlobStore {
+    private static final int IN_CLAUSE_LIMIT = 500;
+
+    private static final String ADD_REFERENCES_SQL =
+            "UPDATE COMPARE_CONTENT_BLOBS SET REF_COUNT = REF_COUNT + ? WHERE CONTENT_HASH = ?";
+    private static final String MERGE_SQL =
+            "MERGE INTO COMPARE_CONTENT_BLOBS b USING (SELECT ? AS CONTENT_HASH FROM DUAL) s"
+                    + " ON (b.CONTENT_HASH = s.CONTENT_HASH)"
+                    + " WHEN MATCHED THEN UPDATE SET b.REF_COUNT = b.REF_COUNT + ?"
+                    + " WHEN NOT MATCHED THEN"
+                    + " INSERT (CONTENT_HASH, CONTENT, CONTENT_SIZE, REF_COUNT)"
+                    + " VALUES (s.CONTENT_HASH, ?, ?, ?)";
+    private static final String SELECT_EXISTING_SQL =
+            "SELECT CONTENT_HASH FROM COMPARE_CONTENT_BLOBS WHERE CONTENT_HASH IN (%s)";
+    private static final String SELECT_CONTENT_SQL =
+            "SELECT CONTENT_HASH, CONTENT FROM COMPARE_CONTENT_BLOBS WHERE CONTENT_HASH IN (%s)";
+    private static final String RELEASE_SQL =
+            "UPDATE COMPARE_CONTENT_BLOBS SET REF_COUNT = REF_COUNT - ?, RELEASED = ?"
+                    + " WHERE CONTENT_HASH = ?";
+    private static final String UNREFERENCED =
+            "REF_COUNT <= 0 AND (RELEASED IS NULL OR RELEASED < ?)";
+    private static final String PURGE_SQL =
+            "DELETE FROM COMPARE_CONTENT_BLOBS WHERE " + UNREFERENCED;
+    private static final String UNREFERENCED_SIZE_SQL =
+            "SELECT NVL(SUM(CONTENT_SIZE), 0) FROM COMPARE_CONTENT_BLOBS WHERE " + UNREFERENCED;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration purgeGrace;
+
+    public ContentBlobStore(
+            JdbcTemplate jdbcTemplate,
+            @Value("${comparison.storage.blob-purge-grace-minutes:60}") long purgeGraceMinutes) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.purgeGrace = Duration.ofMinutes(Math.max(purgeGraceMinutes, 0));
+    }
+
+    /**
+     * Adds the references collected in {@code references}. Content is only sent to the database for
+     * hashes that are not stored yet.
+     */
+    void store(References references) {
+        if (references.counts.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<String, Integer>> counts = new ArrayList<>(references.counts.entrySet());
+        int[][] updated =
+                jdbcTemplate.batchUpdate(
+                        ADD_REFERENCES_SQL,
+                        counts,
+                        counts.size(),
+                        (ps, entry) -> {
+                            ps.setInt(1, entry.getValue());
+                            ps.setString(2, entry.getKey());
+                        });
+
+        List<Map.Entry<String, Integer>> missing = new ArrayList<>();
+        List<Map.Entry<String, Integer>> unknown = new ArrayList<>();
+        int position = 0;
+        for (int[] batch : updated) {
+            for (int count : batch) {
+                Map.Entry<String, Integer> entry = counts.get(position++);
+                if (count == 0) {
+                    missing.add(entry);
+                } else if (count < 0) {
+                    unknown.add(entry);
+                }
+            }
+        }
+        if (!unknown.isEmpty()) {
+            // The driver did not report per-row counts; look the hashes up instead.
+            Map<String, Boolean> existing = new HashMap<>();
+            forEachChunk(
+                    unknown.stream().map(Map.Entry::getKey).toList(),
+                    (placeholders, chunk) ->
+                            jdbcTemplate.query(
+                                    String.format(SELECT_EXISTING_SQL, placeholders),
+                                    rs -> {
+                                        existing.put(rs.getString(1), Boolean.TRUE);
+                                    },
+                                    chunk.toArray()));
+            for (Map.Entry<String, Integer> entry : unknown) {
+                if (!existing.containsKey(entry.getKey())) {
+                    missing.add(entry);
+                }
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(
+                MERGE_SQL,
+                missing,
+                missing.size(),
+                (ps, entry) -> {
+                    byte[] content = references.contents.get(entry.getKey());
+                    byte[] compressed = DeflateCodec.deflate(content);
+                    ps.setString(1, entry.getKey());
+                    ps.setInt(2, entry.getValue());
+                    ps.setBinaryStream(3, new ByteArrayInputStream(compressed), compressed.length);
+                    ps.setLong(4, content.length);
+                    ps.setInt(5, entry.getValue());
+                });
+    }
+
+    /** Loads and decodes the line lists stored under the given hashes. */
+    Map<String, List<String>> loadLines(Collection<String> hashes) {
+        Map<String, List<String>> result = new HashMap<>();
+        forEachChunk(
+                List.copyOf(hashes),
+                (placeholders, chunk) ->
+                        jdbcTemplate.query(
+                                String.format(SELECT_CONTENT_SQL, placeholders),
+                                rs -> {
+                                    try (InputStream in =
+                                            new InflaterInputStream(
+                                                    rs.getBinaryStream("CONTENT"))) {
+                                        result.put(
+                                                rs.getString("CONTENT_HASH"),
+                                                EditScriptCodec.decodeLines(in));
+                                    } catch (IOException e) {
+                                        throw new UncheckedIOException(e);
+                                    }
+                                },
+                                chunk.toArray()));
+        return result;
+    }
+
+    void release(Map<String, Integer> counts) {
+        if (counts.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(counts.entrySet());
+        Timestamp released = Timestamp.from(Instant.now());
+        jdbcTemplate.batchUpdate(
+                RELEASE_SQL,
+                entries,
+                entries.size(),
+                (ps, entry) -> {
+                    ps.setInt(1, entry.getValue());
+                    ps.setTimestamp(2, released);
+                    ps.setString(3, entry.getKey());
+                });
+    }
+
+    /** Total content bytes of the blobs that {@link #purgeUnreferenced()} would delete. */
+    public long unreferencedSize() {
+        Long size = jdbcTemplate.queryForObject(UNREFERENCED_SIZE_SQL, Long.class, purgeCutoff());
+        return size == null ? 0 : size;
+    }
+
+    /**
+     * Deletes blobs that no comparison has referenced for the grace period and returns their
+     * number.
+     */
+    public int purgeUnreferenced() {
+        return jdbcTemplate.update(PURGE_SQL, purgeCutoff());
+    }
+
+    private Timestamp purgeCutoff() {
+        return Timestamp.from(Instant.now().minus(purgeGrace));
+    }
+
+    private void forEachChunk(List<String> hashes, ChunkQuery query) {
+        for (int from = 0; from < hashes.size(); from += IN_CLAUSE_LIMIT) {
+            List<String> chunk =
+                    hashes.subList(from, Math.min(hashes.size(), from + IN_CLAUSE_LIMIT));
+            query.run(String.join(", ", Collections.nCopies(chunk.size(), "?")), chunk);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ChunkQuery {
+        void run(String placeholders, List<String> chunk);
+    }
+
+    /** Content referenced by a batch of file rows, with the number of references per hash. */
+    static final class References {
+        private final Map<String, byte[]> contents = new HashMap<>();
+        private final Map<String, Integer> counts = new LinkedHashMap<>();
+
+        String add(byte[] content) {
+            String hash = sha256(content);
+            contents.putIfAbsent(hash, content);
+            counts.merge(hash, 1, Integer::sum);
+            return hash;
+        }
+
+        void clear() {
+            contents.clear();
+            counts.clear();
+        }
+
+        private static String sha256(byte[] content) {
+            try {
+                return HexFormat.of()
+                        .formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
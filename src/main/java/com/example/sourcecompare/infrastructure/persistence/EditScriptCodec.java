@@ -0,0 +1,142 @@
+package com.example.sourcecompare.infrastructure.persistence;
+
+import com.example.sourcecompare.domain.EditScript;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Deflated binary encoding of an {@link EditScript}: the line table followed by the original,
+ * revised and delta int arrays, all lengths and indexes written as unsigned varints. The line-list
+ * and delta encodings are also used on their own when both sides live in the content blob store.
+ */
+final class EditScriptCodec {
+    private static final int VERSION = 1;
+
+    private EditScriptCodec() {}
+
+    static byte[] encode(EditScript script) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(buffer))) {
+            out.writeByte(VERSION);
+            writeLines(out, script.getLines() != null ? script.getLines() : List.of());
+            writeInts(out, script.getOriginal());
+            writeInts(out, script.getRevised());
+            writeInts(out, script.getDeltas());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+
+    static EditScript decode(InputStream compressed) throws IOException {
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(compressed))) {
+            int version = in.readUnsignedByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported edit script version " + version);
+            }
+            List<String> lines = readLines(in);
+            int[] original = readInts(in);
+            int[] revised = readInts(in);
+            int[] deltas = readInts(in);
+            return new EditScript(lines, original, revised, deltas);
+        }
+    }
+
+    /** Encodes the lines of one side, uncompressed, as the content of a blob-store entry. */
+    static byte[] encodeLines(List<String> lines) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(buffer)) {
+            writeLines(out, lines);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+
+    static List<String> decodeLines(InputStream raw) throws IOException {
+        return readLines(new DataInputStream(raw));
+    }
+
+    static byte[] encodeDeltas(int[] deltas) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(buffer))) {
+            writeInts(out, deltas);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+
+    static int[] decodeDeltas(InputStream compressed) throws IOException {
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(compressed))) {
+            return readInts(in);
+        }
+    }
+
+    private static void writeLines(DataOutputStream out, List<String> lines) throws IOException {
+        writeVarInt(out, lines.size());
+        for (String line : lines) {
+            byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(out, bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static List<String> readLines(DataInputStream in) throws IOException {
+        int lineCount = readVarInt(in);
+        List<String> lines = new ArrayList<>(lineCount);
+        for (int i = 0; i < lineCount; i++) {
+            byte[] bytes = new byte[readVarInt(in)];
+            in.readFully(bytes);
+            lines.add(new String(bytes, StandardCharsets.UTF_8));
+        }
+        return lines;
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        int[] safeValues = values != null ? values : new int[0];
+        writeVarInt(out, safeValues.length);
+        for (int value : safeValues) {
+            writeVarInt(out, value);
+        }
+    }
+
+    private static int[] readInts(DataInputStream in) throws IOException {
+        int[] values = new int[readVarInt(in)];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = readVarInt(in);
+        }
+        return values;
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        int remaining = value;
+        while ((remaining & ~0x7F) != 0) {
+            out.writeByte((remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        out.writeByte(remaining);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in edit script");
+    }
+}
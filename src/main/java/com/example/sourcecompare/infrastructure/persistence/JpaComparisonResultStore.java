@@ -0,0 +1,384 @@
+package com.example.sourcecompare.infrastructure.persistence;
+
+import com.example.sourcecompare.application.ComparisonResultStore;
+import com.example.sourcecompare.domain.ComparisonResult;
+import com.example.sourcecompare.domain.DiffInfo;
+import com.example.sourcecompare.domain.RenameInfo;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Stores comparisons in Oracle: the summary row in {@code COMPARE_RESULTS} through JPA, and the
+ * payload in the layout chosen by {@code comparison.storage.format}. Also maintains the name,
+ * changed-path and result key indexes and serves the path index backfill and the cold storage job.
+ */
+@Repository
+@ConditionalOnJpaResultStore
+public class JpaComparisonResultStore implements ComparisonResultStore {
+    private static final Logger log = LogManager.getLogger(JpaComparisonResultStore.class);
+
+    private final StoredComparisonResultRepository repository;
+    private final ComparisonFileStore comparisonFileStore;
+    private final ComparisonPayloadStore comparisonPayloadStore;
+    private final ContentBlobStore contentBlobStore;
+    private final ComparisonNameIndex nameIndex;
+    private final ComparisonPathIndex pathIndex;
+    private final ComparisonResultKeyIndex resultKeyIndex;
+    private final ColdSegmentStore coldSegmentStore;
+    private final ComparisonStorageFormat storageFormat;
+
+    public JpaComparisonResultStore(
+            StoredComparisonResultRepository repository,
+            ComparisonFileStore comparisonFileStore,
+            ComparisonPayloadStore comparisonPayloadStore,
+            ContentBlobStore contentBlobStore,
+            ComparisonNameIndex nameIndex,
+            ComparisonPathIndex pathIndex,
+            ComparisonResultKeyIndex resultKeyIndex,
+            ColdSegmentStore coldSegmentStore,
+            @Value("${comparison.storage.format:CHUNKED}") ComparisonStorageFormat storageFormat) {
+        this.repository = repository;
+        this.comparisonFileStore = comparisonFileStore;
+        this.comparisonPayloadStore = comparisonPayloadStore;
+        this.contentBlobStore = contentBlobStore;
+        this.nameIndex = nameIndex;
+        this.pathIndex = pathIndex;
+        this.resultKeyIndex = resultKeyIndex;
+        this.coldSegmentStore = coldSegmentStore;
+        this.storageFormat = storageFormat;
+    }
+
+    @Override
+    public long allocateId() {
+        return repository.nextComparisonId();
+    }
+
+    @Override
+    @Transactional
+    public void save(StoredComparison comparison) {
+        ComparisonSummary summary = comparison.summary();
+        long id = summary.id();
+        repository.insertSummary(
+                id,
+                summary.name(),
+                StoredComparisonResult.normalize(summary.name()),
+                summary.ipRequest(),
+                StoredComparisonResult.normalize(summary.ipRequest()),
+                summary.markColor(),
+                storageFormat.code());
+        nameIndex.index(id, summary.name());
+        pathIndex.index(id, comparison.result());
+        resultKeyIndex.index(id, resultKeyOf(comparison.result()));
+        writePayload(id, comparison.result());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<StoredComparison> find(long id) {
+        return repository
+                .findById(id)
+                .map(entity -> new StoredComparison(summaryOf(entity), readResult(entity)));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<ComparisonSummary> findSummary(long id) {
+        return repository.findById(id).map(JpaComparisonResultStore::summaryOf);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<StoredFileDiff> findFile(long id, int fileIndex) {
+        return comparisonFileStore.findFile(id, fileIndex);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<ComparisonSummary> search(String nameFilter, String ipFilter, Pageable pageable) {
+        Set<String> nameGrams = ComparisonNameIndex.gramsOf(nameFilter);
+        Page<StoredComparisonSummaryRow> rows =
+                nameGrams.isEmpty()
+                        ? repository.searchSummaries(
+                                prefixPattern(nameFilter), prefixPattern(ipFilter), pageable)
+                        : repository.searchSummariesByNameGrams(
+                                "%" + prefixPattern(nameFilter),
+                                prefixPattern(ipFilter),
+                                nameGrams,
+                                nameGrams.size(),
+                                pageable);
+        return rows.map(JpaComparisonResultStore::summaryOf);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<ComparisonSummary> findSummaries(Collection<Long> ids) {
+        return repository.findSummariesByIds(ids).stream()
+                .map(JpaComparisonResultStore::summaryOf)
+                .toList();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<PathMatch> searchPaths(String query, int limit) {
+        return pathIndex.search(query, limit).stream()
+                .map(match -> new PathMatch(match.resultId(), match.category(), match.path()))
+                .toList();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<Long> findByResultKey(String resultKey) {
+        return resultKeyIndex.find(resultKey);
+    }
+
+    @Override
+    @Transactional
+    public void update(long id, String markColor, String name) {
+        StoredComparisonResult entity = repository.findById(id).orElseThrow();
+        if (markColor != null) {
+            entity.setMarkColor(markColor);
+        }
+        if (name != null) {
+            entity.setName(name);
+            nameIndex.index(id, name);
+        }
+    }
+
+    /**
+     * Deletes a comparison and its file rows. Shared content that no comparison has referenced for
+     * the grace period is removed as well; content this comparison released stays until then.
+     */
+    @Override
+    @Transactional
+    public void delete(long id) {
+        comparisonFileStore.deleteFiles(id);
+        nameIndex.remove(id);
+        pathIndex.remove(id);
+        resultKeyIndex.remove(id);
+        repository.deleteById(id);
+        int purged = contentBlobStore.purgeUnreferenced();
+        log.info("Deleted comparison {} and purged {} unreferenced content blobs", id, purged);
+    }
+
+    public List<Long> findComparisonsWithoutPathIndex(int limit) {
+        return pathIndex.findUnindexedResultIds(limit);
+    }
+
+    public void markPathIndexFailed(long id) {
+        pathIndex.markNotIndexable(id);
+    }
+
+    /** Indexes the changed paths of a comparison stored before the path index existed. */
+    @Transactional
+    public void indexStoredPaths(long id) {
+        StoredComparisonResult entity = repository.findById(id).orElse(null);
+        if (entity == null) {
+            return;
+        }
+        ComparisonResult result = readResult(entity);
+        if (result == null) {
+            throw new IllegalStateException("Comparison " + id + " has no payload to index");
+        }
+        pathIndex.index(id, result);
+    }
+
+    public List<Long> findComparisonsForColdStorage(LocalDateTime createdBefore, int limit) {
+        return repository.findIdsForColdStorage(
+                createdBefore, ComparisonStorageFormat.COLD.code(), PageRequest.of(0, limit));
+    }
+
+    /**
+     * Moves the payload of a comparison to a cold storage segment, leaving the summary row with a
+     * pointer to it, and returns the approximate number of payload bytes removed from the database.
+     * Shared content released by the move is removed by {@link #purgeUnreferencedContent()}.
+     */
+    @Transactional
+    public long moveToColdStorage(long id) {
+        StoredComparisonResult entity = repository.findById(id).orElse(null);
+        if (entity == null) {
+            return 0;
+        }
+        ComparisonStorageFormat format =
+                ComparisonStorageFormat.fromCode(entity.getStorageFormat());
+        if (format == ComparisonStorageFormat.COLD) {
+            return 0;
+        }
+        ComparisonResult result =
+                switch (format) {
+                    case JSON -> comparisonPayloadStore.readJson(id);
+                    case CHUNKED -> readChunkedWithDiffs(id);
+                    case STREAMED_JSON -> comparisonPayloadStore.readStreamed(id);
+                    case COLD -> null;
+                };
+        if (result == null) {
+            throw new IllegalStateException("Comparison " + id + " has no payload to move");
+        }
+        long reclaimed =
+                comparisonPayloadStore.payloadSize(id) + comparisonFileStore.storedSize(id);
+        ColdSegmentStore.Pointer pointer = coldSegmentStore.append(result);
+        entity.setStorageFormat(ComparisonStorageFormat.COLD.code());
+        entity.setColdSegment(pointer.segment());
+        entity.setColdOffset(pointer.offset());
+        entity.setColdLength(pointer.length());
+        comparisonPayloadStore.clear(id);
+        comparisonFileStore.deleteFiles(id);
+        return reclaimed;
+    }
+
+    /**
+     * Removes shared content no longer referenced by any comparison and returns its size in bytes.
+     */
+    @Transactional
+    public long purgeUnreferencedContent() {
+        long size = contentBlobStore.unreferencedSize();
+        contentBlobStore.purgeUnreferenced();
+        return size;
+    }
+
+    private static String resultKeyOf(ComparisonResult result) {
+        return result.getInputs() != null ? result.getInputs().getResultKey() : null;
+    }
+
+    private void writePayload(long id, ComparisonResult result) {
+        switch (storageFormat) {
+            case JSON -> comparisonPayloadStore.writeJson(id, result);
+            case CHUNKED -> {
+                comparisonPayloadStore.writeJson(id, summaryOf(result));
+                comparisonFileStore.insertFiles(id, result);
+            }
+            case STREAMED_JSON -> comparisonPayloadStore.writeStreamed(id, result);
+            case COLD -> throw new IllegalStateException("New comparisons cannot be stored cold");
+        }
+    }
+
+    private ComparisonResult readResult(StoredComparisonResult entity) {
+        long id = entity.getId();
+        return switch (ComparisonStorageFormat.fromCode(entity.getStorageFormat())) {
+            case JSON -> comparisonPayloadStore.readJson(id);
+            case CHUNKED -> readChunked(id);
+            case STREAMED_JSON -> comparisonPayloadStore.readStreamed(id);
+            case COLD -> readCold(entity);
+        };
+    }
+
+    private ComparisonResult readCold(StoredComparisonResult entity) {
+        if (entity.getColdSegment() == null
+                || entity.getColdOffset() == null
+                || entity.getColdLength() == null) {
+            return null;
+        }
+        return coldSegmentStore.read(
+                new ColdSegmentStore.Pointer(
+                        entity.getColdSegment(), entity.getColdOffset(), entity.getColdLength()));
+    }
+
+    private ComparisonResult readChunked(long id) {
+        ComparisonResult summary = comparisonPayloadStore.readJson(id);
+        if (summary == null) {
+            return null;
+        }
+        ComparisonResult result = comparisonFileStore.loadFileIndex(id);
+        result.setTiming(summary.getTiming());
+        result.setContextSize(summary.getContextSize());
+        result.setInputs(summary.getInputs());
+        if (summary.getUnchanged() == null) {
+            result.setUnchanged(null);
+        }
+        return result;
+    }
+
+    /** Reads a chunked comparison with the diff of every file loaded inline. */
+    private ComparisonResult readChunkedWithDiffs(long id) {
+        ComparisonResult result = readChunked(id);
+        if (result == null) {
+            return null;
+        }
+        loadStoredDiffs(id, result.getAdded());
+        loadStoredDiffs(id, result.getDeleted());
+        loadStoredDiffs(id, result.getModified());
+        if (result.getRenamed() != null) {
+            for (RenameInfo rename : result.getRenamed()) {
+                if (rename.getFileIndex() != null) {
+                    comparisonFileStore
+                            .findFile(id, rename.getFileIndex())
+                            .ifPresent(
+                                    file -> {
+                                        rename.setDiff(file.diff());
+                                        rename.setEditScript(file.editScript());
+                                    });
+                    rename.setFileIndex(null);
+                }
+            }
+        }
+        return result;
+    }
+
+    private void loadStoredDiffs(long id, Map<String, DiffInfo> diffs) {
+        if (diffs == null) {
+            return;
+        }
+        for (DiffInfo info : diffs.values()) {
+            if (info.getFileIndex() != null) {
+                comparisonFileStore
+                        .findFile(id, info.getFileIndex())
+                        .ifPresent(
+                                file -> {
+                                    info.setDiff(file.diff());
+                                    info.setEditScript(file.editScript());
+                                });
+                info.setFileIndex(null);
+            }
+        }
+    }
+
+    /**
+     * Builds the part of a chunked comparison that stays on the {@code COMPARE_RESULTS} row. An
+     * empty unchanged list records that unchanged files were requested; the names live in the file
+     * rows.
+     */
+    private static ComparisonResult summaryOf(ComparisonResult result) {
+        ComparisonResult summary =
+                new ComparisonResult(
+                        null, null, null, null, result.getUnchanged() != null ? List.of() : null);
+        summary.setTiming(result.getTiming());
+        summary.setContextSize(result.getContextSize());
+        summary.setInputs(result.getInputs());
+        return summary;
+    }
+
+    private static ComparisonSummary summaryOf(StoredComparisonResult entity) {
+        return new ComparisonSummary(
+                entity.getId(),
+                entity.getName(),
+                entity.getIpRequest(),
+                entity.getCreated(),
+                entity.getMarkColor());
+    }
+
+    private static ComparisonSummary summaryOf(StoredComparisonSummaryRow row) {
+        return new ComparisonSummary(
+                row.id(), row.name(), row.ipRequest(), row.created(), row.markColor());
+    }
+
+    /**
+     * A {@code LIKE} pattern matching values that start with {@code filter}, which an index on the
+     * column can answer by range scan.
+     */
+    private static String prefixPattern(String filter) {
+        String escaped = filter.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+        return escaped + "%";
+    }
+}
@@ -5,12 +5,16 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
-import jakarta.persistence.Lob;
 import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 
 import java.time.LocalDateTime;
+import java.util.Locale;
 
+/**
+ * Summary row of a stored comparison. The payload columns are streamed by {@link
+ * ComparisonPayloadStore} and {@link ComparisonFileStore} rather than mapped here.
+ */
 @Entity
 @Table(name = "COMPARE_RESULTS")
 public class StoredComparisonResult {
@@ -31,16 +35,32 @@ public class StoredComparisonResult {
     @Column(name = "IP_REQUEST", nullable = false)
     private String ipRequest;
 
+    /** Lowercase copies of the searchable columns, kept in step by the setters. */
+    @Column(name = "NAME_LC")
+    private String nameLc;
+
+    @Column(name = "IP_REQUEST_LC")
+    private String ipRequestLc;
+
     @Column(name = "CREATED", insertable = false, updatable = false)
     private LocalDateTime created;
 
-    @Lob
-    @Column(name = "DIFF_RESULT", nullable = false)
-    private String diffResultJson;
-
     @Column(name = "MARK_COLOR")
     private String markColor;
 
+    @Column(name = "STORAGE_FORMAT")
+    private Integer storageFormat;
+
+    /** Location of the payload once it has been moved to cold storage, otherwise {@code null}. */
+    @Column(name = "COLD_SEGMENT")
+    private String coldSegment;
+
+    @Column(name = "COLD_OFFSET")
+    private Long coldOffset;
+
+    @Column(name = "COLD_LENGTH")
+    private Long coldLength;
+
     public Long getId() {
         return id;
     }
@@ -55,6 +75,7 @@ public class StoredComparisonResult {
 
     public void setName(String name) {
         this.name = name;
+        this.nameLc = normalize(name);
     }
 
     public String getIpRequest() {
@@ -63,22 +84,23 @@ public class StoredComparisonResult {
 
     public void setIpRequest(String ipRequest) {
         this.ipRequest = ipRequest;
+        this.ipRequestLc = normalize(ipRequest);
     }
 
-    public LocalDateTime getCreated() {
-        return created;
+    public String getNameLc() {
+        return nameLc;
     }
 
-    public void setCreated(LocalDateTime created) {
-        this.created = created;
+    public String getIpRequestLc() {
+        return ipRequestLc;
     }
 
-    public String getDiffResultJson() {
-        return diffResultJson;
+    public LocalDateTime getCreated() {
+        return created;
     }
 
-    public void setDiffResultJson(String diffResultJson) {
-        this.diffResultJson = diffResultJson;
+    public void setCreated(LocalDateTime created) {
+        this.created = created;
     }
 
     public String getMarkColor() {
@@ -88,4 +110,41 @@ public class StoredComparisonResult {
     public void setMarkColor(String markColor) {
         this.markColor = markColor;
     }
+
+    public Integer getStorageFormat() {
+        return storageFormat;
+    }
+
+    public void setStorageFormat(Integer storageFormat) {
+        this.storageFormat = storageFormat;
+    }
+
+    public String getColdSegment() {
+        return coldSegment;
+    }
+
+    public void setColdSegment(String coldSegment) {
+        this.coldSegment = coldSegment;
+    }
+
+    public Long getColdOffset() {
+        return coldOffset;
+    }
+
+    public void setColdOffset(Long coldOffset) {
+        this.coldOffset = coldOffset;
+    }
+
+    public Long getColdLength() {
+        return coldLength;
+    }
+
+    public void setColdLength(Long coldLength) {
+        this.coldLength = coldLength;
+    }
+
+    /** Lowercases a searchable value the same way search filters are lowercased. */
+    public static String normalize(String value) {
+        return value == null ? null : value.toLowerCase(Locale.ROOT);
+    }
 }
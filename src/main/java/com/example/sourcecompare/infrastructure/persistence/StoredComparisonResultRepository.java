@@ -3,9 +3,87 @@ package com.example.sourcecompare.infrastructure.persistence;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 
 public interface StoredComparisonResultRepository
         extends JpaRepository<StoredComparisonResult, Long> {
-    Page<StoredComparisonResult> findByNameContainingIgnoreCaseAndIpRequestContainingIgnoreCase(
-            String name, String ipRequest, Pageable pageable);
+    String SUMMARY_SELECT =
+            "SELECT new com.example.sourcecompare.infrastructure.persistence."
+                    + "StoredComparisonSummaryRow("
+                    + "r.id, r.name, r.ipRequest, r.created, r.markColor)";
+    String FILTERS =
+            " FROM StoredComparisonResult r"
+                    + " WHERE r.nameLc LIKE :name ESCAPE '\\'"
+                    + " AND r.ipRequestLc LIKE :ipRequest ESCAPE '\\'";
+    String NAME_GRAM_FILTER =
+            " AND r.id IN (SELECT g.resultId FROM ComparisonNameGram g WHERE g.gram IN :grams"
+                    + " GROUP BY g.resultId HAVING COUNT(g.gram) = :gramCount)";
+
+    /**
+     * Lists comparisons whose lowercased name and requester match the given {@code LIKE} patterns.
+     * Only the summary columns are selected. The patterns should be prefixes ({@code abc%}) so that
+     * both filters can range-scan their lowercase column's index.
+     */
+    @Query(value = SUMMARY_SELECT + FILTERS, countQuery = "SELECT COUNT(r)" + FILTERS)
+    Page<StoredComparisonSummaryRow> searchSummaries(
+            @Param("name") String name, @Param("ipRequest") String ipRequest, Pageable pageable);
+
+    /**
+     * Like {@link #searchSummaries} but first narrows the candidates to comparisons whose name has
+     * every one of {@code grams}, so that a substring name pattern ({@code %abc%}) uses the trigram
+     * index and is only checked against those candidates.
+     */
+    @Query(
+            value = SUMMARY_SELECT + FILTERS + NAME_GRAM_FILTER,
+            countQuery = "SELECT COUNT(r)" + FILTERS + NAME_GRAM_FILTER)
+    Page<StoredComparisonSummaryRow> searchSummariesByNameGrams(
+            @Param("name") String name,
+            @Param("ipRequest") String ipRequest,
+            @Param("grams") Collection<String> grams,
+            @Param("gramCount") long gramCount,
+            Pageable pageable);
+
+    @Query(SUMMARY_SELECT + " FROM StoredComparisonResult r WHERE r.id IN :ids")
+    List<StoredComparisonSummaryRow> findSummariesByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Oldest comparisons created before {@code cutoff} whose payload is not in cold storage yet.
+     */
+    @Query(
+            "SELECT r.id FROM StoredComparisonResult r WHERE r.created < :cutoff"
+                    + " AND (r.storageFormat IS NULL OR r.storageFormat <> :coldFormat)"
+                    + " ORDER BY r.id")
+    List<Long> findIdsForColdStorage(
+            @Param("cutoff") LocalDateTime cutoff,
+            @Param("coldFormat") int coldFormat,
+            Pageable pageable);
+
+    /** Draws the next comparison ID so that it can be handed out before the row is written. */
+    @Query(value = "SELECT COMPARE_RESULT_SEQ.NEXTVAL FROM DUAL", nativeQuery = true)
+    long nextComparisonId();
+
+    /** Inserts a summary row under an ID drawn from {@link #nextComparisonId()}. */
+    @Modifying
+    @Query(
+            value =
+                    "INSERT INTO COMPARE_RESULTS"
+                            + " (ID, NAME, NAME_LC, IP_REQUEST, IP_REQUEST_LC, MARK_COLOR,"
+                            + " STORAGE_FORMAT)"
+                            + " VALUES (:id, :name, :nameLc, :ipRequest, :ipRequestLc,"
+                            + " :markColor, :storageFormat)",
+            nativeQuery = true)
+    void insertSummary(
+            @Param("id") long id,
+            @Param("name") String name,
+            @Param("nameLc") String nameLc,
+            @Param("ipRequest") String ipRequest,
+            @Param("ipRequestLc") String ipRequestLc,
+            @Param("markColor") String markColor,
+            @Param("storageFormat") Integer storageFormat);
 }
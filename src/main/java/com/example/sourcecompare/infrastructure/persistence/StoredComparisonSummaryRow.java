@@ -0,0 +1,7 @@
+package com.example.sourcecompare.infrastructure.persistence;
+
+import java.time.LocalDateTime;
+
+/** Listing columns of a stored comparison, selected without touching any payload column. */
+public record StoredComparisonSummaryRow(
+        Long id, String name, String ipRequest, LocalDateTime created, String markColor) {}
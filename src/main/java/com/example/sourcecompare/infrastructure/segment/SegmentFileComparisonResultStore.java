@@ -0,0 +1,500 @@
+package com.example.sourcecompare.infrastructure.segment;
+
+import com.example.sourcecompare.application.ChangedPathTerms;
+import com.example.sourcecompare.application.ComparisonResultStore;
+import com.example.sourcecompare.domain.ComparisonInputs;
+import com.example.sourcecompare.domain.ComparisonResult;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Repository;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Result store that needs no database: comparisons are appended to segment files on local disk and
+ * looked up through an in-memory index rebuilt from the record headers at startup.
+ *
+ * <p>Each record is a fixed prefix (header length, body length, header CRC32, body CRC32), a JSON
+ * header and, for saves, the result as deflated JSON. Headers carry the summary, changed-path terms
+ * and result key of a save, the new values of an update or the ID of a delete, so startup never
+ * touches the bodies. Bodies are read through a memory mapping of their byte range. Records are
+ * never rewritten; space of updated or deleted comparisons is not reclaimed.
+ */
+@Repository
+@ConditionalOnProperty(name = "comparison.store", havingValue = "segment")
+public class SegmentFileComparisonResultStore implements ComparisonResultStore {
+    private static final Logger log = LogManager.getLogger(SegmentFileComparisonResultStore.class);
+    private static final int PREFIX_BYTES = 4 * Integer.BYTES;
+    private static final Pattern SEGMENT_NAME = Pattern.compile("results-(\\d{6})\\.seg");
+
+    /** Name filters shorter than this match by prefix, as in the JPA store's trigram search. */
+    private static final int SHORT_NAME_FILTER = 3;
+
+    private enum RecordType {
+        SAVE,
+        UPDATE,
+        DELETE
+    }
+
+    private record RecordHeader(
+            RecordType type,
+            long id,
+            String name,
+            String ipRequest,
+            LocalDateTime created,
+            String markColor,
+            List<ChangedPathTerms.Term> paths,
+            String resultKey) {}
+
+    private record Entry(
+            ComparisonSummary summary,
+            List<ChangedPathTerms.Term> paths,
+            String resultKey,
+            Location body) {
+
+        Entry withSummary(ComparisonSummary changed) {
+            return new Entry(changed, paths, resultKey, body);
+        }
+    }
+
+    private record Location(String segment, long offset, int length, int crc) {}
+
+    private final Path directory;
+    private final long maxSegmentBytes;
+    private final boolean fsync;
+    private final ObjectMapper objectMapper;
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<String, Set<PathMatch>> pathTerms =
+            new ConcurrentSkipListMap<>();
+    private final Map<String, Long> resultKeys = new ConcurrentHashMap<>();
+    private final AtomicLong lastId = new AtomicLong();
+    private int currentSegment;
+
+    public SegmentFileComparisonResultStore(
+            @Value("${comparison.segment-store.directory:data/result-segments}") Path directory,
+            @Value("${comparison.segment-store.max-segment-bytes:268435456}") long maxSegmentBytes,
+            @Value("${comparison.segment-store.fsync:true}") boolean fsync,
+            ObjectMapper objectMapper) {
+        this.directory = directory.toAbsolutePath().normalize();
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.fsync = fsync;
+        this.objectMapper = objectMapper;
+        try {
+            Files.createDirectories(this.directory);
+            loadIndex();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public long allocateId() {
+        return lastId.incrementAndGet();
+    }
+
+    @Override
+    public void save(StoredComparison comparison) {
+        ComparisonSummary summary = comparison.summary();
+        List<ChangedPathTerms.Term> paths = ChangedPathTerms.of(comparison.result());
+        ComparisonInputs inputs = comparison.result().getInputs();
+        String resultKey = inputs != null ? inputs.getResultKey() : null;
+        RecordHeader header =
+                new RecordHeader(
+                        RecordType.SAVE,
+                        summary.id(),
+                        summary.name(),
+                        summary.ipRequest(),
+                        LocalDateTime.now(),
+                        summary.markColor(),
+                        paths,
+                        resultKey);
+        byte[] body = deflate(comparison.result());
+        synchronized (this) {
+            Location location = append(header, body);
+            lastId.accumulateAndGet(summary.id(), Math::max);
+            apply(header, location);
+        }
+    }
+
+    @Override
+    public Optional<StoredComparison> find(long id) {
+        Entry entry = entries.get(id);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        return Optional.of(new StoredComparison(entry.summary(), readBody(entry)));
+    }
+
+    @Override
+    public Optional<ComparisonSummary> findSummary(long id) {
+        return Optional.ofNullable(entries.get(id)).map(Entry::summary);
+    }
+
+    /** Results are stored whole, so their files never need to be fetched one by one. */
+    @Override
+    public Optional<StoredFileDiff> findFile(long id, int fileIndex) {
+        return Optional.empty();
+    }
+
+    @Override
+    public Page<ComparisonSummary> search(String nameFilter, String ipFilter, Pageable pageable) {
+        List<ComparisonSummary> matches =
+                entries.values().stream()
+                        .map(Entry::summary)
+                        .filter(summary -> nameMatches(summary.name(), nameFilter))
+                        .filter(summary -> startsWith(summary.ipRequest(), ipFilter))
+                        .sorted(newestFirst())
+                        .toList();
+        int from = (int) Math.min(pageable.getOffset(), matches.size());
+        int to = Math.min(from + pageable.getPageSize(), matches.size());
+        return new PageImpl<>(matches.subList(from, to), pageable, matches.size());
+    }
+
+    @Override
+    public List<ComparisonSummary> findSummaries(Collection<Long> ids) {
+        return ids.stream().map(entries::get).filter(Objects::nonNull).map(Entry::summary).toList();
+    }
+
+    @Override
+    public List<PathMatch> searchPaths(String query, int limit) {
+        Set<PathMatch> matches = new LinkedHashSet<>();
+        for (String prefix : ChangedPathTerms.queryPrefixes(query)) {
+            pathTerms
+                    .subMap(prefix, true, prefix + Character.MAX_VALUE, false)
+                    .values()
+                    .forEach(matches::addAll);
+        }
+        return matches.stream()
+                .sorted(Comparator.comparingLong(PathMatch::resultId).reversed())
+                .limit(limit)
+                .toList();
+    }
+
+    @Override
+    public Optional<Long> findByResultKey(String resultKey) {
+        return Optional.ofNullable(resultKeys.get(resultKey));
+    }
+
+    @Override
+    public void update(long id, String markColor, String name) {
+        synchronized (this) {
+            if (!entries.containsKey(id)) {
+                return;
+            }
+            RecordHeader header =
+                    new RecordHeader(
+                            RecordType.UPDATE, id, name, null, null, markColor, null, null);
+            apply(header, append(header, null));
+        }
+    }
+
+    @Override
+    public void delete(long id) {
+        synchronized (this) {
+            if (!entries.containsKey(id)) {
+                return;
+            }
+            RecordHeader header =
+                    new RecordHeader(RecordType.DELETE, id, null, null, null, null, null, null);
+            apply(header, append(header, null));
+        }
+        log.info("Deleted comparison result with ID {}", id);
+    }
+
+    private void apply(RecordHeader header, Location location) {
+        switch (header.type()) {
+            case SAVE -> {
+                ComparisonSummary summary =
+                        new ComparisonSummary(
+                                header.id(),
+                                header.name(),
+                                header.ipRequest(),
+                                header.created(),
+                                header.markColor());
+                List<ChangedPathTerms.Term> paths =
+                        header.paths() != null ? header.paths() : List.of();
+                removeTerms(
+                        entries.put(
+                                header.id(),
+                                new Entry(summary, paths, header.resultKey(), location)));
+                if (header.resultKey() != null) {
+                    resultKeys.merge(header.resultKey(), header.id(), Math::max);
+                }
+                for (ChangedPathTerms.Term term : paths) {
+                    pathTerms
+                            .computeIfAbsent(term.term(), key -> ConcurrentHashMap.newKeySet())
+                            .add(new PathMatch(header.id(), term.category(), term.path()));
+                }
+            }
+            case UPDATE ->
+                    entries.computeIfPresent(
+                            header.id(),
+                            (id, entry) -> {
+                                ComparisonSummary old = entry.summary();
+                                return entry.withSummary(
+                                        new ComparisonSummary(
+                                                old.id(),
+                                                header.name() != null ? header.name() : old.name(),
+                                                old.ipRequest(),
+                                                old.created(),
+                                                header.markColor() != null
+                                                        ? header.markColor()
+                                                        : old.markColor()));
+                            });
+            case DELETE -> removeTerms(entries.remove(header.id()));
+        }
+    }
+
+    private void removeTerms(Entry entry) {
+        if (entry == null) {
+            return;
+        }
+        long id = entry.summary().id();
+        if (entry.resultKey() != null && resultKeys.remove(entry.resultKey(), id)) {
+            // Fall back to the newest other comparison of the same inputs, if any.
+            entries.values().stream()
+                    .filter(other -> entry.resultKey().equals(other.resultKey()))
+                    .mapToLong(other -> other.summary().id())
+                    .filter(otherId -> otherId != id)
+                    .max()
+                    .ifPresent(otherId -> resultKeys.put(entry.resultKey(), otherId));
+        }
+        for (ChangedPathTerms.Term term : entry.paths()) {
+            pathTerms.computeIfPresent(
+                    term.term(),
+                    (key, matches) -> {
+                        matches.removeIf(match -> match.resultId() == id);
+                        return matches.isEmpty() ? null : matches;
+                    });
+        }
+    }
+
+    private Location append(RecordHeader header, byte[] body) {
+        try {
+            byte[] headerBytes = objectMapper.writeValueAsBytes(header);
+            int bodyLength = body != null ? body.length : 0;
+            ByteBuffer record = ByteBuffer.allocate(PREFIX_BYTES + headerBytes.length + bodyLength);
+            int bodyCrc = body != null ? crc(body) : 0;
+            record.putInt(headerBytes.length)
+                    .putInt(bodyLength)
+                    .putInt(crc(headerBytes))
+                    .putInt(bodyCrc)
+                    .put(headerBytes);
+            if (body != null) {
+                record.put(body);
+            }
+            record.flip();
+
+            Path segment = writableSegment();
+            try (FileChannel channel =
+                    FileChannel.open(
+                            segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                long offset = channel.size();
+                while (record.hasRemaining()) {
+                    channel.write(record, offset + record.position());
+                }
+                if (fsync) {
+                    channel.force(false);
+                }
+                return new Location(
+                        segment.getFileName().toString(),
+                        offset + PREFIX_BYTES + headerBytes.length,
+                        bodyLength,
+                        bodyCrc);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Path writableSegment() throws IOException {
+        Path segment = directory.resolve(segmentName(currentSegment));
+        if (Files.exists(segment) && Files.size(segment) >= maxSegmentBytes) {
+            currentSegment++;
+            segment = directory.resolve(segmentName(currentSegment));
+        }
+        return segment;
+    }
+
+    private ComparisonResult readBody(Entry entry) {
+        Location body = entry.body();
+        if (body.length() == 0) {
+            return null;
+        }
+        try (FileChannel channel =
+                FileChannel.open(directory.resolve(body.segment()), StandardOpenOption.READ)) {
+            MappedByteBuffer mapped =
+                    channel.map(FileChannel.MapMode.READ_ONLY, body.offset(), body.length());
+            byte[] bytes = new byte[body.length()];
+            mapped.get(bytes);
+            if (crc(bytes) != body.crc()) {
+                throw new IOException("Checksum mismatch in " + body.segment());
+            }
+            try (InputStream in = new InflaterInputStream(new ByteArrayInputStream(bytes))) {
+                return objectMapper.readValue(in, ComparisonResult.class);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Replays the headers of all segments in order. A torn record at the end of the last segment,
+     * left by a crash during an append, is cut off; damage anywhere else fails startup.
+     */
+    private void loadIndex() throws IOException {
+        List<Integer> segments = segmentNumbers();
+        for (int i = 0; i < segments.size(); i++) {
+            currentSegment = segments.get(i);
+            loadSegment(segmentName(currentSegment), i == segments.size() - 1);
+        }
+        log.info(
+                "Loaded {} comparison results from {} segments in {}",
+                entries.size(),
+                segments.size(),
+                directory);
+    }
+
+    private void loadSegment(String name, boolean last) throws IOException {
+        try (FileChannel channel =
+                FileChannel.open(
+                        directory.resolve(name),
+                        StandardOpenOption.READ,
+                        StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            long offset = 0;
+            ByteBuffer prefix = ByteBuffer.allocate(PREFIX_BYTES);
+            while (offset < size) {
+                RecordHeader header = null;
+                int headerLength = 0;
+                int bodyLength = 0;
+                int bodyCrc = 0;
+                if (offset + PREFIX_BYTES <= size) {
+                    prefix.clear();
+                    readFully(channel, prefix, offset);
+                    prefix.flip();
+                    headerLength = prefix.getInt();
+                    bodyLength = prefix.getInt();
+                    int headerCrc = prefix.getInt();
+                    bodyCrc = prefix.getInt();
+                    long end = offset + PREFIX_BYTES + (long) headerLength + bodyLength;
+                    if (headerLength > 0 && bodyLength >= 0 && end <= size) {
+                        ByteBuffer headerBytes = ByteBuffer.allocate(headerLength);
+                        readFully(channel, headerBytes, offset + PREFIX_BYTES);
+                        if (crc(headerBytes.array()) == headerCrc) {
+                            header =
+                                    objectMapper.readValue(headerBytes.array(), RecordHeader.class);
+                        }
+                    }
+                }
+                if (header == null) {
+                    if (!last) {
+                        throw new IOException("Corrupt record at offset " + offset + " of " + name);
+                    }
+                    log.warn("Cutting off torn record at offset {} of {}", offset, name);
+                    channel.truncate(offset);
+                    return;
+                }
+                long bodyOffset = offset + PREFIX_BYTES + headerLength;
+                lastId.accumulateAndGet(header.id(), Math::max);
+                apply(header, new Location(name, bodyOffset, bodyLength, bodyCrc));
+                offset = bodyOffset + bodyLength;
+            }
+        }
+    }
+
+    private List<Integer> segmentNumbers() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> SEGMENT_NAME.matcher(path.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .map(matcher -> Integer.parseInt(matcher.group(1)))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of segment");
+            }
+        }
+    }
+
+    private byte[] deflate(ComparisonResult result) {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        try (OutputStream out = new DeflaterOutputStream(payload)) {
+            objectMapper.writeValue(out, result);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return payload.toByteArray();
+    }
+
+    private static int crc(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+
+    /** Matches names by substring, or by prefix when the filter is shorter than a trigram. */
+    private static boolean nameMatches(String name, String filter) {
+        if (filter == null || filter.length() < SHORT_NAME_FILTER) {
+            return startsWith(name, filter);
+        }
+        return name != null && name.toLowerCase(Locale.ROOT).contains(filter);
+    }
+
+    private static boolean startsWith(String value, String filter) {
+        return filter == null
+                || filter.isEmpty()
+                || (value != null && value.toLowerCase(Locale.ROOT).startsWith(filter));
+    }
+
+    private static Comparator<ComparisonSummary> newestFirst() {
+        return Comparator.comparing(
+                        ComparisonSummary::created, Comparator.nullsLast(Comparator.reverseOrder()))
+                .thenComparing(ComparisonSummary::id, Comparator.reverseOrder());
+    }
+
+    private static String segmentName(int number) {
+        return String.format("results-%06d.seg", number);
+    }
+}
@@ -0,0 +1,296 @@
+package com.example.sourcecompare.infrastructure.snapshot;
+
+import com.example.sourcecompare.application.SideSnapshotStore;
+import com.example.sourcecompare.domain.FileInfo;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Snapshots as one file per key under {@code comparison.snapshots.directory}. A file starts with an
+ * index of every entry's name, offset, lengths and SHA-256 digest, then the digests of the archive
+ * entries the side was processed from, followed by the deflated contents. Loading maps the file
+ * read-only and parses only the index; each entry is inflated the first time its content is read,
+ * so a baseline whose files are unchanged is barely touched.
+ *
+ * <p>Files are written to a temporary name and moved into place, so readers never see a partial
+ * snapshot. Loading a snapshot refreshes its modification time, and the least recently used
+ * snapshots are deleted once the directory holds more than {@code comparison.snapshots.max-bytes}.
+ */
+@Component
+public class FileSideSnapshotStore implements SideSnapshotStore {
+    private static final Logger log = LogManager.getLogger(FileSideSnapshotStore.class);
+    private static final byte[] MAGIC = "SCSNAP02".getBytes(StandardCharsets.US_ASCII);
+    private static final int DIGEST_BYTES = 32;
+    private static final Pattern KEY = Pattern.compile("[A-Za-z0-9_-]{1,200}");
+    private static final String SUFFIX = ".snap";
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long maxBytes;
+
+    public FileSideSnapshotStore(
+            @Value("${comparison.snapshots.enabled:true}") boolean enabled,
+            @Value("${comparison.snapshots.directory:data/snapshots}") Path directory,
+            @Value("${comparison.snapshots.max-bytes:10737418240}") long maxBytes) {
+        this.enabled = enabled;
+        this.directory = directory.toAbsolutePath().normalize();
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public Optional<Snapshot> load(String key) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        Path file = file(key);
+        if (!Files.isRegularFile(file)) {
+            return Optional.empty();
+        }
+        try {
+            Snapshot snapshot = read(file);
+            touch(file);
+            return Optional.of(snapshot);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Ignoring unreadable snapshot {}", file, e);
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public void save(String key, Snapshot snapshot) {
+        if (!enabled) {
+            return;
+        }
+        Path file = file(key);
+        if (Files.exists(file)) {
+            return;
+        }
+        Path temp = null;
+        try {
+            Files.createDirectories(directory);
+            temp = Files.createTempFile(directory, key, ".tmp");
+            write(temp, snapshot);
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            temp = null;
+            evictBeyondBudget();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not save snapshot {}", file, e);
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                    // Best-effort cleanup
+                }
+            }
+        }
+    }
+
+    private record Compressed(byte[] name, byte[] content, int rawLength, byte[] digest) {}
+
+    private record Input(byte[] name, byte[] digest) {}
+
+    private static void write(Path file, Snapshot snapshot) throws IOException {
+        List<Compressed> entries = new ArrayList<>(snapshot.files().size());
+        int indexBytes = MAGIC.length + Integer.BYTES;
+        for (FileInfo info : snapshot.files().values()) {
+            String content = info.getContent();
+            byte[] raw = content == null ? new byte[0] : content.getBytes(StandardCharsets.UTF_8);
+            byte[] name = info.getName().getBytes(StandardCharsets.UTF_8);
+            entries.add(
+                    new Compressed(
+                            name,
+                            deflate(raw),
+                            content == null ? -1 : raw.length,
+                            FileInfo.digestOf(content)));
+            indexBytes += Integer.BYTES + name.length + Long.BYTES + 2 * Integer.BYTES;
+            indexBytes += DIGEST_BYTES;
+        }
+        List<Input> inputs = new ArrayList<>(snapshot.inputDigests().size());
+        indexBytes += Integer.BYTES;
+        for (Map.Entry<String, String> input : snapshot.inputDigests().entrySet()) {
+            byte[] name = input.getKey().getBytes(StandardCharsets.UTF_8);
+            inputs.add(new Input(name, HexFormat.of().parseHex(input.getValue())));
+            indexBytes += Integer.BYTES + name.length + DIGEST_BYTES;
+        }
+
+        try (OutputStream stream = Files.newOutputStream(file);
+                DataOutputStream out = new DataOutputStream(stream)) {
+            out.write(MAGIC);
+            out.writeInt(entries.size());
+            long offset = indexBytes;
+            for (Compressed entry : entries) {
+                out.writeInt(entry.name().length);
+                out.write(entry.name());
+                out.writeLong(offset);
+                out.writeInt(entry.content().length);
+                out.writeInt(entry.rawLength());
+                out.write(entry.digest());
+                offset += entry.content().length;
+            }
+            out.writeInt(inputs.size());
+            for (Input input : inputs) {
+                out.writeInt(input.name().length);
+                out.write(input.name());
+                out.write(input.digest());
+            }
+            for (Compressed entry : entries) {
+                out.write(entry.content());
+            }
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    private static Snapshot read(Path file) throws IOException {
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot too large to map: " + file);
+            }
+            // The mapping stays valid after the channel is closed.
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        ByteBuffer index = mapped.duplicate();
+        byte[] magic = new byte[MAGIC.length];
+        index.get(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a snapshot: " + file);
+        }
+        int count = index.getInt();
+        Map<String, FileInfo> files = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            byte[] name = new byte[index.getInt()];
+            index.get(name);
+            long offset = index.getLong();
+            int compressedLength = index.getInt();
+            int rawLength = index.getInt();
+            byte[] digest = new byte[DIGEST_BYTES];
+            index.get(digest);
+            if (offset < 0 || offset + compressedLength > mapped.capacity()) {
+                throw new IOException("Snapshot entry outside the file: " + file);
+            }
+            String entryName = new String(name, StandardCharsets.UTF_8);
+            files.put(
+                    entryName,
+                    new SnapshotFileInfo(
+                            entryName,
+                            mapped.slice((int) offset, compressedLength),
+                            rawLength,
+                            digest));
+        }
+        int inputCount = index.getInt();
+        Map<String, String> inputDigests = new LinkedHashMap<>();
+        for (int i = 0; i < inputCount; i++) {
+            byte[] name = new byte[index.getInt()];
+            index.get(name);
+            byte[] digest = new byte[DIGEST_BYTES];
+            index.get(digest);
+            inputDigests.put(
+                    new String(name, StandardCharsets.UTF_8), HexFormat.of().formatHex(digest));
+        }
+        return new Snapshot(files, inputDigests);
+    }
+
+    private static byte[] deflate(byte[] data) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (DeflaterOutputStream out = new DeflaterOutputStream(buffer)) {
+            out.write(data);
+        }
+        return buffer.toByteArray();
+    }
+
+    private static void touch(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // Only affects which snapshot is evicted first.
+        }
+    }
+
+    // Deletes least recently used snapshots until the directory fits the budget again.
+    private void evictBeyondBudget() throws IOException {
+        List<Path> snapshots;
+        try (Stream<Path> files = Files.list(directory)) {
+            snapshots =
+                    files.filter(path -> path.getFileName().toString().endsWith(SUFFIX))
+                            .sorted(Comparator.comparing(FileSideSnapshotStore::lastModified))
+                            .toList();
+        }
+        long total = 0;
+        for (Path snapshot : snapshots) {
+            total += sizeOf(snapshot);
+        }
+        for (Path snapshot : snapshots) {
+            if (total <= maxBytes) {
+                break;
+            }
+            long size = sizeOf(snapshot);
+            if (Files.deleteIfExists(snapshot)) {
+                total -= size;
+                log.info("Evicted snapshot {} to stay within {} bytes", snapshot, maxBytes);
+            }
+        }
+    }
+
+    private static FileTime lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static long sizeOf(Path path) {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private Path file(String key) {
+        if (key == null || !KEY.matcher(key).matches()) {
+            throw new IllegalArgumentException("Invalid snapshot key " + key);
+        }
+        return directory.resolve(key + SUFFIX);
+    }
+}
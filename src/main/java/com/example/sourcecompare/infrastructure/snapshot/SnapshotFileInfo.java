@@ -0,0 +1,69 @@
+package com.example.sourcecompare.infrastructure.snapshot;
+
+import com.example.sourcecompare.domain.FileInfo;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * A file of a snapshot whose content stays compressed in the mapped snapshot until it is first
+ * read. Its digest comes from the snapshot index, so comparing it with an equal file reads nothing.
+ */
+final class SnapshotFileInfo extends FileInfo {
+    private final ByteBuffer compressed;
+    private final int rawLength;
+    private final byte[] digest;
+    private volatile String content;
+
+    /** {@code rawLength} is -1 for a file saved without content. */
+    SnapshotFileInfo(String name, ByteBuffer compressed, int rawLength, byte[] digest) {
+        super(name, null);
+        this.compressed = compressed;
+        this.rawLength = rawLength;
+        this.digest = digest;
+    }
+
+    @Override
+    public String getContent() {
+        if (rawLength < 0) {
+            return null;
+        }
+        String loaded = content;
+        if (loaded == null) {
+            loaded = inflate();
+            content = loaded;
+        }
+        return loaded;
+    }
+
+    @Override
+    public byte[] knownDigest() {
+        return digest.clone();
+    }
+
+    private String inflate() {
+        byte[] raw = new byte[rawLength];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed.duplicate());
+            int read = 0;
+            while (read < rawLength && !inflater.finished()) {
+                int inflated = inflater.inflate(raw, read, rawLength - read);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                read += inflated;
+            }
+            if (read != rawLength) {
+                throw new IllegalStateException("Truncated snapshot entry " + getName());
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt snapshot entry " + getName(), e);
+        } finally {
+            inflater.end();
+        }
+        return new String(raw, StandardCharsets.UTF_8);
+    }
+}
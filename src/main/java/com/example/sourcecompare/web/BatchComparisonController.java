@@ -0,0 +1,116 @@
+package com.example.sourcecompare.web;
+
+import com.example.sourcecompare.application.BatchComparisonService;
+import com.example.sourcecompare.application.ComparisonContext;
+import com.example.sourcecompare.application.ComparisonProgressListener;
+import com.example.sourcecompare.domain.BatchManifest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * Batch comparisons for CI pipelines: {@code POST /batch} takes a {@link BatchManifest} whose sides
+ * are server paths and answers with one JSON line per pair (NDJSON) as each pair finishes. Every
+ * result is stored like a comparison from the form, and its summary carries the id to open it with.
+ * Closing the connection cancels the pairs still running.
+ */
+@Controller
+public class BatchComparisonController {
+    private static final Logger log = LogManager.getLogger(BatchComparisonController.class);
+
+    private final BatchComparisonService batchComparisonService;
+    private final ComparisonInputResolver inputResolver;
+    private final ObjectMapper objectMapper;
+    // Each driver waits on its pairs for as long as the batch runs, so it gets a thread of its own
+    // rather than one of the threads that drive single comparisons.
+    private final ExecutorService drivers =
+            Executors.newThreadPerTaskExecutor(
+                    Thread.ofVirtual().name("comparison-batch-driver-", 1).factory());
+    private final long timeoutMillis;
+    private final int maxPairs;
+
+    public BatchComparisonController(
+            BatchComparisonService batchComparisonService,
+            ComparisonInputResolver inputResolver,
+            ObjectMapper objectMapper,
+            @Value("${comparison.batch.timeout-ms:21600000}") long timeoutMillis,
+            @Value("${comparison.batch.max-pairs:500}") int maxPairs) {
+        this.batchComparisonService = batchComparisonService;
+        this.inputResolver = inputResolver;
+        this.objectMapper = objectMapper;
+        this.timeoutMillis = timeoutMillis;
+        this.maxPairs = maxPairs;
+    }
+
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ResponseBodyEmitter> run(
+            @RequestBody BatchManifest manifest, HttpServletRequest httpRequest) {
+        if (manifest.pairs().isEmpty()) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST, "The manifest has no pairs to compare");
+        }
+        if (manifest.pairs().size() > maxPairs) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST, "A batch can have at most " + maxPairs + " pairs");
+        }
+        ComparisonContext context =
+                new ComparisonContext(httpRequest.getRemoteAddr(), ComparisonProgressListener.NONE);
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(timeoutMillis);
+        emitter.onTimeout(() -> context.cancel("The batch took too long"));
+        emitter.onError(error -> context.cancel("Client disconnected"));
+        // Also fires when the client disconnects; a finished batch ignores the cancel.
+        emitter.onCompletion(() -> context.cancel("Client disconnected"));
+        drivers.execute(
+                () -> {
+                    try {
+                        // Server paths create no temp files.
+                        batchComparisonService.run(
+                                manifest,
+                                (label, path, ref) ->
+                                        inputResolver.resolve(
+                                                label,
+                                                new ComparisonInputResolver.Side(null, path, ref),
+                                                List.of()),
+                                true,
+                                context,
+                                summary -> send(emitter, summary));
+                        emitter.complete();
+                    } catch (IOException | RuntimeException e) {
+                        log.warn("Batch for {} stopped", context.requester(), e);
+                        emitter.completeWithError(e);
+                    }
+                });
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(emitter);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        drivers.shutdownNow();
+    }
+
+    private void send(ResponseBodyEmitter emitter, BatchComparisonService.PairSummary summary) {
+        try {
+            String line = objectMapper.writeValueAsString(summary) + "\n";
+            emitter.send(line, MediaType.APPLICATION_NDJSON);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.example.sourcecompare.web;
+
+import com.example.sourcecompare.application.ChangeMatrix;
+import com.example.sourcecompare.application.ComparisonContext;
+import com.example.sourcecompare.application.ComparisonProgressListener;
+import com.example.sourcecompare.application.ComparisonResultPersistenceService;
+import com.example.sourcecompare.application.ComparisonScheduler;
+import com.example.sourcecompare.application.ComparisonUseCase;
+import com.example.sourcecompare.application.ComparisonWriteBehindQueue;
+import com.example.sourcecompare.domain.ArchiveInput;
+import com.example.sourcecompare.domain.ComparisonInputs;
+import com.example.sourcecompare.domain.ComparisonMode;
+import com.example.sourcecompare.domain.ComparisonResult;
+import com.example.sourcecompare.domain.MultiComparisonRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * Compares one baseline with several candidate builds. Each candidate's result is stored as an
+ * ordinary comparison named {@code baseline vs candidate}; the matrix page then shows which files
+ * changed in which candidate and links every cell's column to its comparison.
+ */
+@Controller
+public class ChangeMatrixController {
+    private static final long ASYNC_TIMEOUT_MARGIN_MILLIS = 60_000;
+
+    private final ComparisonUseCase comparisonUseCase;
+    private final ComparisonInputResolver inputResolver;
+    private final ComparisonResultPersistenceService comparisonResultPersistenceService;
+    private final ComparisonWriteBehindQueue comparisonWriteBehindQueue;
+    private final AsyncTaskExecutor asyncExecutor;
+    private final long asyncTimeoutMillis;
+    private final int maxCandidates;
+
+    public ChangeMatrixController(
+            ComparisonUseCase comparisonUseCase,
+            ComparisonInputResolver inputResolver,
+            ComparisonResultPersistenceService comparisonResultPersistenceService,
+            ComparisonWriteBehindQueue comparisonWriteBehindQueue,
+            ComparisonScheduler comparisonScheduler,
+            @Value("${comparison.max-duration-ms:1800000}") long maxDurationMillis,
+            @Value("${comparison.multi.max-candidates:10}") int maxCandidates) {
+        this.comparisonUseCase = comparisonUseCase;
+        this.inputResolver = inputResolver;
+        this.comparisonResultPersistenceService = comparisonResultPersistenceService;
+        this.comparisonWriteBehindQueue = comparisonWriteBehindQueue;
+        this.asyncExecutor = new TaskExecutorAdapter(comparisonScheduler.comparisonExecutor());
+        this.asyncTimeoutMillis = maxDurationMillis + ASYNC_TIMEOUT_MARGIN_MILLIS;
+        this.maxCandidates = maxCandidates;
+    }
+
+    /**
+     * Every uploaded candidate file and every line of {@code candidatePaths} is one candidate. Runs
+     * like {@code /compare} and redirects to the matrix of the stored results.
+     */
+    @PostMapping("/compare-many")
+    public WebAsyncTask<String> compareMany(
+            @RequestParam(name = "baselineZip", required = false) MultipartFile[] baselineZip,
+            @RequestParam(name = "baselinePath", required = false) String baselinePath,
+            @RequestParam(name = "baselineRef", required = false) String baselineRef,
+            @RequestParam(name = "candidateZip", required = false) MultipartFile[] candidateZip,
+            @RequestParam(name = "candidatePaths", required = false) String candidatePaths,
+            @RequestParam(name = "mode", defaultValue = "CLASS_VS_CLASS") ComparisonMode mode,
+            @RequestParam(name = "contextSize", defaultValue = "5") int contextSize,
+            @RequestParam(name = "showUnchanged", defaultValue = "false") boolean showUnchanged,
+            HttpServletRequest httpRequest)
+            throws IOException {
+        ComparisonInputResolver.Side baseline =
+                new ComparisonInputResolver.Side(baselineZip, baselinePath, baselineRef);
+        List<ComparisonInputResolver.Side> candidates = candidates(candidateZip, candidatePaths);
+        if (candidates.isEmpty()) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST, "Upload files or give server paths for the candidates");
+        }
+        if (candidates.size() > maxCandidates) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST,
+                    "At most " + maxCandidates + " candidates can be compared at once");
+        }
+
+        List<Path> tempFiles = new ArrayList<>();
+        MultiComparisonRequest request;
+        try {
+            ArchiveInput baselineInput = inputResolver.resolve("baseline", baseline, tempFiles);
+            List<ArchiveInput> candidateInputs = new ArrayList<>();
+            for (int i = 0; i < candidates.size(); i++) {
+                String label = "candidate " + (i + 1);
+                candidateInputs.add(inputResolver.resolve(label, candidates.get(i), tempFiles));
+            }
+            request =
+                    new MultiComparisonRequest(
+                            baselineInput, candidateInputs, mode, contextSize, showUnchanged);
+        } catch (IOException | RuntimeException e) {
+            ComparisonJobController.deleteAll(tempFiles);
+            throw e;
+        }
+        String ipRequest = httpRequest.getRemoteAddr();
+        List<String> names =
+                candidates.stream()
+                        .map(candidate -> inputResolver.describeComparison(baseline, candidate))
+                        .toList();
+        ComparisonContext context =
+                new ComparisonContext(ipRequest, ComparisonProgressListener.NONE);
+        WebAsyncTask<String> task =
+                new WebAsyncTask<>(
+                        asyncTimeoutMillis,
+                        asyncExecutor,
+                        () -> {
+                            try {
+                                List<ComparisonResult> results =
+                                        comparisonUseCase.compareMany(request, context);
+                                List<Long> ids = new ArrayList<>();
+                                for (int i = 0; i < results.size(); i++) {
+                                    ids.add(
+                                            comparisonWriteBehindQueue.submit(
+                                                    names.get(i), ipRequest, results.get(i)));
+                                }
+                                return "redirect:/matrix?ids="
+                                        + ids.stream()
+                                                .map(String::valueOf)
+                                                .collect(Collectors.joining(","));
+                            } finally {
+                                ComparisonJobController.deleteAll(tempFiles);
+                            }
+                        });
+        task.onTimeout(
+                () -> {
+                    context.cancel("The comparison took too long");
+                    throw new ResponseStatusException(
+                            HttpStatus.SERVICE_UNAVAILABLE, "The comparison took too long");
+                });
+        task.onError(
+                () -> {
+                    context.cancel("Client disconnected");
+                    return null;
+                });
+        task.onCompletion(() -> context.cancel("Client disconnected"));
+        return task;
+    }
+
+    /**
+     * The change matrix of stored comparisons that share a baseline, one column per id. Rejects
+     * comparisons whose baselines differ or are not known, since their columns would not line up.
+     */
+    @GetMapping("/matrix")
+    public String viewMatrix(@RequestParam("ids") List<Long> ids, Model model) {
+        if (ids.isEmpty() || ids.size() > maxCandidates) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST, "Give between 1 and " + maxCandidates + " ids");
+        }
+        List<ChangeMatrix.Column> columns = new ArrayList<>();
+        List<ComparisonResult> results = new ArrayList<>();
+        Set<String> baselines = new HashSet<>();
+        for (long id : ids) {
+            var stored =
+                    comparisonWriteBehindQueue
+                            .findPending(id)
+                            .orElseGet(() -> comparisonResultPersistenceService.loadComparison(id));
+            columns.add(new ChangeMatrix.Column(stored.id(), stored.name()));
+            results.add(stored.result());
+            baselines.add(baselineOf(stored.result()));
+        }
+        if (baselines.size() != 1 || baselines.contains(null)) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST, "These comparisons do not share a baseline");
+        }
+        model.addAttribute("matrix", ChangeMatrix.of(columns, results));
+        return "matrix";
+    }
+
+    /** The baseline recorded by compare-many, or else the snapshot of the left side. */
+    private static String baselineOf(ComparisonResult result) {
+        ComparisonInputs inputs = result.getInputs();
+        if (inputs == null) {
+            return null;
+        }
+        return inputs.getBaseline() != null ? inputs.getBaseline() : inputs.getLeftSnapshot();
+    }
+
+    private static List<ComparisonInputResolver.Side> candidates(
+            MultipartFile[] uploads, String serverPaths) {
+        List<ComparisonInputResolver.Side> candidates = new ArrayList<>();
+        if (uploads != null) {
+            for (MultipartFile upload : uploads) {
+                if (upload != null && !upload.isEmpty()) {
+                    candidates.add(
+                            new ComparisonInputResolver.Side(
+                                    new MultipartFile[] {upload}, null, null));
+                }
+            }
+        }
+        if (serverPaths != null) {
+            for (String line : serverPaths.split("\\R")) {
+                if (!line.isBlank()) {
+                    candidates.add(new ComparisonInputResolver.Side(null, line.trim(), null));
+                }
+            }
+        }
+        return candidates;
+    }
+}
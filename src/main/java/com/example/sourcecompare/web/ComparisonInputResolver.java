@@ -0,0 +1,89 @@
+package com.example.sourcecompare.web;
+
+import com.example.sourcecompare.application.ServerPathArchiveSource;
+import com.example.sourcecompare.domain.ArchiveInput;
+import com.example.sourcecompare.infrastructure.git.GitRefArchiveSource;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Turns one side of a comparison form into an archive: a commit of a Git repository when a path and
+ * a ref are given, a path on the server when only a path is given, otherwise the uploaded files,
+ * spooled so that they outlive the request.
+ */
+@Component
+public class ComparisonInputResolver {
+    private final MultipartArchiveInputAdapter archiveInputAdapter;
+    private final ServerPathArchiveSource serverPathArchiveSource;
+    private final GitRefArchiveSource gitRefArchiveSource;
+
+    /** What the form gave for one side; any of the fields may be missing. */
+    public record Side(MultipartFile[] files, String serverPath, String ref) {}
+
+    public ComparisonInputResolver(
+            MultipartArchiveInputAdapter archiveInputAdapter,
+            ServerPathArchiveSource serverPathArchiveSource,
+            GitRefArchiveSource gitRefArchiveSource) {
+        this.archiveInputAdapter = archiveInputAdapter;
+        this.serverPathArchiveSource = serverPathArchiveSource;
+        this.gitRefArchiveSource = gitRefArchiveSource;
+    }
+
+    public boolean serverPathsEnabled() {
+        return serverPathArchiveSource.isEnabled();
+    }
+
+    /** Temp files created for uploads are added to {@code tempFiles}; server paths create none. */
+    public ArchiveInput resolve(String label, Side side, List<Path> tempFiles) throws IOException {
+        if (hasText(side.ref())) {
+            if (!hasText(side.serverPath())) {
+                throw new ResponseStatusException(
+                        HttpStatus.BAD_REQUEST,
+                        "Give a Git repository path on the server for the " + label + " ref");
+            }
+            return gitRefArchiveSource.open(side.serverPath(), side.ref());
+        }
+        if (hasText(side.serverPath())) {
+            return serverPathArchiveSource.open(side.serverPath());
+        }
+        if (!hasUpload(side.files())) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST, "Upload files or give a server path for the " + label);
+        }
+        return archiveInputAdapter.spool(side.files(), tempFiles);
+    }
+
+    public String describeComparison(Side left, Side right) {
+        return String.format("%s vs %s", describe(left), describe(right));
+    }
+
+    public String describe(Side side) {
+        if (hasText(side.serverPath())) {
+            String path = side.serverPath().trim();
+            return hasText(side.ref()) ? path + "@" + side.ref().trim() : path;
+        }
+        return archiveInputAdapter.describeFilenames(side.files());
+    }
+
+    private static boolean hasText(String value) {
+        return value != null && !value.isBlank();
+    }
+
+    private static boolean hasUpload(MultipartFile[] files) {
+        if (files == null) {
+            return false;
+        }
+        for (MultipartFile file : files) {
+            if (file != null && !file.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
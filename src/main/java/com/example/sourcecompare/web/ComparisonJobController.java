@@ -0,0 +1,146 @@
+package com.example.sourcecompare.web;
+
+import com.example.sourcecompare.application.ComparisonJob;
+import com.example.sourcecompare.application.ComparisonJobService;
+import com.example.sourcecompare.domain.ComparisonMode;
+import com.example.sourcecompare.domain.ComparisonRequest;
+import jakarta.servlet.http.HttpServletRequest;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Background comparisons: {@code POST /jobs} spools the uploads, or opens the server paths given
+ * instead, and answers with the job status right away, {@code GET /jobs/{id}/events} streams status
+ * updates as server-sent events until the job has finished and {@code POST /jobs/{id}/cancel} stops
+ * it.
+ */
+@Controller
+public class ComparisonJobController {
+    private static final Logger log = LogManager.getLogger(ComparisonJobController.class);
+
+    private final ComparisonJobService comparisonJobService;
+    private final ComparisonInputResolver inputResolver;
+    private final long eventsTimeoutMillis;
+
+    public ComparisonJobController(
+            ComparisonJobService comparisonJobService,
+            ComparisonInputResolver inputResolver,
+            @Value("${comparison.jobs.events-timeout-ms:1800000}") long eventsTimeoutMillis) {
+        this.comparisonJobService = comparisonJobService;
+        this.inputResolver = inputResolver;
+        this.eventsTimeoutMillis = eventsTimeoutMillis;
+    }
+
+    @PostMapping(value = "/jobs", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public ResponseEntity<ComparisonJob.Status> submit(
+            @RequestParam(name = "leftZip", required = false) MultipartFile[] leftZip,
+            @RequestParam(name = "rightZip", required = false) MultipartFile[] rightZip,
+            @RequestParam(name = "leftPath", required = false) String leftPath,
+            @RequestParam(name = "rightPath", required = false) String rightPath,
+            @RequestParam(name = "leftRef", required = false) String leftRef,
+            @RequestParam(name = "rightRef", required = false) String rightRef,
+            @RequestParam(name = "mode", defaultValue = "CLASS_VS_CLASS") ComparisonMode mode,
+            @RequestParam(name = "contextSize", defaultValue = "5") int contextSize,
+            @RequestParam(name = "showUnchanged", defaultValue = "false") boolean showUnchanged,
+            HttpServletRequest httpRequest)
+            throws IOException {
+        ComparisonInputResolver.Side left =
+                new ComparisonInputResolver.Side(leftZip, leftPath, leftRef);
+        ComparisonInputResolver.Side right =
+                new ComparisonInputResolver.Side(rightZip, rightPath, rightRef);
+        List<Path> tempFiles = new ArrayList<>();
+        ComparisonRequest request;
+        try {
+            request =
+                    new ComparisonRequest(
+                            inputResolver.resolve("left", left, tempFiles),
+                            inputResolver.resolve("right", right, tempFiles),
+                            mode,
+                            contextSize,
+                            showUnchanged);
+        } catch (IOException | RuntimeException e) {
+            deleteAll(tempFiles);
+            throw e;
+        }
+        ComparisonJob job =
+                comparisonJobService.submit(
+                        request,
+                        inputResolver.describeComparison(left, right),
+                        httpRequest.getRemoteAddr(),
+                        () -> deleteAll(tempFiles));
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(job.status());
+    }
+
+    @GetMapping(value = "/jobs/{jobId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public ComparisonJob.Status status(@PathVariable("jobId") String jobId) {
+        return findJob(jobId).status();
+    }
+
+    @GetMapping(value = "/jobs/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter events(@PathVariable("jobId") String jobId) {
+        ComparisonJob job = findJob(jobId);
+        SseEmitter emitter = new SseEmitter(eventsTimeoutMillis);
+        Runnable unsubscribe =
+                job.subscribe(
+                        status -> {
+                            try {
+                                emitter.send(SseEmitter.event().name("status").data(status));
+                                if (status.state().isFinished()) {
+                                    emitter.complete();
+                                }
+                            } catch (IOException | IllegalStateException e) {
+                                // The client went away; the job carries on regardless.
+                                emitter.completeWithError(e);
+                            }
+                        });
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(unsubscribe);
+        emitter.onError(error -> unsubscribe.run());
+        return emitter;
+    }
+
+    @PostMapping(value = "/jobs/{jobId}/cancel", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public ComparisonJob.Status cancel(
+            @PathVariable("jobId") String jobId, HttpServletRequest httpRequest) {
+        return comparisonJobService.cancel(jobId, httpRequest.getRemoteAddr()).status();
+    }
+
+    private ComparisonJob findJob(String jobId) {
+        return comparisonJobService
+                .find(jobId)
+                .orElseThrow(
+                        () -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Job not found"));
+    }
+
+    static void deleteAll(List<Path> tempFiles) {
+        for (Path tempFile : tempFiles) {
+            try {
+                Files.deleteIfExists(tempFile);
+            } catch (IOException e) {
+                log.warn("Could not delete upload {}: {}", tempFile, e.toString());
+            }
+        }
+    }
+}
@@ -1,34 +1,73 @@
 package com.example.sourcecompare.web;
 
+import com.example.sourcecompare.application.ComparisonContext;
+import com.example.sourcecompare.application.ComparisonProgressListener;
 import com.example.sourcecompare.application.ComparisonResultPersistenceService;
+import com.example.sourcecompare.application.ComparisonScheduler;
 import com.example.sourcecompare.application.ComparisonUseCase;
+import com.example.sourcecompare.application.ComparisonWriteBehindQueue;
+import com.example.sourcecompare.domain.ArchiveInput;
+import com.example.sourcecompare.domain.ComparisonInputs;
 import com.example.sourcecompare.domain.ComparisonMode;
 import com.example.sourcecompare.domain.ComparisonRequest;
 import com.example.sourcecompare.domain.ComparisonResult;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.async.WebAsyncTask;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 import jakarta.servlet.http.HttpServletRequest;
 
 @Controller
 public class HomeController {
+    private static final Logger log = LogManager.getLogger(HomeController.class);
+    private static final long PENDING_WRITE_TIMEOUT_SECONDS = 120;
+    private static final long ASYNC_TIMEOUT_MARGIN_MILLIS = 60_000;
+
     private final ComparisonUseCase comparisonUseCase;
-    private final MultipartArchiveInputAdapter archiveInputAdapter;
+    private final ComparisonInputResolver inputResolver;
     private final ComparisonResultPersistenceService comparisonResultPersistenceService;
+    private final ComparisonWriteBehindQueue comparisonWriteBehindQueue;
+    private final AsyncTaskExecutor asyncExecutor;
+    private final long asyncTimeoutMillis;
+    private final boolean reuseResults;
 
     public HomeController(
             ComparisonUseCase comparisonUseCase,
-            MultipartArchiveInputAdapter archiveInputAdapter,
-            ComparisonResultPersistenceService comparisonResultPersistenceService) {
+            ComparisonInputResolver inputResolver,
+            ComparisonResultPersistenceService comparisonResultPersistenceService,
+            ComparisonWriteBehindQueue comparisonWriteBehindQueue,
+            ComparisonScheduler comparisonScheduler,
+            @Value("${comparison.max-duration-ms:1800000}") long maxDurationMillis,
+            @Value("${comparison.reuse-results:true}") boolean reuseResults) {
         this.comparisonUseCase = comparisonUseCase;
-        this.archiveInputAdapter = archiveInputAdapter;
+        this.inputResolver = inputResolver;
         this.comparisonResultPersistenceService = comparisonResultPersistenceService;
+        this.comparisonWriteBehindQueue = comparisonWriteBehindQueue;
+        this.asyncExecutor = new TaskExecutorAdapter(comparisonScheduler.comparisonExecutor());
+        // Leave the comparison's own deadline room to fire before the request gives up.
+        this.asyncTimeoutMillis = maxDurationMillis + ASYNC_TIMEOUT_MARGIN_MILLIS;
+        this.reuseResults = reuseResults;
     }
 
     @GetMapping("/")
@@ -46,40 +85,158 @@ public class HomeController {
         model.addAttribute("comparisonPage", comparisonPage);
         model.addAttribute("nameFilter", nameFilter == null ? "" : nameFilter);
         model.addAttribute("ipFilter", ipFilter == null ? "" : ipFilter);
+        model.addAttribute("serverPathsEnabled", inputResolver.serverPathsEnabled());
         return "index";
     }
 
+    /**
+     * Compares the two sides and stores the result; see {@link #storeWhenDone}. When the same
+     * uploads were compared before with the same options, redirects to that comparison right away
+     * instead.
+     */
     @PostMapping("/compare")
-    public String compare(
-            @RequestParam("leftZip") MultipartFile[] leftZip,
-            @RequestParam("rightZip") MultipartFile[] rightZip,
+    public Object compare(
+            @RequestParam(name = "leftZip", required = false) MultipartFile[] leftZip,
+            @RequestParam(name = "rightZip", required = false) MultipartFile[] rightZip,
+            @RequestParam(name = "leftPath", required = false) String leftPath,
+            @RequestParam(name = "rightPath", required = false) String rightPath,
+            @RequestParam(name = "leftRef", required = false) String leftRef,
+            @RequestParam(name = "rightRef", required = false) String rightRef,
             @RequestParam(name = "mode", defaultValue = "CLASS_VS_CLASS") ComparisonMode mode,
             @RequestParam(name = "contextSize", defaultValue = "5") int contextSize,
             @RequestParam(name = "showUnchanged", defaultValue = "false") boolean showUnchanged,
             HttpServletRequest httpRequest)
             throws IOException {
-        ComparisonRequest request =
-                new ComparisonRequest(
-                        archiveInputAdapter.adapt(leftZip),
-                        archiveInputAdapter.adapt(rightZip),
-                        mode,
-                        contextSize,
-                        showUnchanged);
-        ComparisonResult result = comparisonUseCase.compare(request);
+        ComparisonInputResolver.Side left =
+                new ComparisonInputResolver.Side(leftZip, leftPath, leftRef);
+        ComparisonInputResolver.Side right =
+                new ComparisonInputResolver.Side(rightZip, rightPath, rightRef);
+        List<Path> tempFiles = new ArrayList<>();
+        ComparisonRequest request;
+        Optional<Long> stored;
+        try {
+            request =
+                    new ComparisonRequest(
+                            inputResolver.resolve("left", left, tempFiles),
+                            inputResolver.resolve("right", right, tempFiles),
+                            mode,
+                            contextSize,
+                            showUnchanged);
+            stored = findStoredResult(request);
+        } catch (IOException | RuntimeException e) {
+            ComparisonJobController.deleteAll(tempFiles);
+            throw e;
+        }
+        if (stored.isPresent()) {
+            ComparisonJobController.deleteAll(tempFiles);
+            log.info("Serving comparison {} for identical uploads", stored.get());
+            return "redirect:/compare/" + stored.get();
+        }
+        String comparisonName = inputResolver.describeComparison(left, right);
+        ComparisonContext context =
+                new ComparisonContext(httpRequest.getRemoteAddr(), ComparisonProgressListener.NONE);
+        return storeWhenDone(
+                comparisonName,
+                context,
+                tempFiles,
+                () -> comparisonUseCase.compare(request, context));
+    }
+
+    // Uploads are hashed as they are spooled, so this reads nothing.
+    private Optional<Long> findStoredResult(ComparisonRequest request) {
+        if (!reuseResults) {
+            return Optional.empty();
+        }
+        return ComparisonUseCase.resultKey(request)
+                .flatMap(comparisonResultPersistenceService::findByResultKey);
+    }
+
+    /**
+     * Compares stored comparison {@code id} again with one side replaced by the uploaded files or
+     * server path. Only the entries of the replacement that changed are processed, and files whose
+     * processed content is unchanged keep their stored diff. The result is stored as a new
+     * comparison.
+     */
+    @PostMapping("/compare/{id}/recompare")
+    public WebAsyncTask<String> recompare(
+            @PathVariable("id") long id,
+            @RequestParam("side") ComparisonInputs.Side replaced,
+            @RequestParam(name = "zip", required = false) MultipartFile[] zip,
+            @RequestParam(name = "path", required = false) String path,
+            @RequestParam(name = "ref", required = false) String ref,
+            HttpServletRequest httpRequest)
+            throws IOException {
+        awaitPendingWrite(id);
+        ComparisonResult previous = comparisonResultPersistenceService.loadStoredResult(id);
+        ComparisonInputResolver.Side side = new ComparisonInputResolver.Side(zip, path, ref);
+        String label = replaced == ComparisonInputs.Side.LEFT ? "left" : "right";
+        List<Path> tempFiles = new ArrayList<>();
+        ArchiveInput replacement;
+        try {
+            replacement = inputResolver.resolve(label, side, tempFiles);
+        } catch (IOException | RuntimeException e) {
+            ComparisonJobController.deleteAll(tempFiles);
+            throw e;
+        }
         String comparisonName =
                 String.format(
-                        "%s vs %s",
-                        archiveInputAdapter.describeFilenames(leftZip),
-                        archiveInputAdapter.describeFilenames(rightZip));
-        long id =
-                comparisonResultPersistenceService.saveComparison(
-                        comparisonName, httpRequest.getRemoteAddr(), result);
-        return "redirect:/compare/" + id;
+                        "#%d with %s replaced by %s", id, label, inputResolver.describe(side));
+        ComparisonContext context =
+                new ComparisonContext(httpRequest.getRemoteAddr(), ComparisonProgressListener.NONE);
+        return storeWhenDone(
+                comparisonName,
+                context,
+                tempFiles,
+                () -> comparisonUseCase.recompare(previous, replaced, replacement, context));
+    }
+
+    /**
+     * Runs {@code comparison} on the scheduler's coordinator thread and answers with a redirect to
+     * the stored result. The comparison is cancelled when the request times out or the client goes
+     * away, and the spooled uploads are deleted either way.
+     */
+    private WebAsyncTask<String> storeWhenDone(
+            String comparisonName,
+            ComparisonContext context,
+            List<Path> tempFiles,
+            Callable<ComparisonResult> comparison) {
+        WebAsyncTask<String> task =
+                new WebAsyncTask<>(
+                        asyncTimeoutMillis,
+                        asyncExecutor,
+                        () -> {
+                            try {
+                                ComparisonResult result = comparison.call();
+                                long id =
+                                        comparisonWriteBehindQueue.submit(
+                                                comparisonName, context.requester(), result);
+                                return "redirect:/compare/" + id;
+                            } finally {
+                                ComparisonJobController.deleteAll(tempFiles);
+                            }
+                        });
+        task.onTimeout(
+                () -> {
+                    context.cancel("The comparison took too long");
+                    throw new ResponseStatusException(
+                            HttpStatus.SERVICE_UNAVAILABLE, "The comparison took too long");
+                });
+        task.onError(
+                () -> {
+                    context.cancel("Client disconnected");
+                    return null;
+                });
+        // Also fires when the client disconnects; a finished comparison ignores the cancel.
+        task.onCompletion(() -> context.cancel("Client disconnected"));
+        return task;
     }
 
     @GetMapping("/compare/{id}")
     public String viewComparison(@PathVariable("id") long id, Model model, HttpServletRequest request) {
-        var storedResult = comparisonResultPersistenceService.loadComparison(id);
+        var storedResult =
+                comparisonWriteBehindQueue
+                        .findPending(id)
+                        .orElseGet(() -> comparisonResultPersistenceService.loadComparison(id));
         model.addAttribute("message", storedResult.name());
         model.addAttribute("result", storedResult.result());
         model.addAttribute("comparisonId", storedResult.id());
@@ -92,17 +249,48 @@ public class HomeController {
         model.addAttribute(
                 "canEditComparison", storedResult.ipRequest() != null
                         && storedResult.ipRequest().equals(request.getRemoteAddr()));
+        model.addAttribute("serverPathsEnabled", inputResolver.serverPathsEnabled());
         return "diff";
     }
 
+    @GetMapping(value = "/compare/{id}/files/{fileIndex}", produces = MediaType.TEXT_PLAIN_VALUE)
+    @ResponseBody
+    public String viewComparisonFile(
+            @PathVariable("id") long id,
+            @PathVariable("fileIndex") int fileIndex,
+            @RequestParam(name = "contextSize", defaultValue = "5") int contextSize) {
+        awaitPendingWrite(id);
+        return comparisonResultPersistenceService.loadFileDiff(id, fileIndex, contextSize);
+    }
+
+    @GetMapping(value = "/search/paths", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public List<ComparisonResultPersistenceService.PathSearchResult> searchByPath(
+            @RequestParam("q") String query) {
+        return comparisonResultPersistenceService.searchByPath(query);
+    }
+
     @PostMapping("/compare/{id}/edit")
     public String updateComparison(
             @PathVariable("id") long id,
             @RequestParam(name = "markColor", required = false) String markColor,
             @RequestParam(name = "name", required = false) String name,
             HttpServletRequest request) {
+        awaitPendingWrite(id);
         comparisonResultPersistenceService.updateComparison(
                 id, request.getRemoteAddr(), markColor, name);
         return "redirect:/compare/" + id;
     }
+
+    @PostMapping("/compare/{id}/delete")
+    public String deleteComparison(@PathVariable("id") long id, HttpServletRequest request) {
+        awaitPendingWrite(id);
+        comparisonResultPersistenceService.deleteComparison(id, request.getRemoteAddr());
+        return "redirect:/";
+    }
+
+    private void awaitPendingWrite(long id) {
+        comparisonWriteBehindQueue.awaitWritten(
+                id, PENDING_WRITE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
 }
@@ -1,6 +1,8 @@
 package com.example.sourcecompare.web;
 
 import com.example.sourcecompare.domain.ArchiveInput;
+import com.example.sourcecompare.domain.CompositeArchiveInput;
+import com.example.sourcecompare.domain.ZipStreamArchiveInput;
 import org.springframework.stereotype.Component;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -8,34 +10,67 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
-import java.util.zip.ZipOutputStream;
 
 @Component
 public class MultipartArchiveInputAdapter {
     public ArchiveInput adapt(MultipartFile file) throws IOException {
+        return adapt(file, new ArrayList<>(), false);
+    }
+
+    public ArchiveInput adapt(MultipartFile[] files) throws IOException {
+        return adapt(files, new ArrayList<>(), false);
+    }
+
+    /**
+     * Like {@link #adapt(MultipartFile[])}, but copies each upload to a temp file, so that the
+     * archive can still be read after the request has ended. Every temp file created is added to
+     * {@code tempFiles}; the caller deletes them when done.
+     */
+    public ArchiveInput spool(MultipartFile[] files, List<Path> tempFiles) throws IOException {
+        return adapt(files, tempFiles, true);
+    }
+
+    private ArchiveInput adapt(MultipartFile file, List<Path> tempFiles, boolean spool)
+            throws IOException {
         if (file == null || file.isEmpty()) {
             throw new IllegalArgumentException("File must not be null or empty");
         }
+        Content content = content(file, tempFiles, spool);
         if (isZip(file)) {
-            return new ArchiveInput(file.getOriginalFilename(), file::getInputStream);
-        }
-        return createSingleFileArchive(file);
+            return new ZipStreamArchiveInput(
+                    file.getOriginalFilename(),
+                    file.getSize(),
+                    content.digest(),
+                    content.supplier());
+        }
+        return new CompositeArchiveInput(
+                buildSingleArchiveName(file.getOriginalFilename()),
+                file.getSize(),
+                List.of(
+                        CompositeArchiveInput.Part.file(
+                                "",
+                                determineEntryName(file),
+                                content.supplier(),
+                                content.digest())));
     }
 
-    public ArchiveInput adapt(MultipartFile[] files) throws IOException {
+    private ArchiveInput adapt(MultipartFile[] files, List<Path> tempFiles, boolean spool)
+            throws IOException {
         if (files == null || files.length == 0) {
             throw new IllegalArgumentException("At least one file must be provided");
         }
         if (files.length == 1) {
-            return adapt(files[0]);
+            return adapt(files[0], tempFiles, spool);
         }
         List<MultipartFile> fileList = new ArrayList<>(files.length);
         for (MultipartFile file : files) {
@@ -47,9 +82,9 @@ public class MultipartArchiveInputAdapter {
             throw new IllegalArgumentException("At least one non-empty file must be provided");
         }
         if (fileList.size() == 1) {
-            return adapt(fileList.get(0));
+            return adapt(fileList.get(0), tempFiles, spool);
         }
-        return adaptMultiple(fileList);
+        return adaptMultiple(fileList, tempFiles, spool);
     }
 
     public String describeFilenames(MultipartFile[] files) {
@@ -72,51 +107,58 @@ public class MultipartArchiveInputAdapter {
         return String.join(", ", names);
     }
 
-    private ArchiveInput adaptMultiple(List<MultipartFile> files) throws IOException {
-        Path tempFile = Files.createTempFile("combined-archive", ".zip");
-        tempFile.toFile().deleteOnExit();
-        try {
-            writeCombinedArchive(tempFile, files);
-        } catch (IOException e) {
-            Files.deleteIfExists(tempFile);
-            throw e;
-        }
-        return new ArchiveInput(buildCombinedName(files), () -> Files.newInputStream(tempFile));
-    }
-
-    private void writeCombinedArchive(Path destination, List<MultipartFile> files) throws IOException {
-        try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(destination))) {
-            byte[] buffer = new byte[8192];
-            Set<String> usedPrefixes = new HashSet<>();
-            for (int index = 0; index < files.size(); index++) {
-                MultipartFile file = files.get(index);
-                String prefix = ensureUniquePrefix(derivePrefix(file, index), usedPrefixes);
-                if (isZip(file)) {
-                    try (InputStream inputStream = file.getInputStream();
-                            ZipInputStream zis = new ZipInputStream(inputStream)) {
-                        ZipEntry entry;
-                        while ((entry = zis.getNextEntry()) != null) {
-                            if (entry.isDirectory()) {
-                                continue;
-                            }
-                            String entryName = sanitizeEntryName(entry.getName());
-                            if (entryName.isEmpty()) {
-                                continue;
-                            }
-                            ZipEntry newEntry = new ZipEntry(prefix + "/" + entryName);
-                            zos.putNextEntry(newEntry);
-                            int read;
-                            while ((read = zis.read(buffer)) != -1) {
-                                zos.write(buffer, 0, read);
-                            }
-                            zos.closeEntry();
-                        }
-                    }
-                } else {
-                    writeRawFileEntry(zos, prefix, file);
-                }
+    // Each upload becomes one part of a composite under its own prefix; nothing is re-zipped.
+    private ArchiveInput adaptMultiple(
+            List<MultipartFile> files, List<Path> tempFiles, boolean spool) throws IOException {
+        List<CompositeArchiveInput.Part> parts = new ArrayList<>(files.size());
+        Set<String> usedPrefixes = new HashSet<>();
+        long totalSize = 0;
+        for (int index = 0; index < files.size(); index++) {
+            MultipartFile file = files.get(index);
+            String prefix = ensureUniquePrefix(derivePrefix(file, index), usedPrefixes);
+            Content content = content(file, tempFiles, spool);
+            if (isZip(file)) {
+                parts.add(
+                        CompositeArchiveInput.Part.archive(
+                                prefix,
+                                new ZipStreamArchiveInput(
+                                        file.getOriginalFilename(),
+                                        file.getSize(),
+                                        content.digest(),
+                                        content.supplier())));
+            } else {
+                parts.add(
+                        CompositeArchiveInput.Part.file(
+                                prefix,
+                                determineEntryName(file),
+                                content.supplier(),
+                                content.digest()));
             }
+            totalSize += file.getSize();
         }
+        return new CompositeArchiveInput(buildCombinedName(files), totalSize, parts);
+    }
+
+    /** Where an upload is read from, and its digest when it was taken. */
+    private record Content(ArchiveInput.InputStreamSupplier supplier, String digest) {}
+
+    /**
+     * Where an upload is read from: the multipart itself, or with {@code spool} a temp file copy
+     * that outlives the request. A spooled upload is hashed as it is copied, so that identifying it
+     * later costs no extra read.
+     */
+    private Content content(MultipartFile file, List<Path> tempFiles, boolean spool)
+            throws IOException {
+        if (!spool) {
+            return new Content(file::getInputStream, null);
+        }
+        Path tempFile = createTempFile("upload", tempFiles);
+        MessageDigest digest = ZipStreamArchiveInput.fingerprintDigest();
+        try (InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+            Files.copy(in, tempFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return new Content(
+                () -> Files.newInputStream(tempFile), HexFormat.of().formatHex(digest.digest()));
     }
 
     private String buildCombinedName(List<MultipartFile> files) {
@@ -166,61 +208,16 @@ public class MultipartArchiveInputAdapter {
         return simple.substring(0, dotIndex);
     }
 
-    private String sanitizeEntryName(String entryName) {
-        String normalized = entryName.replace('\\', '/');
-        while (normalized.startsWith("/")) {
-            normalized = normalized.substring(1);
-        }
-        // Prevent directory traversal attempts
-        List<String> segments = new ArrayList<>();
-        for (String segment : normalized.split("/")) {
-            if (segment.equals("..") || segment.isEmpty()) {
-                continue;
-            }
-            segments.add(segment);
-        }
-        return String.join("/", segments);
-    }
-
-    private ArchiveInput createSingleFileArchive(MultipartFile file) throws IOException {
-        Path tempFile = Files.createTempFile("single-archive", ".zip");
+    private Path createTempFile(String prefix, List<Path> tempFiles) throws IOException {
+        Path tempFile = Files.createTempFile(prefix, ".tmp");
         tempFile.toFile().deleteOnExit();
-        try {
-            try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(tempFile))) {
-                String entryName = determineEntryName(file);
-                ZipEntry entry = new ZipEntry(entryName);
-                zos.putNextEntry(entry);
-                try (InputStream inputStream = file.getInputStream()) {
-                    inputStream.transferTo(zos);
-                }
-                zos.closeEntry();
-            }
-        } catch (IOException e) {
-            Files.deleteIfExists(tempFile);
-            throw e;
-        }
-        String archiveName = buildSingleArchiveName(file.getOriginalFilename());
-        return new ArchiveInput(archiveName, () -> Files.newInputStream(tempFile));
-    }
-
-    private void writeRawFileEntry(ZipOutputStream zos, String prefix, MultipartFile file)
-            throws IOException {
-        String entryName = determineEntryName(file);
-        ZipEntry entry = new ZipEntry(prefix + "/" + entryName);
-        zos.putNextEntry(entry);
-        try (InputStream inputStream = file.getInputStream()) {
-            inputStream.transferTo(zos);
-        }
-        zos.closeEntry();
+        tempFiles.add(tempFile);
+        return tempFile;
     }
 
     private String determineEntryName(MultipartFile file) {
         String originalFilename = file.getOriginalFilename();
-        String sanitized = sanitizeEntryName(originalFilename != null ? originalFilename : "");
-        if (sanitized.isEmpty()) {
-            sanitized = "file";
-        }
-        return sanitized;
+        return originalFilename == null || originalFilename.isBlank() ? "file" : originalFilename;
     }
 
     private String buildSingleArchiveName(String originalFilename) {
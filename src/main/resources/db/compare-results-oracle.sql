@@ -0,0 +1,93 @@
+-- Schema changes for the comparison result tables (Oracle).
+-- spring.jpa.hibernate.ddl-auto is disabled, so apply these manually in order.
+
+-- Chunked per-file storage: one deflated row per file diff, linked to the COMPARE_RESULTS summary row.
+ALTER TABLE COMPARE_RESULTS ADD (STORAGE_FORMAT NUMBER(3));
+
+CREATE TABLE COMPARE_RESULT_FILES (
+    RESULT_ID  NUMBER(19)     NOT NULL,
+    FILE_INDEX NUMBER(10)     NOT NULL,
+    CATEGORY   VARCHAR2(16)   NOT NULL,
+    PATH       VARCHAR2(2000) NOT NULL,
+    FROM_PATH  VARCHAR2(2000),
+    DIFF_DATA  BLOB,
+    CONSTRAINT PK_COMPARE_RESULT_FILES PRIMARY KEY (RESULT_ID, FILE_INDEX),
+    CONSTRAINT FK_COMPARE_RESULT_FILES_RESULT FOREIGN KEY (RESULT_ID) REFERENCES COMPARE_RESULTS (ID)
+);
+
+-- Streamed payloads: deflated JSON written through a BLOB stream. DIFF_RESULT is no longer
+-- populated for STREAMED_JSON rows.
+ALTER TABLE COMPARE_RESULTS ADD (DIFF_RESULT_DATA BLOB);
+ALTER TABLE COMPARE_RESULTS MODIFY (DIFF_RESULT NULL);
+
+-- Compact edit scripts: 'U' rows hold deflated unified diff text, 'E' rows a deflated binary
+-- line table plus edit ranges that is rendered when viewed. NULL means 'U'.
+ALTER TABLE COMPARE_RESULT_FILES ADD (DIFF_ENCODING CHAR(1));
+
+-- Content-addressed blobs: each side of a file diff is stored once per distinct content and
+-- referenced by hash from 'R' rows. REF_COUNT counts referencing rows; zero means purgeable.
+CREATE TABLE COMPARE_CONTENT_BLOBS (
+    CONTENT_HASH VARCHAR2(64) NOT NULL,
+    CONTENT      BLOB         NOT NULL,
+    CONTENT_SIZE NUMBER(19)   NOT NULL,
+    REF_COUNT    NUMBER(10)   DEFAULT 0 NOT NULL,
+    CREATED      DATE         DEFAULT SYSDATE NOT NULL,
+    CONSTRAINT PK_COMPARE_CONTENT_BLOBS PRIMARY KEY (CONTENT_HASH)
+);
+CREATE INDEX IX_COMPARE_CONTENT_BLOBS_REFS ON COMPARE_CONTENT_BLOBS (REF_COUNT);
+
+ALTER TABLE COMPARE_RESULT_FILES ADD (ORIGINAL_HASH VARCHAR2(64), REVISED_HASH VARCHAR2(64));
+
+-- Indexed listing search: lowercase copies of the searchable columns and a trigram index of names.
+-- A name filter of three or more characters first narrows the candidates to names holding all of
+-- its trigrams; shorter name filters and the requester filter match as prefixes, which range-scan
+-- the indexes on the lowercase columns.
+ALTER TABLE COMPARE_RESULTS ADD (NAME_LC VARCHAR2(4000), IP_REQUEST_LC VARCHAR2(255));
+UPDATE COMPARE_RESULTS SET NAME_LC = LOWER(NAME), IP_REQUEST_LC = LOWER(IP_REQUEST);
+CREATE INDEX IX_COMPARE_RESULTS_CREATED ON COMPARE_RESULTS (CREATED DESC, ID);
+CREATE INDEX IX_COMPARE_RESULTS_NAME_LC ON COMPARE_RESULTS (NAME_LC);
+CREATE INDEX IX_COMPARE_RESULTS_IP_LC ON COMPARE_RESULTS (IP_REQUEST_LC);
+
+CREATE TABLE COMPARE_RESULT_NAME_GRAMS (
+    GRAM      VARCHAR2(12) NOT NULL,
+    RESULT_ID NUMBER(19)   NOT NULL,
+    CONSTRAINT PK_COMPARE_RESULT_NAME_GRAMS PRIMARY KEY (GRAM, RESULT_ID)
+) ORGANIZATION INDEX;
+CREATE INDEX IX_COMPARE_RESULT_NAME_GRAMS_ID ON COMPARE_RESULT_NAME_GRAMS (RESULT_ID);
+
+INSERT INTO COMPARE_RESULT_NAME_GRAMS (GRAM, RESULT_ID)
+SELECT DISTINCT SUBSTR(r.NAME_LC, p.POS, 3), r.ID
+FROM COMPARE_RESULTS r
+JOIN (SELECT LEVEL AS POS FROM DUAL CONNECT BY LEVEL <= 4000) p ON p.POS <= LENGTH(r.NAME_LC) - 2;
+COMMIT;
+
+-- Changed-path index: lowercased paths (without .java/.class) and simple names of every added,
+-- deleted, modified or renamed file, searched by prefix. PATHS_INDEXED is 1 once a comparison is
+-- indexed and 0 when the backfill could not read it; NULL rows are picked up by the backfill job.
+ALTER TABLE COMPARE_RESULTS ADD (PATHS_INDEXED NUMBER(1));
+
+CREATE TABLE COMPARE_RESULT_PATHS (
+    TERM      VARCHAR2(1000) NOT NULL,
+    RESULT_ID NUMBER(19)     NOT NULL,
+    CATEGORY  VARCHAR2(16)   NOT NULL,
+    PATH      VARCHAR2(2000) NOT NULL
+);
+CREATE INDEX IX_COMPARE_RESULT_PATHS_TERM ON COMPARE_RESULT_PATHS (TERM, RESULT_ID);
+CREATE INDEX IX_COMPARE_RESULT_PATHS_ID ON COMPARE_RESULT_PATHS (RESULT_ID);
+
+-- Cold storage: STORAGE_FORMAT 3 rows keep only the summary; the payload lives in a local segment
+-- file at COLD_OFFSET (COLD_LENGTH bytes including the record header) of COLD_SEGMENT.
+ALTER TABLE COMPARE_RESULTS ADD (COLD_SEGMENT VARCHAR2(64), COLD_OFFSET NUMBER(19), COLD_LENGTH NUMBER(19));
+
+-- Result keys: SHA-256 of the upload digests of both sides and the comparison options, so that
+-- uploading the same pair again opens the stored comparison instead of comparing again.
+CREATE TABLE COMPARE_RESULT_KEYS (
+    RESULT_KEY VARCHAR2(64) NOT NULL,
+    RESULT_ID  NUMBER(19)   NOT NULL,
+    CONSTRAINT PK_COMPARE_RESULT_KEYS PRIMARY KEY (RESULT_KEY, RESULT_ID)
+) ORGANIZATION INDEX;
+CREATE INDEX IX_COMPARE_RESULT_KEYS_ID ON COMPARE_RESULT_KEYS (RESULT_ID);
+
+-- Time the last reference to a blob was released. Blobs are purged only once that is older than a
+-- grace period, so that a comparison being saved meanwhile can still reference them.
+ALTER TABLE COMPARE_CONTENT_BLOBS ADD (RELEASED TIMESTAMP);
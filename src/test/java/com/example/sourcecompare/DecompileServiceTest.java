@@ -1,9 +1,13 @@
 package com.example.sourcecompare;
 
 import com.example.sourcecompare.application.ArchiveDecompiler;
+import com.example.sourcecompare.application.TestSchedulers;
 import com.example.sourcecompare.domain.ArchiveInput;
 import com.example.sourcecompare.domain.FileInfo;
+import com.example.sourcecompare.domain.ZipStreamArchiveInput;
+import com.example.sourcecompare.infrastructure.DecompileCostModel;
 import com.example.sourcecompare.infrastructure.DecompileService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 
 import java.io.ByteArrayInputStream;
@@ -93,7 +97,8 @@ class DecompileServiceTest {
 
         AtomicReference<byte[]> dataRef = new AtomicReference<>(createZipBytes(entries));
         ArchiveInput archive =
-                new ArchiveInput("classes.zip", () -> new ByteArrayInputStream(dataRef.get()));
+                new ZipStreamArchiveInput(
+                        "classes.zip", () -> new ByteArrayInputStream(dataRef.get()));
 
         // Allow the large helper structures to be reclaimed before measuring usage.
         entries = null;
@@ -127,7 +132,7 @@ class DecompileServiceTest {
 
     private static ArchiveInput archiveFromEntries(Map<String, byte[]> entries) throws IOException {
         byte[] bytes = createZipBytes(entries);
-        return new ArchiveInput("classes.zip", () -> new ByteArrayInputStream(bytes));
+        return new ZipStreamArchiveInput("classes.zip", () -> new ByteArrayInputStream(bytes));
     }
 
     private static byte[] createZipBytes(Map<String, byte[]> entries) throws IOException {
@@ -167,7 +172,9 @@ class DecompileServiceTest {
         private final AtomicLong peakBytes = new AtomicLong();
 
         private TrackingDecompileService(int poolSize, DecompileFn delegate) {
-            super(poolSize);
+            super(
+                    TestSchedulers.builder().decompileThreads(poolSize).build(),
+                    new DecompileCostModel(new SimpleMeterRegistry(), 1_000));
             this.delegate = delegate;
         }
 
@@ -0,0 +1,81 @@
+package com.example.sourcecompare.application;
+
+import com.example.sourcecompare.application.AdaptivePoolController.Bounds;
+import com.example.sourcecompare.application.AdaptivePoolController.Decision;
+import com.example.sourcecompare.application.AdaptivePoolController.Load;
+import com.example.sourcecompare.application.AdaptivePoolController.Reason;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptivePoolControllerTest {
+    private static final Bounds BOUNDS = new Bounds(2, 32);
+
+    private ComparisonScheduler scheduler;
+    private AdaptivePoolController controller;
+
+    @BeforeEach
+    void setUp() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        scheduler =
+                TestSchedulers.builder()
+                        .meterRegistry(meterRegistry)
+                        .decompileThreads(5)
+                        .formatThreads(5)
+                        .build();
+        controller =
+                new AdaptivePoolController(
+                        scheduler, meterRegistry, true, 0.75, 0.9, 0.1, 2, 32, 2, 32);
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    void queuedWorkOnAnIdleMachineGrowsByHalfTheRemainingRoom() {
+        Decision decision = controller.decide(5, BOUNDS, new Load(0.2, 0, 100, 5));
+
+        assertThat(decision).isEqualTo(new Decision(19, Reason.QUEUE));
+    }
+
+    @Test
+    void growthIsLimitedToTheQueuedTasks() {
+        Decision decision = controller.decide(5, BOUNDS, new Load(0.2, 0, 3, 5));
+
+        assertThat(decision).isEqualTo(new Decision(8, Reason.QUEUE));
+    }
+
+    @Test
+    void saturatedCpuShrinksEvenWithQueuedWork() {
+        Decision decision = controller.decide(16, BOUNDS, new Load(0.97, 0, 100, 16));
+
+        assertThat(decision).isEqualTo(new Decision(15, Reason.CPU));
+    }
+
+    @Test
+    void gcPressureShrinksBeforeAnythingElse() {
+        Decision decision = controller.decide(16, BOUNDS, new Load(0.2, 0.3, 100, 16));
+
+        assertThat(decision).isEqualTo(new Decision(15, Reason.GC));
+    }
+
+    @Test
+    void idleThreadsShrinkDownToTheMinimum() {
+        assertThat(controller.decide(3, BOUNDS, new Load(0.1, 0, 0, 0)))
+                .isEqualTo(new Decision(2, Reason.IDLE));
+        assertThat(controller.decide(2, BOUNDS, new Load(0.1, 0, 0, 0)))
+                .isEqualTo(new Decision(2, Reason.NONE));
+    }
+
+    @Test
+    void resizingChangesThePoolSize() {
+        scheduler.resizePool(ComparisonScheduler.Pool.FORMAT, 7);
+
+        assertThat(scheduler.poolSize(ComparisonScheduler.Pool.FORMAT)).isEqualTo(7);
+    }
+}
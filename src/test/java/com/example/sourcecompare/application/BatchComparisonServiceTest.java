@@ -0,0 +1,90 @@
+package com.example.sourcecompare.application;
+
+import com.example.sourcecompare.domain.ArchiveInput;
+import com.example.sourcecompare.domain.BatchManifest;
+import com.example.sourcecompare.domain.ComparisonMode;
+import com.example.sourcecompare.domain.ComparisonResult;
+import com.example.sourcecompare.domain.DiffInfo;
+import com.example.sourcecompare.domain.ZipStreamArchiveInput;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayInputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BatchComparisonServiceTest {
+
+    private final ComparisonUseCase comparisonUseCase = mock(ComparisonUseCase.class);
+    private final ComparisonWriteBehindQueue writeBehindQueue =
+            mock(ComparisonWriteBehindQueue.class);
+    private final BatchComparisonService service =
+            new BatchComparisonService(comparisonUseCase, writeBehindQueue, 2);
+
+    @Test
+    void failingPairIsReportedAndTheBatchGoesOn() throws Exception {
+        Map<String, DiffInfo> modified = new HashMap<>();
+        modified.put("A.java", null);
+        ComparisonResult result =
+                new ComparisonResult(Map.of(), Map.of(), modified, List.of(), List.of("B.java"));
+        when(comparisonUseCase.compare(any(), any())).thenReturn(result);
+        when(writeBehindQueue.submit(eq("core"), eq("ci"), any())).thenReturn(7L);
+        BatchManifest manifest =
+                new BatchManifest(
+                        ComparisonMode.CLASS_VS_CLASS,
+                        null,
+                        4,
+                        List.of(
+                                pair("core", "old/core.jar", "new/core.jar"),
+                                pair(null, "old/web.jar", "missing.jar")));
+        List<BatchComparisonService.PairSummary> summaries = new CopyOnWriteArrayList<>();
+
+        int unsuccessful =
+                service.run(
+                        manifest,
+                        (label, path, ref) -> {
+                            if (path.equals("missing.jar")) {
+                                throw new ResponseStatusException(
+                                        HttpStatus.BAD_REQUEST, "Server path not found: " + path);
+                            }
+                            return archive(path);
+                        },
+                        true,
+                        new ComparisonContext("ci", ComparisonProgressListener.NONE),
+                        summaries::add);
+
+        assertThat(unsuccessful).isEqualTo(1);
+        assertThat(summaries).hasSize(2);
+        BatchComparisonService.PairSummary core = summary(summaries, 0);
+        assertThat(core.outcome()).isEqualTo(BatchComparisonService.Outcome.SUCCEEDED);
+        assertThat(core.comparisonId()).isEqualTo(7L);
+        assertThat(core.modified()).isEqualTo(1);
+        assertThat(core.unchanged()).isEqualTo(1);
+        BatchComparisonService.PairSummary web = summary(summaries, 1);
+        assertThat(web.outcome()).isEqualTo(BatchComparisonService.Outcome.FAILED);
+        assertThat(web.name()).isEqualTo("old/web.jar vs missing.jar");
+        assertThat(web.error()).isEqualTo("Server path not found: missing.jar");
+    }
+
+    private static BatchComparisonService.PairSummary summary(
+            List<BatchComparisonService.PairSummary> summaries, int index) {
+        return summaries.stream().filter(s -> s.index() == index).findFirst().orElseThrow();
+    }
+
+    private static BatchManifest.Pair pair(String name, String left, String right) {
+        return new BatchManifest.Pair(name, left, null, right, null, null);
+    }
+
+    private static ArchiveInput archive(String name) {
+        return new ZipStreamArchiveInput(name, () -> new ByteArrayInputStream(new byte[0]));
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.sourcecompare.application;
+
+import com.example.sourcecompare.application.ChangeMatrix.Change;
+import com.example.sourcecompare.domain.ComparisonResult;
+import com.example.sourcecompare.domain.DiffInfo;
+import com.example.sourcecompare.domain.RenameInfo;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChangeMatrixTest {
+
+    @Test
+    void rowsListEveryPathChangedInAnyCandidate() {
+        ComparisonResult first =
+                new ComparisonResult(
+                        paths("New.java"),
+                        paths(),
+                        paths("A.java"),
+                        List.of(new RenameInfo("Old.java", "Moved.java", "")),
+                        List.of());
+        ComparisonResult second =
+                new ComparisonResult(
+                        paths("Moved.java"), paths("B.java"), paths(), List.of(), List.of());
+
+        ChangeMatrix matrix =
+                ChangeMatrix.of(
+                        List.of(
+                                new ChangeMatrix.Column(1, "base vs one"),
+                                new ChangeMatrix.Column(2, "base vs two")),
+                        List.of(first, second));
+
+        assertThat(matrix.rows())
+                .extracting(ChangeMatrix.Row::path)
+                .containsExactly("A.java", "B.java", "Moved.java", "New.java", "Old.java");
+        assertThat(changes(matrix, "A.java")).containsExactly(Change.MODIFIED, Change.UNCHANGED);
+        assertThat(changes(matrix, "B.java")).containsExactly(Change.UNCHANGED, Change.DELETED);
+        assertThat(changes(matrix, "Moved.java")).containsExactly(Change.RENAMED, Change.ADDED);
+        assertThat(changes(matrix, "New.java")).containsExactly(Change.ADDED, Change.ABSENT);
+        assertThat(changes(matrix, "Old.java")).containsExactly(Change.RENAMED, Change.UNCHANGED);
+        assertThat(row(matrix, "Old.java").cells().get(0).otherPath()).isEqualTo("Moved.java");
+        assertThat(row(matrix, "Moved.java").changedIn()).isEqualTo(2);
+    }
+
+    private static Map<String, DiffInfo> paths(String... names) {
+        Map<String, DiffInfo> files = new HashMap<>();
+        for (String name : names) {
+            files.put(name, null);
+        }
+        return files;
+    }
+
+    private static ChangeMatrix.Row row(ChangeMatrix matrix, String path) {
+        return matrix.rows().stream().filter(r -> r.path().equals(path)).findFirst().orElseThrow();
+    }
+
+    private static List<Change> changes(ChangeMatrix matrix, String path) {
+        return row(matrix, path).cells().stream().map(ChangeMatrix.Cell::change).toList();
+    }
+}
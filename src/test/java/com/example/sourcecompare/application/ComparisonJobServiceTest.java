@@ -0,0 +1,136 @@
+package com.example.sourcecompare.application;
+
+import com.example.sourcecompare.domain.ArchiveInput;
+import com.example.sourcecompare.domain.ComparisonMode;
+import com.example.sourcecompare.domain.ComparisonRequest;
+import com.example.sourcecompare.domain.ComparisonResult;
+import com.example.sourcecompare.domain.ZipStreamArchiveInput;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ComparisonJobServiceTest {
+
+    private final ComparisonUseCase comparisonUseCase = mock(ComparisonUseCase.class);
+    private final ComparisonWriteBehindQueue writeBehindQueue =
+            mock(ComparisonWriteBehindQueue.class);
+    private ComparisonJobService service;
+
+    @AfterEach
+    void tearDown() {
+        if (service != null) {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void jobReportsProgressAndResultIdToSubscribers() throws Exception {
+        ComparisonResult result =
+                new ComparisonResult(Map.of(), Map.of(), Map.of(), List.of(), null);
+        CountDownLatch release = new CountDownLatch(1);
+        when(comparisonUseCase.compare(any(), any()))
+                .thenAnswer(
+                        invocation -> {
+                            release.await(5, TimeUnit.SECONDS);
+                            ComparisonContext context = invocation.getArgument(1);
+                            assertThat(context.requester()).isEqualTo("10.0.0.5");
+                            context.progress()
+                                    .onProgress(
+                                            ComparisonProgressListener.Stage.DECOMPILE,
+                                            "left",
+                                            3,
+                                            3);
+                            return result;
+                        });
+        when(writeBehindQueue.submit(eq("a vs b"), eq("10.0.0.5"), any())).thenReturn(42L);
+        service = newService(1, 1);
+        CountDownLatch cleanedUp = new CountDownLatch(1);
+        List<ComparisonJob.Status> updates = new CopyOnWriteArrayList<>();
+        CountDownLatch finished = new CountDownLatch(1);
+
+        ComparisonJob job = service.submit(request(), "a vs b", "10.0.0.5", cleanedUp::countDown);
+        job.subscribe(
+                status -> {
+                    updates.add(status);
+                    if (status.state().isFinished()) {
+                        finished.countDown();
+                    }
+                });
+        release.countDown();
+
+        assertThat(finished.await(5, TimeUnit.SECONDS)).isTrue();
+        ComparisonJob.Status last = updates.get(updates.size() - 1);
+        assertThat(last.state()).isEqualTo(ComparisonJob.State.SUCCEEDED);
+        assertThat(last.resultId()).isEqualTo(42L);
+        assertThat(last.progress())
+                .containsExactly(
+                        new ComparisonJob.Progress(
+                                ComparisonProgressListener.Stage.DECOMPILE,
+                                "Classes decompiled",
+                                "left",
+                                3,
+                                3));
+        assertThat(cleanedUp.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(service.find(job.id())).contains(job);
+    }
+
+    @Test
+    void submissionsBeyondQueueCapacityAreRefusedAndCleanedUp() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(comparisonUseCase.compare(any(), any()))
+                .thenAnswer(
+                        invocation -> {
+                            release.await(5, TimeUnit.SECONDS);
+                            return new ComparisonResult(
+                                    Map.of(), Map.of(), Map.of(), List.of(), null);
+                        });
+        service = newService(1, 1);
+        AtomicInteger cleanups = new AtomicInteger();
+
+        service.submit(request(), "running", "10.0.0.5", () -> {});
+        service.submit(request(), "queued", "10.0.0.5", () -> {});
+
+        assertThatThrownBy(
+                        () ->
+                                service.submit(
+                                        request(),
+                                        "refused",
+                                        "10.0.0.5",
+                                        cleanups::incrementAndGet))
+                .isInstanceOf(ResponseStatusException.class);
+        assertThat(cleanups.get()).isEqualTo(1);
+        release.countDown();
+    }
+
+    private ComparisonJobService newService(int workers, int queueCapacity) {
+        return new ComparisonJobService(
+                comparisonUseCase,
+                writeBehindQueue,
+                new SimpleMeterRegistry(),
+                workers,
+                queueCapacity,
+                30);
+    }
+
+    private static ComparisonRequest request() {
+        ArchiveInput archive =
+                new ZipStreamArchiveInput("a.zip", () -> new ByteArrayInputStream(new byte[0]));
+        return new ComparisonRequest(archive, archive, ComparisonMode.CLASS_VS_CLASS, 5, false);
+    }
+}
@@ -1,8 +1,12 @@
 package com.example.sourcecompare.application;
 
-import com.example.sourcecompare.infrastructure.persistence.StoredComparisonResult;
-import com.example.sourcecompare.infrastructure.persistence.StoredComparisonResultRepository;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.sourcecompare.application.ComparisonResultStore.ComparisonSummary;
+import com.example.sourcecompare.application.ComparisonResultStore.PathMatch;
+import com.example.sourcecompare.application.ComparisonResultStore.StoredComparison;
+import com.example.sourcecompare.application.ComparisonResultStore.StoredFileDiff;
+import com.example.sourcecompare.domain.ComparisonResult;
+import com.example.sourcecompare.domain.DiffInfo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -14,49 +18,152 @@ import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 class ComparisonResultPersistenceServiceTest {
 
-    @Mock private StoredComparisonResultRepository repository;
+    @Mock private ComparisonResultStore store;
+    @Mock private DiffRenderer diffRenderer;
 
     private ComparisonResultPersistenceService service;
 
     @BeforeEach
     void setUp() {
-        service = new ComparisonResultPersistenceService(repository, new ObjectMapper());
+        service =
+                new ComparisonResultPersistenceService(
+                        store,
+                        diffRenderer,
+                        new ComparisonViewCache(1 << 20, new SimpleMeterRegistry()));
+    }
+
+    @Test
+    void saveComparisonStoresResultUnderAllocatedId() {
+        ComparisonResult result =
+                new ComparisonResult(
+                        Map.of("A.java", new DiffInfo("+added")),
+                        Map.of(),
+                        Map.of(),
+                        List.of(),
+                        null);
+        when(store.allocateId()).thenReturn(7L);
+
+        long id = service.saveComparison("Name", "10.0.0.5", result);
+
+        assertThat(id).isEqualTo(7L);
+        ArgumentCaptor<StoredComparison> captor = ArgumentCaptor.forClass(StoredComparison.class);
+        verify(store).save(captor.capture());
+        assertThat(captor.getValue().summary())
+                .isEqualTo(
+                        new ComparisonSummary(
+                                7L, "Name", "10.0.0.5", null, service.getDefaultMarkColor()));
+        assertThat(captor.getValue().result()).isSameAs(result);
+    }
+
+    @Test
+    void loadComparisonServesRepeatedReadsFromCacheUntilUpdated() {
+        ComparisonSummary summary = new ComparisonSummary(8L, "cached", "10.0.0.5", null, null);
+        when(store.findSummary(8L)).thenReturn(Optional.of(summary));
+        when(store.find(8L))
+                .thenAnswer(
+                        invocation ->
+                                Optional.of(
+                                        new StoredComparison(
+                                                summary,
+                                                new ComparisonResult(
+                                                        Map.of("A.java", new DiffInfo("+a")),
+                                                        Map.of(),
+                                                        Map.of(),
+                                                        List.of(),
+                                                        null))));
+
+        service.loadComparison(8L);
+        service.loadComparison(8L);
+        service.updateComparison(8L, "10.0.0.5", null, " renamed ");
+        service.loadComparison(8L);
+
+        verify(store, times(2)).find(8L);
+        verify(store).update(8L, null, "renamed");
+    }
+
+    @Test
+    void loadComparisonRejectsMissingPayload() {
+        when(store.find(4L))
+                .thenReturn(
+                        Optional.of(
+                                new StoredComparison(
+                                        new ComparisonSummary(4L, "empty", "10.0.0.5", null, null),
+                                        null)));
+
+        assertThatThrownBy(() -> service.loadComparison(4L))
+                .isInstanceOf(ResponseStatusException.class);
+    }
+
+    @Test
+    void loadStoredResultInlinesLazyDiffsWithoutCaching() {
+        DiffInfo lazy = new DiffInfo();
+        lazy.setFileIndex(3);
+        ComparisonSummary summary = new ComparisonSummary(9L, "lazy", "10.0.0.5", null, null);
+        when(store.find(9L))
+                .thenAnswer(
+                        invocation ->
+                                Optional.of(
+                                        new StoredComparison(
+                                                summary,
+                                                new ComparisonResult(
+                                                        Map.of(),
+                                                        Map.of(),
+                                                        Map.of("A.java", lazy),
+                                                        List.of(),
+                                                        null))));
+        when(store.findFile(9L, 3))
+                .thenReturn(Optional.of(new StoredFileDiff("A.java", "-a\n+b", null)));
+
+        ComparisonResult result = service.loadStoredResult(9L);
+        service.loadStoredResult(9L);
+
+        DiffInfo diff = result.getModified().get("A.java");
+        assertThat(diff.getDiff()).isEqualTo("-a\n+b");
+        assertThat(diff.getFileIndex()).isNull();
+        verify(store, times(2)).find(9L);
     }
 
     @Test
     void searchComparisonsReturnsMappedSummaries() {
-        StoredComparisonResult entity = new StoredComparisonResult();
-        entity.setId(42L);
-        entity.setName("Sample comparison");
-        entity.setIpRequest("10.0.0.5");
-        entity.setCreated(LocalDateTime.of(2024, 3, 1, 12, 30));
-        entity.setMarkColor("firebrick");
-
-        PageImpl<StoredComparisonResult> page =
+        ComparisonSummary row =
+                new ComparisonSummary(
+                        42L,
+                        "Sample comparison",
+                        "10.0.0.5",
+                        LocalDateTime.of(2024, 3, 1, 12, 30),
+                        "firebrick");
+
+        PageImpl<ComparisonSummary> page =
                 new PageImpl<>(
-                        List.of(entity),
+                        List.of(row),
                         PageRequest.of(0, 5, Sort.by(Sort.Direction.DESC, "created")),
                         1);
 
-        when(repository.findByNameContainingIgnoreCaseAndIpRequestContainingIgnoreCase(
-                        eq("sample"), eq("10.0.0.5"), any(Pageable.class)))
-                .thenReturn(page);
+        when(store.search(eq("sample"), eq("10.0.0.5"), any(Pageable.class))).thenReturn(page);
 
         Page<ComparisonResultPersistenceService.StoredComparisonResultSummary> result =
-                service.searchComparisons(" sample", "10.0.0.5 ", 0, 5);
+                service.searchComparisons(" Sample", "10.0.0.5 ", 0, 5);
 
         assertThat(result.getTotalElements()).isEqualTo(1);
         ComparisonResultPersistenceService.StoredComparisonResultSummary summary =
@@ -70,16 +177,12 @@ class ComparisonResultPersistenceServiceTest {
 
     @Test
     void searchComparisonsSanitizesPagingAndFilters() {
-        when(repository.findByNameContainingIgnoreCaseAndIpRequestContainingIgnoreCase(
-                        any(), any(), any(Pageable.class)))
-                .thenReturn(Page.empty());
+        when(store.search(any(), any(), any(Pageable.class))).thenReturn(Page.empty());
 
         service.searchComparisons(null, null, -3, 0);
 
         ArgumentCaptor<Pageable> pageableCaptor = ArgumentCaptor.forClass(Pageable.class);
-        verify(repository)
-                .findByNameContainingIgnoreCaseAndIpRequestContainingIgnoreCase(
-                        eq(""), eq(""), pageableCaptor.capture());
+        verify(store).search(eq(""), eq(""), pageableCaptor.capture());
 
         Pageable pageable = pageableCaptor.getValue();
         assertThat(pageable.getPageNumber()).isEqualTo(0);
@@ -88,4 +191,52 @@ class ComparisonResultPersistenceServiceTest {
         assertThat(createdOrder).isNotNull();
         assertThat(createdOrder.getDirection()).isEqualTo(Sort.Direction.DESC);
     }
+
+    @Test
+    void searchByPathGroupsMatchesPerComparison() {
+        when(store.searchPaths(eq("com.acme.billing.InvoiceService"), anyInt()))
+                .thenReturn(
+                        List.of(
+                                new PathMatch(
+                                        5L, "MODIFIED", "com/acme/billing/InvoiceService.java"),
+                                new PathMatch(
+                                        5L, "ADDED", "com/acme/billing/InvoiceServiceTest.java"),
+                                new PathMatch(
+                                        3L, "DELETED", "com/acme/billing/InvoiceService.java")));
+        when(store.findSummaries(any()))
+                .thenReturn(
+                        List.of(
+                                new ComparisonSummary(3L, "older", "10.0.0.1", null, null),
+                                new ComparisonSummary(5L, "newer", "10.0.0.2", null, null)));
+
+        List<ComparisonResultPersistenceService.PathSearchResult> results =
+                service.searchByPath(" com.acme.billing.InvoiceService ");
+
+        assertThat(results)
+                .extracting(r -> r.comparison().name())
+                .containsExactly("newer", "older");
+        assertThat(results.get(0).files())
+                .extracting(ComparisonResultPersistenceService.PathSearchMatch::category)
+                .containsExactly("MODIFIED", "ADDED");
+    }
+
+    @Test
+    void deleteComparisonDeletesFromStore() {
+        when(store.findSummary(9L))
+                .thenReturn(Optional.of(new ComparisonSummary(9L, "name", "10.0.0.5", null, null)));
+
+        service.deleteComparison(9L, "10.0.0.5");
+
+        verify(store).delete(9L);
+    }
+
+    @Test
+    void deleteComparisonRejectsOtherRequesters() {
+        when(store.findSummary(9L))
+                .thenReturn(Optional.of(new ComparisonSummary(9L, "name", "10.0.0.5", null, null)));
+
+        assertThatThrownBy(() -> service.deleteComparison(9L, "10.0.0.6"))
+                .isInstanceOf(ResponseStatusException.class);
+        verify(store, never()).delete(anyLong());
+    }
 }
@@ -0,0 +1,159 @@
+package com.example.sourcecompare.application;
+
+import com.example.sourcecompare.application.ComparisonScheduler.Pool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ComparisonSchedulerTest {
+
+    private ComparisonScheduler scheduler;
+
+    @AfterEach
+    void tearDown() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    void workerTasksAlternateBetweenRequesters() throws Exception {
+        scheduler = TestSchedulers.builder().maxConcurrent(2).build();
+        CountDownLatch blocker = new CountDownLatch(1);
+        List<String> order = new CopyOnWriteArrayList<>();
+        Future<?> first =
+                scheduler.submit(Pool.DECOMPILE, "busy", () -> blocker.await(5, TimeUnit.SECONDS));
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            int n = i;
+            futures.add(scheduler.submit(Pool.DECOMPILE, "busy", () -> order.add("busy-" + n)));
+        }
+        futures.add(scheduler.submit(Pool.DECOMPILE, "light", () -> order.add("light-0")));
+
+        blocker.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        for (Future<?> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+
+        assertThat(order).containsExactly("busy-0", "light-0", "busy-1", "busy-2");
+    }
+
+    @Test
+    void costlierTasksOfARequesterStartFirst() throws Exception {
+        scheduler = TestSchedulers.builder().maxConcurrent(2).build();
+        CountDownLatch blocker = new CountDownLatch(1);
+        List<String> order = new CopyOnWriteArrayList<>();
+        Future<?> first =
+                scheduler.submit(Pool.DECOMPILE, "a", () -> blocker.await(5, TimeUnit.SECONDS));
+        List<Future<?>> futures = new ArrayList<>();
+        futures.add(scheduler.submit(Pool.DECOMPILE, "a", 10, () -> order.add("small")));
+        futures.add(scheduler.submit(Pool.DECOMPILE, "a", 500, () -> order.add("giant")));
+        futures.add(scheduler.submit(Pool.DECOMPILE, "a", 10, () -> order.add("small-later")));
+
+        blocker.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        for (Future<?> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+
+        assertThat(order).containsExactly("giant", "small", "small-later");
+    }
+
+    @Test
+    void smallerComparisonsAreAdmittedFirstWithinMemoryBudget() throws Exception {
+        scheduler = TestSchedulers.builder().memoryBudgetBytes(1_000).build();
+        List<String> admitted = new CopyOnWriteArrayList<>();
+        ComparisonScheduler.Admission running = scheduler.admit(context("a"), 900);
+        Thread large = waitFor("large", 800, admitted);
+        awaitWaiting(1);
+        Thread small = waitFor("small", 10, admitted);
+        awaitWaiting(2);
+
+        running.close();
+        large.join(5_000);
+        small.join(5_000);
+
+        assertThat(admitted).containsExactly("small", "large");
+    }
+
+    @Test
+    void cancellingAWaitingComparisonReleasesItsPlace() throws Exception {
+        scheduler = TestSchedulers.builder().build();
+        ComparisonScheduler.Admission running = scheduler.admit(context("a"), 10);
+        ComparisonContext waiting = context("b");
+        CompletableFuture<Object> outcome = new CompletableFuture<>();
+        Thread thread =
+                new Thread(
+                        () -> {
+                            try (ComparisonScheduler.Admission admission =
+                                    scheduler.admit(waiting, 10)) {
+                                outcome.complete(admission);
+                            } catch (Exception e) {
+                                outcome.complete(e);
+                            }
+                        });
+        thread.start();
+        awaitWaiting(1);
+
+        waiting.cancel("Cancelled by the user");
+
+        assertThat(outcome.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ComparisonCancelledException.class);
+        assertThat(scheduler.waitingCount()).isZero();
+        running.close();
+    }
+
+    @Test
+    void cancelledWorkerTaskLeavesTheQueue() throws Exception {
+        scheduler = TestSchedulers.builder().build();
+        CountDownLatch blocker = new CountDownLatch(1);
+        Future<?> first =
+                scheduler.submit(Pool.DECOMPILE, "a", () -> blocker.await(5, TimeUnit.SECONDS));
+        AtomicBoolean ran = new AtomicBoolean();
+        Future<?> queued = scheduler.submit(Pool.DECOMPILE, "a", () -> ran.getAndSet(true));
+
+        scheduler.cancel(queued);
+        blocker.countDown();
+        first.get(5, TimeUnit.SECONDS);
+
+        assertThat(queued.isCancelled()).isTrue();
+        assertThat(ran).isFalse();
+    }
+
+    private static ComparisonContext context(String requester) {
+        return new ComparisonContext(requester, ComparisonProgressListener.NONE);
+    }
+
+    private Thread waitFor(String name, long inputBytes, List<String> admitted) {
+        Thread thread =
+                new Thread(
+                        () -> {
+                            try (ComparisonScheduler.Admission admission =
+                                    scheduler.admit(context(name), inputBytes)) {
+                                admitted.add(admission.requester());
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        });
+        thread.start();
+        return thread;
+    }
+
+    private void awaitWaiting(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (scheduler.waitingCount() < count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.sourcecompare.application;
+
+import com.example.sourcecompare.domain.ComparisonResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ComparisonWriteBehindQueueTest {
+
+    private final ComparisonResultPersistenceService persistenceService =
+            mock(ComparisonResultPersistenceService.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ComparisonWriteBehindQueue queue;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (queue != null) {
+            queue.shutdown();
+        }
+    }
+
+    @Test
+    void retriesFailedWritesAndForgetsResultOnceWritten() {
+        ComparisonResult result =
+                new ComparisonResult(Map.of(), Map.of(), Map.of(), List.of(), null);
+        when(persistenceService.allocateComparisonId()).thenReturn(11L);
+        doThrow(new IllegalStateException("database unavailable"))
+                .doNothing()
+                .when(persistenceService)
+                .saveComparison(eq(11L), any(), any(), any());
+        queue = new ComparisonWriteBehindQueue(persistenceService, meterRegistry, 4, 3, 1);
+
+        long id = queue.submit("name", "10.0.0.5", result);
+        queue.awaitWritten(id, 5, TimeUnit.SECONDS);
+
+        assertThat(id).isEqualTo(11L);
+        verify(persistenceService, times(2)).saveComparison(11L, "name", "10.0.0.5", result);
+        assertThat(queue.findPending(id)).isEmpty();
+        assertThat(meterRegistry.counter("comparison.write_behind.retries").count()).isEqualTo(1);
+        assertThat(meterRegistry.timer("comparison.write_behind.flush").count()).isEqualTo(1);
+    }
+
+    @Test
+    void rendersThePendingViewOnceAtSubmit() throws InterruptedException {
+        ComparisonResult result = new ComparisonResult();
+        ComparisonResultPersistenceService.StoredComparisonResultView view =
+                new ComparisonResultPersistenceService.StoredComparisonResultView(
+                        13L, "name", "10.0.0.5", LocalDateTime.now(), null, null, result);
+        CountDownLatch release = new CountDownLatch(1);
+        when(persistenceService.allocateComparisonId()).thenReturn(13L);
+        when(persistenceService.pendingView(eq(13L), any(), any(), any(), any())).thenReturn(view);
+        doAnswer(invocation -> release.await(5, TimeUnit.SECONDS))
+                .when(persistenceService)
+                .saveComparison(eq(13L), any(), any(), any());
+        queue = new ComparisonWriteBehindQueue(persistenceService, meterRegistry, 4, 1, 1);
+
+        long id = queue.submit("name", "10.0.0.5", result);
+
+        assertThat(queue.findPending(id)).containsSame(view);
+        assertThat(queue.findPending(id)).containsSame(view);
+        verify(persistenceService, times(1)).pendingView(eq(13L), any(), any(), any(), any());
+        release.countDown();
+        queue.awaitWritten(id, 5, TimeUnit.SECONDS);
+        assertThat(queue.findPending(id)).isEmpty();
+    }
+
+    @Test
+    void reportsComparisonsWhoseWriteWasGivenUp() {
+        when(persistenceService.allocateComparisonId()).thenReturn(12L);
+        doThrow(new IllegalStateException("database unavailable"))
+                .when(persistenceService)
+                .saveComparison(eq(12L), any(), any(), any());
+        queue = new ComparisonWriteBehindQueue(persistenceService, meterRegistry, 4, 2, 1);
+
+        long id = queue.submit("name", "10.0.0.5", new ComparisonResult());
+
+        assertThatThrownBy(() -> queue.awaitWritten(id, 5, TimeUnit.SECONDS))
+                .isInstanceOfSatisfying(
+                        ResponseStatusException.class,
+                        e ->
+                                assertThat(e.getStatusCode())
+                                        .isEqualTo(HttpStatus.INTERNAL_SERVER_ERROR))
+                .hasMessageContaining("Comparison 12 could not be saved");
+        assertThatThrownBy(() -> queue.findPending(id)).isInstanceOf(ResponseStatusException.class);
+        assertThat(meterRegistry.counter("comparison.write_behind.failures").count()).isEqualTo(1);
+    }
+
+    @Test
+    void writesOnCallerThreadOnceStopped() throws InterruptedException {
+        when(persistenceService.allocateComparisonId()).thenReturn(1L);
+        doNothing().when(persistenceService).saveComparison(anyLong(), any(), any(), any());
+        queue = new ComparisonWriteBehindQueue(persistenceService, meterRegistry, 1, 1, 1);
+        queue.shutdown();
+
+        long id = queue.submit("name", "10.0.0.5", new ComparisonResult());
+
+        verify(persistenceService).saveComparison(eq(id), any(), any(), any());
+        assertThat(queue.findPending(id)).isEmpty();
+    }
+}
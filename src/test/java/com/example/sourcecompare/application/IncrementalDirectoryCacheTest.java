@@ -0,0 +1,103 @@
+package com.example.sourcecompare.application;
+
+import com.example.sourcecompare.domain.ArchiveEntry;
+import com.example.sourcecompare.domain.DirectoryArchiveInput;
+import com.example.sourcecompare.domain.FileInfo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IncrementalDirectoryCacheTest {
+
+    @TempDir Path tempDir;
+
+    private final IncrementalDirectoryCache cache =
+            new IncrementalDirectoryCache(1 << 20, new SimpleMeterRegistry());
+
+    @Test
+    void repeatedScanProcessesOnlyChangedFiles() throws IOException {
+        Files.writeString(tempDir.resolve("A.java"), "class A {}");
+        Files.writeString(tempDir.resolve("B.java"), "class B {}");
+        Files.writeString(tempDir.resolve("C.java"), "class C {}");
+
+        Map<String, FileInfo> first = load();
+        assertThat(first.keySet()).containsExactly("A.java", "B.java", "C.java");
+
+        Files.writeString(tempDir.resolve("A.java"), "class A { int changed; }");
+        Path touched = tempDir.resolve("B.java");
+        Files.setLastModifiedTime(
+                touched,
+                FileTime.fromMillis(Files.getLastModifiedTime(touched).toMillis() + 60_000));
+        Files.delete(tempDir.resolve("C.java"));
+        Files.writeString(tempDir.resolve("D.java"), "class D {}");
+
+        IncrementalDirectoryCache.Scan scan = scan(new DirectoryArchiveInput(tempDir));
+
+        assertThat(scan.reusedFiles()).isEqualTo(1);
+        assertThat(scan.changedFiles()).isEqualTo(2);
+        assertThat(entryNames(scan.changed())).containsExactly("A.java", "D.java");
+        Map<String, FileInfo> second = cache.complete(scan, process(scan.changed()), names());
+        assertThat(second.keySet()).containsExactly("A.java", "B.java", "D.java");
+        assertThat(second.get("A.java").getContent()).isEqualTo("CLASS A { INT CHANGED; }");
+    }
+
+    @Test
+    void unattributedOutputsDropTheManifest() throws IOException {
+        Files.writeString(tempDir.resolve("A.java"), "class A {}");
+        DirectoryArchiveInput directory = new DirectoryArchiveInput(tempDir);
+        IncrementalDirectoryCache.Scan scan = scan(directory);
+
+        Map<String, FileInfo> files =
+                cache.complete(scan, process(scan.changed()), name -> "renamed/" + name);
+
+        assertThat(files).containsOnlyKeys("A.java");
+        assertThat(scan(directory).changedFiles()).isEqualTo(1);
+    }
+
+    private Map<String, FileInfo> load() throws IOException {
+        IncrementalDirectoryCache.Scan scan = scan(new DirectoryArchiveInput(tempDir));
+        return cache.complete(
+                scan, scan.changed() == null ? Map.of() : process(scan.changed()), names());
+    }
+
+    private IncrementalDirectoryCache.Scan scan(DirectoryArchiveInput directory)
+            throws IOException {
+        return cache.scan(directory, "READ", ComparisonContext.detached());
+    }
+
+    private static UnaryOperator<String> names() {
+        return UnaryOperator.identity();
+    }
+
+    private static Map<String, FileInfo> process(DirectoryArchiveInput changed) throws IOException {
+        Map<String, FileInfo> processed = new LinkedHashMap<>();
+        changed.forEachEntry(
+                entry ->
+                        processed.put(
+                                entry.name(),
+                                new FileInfo(entry.name(), content(entry).toUpperCase())));
+        return processed;
+    }
+
+    private static String content(ArchiveEntry entry) throws IOException {
+        return new String(entry.readAllBytes());
+    }
+
+    private static List<String> entryNames(DirectoryArchiveInput input) throws IOException {
+        List<String> names = new ArrayList<>();
+        input.forEachEntry(entry -> names.add(entry.name()));
+        return names;
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.sourcecompare.application;
+
+import com.example.sourcecompare.domain.ArchiveEntry;
+import com.example.sourcecompare.domain.ArchiveInput;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** An archive held in memory that counts how often it is read and fingerprinted. */
+final class MemoryArchive extends ArchiveInput {
+    final AtomicInteger reads = new AtomicInteger();
+    final AtomicInteger fingerprints = new AtomicInteger();
+    private final Map<String, String> entries;
+
+    MemoryArchive(String name, Map<String, String> entries) {
+        super(name + ".zip", -1);
+        this.entries = new LinkedHashMap<>(entries);
+    }
+
+    @Override
+    public void forEachEntry(EntryVisitor visitor) throws IOException {
+        reads.incrementAndGet();
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            byte[] content = entry.getValue().getBytes(StandardCharsets.UTF_8);
+            visitor.visit(new ArchiveEntry(entry.getKey(), new ByteArrayInputStream(content)));
+        }
+    }
+
+    @Override
+    public String fingerprint() {
+        fingerprints.incrementAndGet();
+        return filename() + ":" + entries.hashCode();
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.sourcecompare.application;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** Snapshots kept in a map, or none at all when disabled. */
+final class MemorySnapshotStore implements SideSnapshotStore {
+    final Map<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+    private final boolean enabled;
+
+    MemorySnapshotStore(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public Optional<Snapshot> load(String key) {
+        return Optional.ofNullable(snapshots.get(key));
+    }
+
+    @Override
+    public void save(String key, Snapshot snapshot) {
+        if (enabled) {
+            snapshots.put(key, snapshot);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.sourcecompare.application;
+
+import com.example.sourcecompare.application.FileMapDiffer.RenameScores;
+import com.example.sourcecompare.domain.ArchiveInput;
+import com.example.sourcecompare.domain.ComparisonMode;
+import com.example.sourcecompare.domain.ComparisonResult;
+import com.example.sourcecompare.domain.FileInfo;
+import com.example.sourcecompare.domain.MultiComparisonRequest;
+import com.example.sourcecompare.domain.StepTiming;
+import com.example.sourcecompare.infrastructure.UnifiedDiffRenderer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MultiComparisonTest {
+
+    private final ComparisonScheduler scheduler = TestSchedulers.builder().maxConcurrent(2).build();
+    private final MultiComparison multiComparison =
+            new MultiComparison(
+                    new SideLoader(
+                            new SideProcessor(
+                                    (archive, context, side) -> {
+                                        throw new AssertionError("Sources are never decompiled");
+                                    },
+                                    source -> source,
+                                    FileInfo::new,
+                                    scheduler),
+                            new IncrementalDirectoryCache(1 << 20, new SimpleMeterRegistry()),
+                            new MemorySnapshotStore(false)),
+                    new FileMapDiffer(new UnifiedDiffRenderer()));
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    void baselineIsReadOnceForAllCandidates() throws Exception {
+        MemoryArchive baseline = new MemoryArchive("base", Map.of("A.java", "class A {}"));
+        MemoryArchive first = new MemoryArchive("one", Map.of("A.java", "class A { int x; }"));
+        MemoryArchive second = new MemoryArchive("two", Map.of("A.java", "class A {}"));
+
+        List<ComparisonResult> results =
+                multiComparison.compare(request(baseline, first, second), detached());
+
+        assertThat(baseline.reads.get()).isEqualTo(1);
+        assertThat(first.reads.get()).isEqualTo(1);
+        assertThat(second.reads.get()).isEqualTo(1);
+        assertThat(results).hasSize(2);
+        assertThat(results.get(0).getModified()).containsOnlyKeys("A.java");
+        assertThat(results.get(1).getModified()).isEmpty();
+        assertThat(results.get(0).getInputs().getBaseline())
+                .isNotNull()
+                .isEqualTo(results.get(1).getInputs().getBaseline());
+    }
+
+    @Test
+    void eachResultTimesTheBaselineAndOnlyItsOwnCandidate() throws Exception {
+        MemoryArchive baseline = new MemoryArchive("base", Map.of("A.java", "class A {}"));
+        MemoryArchive first = new MemoryArchive("one", Map.of("A.java", "class A { int x; }"));
+        MemoryArchive second = new MemoryArchive("two", Map.of("B.java", "class B {}"));
+
+        List<ComparisonResult> results =
+                multiComparison.compare(request(baseline, first, second), detached());
+
+        assertThat(stepLabels(results.get(0)))
+                .contains("Read sources (baseline)", "Read sources (candidate 1)")
+                .doesNotContain("Read sources (candidate 2)");
+        assertThat(stepLabels(results.get(1)))
+                .contains("Read sources (baseline)", "Read sources (candidate 2)")
+                .doesNotContain("Read sources (candidate 1)");
+    }
+
+    @Test
+    void memoizedRenameScoresAreComputedOncePerPairOfDigests() {
+        CountingFileInfo left = new CountingFileInfo("A.java", "class A {}", true);
+        CountingFileInfo right = new CountingFileInfo("B.java", "class A {}", true);
+        RenameScores scores = RenameScores.memoized(10);
+
+        assertThat(scores.score(left, right)).isEqualTo(1.0);
+        assertThat(scores.score(left, right)).isEqualTo(1.0);
+
+        assertThat(left.contentReads.get()).isEqualTo(1);
+        assertThat(right.contentReads.get()).isEqualTo(1);
+    }
+
+    @Test
+    void renameScoresOfFilesWithoutDigestsAreNotRemembered() {
+        CountingFileInfo left = new CountingFileInfo("A.java", "class A {}", false);
+        CountingFileInfo right = new CountingFileInfo("B.java", "class A {}", true);
+        RenameScores scores = RenameScores.memoized(10);
+
+        scores.score(left, right);
+        scores.score(left, right);
+
+        assertThat(left.contentReads.get()).isEqualTo(2);
+    }
+
+    private static MultiComparisonRequest request(
+            ArchiveInput baseline, ArchiveInput... candidates) {
+        return new MultiComparisonRequest(
+                baseline, List.of(candidates), ComparisonMode.SOURCE_VS_SOURCE, 3, false);
+    }
+
+    private static ComparisonContext detached() {
+        return ComparisonContext.detached();
+    }
+
+    private static List<String> stepLabels(ComparisonResult result) {
+        return result.getTiming().getSteps().stream().map(StepTiming::getLabel).toList();
+    }
+
+    private static final class CountingFileInfo extends FileInfo {
+        private final AtomicInteger contentReads = new AtomicInteger();
+        private final boolean digested;
+
+        CountingFileInfo(String name, String content, boolean digested) {
+            super(name, content);
+            this.digested = digested;
+        }
+
+        @Override
+        public String getContent() {
+            contentReads.incrementAndGet();
+            return super.getContent();
+        }
+
+        @Override
+        public byte[] knownDigest() {
+            return digested ? digestOf(super.getContent()) : null;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.sourcecompare.application;
+
+import com.example.sourcecompare.application.FileMapDiffer.RenameScores;
+import com.example.sourcecompare.application.SideLoader.LoadedSide;
+import com.example.sourcecompare.domain.ArchiveInput;
+import com.example.sourcecompare.domain.ComparisonInputs;
+import com.example.sourcecompare.domain.ComparisonMode;
+import com.example.sourcecompare.domain.ComparisonResult;
+import com.example.sourcecompare.domain.FileInfo;
+import com.example.sourcecompare.domain.RenameInfo;
+import com.example.sourcecompare.infrastructure.UnifiedDiffRenderer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+class RecomparisonTest {
+    private static final String RENAME_MARKER = "// output ";
+    private static final String BODY = "class Body {\n  int a;\n  int b;\n  int c;\n  int d;\n}\n";
+
+    private final ComparisonScheduler scheduler = TestSchedulers.builder().maxConcurrent(2).build();
+    private final MemorySnapshotStore store = new MemorySnapshotStore(true);
+    private final SideLoader loader = loader(store);
+    private final FileMapDiffer differ = new FileMapDiffer(new UnifiedDiffRenderer());
+    private final Recomparison recomparison = new Recomparison(loader, store, differ);
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    void pathsUnchangedOnTheReplacedSideKeepTheirStoredDiff() throws Exception {
+        ComparisonResult previous =
+                compare(
+                        archive("left", Map.of("A.java", "a1", "B.java", "b1")),
+                        archive("right", Map.of("A.java", "a2", "B.java", "b2")));
+
+        ComparisonResult result =
+                recompare(previous, archive("right2", Map.of("A.java", "a2", "B.java", "b3")));
+
+        assertThat(result.getModified()).containsOnlyKeys("A.java", "B.java");
+        assertThat(result.getModified().get("A.java"))
+                .isSameAs(previous.getModified().get("A.java"));
+        assertThat(result.getModified().get("B.java"))
+                .isNotSameAs(previous.getModified().get("B.java"));
+        assertThat(result.getModified().get("B.java").getEditScript())
+                .isNotEqualTo(previous.getModified().get("B.java").getEditScript());
+    }
+
+    @Test
+    void renamedPathsArePairedAgain() throws Exception {
+        ComparisonResult previous =
+                compare(
+                        archive("left", Map.of("Old.java", BODY, "C.java", "c1")),
+                        archive("right", Map.of("New.java", BODY + "//", "C.java", "c2")));
+        assertThat(previous.getRenamed()).extracting(RenameInfo::getTo).containsExactly("New.java");
+
+        ComparisonResult result =
+                recompare(
+                        previous,
+                        archive("right2", Map.of("New.java", BODY + "//", "C.java", "c3")));
+
+        assertThat(result.getRenamed())
+                .extracting(RenameInfo::getFrom, RenameInfo::getTo)
+                .containsExactly(tuple("Old.java", "New.java"));
+        assertThat(result.getAdded()).isEmpty();
+        assertThat(result.getDeleted()).isEmpty();
+        assertThat(result.getModified()).containsOnlyKeys("C.java");
+    }
+
+    @Test
+    void outputsOfRemovedEntriesAreDropped() throws Exception {
+        ComparisonResult previous =
+                compare(
+                        archive("left", Map.of("A.java", "a", "B.java", "b")),
+                        archive("right", Map.of("A.java", "a", "B.java", "b")));
+
+        ComparisonResult result = recompare(previous, archive("right2", Map.of("A.java", "a")));
+
+        assertThat(result.getDeleted()).containsOnlyKeys("B.java");
+        assertThat(result.getModified()).isEmpty();
+    }
+
+    @Test
+    void unattributableOutputsFallBackToProcessingTheWholeSide() throws Exception {
+        ComparisonResult previous =
+                compare(
+                        archive("left", Map.of("A.java", "a", "B.java", "b")),
+                        archive("right", Map.of("A.java", "a", "B.java", "b")));
+        MemoryArchive replacement =
+                archive("right2", Map.of("A.java", RENAME_MARKER + "Z.java", "B.java", "b"));
+
+        ComparisonResult result = recompare(previous, replacement);
+
+        // Once to find the changed entries, once to process them and once for the whole side.
+        assertThat(replacement.reads.get()).isEqualTo(3);
+        assertThat(result.getAdded()).containsOnlyKeys("Z.java");
+        assertThat(result.getDeleted()).containsOnlyKeys("A.java");
+    }
+
+    @Test
+    void comparisonWithoutSnapshotsCannotBeRecompared() {
+        ComparisonResult previous =
+                new ComparisonResult(Map.of(), Map.of(), Map.of(), List.of(), null);
+        previous.setInputs(
+                new ComparisonInputs(ComparisonMode.SOURCE_VS_SOURCE, "left-key", null, null));
+
+        assertThatThrownBy(() -> recompare(previous, archive("right", Map.of())))
+                .isInstanceOfSatisfying(
+                        ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.CONFLICT));
+    }
+
+    @Test
+    void comparisonWhoseSnapshotsWereEvictedCannotBeRecompared() throws Exception {
+        ComparisonResult previous =
+                compare(
+                        archive("left", Map.of("A.java", "a")),
+                        archive("right", Map.of("A.java", "a")));
+        store.snapshots.clear();
+
+        assertThatThrownBy(() -> recompare(previous, archive("right2", Map.of("A.java", "b"))))
+                .isInstanceOfSatisfying(
+                        ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.CONFLICT));
+    }
+
+    private ComparisonResult compare(ArchiveInput left, ArchiveInput right) throws Exception {
+        ComparisonContext context = ComparisonContext.detached();
+        LoadedSide leftSide = loader.load(left, SideStep.READ_AND_FORMAT, "left", null, context);
+        LoadedSide rightSide = loader.load(right, SideStep.READ_AND_FORMAT, "right", null, context);
+        ComparisonResult result =
+                differ.diff(
+                        leftSide.files(),
+                        rightSide.files(),
+                        List.of(),
+                        3,
+                        false,
+                        null,
+                        context,
+                        RenameScores.uncached());
+        result.setInputs(
+                new ComparisonInputs(
+                        ComparisonMode.SOURCE_VS_SOURCE,
+                        leftSide.snapshotKey(),
+                        rightSide.snapshotKey(),
+                        null));
+        return result;
+    }
+
+    private ComparisonResult recompare(ComparisonResult previous, ArchiveInput replacement)
+            throws Exception {
+        return recomparison.recompare(
+                previous, ComparisonInputs.Side.RIGHT, replacement, ComparisonContext.detached());
+    }
+
+    private static MemoryArchive archive(String name, Map<String, String> entries) {
+        return new MemoryArchive(name, entries);
+    }
+
+    // A source starting with the marker is formatted into an output of another name, which the
+    // recomparison cannot attribute to the entry it came from.
+    private SideLoader loader(SideSnapshotStore snapshotStore) {
+        return new SideLoader(
+                new SideProcessor(
+                        (archive, context, side) -> {
+                            throw new AssertionError("Sources are never decompiled");
+                        },
+                        source -> source,
+                        (name, content) ->
+                                new FileInfo(
+                                        content.startsWith(RENAME_MARKER)
+                                                ? content.substring(RENAME_MARKER.length())
+                                                : name,
+                                        content),
+                        scheduler),
+                new IncrementalDirectoryCache(1 << 20, new SimpleMeterRegistry()),
+                snapshotStore);
+    }
+}
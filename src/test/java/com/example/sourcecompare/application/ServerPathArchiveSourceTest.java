@@ -0,0 +1,89 @@
+package com.example.sourcecompare.application;
+
+import com.example.sourcecompare.domain.ArchiveInput;
+import com.example.sourcecompare.domain.DirectoryArchiveInput;
+import com.example.sourcecompare.domain.ZipFileArchiveInput;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ServerPathArchiveSourceTest {
+
+    @TempDir Path tempDir;
+
+    @Test
+    void opensJarsAndDirectoriesBelowARoot() throws IOException {
+        Path root = Files.createDirectories(tempDir.resolve("artifacts"));
+        Path jar = root.resolve("app.jar");
+        try (OutputStream out = Files.newOutputStream(jar);
+                ZipOutputStream zip = new ZipOutputStream(out)) {
+            zip.putNextEntry(new ZipEntry("com/acme/App.class"));
+            zip.write(new byte[] {1, 2, 3});
+            zip.closeEntry();
+        }
+        Path exploded = Files.createDirectories(root.resolve("app/com/acme"));
+        Files.writeString(exploded.resolve("App.java"), "class App {}");
+        ServerPathArchiveSource source =
+                new ServerPathArchiveSource(new String[] {root.toString()});
+
+        ArchiveInput jarInput = source.open(jar.toString());
+        ArchiveInput directoryInput = source.open("app");
+
+        assertThat(jarInput).isInstanceOf(ZipFileArchiveInput.class);
+        assertThat(entryNames(jarInput)).containsExactly("com/acme/App.class");
+        assertThat(directoryInput).isInstanceOf(DirectoryArchiveInput.class);
+        assertThat(entryNames(directoryInput)).containsExactly("com/acme/App.java");
+    }
+
+    @Test
+    void rejectsPathsThatLeaveTheRoots() throws IOException {
+        Path root = Files.createDirectories(tempDir.resolve("artifacts"));
+        Path outside = Files.createDirectories(tempDir.resolve("secrets"));
+        Files.writeString(outside.resolve("keys.zip"), "not really");
+        ServerPathArchiveSource source =
+                new ServerPathArchiveSource(new String[] {root.toString()});
+
+        assertStatus(
+                () -> source.open(outside.resolve("keys.zip").toString()), HttpStatus.FORBIDDEN);
+        assertStatus(() -> source.open("../secrets/keys.zip"), HttpStatus.FORBIDDEN);
+    }
+
+    @Test
+    void isDisabledWithoutRoots() {
+        ServerPathArchiveSource source = new ServerPathArchiveSource(new String[] {""});
+
+        assertThat(source.isEnabled()).isFalse();
+        assertStatus(() -> source.open("/tmp"), HttpStatus.FORBIDDEN);
+    }
+
+    private static List<String> entryNames(ArchiveInput input) throws IOException {
+        List<String> names = new ArrayList<>();
+        input.forEachEntry(entry -> names.add(entry.name()));
+        return names;
+    }
+
+    private static void assertStatus(ThrowingOpen open, HttpStatus status) {
+        assertThatThrownBy(open::open)
+                .isInstanceOfSatisfying(
+                        ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(status));
+    }
+
+    @FunctionalInterface
+    private interface ThrowingOpen {
+        void open() throws IOException;
+    }
+}
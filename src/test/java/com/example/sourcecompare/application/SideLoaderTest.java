@@ -0,0 +1,91 @@
+package com.example.sourcecompare.application;
+
+import com.example.sourcecompare.application.SideLoader.LoadedSide;
+import com.example.sourcecompare.domain.FileInfo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SideLoaderTest {
+
+    private final ComparisonScheduler scheduler = TestSchedulers.builder().maxConcurrent(2).build();
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    void processingHashesEntriesForTheSnapshotInTheSameRead() throws Exception {
+        MemorySnapshotStore store = new MemorySnapshotStore(true);
+        SideLoader loader = loader(store);
+        MemoryArchive archive =
+                new MemoryArchive("app", Map.of("A.java", "class A {}", "notes.txt", "n"));
+
+        LoadedSide side = load(loader, archive);
+
+        assertThat(archive.reads.get()).isEqualTo(1);
+        assertThat(side.files()).containsOnlyKeys("A.java");
+        SideSnapshotStore.Snapshot saved = store.snapshots.get(side.snapshotKey());
+        assertThat(saved.inputDigests())
+                .containsExactlyInAnyOrderEntriesOf(
+                        Map.of("A.java", sha256("class A {}"), "notes.txt", sha256("n")));
+    }
+
+    @Test
+    void archiveWithASnapshotIsNotReadAgain() throws Exception {
+        SideLoader loader = loader(new MemorySnapshotStore(true));
+        MemoryArchive archive = new MemoryArchive("app", Map.of("A.java", "class A {}"));
+
+        load(loader, archive);
+        LoadedSide again = load(loader, archive);
+
+        assertThat(archive.reads.get()).isEqualTo(1);
+        assertThat(again.files().get("A.java").getContent()).isEqualTo("class A {}");
+    }
+
+    @Test
+    void archiveIsNotFingerprintedWithoutASnapshotStore() throws Exception {
+        SideLoader loader = loader(new MemorySnapshotStore(false));
+        MemoryArchive archive = new MemoryArchive("app", Map.of("A.java", "class A {}"));
+
+        LoadedSide side = load(loader, archive);
+
+        assertThat(archive.fingerprints.get()).isZero();
+        assertThat(archive.reads.get()).isEqualTo(1);
+        assertThat(side.snapshotKey()).isNull();
+        assertThat(side.files()).containsOnlyKeys("A.java");
+    }
+
+    private SideLoader loader(SideSnapshotStore store) {
+        return new SideLoader(
+                new SideProcessor(
+                        (archive, context, side) -> {
+                            throw new AssertionError("Sources are never decompiled");
+                        },
+                        source -> source,
+                        FileInfo::new,
+                        scheduler),
+                new IncrementalDirectoryCache(1 << 20, new SimpleMeterRegistry()),
+                store);
+    }
+
+    private static LoadedSide load(SideLoader loader, MemoryArchive archive) throws Exception {
+        return loader.load(
+                archive, SideStep.READ_AND_FORMAT, "left", null, ComparisonContext.detached());
+    }
+
+    private static String sha256(String content) throws Exception {
+        return HexFormat.of()
+                .formatHex(
+                        MessageDigest.getInstance("SHA-256")
+                                .digest(content.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.sourcecompare.application;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Builds {@link ComparisonScheduler}s for tests by naming only the settings a test cares about.
+ * Unnamed settings give one thread per pool, one comparison at a time, half the heap as memory
+ * budget, an estimate of one byte per input byte and room for eight waiting comparisons.
+ */
+public final class TestSchedulers {
+    private static final long BYTES_PER_INPUT_BYTE = 1;
+    private static final long DEFAULT_ESTIMATE_BYTES = 0;
+    private static final int MAX_WAITING = 8;
+    private static final long STARVATION_MILLIS = 60_000;
+
+    private TestSchedulers() {}
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static final class Builder {
+        private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        private int decompileThreads = 1;
+        private int formatThreads = 1;
+        private int maxConcurrent = 1;
+        private long memoryBudgetBytes;
+
+        private Builder() {}
+
+        public Builder meterRegistry(MeterRegistry meterRegistry) {
+            this.meterRegistry = meterRegistry;
+            return this;
+        }
+
+        public Builder decompileThreads(int decompileThreads) {
+            this.decompileThreads = decompileThreads;
+            return this;
+        }
+
+        public Builder formatThreads(int formatThreads) {
+            this.formatThreads = formatThreads;
+            return this;
+        }
+
+        public Builder maxConcurrent(int maxConcurrent) {
+            this.maxConcurrent = maxConcurrent;
+            return this;
+        }
+
+        public Builder memoryBudgetBytes(long memoryBudgetBytes) {
+            this.memoryBudgetBytes = memoryBudgetBytes;
+            return this;
+        }
+
+        /** Builds the scheduler with its gauges registered, as Spring would. */
+        public ComparisonScheduler build() {
+            ComparisonScheduler scheduler =
+                    new ComparisonScheduler(
+                            meterRegistry,
+                            decompileThreads,
+                            formatThreads,
+                            maxConcurrent,
+                            memoryBudgetBytes,
+                            BYTES_PER_INPUT_BYTE,
+                            DEFAULT_ESTIMATE_BYTES,
+                            MAX_WAITING,
+                            STARVATION_MILLIS);
+            scheduler.registerGauges();
+            return scheduler;
+        }
+    }
+}
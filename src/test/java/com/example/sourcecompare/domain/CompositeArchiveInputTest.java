@@ -0,0 +1,123 @@
+package com.example.sourcecompare.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompositeArchiveInputTest {
+
+    @Test
+    void visitsEveryPartUnderItsPrefixInOrder() throws IOException {
+        byte[] first = zip(Map.of("com/acme/A.class", "a"));
+        byte[] second = zip(Map.of("../com/acme/B.class", "b"));
+        CompositeArchiveInput composite =
+                new CompositeArchiveInput(
+                        "combined.zip",
+                        -1,
+                        List.of(
+                                CompositeArchiveInput.Part.archive(
+                                        "first",
+                                        new ZipStreamArchiveInput(
+                                                "first.jar",
+                                                () -> new ByteArrayInputStream(first))),
+                                CompositeArchiveInput.Part.file(
+                                        "notes", "README.txt", () -> stream("read me")),
+                                CompositeArchiveInput.Part.archive(
+                                        "second",
+                                        new ZipStreamArchiveInput(
+                                                "second.jar",
+                                                () -> new ByteArrayInputStream(second)))));
+
+        Map<String, String> entries = new LinkedHashMap<>();
+        composite.forEachEntry(
+                entry ->
+                        entries.put(
+                                entry.name(),
+                                new String(entry.readAllBytes(), StandardCharsets.UTF_8)));
+
+        assertThat(entries)
+                .containsExactly(
+                        Map.entry("first/com/acme/A.class", "a"),
+                        Map.entry("notes/README.txt", "read me"),
+                        Map.entry("second/com/acme/B.class", "b"));
+    }
+
+    @Test
+    void uploadDigestIsKnownOnlyWhenEveryPartWasHashed() throws IOException {
+        ArchiveInput hashed =
+                new ZipStreamArchiveInput(
+                        "first.jar", -1, "digest-1", () -> new ByteArrayInputStream(new byte[0]));
+        CompositeArchiveInput.Part file =
+                CompositeArchiveInput.Part.file(
+                        "notes", "README.txt", () -> stream("x"), "digest-2");
+
+        String digest =
+                new CompositeArchiveInput(
+                                "a.zip",
+                                -1,
+                                List.of(CompositeArchiveInput.Part.archive("first", hashed), file))
+                        .uploadDigest();
+        String renamed =
+                new CompositeArchiveInput(
+                                "b.zip",
+                                -1,
+                                List.of(CompositeArchiveInput.Part.archive("other", hashed), file))
+                        .uploadDigest();
+        String partly =
+                new CompositeArchiveInput(
+                                "c.zip",
+                                -1,
+                                List.of(
+                                        CompositeArchiveInput.Part.archive("first", hashed),
+                                        CompositeArchiveInput.Part.file(
+                                                "notes", "README.txt", () -> stream("x"))))
+                        .uploadDigest();
+
+        assertThat(hashed.fingerprint()).isEqualTo("digest-1");
+        assertThat(digest).hasSize(64).isNotEqualTo(renamed);
+        assertThat(partly).isNull();
+    }
+
+    @Test
+    void singleFileWithoutPrefixKeepsItsName() throws IOException {
+        CompositeArchiveInput single =
+                new CompositeArchiveInput(
+                        "Main.java.zip",
+                        7,
+                        List.of(
+                                CompositeArchiveInput.Part.file(
+                                        "", "Main.java", () -> stream("class M"))));
+
+        List<String> names = new ArrayList<>();
+        single.forEachEntry(entry -> names.add(entry.name()));
+
+        assertThat(names).containsExactly("Main.java");
+    }
+
+    private static ByteArrayInputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] zip(Map<String, String> entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            for (Map.Entry<String, String> entry : entries.entrySet()) {
+                zip.putNextEntry(new ZipEntry(entry.getKey()));
+                zip.write(entry.getValue().getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.sourcecompare.infrastructure;
+
+import com.example.sourcecompare.infrastructure.DecompileCostModel.Prediction;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DecompileCostModelTest {
+    private static final byte[] UNREADABLE = new byte[1_000];
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final DecompileCostModel model = new DecompileCostModel(meterRegistry, 100);
+
+    @Test
+    void unreadableClassIsPredictedFromItsSizeAlone() {
+        Prediction prediction = model.predict("Broken", UNREADABLE);
+
+        assertThat(prediction.methods()).isZero();
+        assertThat(prediction.nanos()).isEqualTo(1_000 * 2_000);
+    }
+
+    @Test
+    void declaredMethodsAddToTheSize() throws IOException {
+        byte[] classBytes = classBytes(Sample.class);
+
+        Prediction prediction = model.predict("Sample", classBytes);
+
+        // Two methods and the constructor.
+        assertThat(prediction.methods()).isEqualTo(3);
+        assertThat(prediction.nanos()).isEqualTo((classBytes.length + 3 * 512) * 2_000L);
+    }
+
+    @Test
+    void recordedTimePredictsTheClassRegardlessOfSize() {
+        model.record(model.predict("Known", UNREADABLE), 5_000);
+
+        assertThat(model.predict("Known", new byte[100_000]).nanos()).isEqualTo(5_000);
+    }
+
+    @Test
+    void recordedTimesAreSmoothed() {
+        model.record(model.predict("Known", UNREADABLE), 1_000);
+        model.record(model.predict("Known", UNREADABLE), 2_000);
+
+        assertThat(model.predict("Known", UNREADABLE).nanos()).isEqualTo(1_200);
+        assertThat(meterRegistry.summary("decompile.cost.ratio").count()).isEqualTo(2);
+    }
+
+    @Test
+    void recordedTimesRefineThePredictionOfOtherClasses() {
+        // One nanosecond per byte moves the rate a fifth of the way from 2000 towards 1.
+        model.record(model.predict("Known", UNREADABLE), 1_000);
+
+        assertThat(model.predict("Other", UNREADABLE).nanos()).isEqualTo(1_600_200);
+    }
+
+    private static byte[] classBytes(Class<?> type) throws IOException {
+        String resource = type.getName().replace('.', '/') + ".class";
+        try (InputStream in = type.getClassLoader().getResourceAsStream(resource)) {
+            return in.readAllBytes();
+        }
+    }
+
+    @SuppressWarnings("unused")
+    private static final class Sample {
+        void first() {}
+
+        void second() {}
+    }
+}
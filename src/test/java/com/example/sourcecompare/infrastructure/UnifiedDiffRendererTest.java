@@ -1,8 +1,12 @@
 package com.example.sourcecompare.infrastructure;
 
 import com.example.sourcecompare.application.ArchiveDecompiler;
+import com.example.sourcecompare.domain.EditScript;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class UnifiedDiffRendererTest {
@@ -33,4 +37,34 @@ class UnifiedDiffRendererTest {
                         || diff.contains("CONTENT_NOT_READ"),
                 "Diff should include explanatory message when no textual differences exist.");
     }
+
+    @Test
+    void editScriptSharesLineTableAndRendersLikeTextDiff() {
+        String original = "a\nb\nc\nb";
+        String revised = "a\nx\nc\nb";
+
+        EditScript script = renderer.diff(original, revised);
+
+        assertEquals(List.of("a", "b", "c", "x"), script.getLines());
+        assertEquals(List.of("a", "b", "c", "b"), script.originalLines());
+        assertEquals(List.of("a", "x", "c", "b"), script.revisedLines());
+        String expected =
+                String.join(
+                                System.lineSeparator(),
+                                "--- Example.java_orig",
+                                "+++ Example.java_rev",
+                                "@@ -1,3 +1,3 @@",
+                                " a",
+                                "-b",
+                                "+x",
+                                " c")
+                        + System.lineSeparator();
+        assertEquals(
+                expected,
+                renderer.render("Example.java", script, 1, ArchiveDecompiler.CONTENT_NOT_READ));
+        assertEquals(
+                expected,
+                renderer.render(
+                        "Example.java", original, revised, 1, ArchiveDecompiler.CONTENT_NOT_READ));
+    }
 }
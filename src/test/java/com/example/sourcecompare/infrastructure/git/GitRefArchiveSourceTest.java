@@ -0,0 +1,92 @@
+package com.example.sourcecompare.infrastructure.git;
+
+import com.example.sourcecompare.application.ServerPathArchiveSource;
+import com.example.sourcecompare.domain.ArchiveInput;
+import com.example.sourcecompare.domain.ContentAddressedArchive;
+import org.eclipse.jgit.api.Git;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GitRefArchiveSourceTest {
+
+    @TempDir Path tempDir;
+
+    @Test
+    void readsTheFilesOfATagWithTheirBlobIds() throws Exception {
+        Path clone = Files.createDirectories(tempDir.resolve("app"));
+        try (Git git = Git.init().setDirectory(clone.toFile()).call()) {
+            commit(git, clone, Map.of("src/A.java", "class A {}", "src/B.java", "class B {}"));
+            git.tag().setName("v1").call();
+            commit(git, clone, Map.of("src/B.java", "class B { int changed; }"));
+            git.tag().setName("v2").call();
+        }
+        GitRefArchiveSource source =
+                new GitRefArchiveSource(
+                        new ServerPathArchiveSource(new String[] {tempDir.toString()}));
+
+        ArchiveInput v1 = source.open("app", "v1");
+        ArchiveInput v2 = source.open("app", "v2");
+
+        assertThat(v1.filename()).isEqualTo("app@v1");
+        assertThat(entries(v2))
+                .containsExactly(
+                        Map.entry("src/A.java", "class A {}"),
+                        Map.entry("src/B.java", "class B { int changed; }"));
+        Map<String, String> v1Ids = ((ContentAddressedArchive) v1).contentIds();
+        Map<String, String> v2Ids = ((ContentAddressedArchive) v2).contentIds();
+        assertThat(v1Ids.get("src/A.java")).isEqualTo(v2Ids.get("src/A.java"));
+        assertThat(v1Ids.get("src/B.java")).isNotEqualTo(v2Ids.get("src/B.java"));
+        assertThat(entries(((ContentAddressedArchive) v2).without(Set.of("src/A.java"))))
+                .containsOnlyKeys("src/B.java");
+    }
+
+    @Test
+    void rejectsRefsThatDoNotNameACommit() throws Exception {
+        Path clone = Files.createDirectories(tempDir.resolve("app"));
+        try (Git git = Git.init().setDirectory(clone.toFile()).call()) {
+            commit(git, clone, Map.of("A.java", "class A {}"));
+        }
+        GitRefArchiveSource source =
+                new GitRefArchiveSource(
+                        new ServerPathArchiveSource(new String[] {tempDir.toString()}));
+
+        assertThatThrownBy(() -> source.open("app", "no-such-tag"))
+                .isInstanceOf(ResponseStatusException.class);
+    }
+
+    private static void commit(Git git, Path clone, Map<String, String> files) throws Exception {
+        for (Map.Entry<String, String> file : files.entrySet()) {
+            Path path = clone.resolve(file.getKey());
+            Files.createDirectories(path.getParent());
+            Files.writeString(path, file.getValue());
+        }
+        git.add().addFilepattern(".").call();
+        git.commit()
+                .setMessage("change")
+                .setAuthor("Test", "test@example.com")
+                .setCommitter("Test", "test@example.com")
+                .setSign(false)
+                .call();
+    }
+
+    private static Map<String, String> entries(ArchiveInput input) throws Exception {
+        Map<String, String> entries = new LinkedHashMap<>();
+        input.forEachEntry(
+                entry ->
+                        entries.put(
+                                entry.name(),
+                                new String(entry.readAllBytes(), StandardCharsets.UTF_8)));
+        return entries;
+    }
+}
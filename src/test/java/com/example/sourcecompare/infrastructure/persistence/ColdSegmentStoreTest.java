@@ -0,0 +1,36 @@
+package com.example.sourcecompare.infrastructure.persistence;
+
+import com.example.sourcecompare.domain.ComparisonResult;
+import com.example.sourcecompare.domain.DiffInfo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ColdSegmentStoreTest {
+
+    @TempDir Path directory;
+
+    @Test
+    void appendedResultsReadBackAndRollOverToNewSegments() {
+        ColdSegmentStore store = new ColdSegmentStore(directory, 1, new ObjectMapper());
+        ComparisonResult first =
+                new ComparisonResult(
+                        Map.of("A.java", new DiffInfo("+a")), Map.of(), Map.of(), List.of(), null);
+        ComparisonResult second =
+                new ComparisonResult(
+                        Map.of(), Map.of("B.java", new DiffInfo("-b")), Map.of(), List.of(), null);
+
+        ColdSegmentStore.Pointer firstPointer = store.append(first);
+        ColdSegmentStore.Pointer secondPointer = store.append(second);
+
+        assertThat(secondPointer.segment()).isNotEqualTo(firstPointer.segment());
+        assertThat(store.read(firstPointer).getAdded().get("A.java").getDiff()).isEqualTo("+a");
+        assertThat(store.read(secondPointer).getDeleted().get("B.java").getDiff()).isEqualTo("-b");
+    }
+}
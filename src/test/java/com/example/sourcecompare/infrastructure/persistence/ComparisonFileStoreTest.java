@@ -0,0 +1,314 @@
+package com.example.sourcecompare.infrastructure.persistence;
+
+import com.example.sourcecompare.domain.ComparisonResult;
+import com.example.sourcecompare.domain.DiffInfo;
+import com.example.sourcecompare.domain.EditScript;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ComparisonFileStoreTest {
+    private static final EditScript SCRIPT =
+            EditScript.of(
+                    List.of("class A {", "  int x;", "}"),
+                    List.of("class A {", "  int y;", "}"),
+                    new int[] {1, 1, 1, 1});
+
+    private final InMemoryTables tables = new InMemoryTables();
+    private final ContentBlobStore blobStore = new ContentBlobStore(tables, 60);
+    private final ComparisonFileStore fileStore = new ComparisonFileStore(tables, blobStore);
+
+    @Test
+    void editScriptsAreStoredAsReferencesToSharedContent() {
+        fileStore.insertFiles(1, modified("A.java", SCRIPT));
+
+        assertThat(tables.files).hasSize(1);
+        Map<String, Object> row = tables.files.get(0);
+        assertThat(row.get("DIFF_ENCODING")).isEqualTo("R");
+        assertThat(row.get("ORIGINAL_HASH")).isNotNull().isNotEqualTo(row.get("REVISED_HASH"));
+        EditScript loaded = fileStore.findFile(1, 0).orElseThrow().editScript();
+        assertThat(loaded.originalLines()).isEqualTo(SCRIPT.originalLines());
+        assertThat(loaded.revisedLines()).isEqualTo(SCRIPT.revisedLines());
+        assertThat(loaded.getDeltas()).containsExactly(SCRIPT.getDeltas());
+    }
+
+    @Test
+    void identicalContentIsStoredOnceAndCounted() {
+        Map<String, DiffInfo> files = new LinkedHashMap<>();
+        files.put("A.java", DiffInfo.of(SCRIPT));
+        files.put("copy/A.java", DiffInfo.of(SCRIPT));
+        fileStore.insertFiles(
+                1, new ComparisonResult(Map.of(), Map.of(), files, List.of(), List.of()));
+        fileStore.insertFiles(2, modified("A.java", SCRIPT));
+
+        assertThat(tables.blobs).hasSize(2);
+        assertThat(tables.blobs.values()).extracting(blob -> blob.refCount).containsOnly(3);
+    }
+
+    @Test
+    void contentIsPurgedOnlyWhenUnreferencedForTheGracePeriod() {
+        fileStore.insertFiles(1, modified("A.java", SCRIPT));
+        fileStore.insertFiles(2, modified("A.java", SCRIPT));
+
+        fileStore.deleteFiles(1);
+        assertThat(tables.blobs.values()).extracting(blob -> blob.refCount).containsOnly(1);
+
+        fileStore.deleteFiles(2);
+        assertThat(blobStore.purgeUnreferenced()).isZero();
+        assertThat(tables.blobs).hasSize(2);
+
+        ContentBlobStore withoutGrace = new ContentBlobStore(tables, 0);
+        assertThat(withoutGrace.unreferencedSize()).isPositive();
+        assertThat(withoutGrace.purgeUnreferenced()).isEqualTo(2);
+        assertThat(tables.blobs).isEmpty();
+    }
+
+    @Test
+    void releasedContentCanBeReferencedAgainBeforeItIsPurged() {
+        fileStore.insertFiles(1, modified("A.java", SCRIPT));
+        fileStore.deleteFiles(1);
+
+        fileStore.insertFiles(2, modified("A.java", SCRIPT));
+        new ContentBlobStore(tables, 0).purgeUnreferenced();
+
+        assertThat(fileStore.findFile(2, 0).orElseThrow().editScript().revisedLines())
+                .isEqualTo(SCRIPT.revisedLines());
+    }
+
+    private static ComparisonResult modified(String path, EditScript script) {
+        return new ComparisonResult(
+                Map.of(), Map.of(), Map.of(path, DiffInfo.of(script)), List.of(), List.of());
+    }
+
+    /** The two tables behind the stores, answering exactly the statements they issue. */
+    private static final class InMemoryTables extends JdbcTemplate {
+        private final Map<String, Blob> blobs = new HashMap<>();
+        private final List<Map<String, Object>> files = new ArrayList<>();
+
+        private static final class Blob {
+            private final byte[] content;
+            private final long size;
+            private int refCount;
+            private Timestamp released;
+
+            private Blob(byte[] content, long size, int refCount) {
+                this.content = content;
+                this.size = size;
+                this.refCount = refCount;
+            }
+        }
+
+        @Override
+        public <T> int[][] batchUpdate(
+                String sql,
+                Collection<T> batchArgs,
+                int batchSize,
+                ParameterizedPreparedStatementSetter<T> pss) {
+            int[] counts = new int[batchArgs.size()];
+            int position = 0;
+            for (T arg : batchArgs) {
+                Object[] p = parameters(pss, arg);
+                counts[position++] = apply(sql, p);
+            }
+            return new int[][] {counts};
+        }
+
+        private int apply(String sql, Object[] p) {
+            if (sql.startsWith("UPDATE COMPARE_CONTENT_BLOBS SET REF_COUNT = REF_COUNT + ?")) {
+                Blob blob = blobs.get((String) p[2]);
+                if (blob == null) {
+                    return 0;
+                }
+                blob.refCount += (Integer) p[1];
+                return 1;
+            }
+            if (sql.startsWith("MERGE INTO COMPARE_CONTENT_BLOBS")) {
+                Blob existing = blobs.get((String) p[1]);
+                if (existing != null) {
+                    existing.refCount += (Integer) p[2];
+                } else {
+                    blobs.put((String) p[1], new Blob((byte[]) p[3], (Long) p[4], (Integer) p[5]));
+                }
+                return 1;
+            }
+            if (sql.startsWith("UPDATE COMPARE_CONTENT_BLOBS SET REF_COUNT = REF_COUNT - ?")) {
+                Blob blob = blobs.get((String) p[3]);
+                blob.refCount -= (Integer) p[1];
+                blob.released = (Timestamp) p[2];
+                return 1;
+            }
+            if (sql.startsWith("INSERT INTO COMPARE_RESULT_FILES")) {
+                Map<String, Object> row = new HashMap<>();
+                String[] columns = {
+                    "RESULT_ID",
+                    "FILE_INDEX",
+                    "CATEGORY",
+                    "PATH",
+                    "FROM_PATH",
+                    "DIFF_ENCODING",
+                    "DIFF_DATA",
+                    "ORIGINAL_HASH",
+                    "REVISED_HASH"
+                };
+                for (int i = 0; i < columns.length; i++) {
+                    row.put(columns[i], p[i + 1]);
+                }
+                files.add(row);
+                return 1;
+            }
+            throw new UnsupportedOperationException(sql);
+        }
+
+        @Override
+        public int update(String sql, Object... args) {
+            if (sql.startsWith("DELETE FROM COMPARE_CONTENT_BLOBS")) {
+                List<String> purged = unreferenced((Timestamp) args[0]);
+                purged.forEach(blobs::remove);
+                return purged.size();
+            }
+            if (sql.startsWith("DELETE FROM COMPARE_RESULT_FILES")) {
+                files.removeIf(row -> row.get("RESULT_ID").equals(args[0]));
+                return 1;
+            }
+            throw new UnsupportedOperationException(sql);
+        }
+
+        @Override
+        public <T> T queryForObject(String sql, Class<T> requiredType, Object... args) {
+            if (sql.contains("SUM(CONTENT_SIZE)")) {
+                long size = 0;
+                for (String hash : unreferenced((Timestamp) args[0])) {
+                    size += blobs.get(hash).size;
+                }
+                return requiredType.cast(size);
+            }
+            throw new UnsupportedOperationException(sql);
+        }
+
+        @Override
+        public void query(String sql, RowCallbackHandler rch, Object... args) {
+            try {
+                for (Map<String, Object> row : select(sql, args)) {
+                    rch.processRow(resultSet(row));
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public <T> List<T> query(String sql, RowMapper<T> rowMapper, Object... args) {
+            List<T> mapped = new ArrayList<>();
+            try {
+                for (Map<String, Object> row : select(sql, args)) {
+                    mapped.add(rowMapper.mapRow(resultSet(row), mapped.size()));
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+            return mapped;
+        }
+
+        private List<Map<String, Object>> select(String sql, Object[] args) {
+            if (sql.startsWith("SELECT CONTENT_HASH, CONTENT FROM COMPARE_CONTENT_BLOBS")) {
+                List<Map<String, Object>> rows = new ArrayList<>();
+                for (Object hash : args) {
+                    Blob blob = blobs.get((String) hash);
+                    if (blob != null) {
+                        rows.add(Map.of("CONTENT_HASH", hash, "CONTENT", blob.content));
+                    }
+                }
+                return rows;
+            }
+            if (sql.startsWith("SELECT ORIGINAL_HASH, REVISED_HASH FROM COMPARE_RESULT_FILES")) {
+                return files.stream()
+                        .filter(row -> row.get("RESULT_ID").equals(args[0]))
+                        .filter(row -> "R".equals(row.get("DIFF_ENCODING")))
+                        .toList();
+            }
+            if (sql.startsWith("SELECT PATH, DIFF_ENCODING, DIFF_DATA")) {
+                return files.stream()
+                        .filter(row -> row.get("RESULT_ID").equals(args[0]))
+                        .filter(row -> row.get("FILE_INDEX").equals(args[1]))
+                        .toList();
+            }
+            throw new UnsupportedOperationException(sql);
+        }
+
+        private List<String> unreferenced(Timestamp cutoff) {
+            return blobs.entrySet().stream()
+                    .filter(e -> e.getValue().refCount <= 0)
+                    .filter(
+                            e ->
+                                    e.getValue().released == null
+                                            || e.getValue().released.before(cutoff))
+                    .map(Map.Entry::getKey)
+                    .toList();
+        }
+
+        /** Parameters set on the statement for one row, by their 1-based index. */
+        private static <T> Object[] parameters(ParameterizedPreparedStatementSetter<T> pss, T arg) {
+            Object[] p = new Object[10];
+            PreparedStatement ps =
+                    (PreparedStatement)
+                            Proxy.newProxyInstance(
+                                    PreparedStatement.class.getClassLoader(),
+                                    new Class<?>[] {PreparedStatement.class},
+                                    (proxy, method, args) -> {
+                                        if (method.getName().equals("setNull")) {
+                                            p[(Integer) args[0]] = null;
+                                        } else if (args[1] instanceof InputStream in) {
+                                            p[(Integer) args[0]] = in.readAllBytes();
+                                        } else {
+                                            p[(Integer) args[0]] = args[1];
+                                        }
+                                        return null;
+                                    });
+            try {
+                pss.setValues(ps, arg);
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+            return p;
+        }
+
+        private static ResultSet resultSet(Map<String, Object> row) {
+            return (ResultSet)
+                    Proxy.newProxyInstance(
+                            ResultSet.class.getClassLoader(),
+                            new Class<?>[] {ResultSet.class},
+                            (proxy, method, args) -> {
+                                Object value = row.get((String) args[0]);
+                                return switch (method.getName()) {
+                                    case "getBinaryStream" ->
+                                            value == null
+                                                    ? null
+                                                    : new ByteArrayInputStream((byte[]) value);
+                                    case "getString", "getInt", "getLong" -> value;
+                                    default ->
+                                            throw new UnsupportedOperationException(
+                                                    method.getName() + Arrays.toString(args));
+                                };
+                            });
+        }
+    }
+}
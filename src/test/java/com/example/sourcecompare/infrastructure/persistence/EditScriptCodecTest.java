@@ -0,0 +1,32 @@
+package com.example.sourcecompare.infrastructure.persistence;
+
+import com.example.sourcecompare.domain.EditScript;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class EditScriptCodecTest {
+
+    @Test
+    void encodeDecodeRoundTrip() throws IOException {
+        EditScript script =
+                new EditScript(
+                        List.of("", "class \u00dcber {", "}", "x".repeat(300)),
+                        new int[] {1, 0, 2},
+                        new int[] {1, 3, 0, 2},
+                        new int[] {1, 0, 1, 1});
+
+        EditScript decoded =
+                EditScriptCodec.decode(new ByteArrayInputStream(EditScriptCodec.encode(script)));
+
+        assertEquals(script.getLines(), decoded.getLines());
+        assertArrayEquals(script.getOriginal(), decoded.getOriginal());
+        assertArrayEquals(script.getRevised(), decoded.getRevised());
+        assertArrayEquals(script.getDeltas(), decoded.getDeltas());
+    }
+}
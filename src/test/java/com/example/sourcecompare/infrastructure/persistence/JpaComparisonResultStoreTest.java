@@ -0,0 +1,213 @@
+package com.example.sourcecompare.infrastructure.persistence;
+
+import com.example.sourcecompare.application.ComparisonResultStore.ComparisonSummary;
+import com.example.sourcecompare.application.ComparisonResultStore.StoredComparison;
+import com.example.sourcecompare.domain.ComparisonInputs;
+import com.example.sourcecompare.domain.ComparisonMode;
+import com.example.sourcecompare.domain.ComparisonResult;
+import com.example.sourcecompare.domain.ComparisonTiming;
+import com.example.sourcecompare.domain.DiffInfo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class JpaComparisonResultStoreTest {
+
+    @Mock private StoredComparisonResultRepository repository;
+    @Mock private ComparisonFileStore comparisonFileStore;
+    @Mock private ComparisonPayloadStore comparisonPayloadStore;
+    @Mock private ContentBlobStore contentBlobStore;
+    @Mock private ComparisonNameIndex nameIndex;
+    @Mock private ComparisonPathIndex pathIndex;
+    @Mock private ComparisonResultKeyIndex resultKeyIndex;
+    @Mock private ColdSegmentStore coldSegmentStore;
+
+    private JpaComparisonResultStore store;
+
+    @BeforeEach
+    void setUp() {
+        store =
+                new JpaComparisonResultStore(
+                        repository,
+                        comparisonFileStore,
+                        comparisonPayloadStore,
+                        contentBlobStore,
+                        nameIndex,
+                        pathIndex,
+                        resultKeyIndex,
+                        coldSegmentStore,
+                        ComparisonStorageFormat.CHUNKED);
+    }
+
+    @Test
+    void saveKeepsOnlySummaryOnResultRow() {
+        ComparisonResult result =
+                new ComparisonResult(
+                        Map.of("A.java", new DiffInfo("+added")),
+                        Map.of(),
+                        Map.of(),
+                        List.of(),
+                        null);
+        result.setTiming(new ComparisonTiming(List.of(), 1.5));
+        result.setInputs(
+                new ComparisonInputs(ComparisonMode.CLASS_VS_CLASS, null, null, "result-key"));
+
+        store.save(
+                new StoredComparison(
+                        new ComparisonSummary(7L, "Name", "10.0.0.5", null, "royalblue"), result));
+
+        verify(repository)
+                .insertSummary(
+                        7L,
+                        "Name",
+                        "name",
+                        "10.0.0.5",
+                        "10.0.0.5",
+                        "royalblue",
+                        ComparisonStorageFormat.CHUNKED.code());
+        ArgumentCaptor<ComparisonResult> summaryCaptor =
+                ArgumentCaptor.forClass(ComparisonResult.class);
+        verify(comparisonPayloadStore).writeJson(eq(7L), summaryCaptor.capture());
+        assertThat(summaryCaptor.getValue().getAdded()).isNull();
+        assertThat(summaryCaptor.getValue().getTiming().getTotalDurationSeconds()).isEqualTo(1.5);
+        verify(nameIndex).index(7L, "Name");
+        verify(pathIndex).index(7L, result);
+        verify(resultKeyIndex).index(7L, "result-key");
+        verify(comparisonFileStore).insertFiles(7L, result);
+        assertThat(summaryCaptor.getValue().getInputs().getResultKey()).isEqualTo("result-key");
+    }
+
+    @Test
+    void findReadsChunkedFileIndex() {
+        StoredComparisonResult entity = new StoredComparisonResult();
+        entity.setId(7L);
+        entity.setName("chunked");
+        entity.setStorageFormat(ComparisonStorageFormat.CHUNKED.code());
+        ComparisonResult summary = new ComparisonResult(null, null, null, null, null);
+        summary.setTiming(new ComparisonTiming(List.of(), 2.0));
+        DiffInfo lazy = new DiffInfo(null);
+        lazy.setFileIndex(0);
+        when(repository.findById(7L)).thenReturn(Optional.of(entity));
+        when(comparisonPayloadStore.readJson(7L)).thenReturn(summary);
+        when(comparisonFileStore.loadFileIndex(7L))
+                .thenReturn(
+                        new ComparisonResult(
+                                Map.of("A.java", lazy), Map.of(), Map.of(), List.of(), List.of()));
+
+        ComparisonResult result = store.find(7L).orElseThrow().result();
+
+        assertThat(result.getAdded().get("A.java").getFileIndex()).isEqualTo(0);
+        assertThat(result.getTiming().getTotalDurationSeconds()).isEqualTo(2.0);
+        assertThat(result.getUnchanged()).isNull();
+    }
+
+    @Test
+    void moveToColdStorageLeavesPointerAndDropsDatabasePayload() {
+        StoredComparisonResult entity = new StoredComparisonResult();
+        entity.setId(6L);
+        entity.setStorageFormat(ComparisonStorageFormat.STREAMED_JSON.code());
+        ComparisonResult result =
+                new ComparisonResult(Map.of(), Map.of(), Map.of(), List.of(), null);
+        when(repository.findById(6L)).thenReturn(Optional.of(entity));
+        when(comparisonPayloadStore.readStreamed(6L)).thenReturn(result);
+        when(comparisonPayloadStore.payloadSize(6L)).thenReturn(1_000L);
+        when(comparisonFileStore.storedSize(6L)).thenReturn(0L);
+        ColdSegmentStore.Pointer pointer =
+                new ColdSegmentStore.Pointer("segment-000000.seg", 12L, 34L);
+        when(coldSegmentStore.append(result)).thenReturn(pointer);
+
+        long reclaimed = store.moveToColdStorage(6L);
+
+        assertThat(reclaimed).isEqualTo(1_000L);
+        assertThat(entity.getStorageFormat()).isEqualTo(ComparisonStorageFormat.COLD.code());
+        assertThat(entity.getColdOffset()).isEqualTo(12L);
+        verify(comparisonPayloadStore).clear(6L);
+
+        when(coldSegmentStore.read(pointer)).thenReturn(result);
+        assertThat(store.find(6L).orElseThrow().result()).isSameAs(result);
+    }
+
+    @Test
+    void searchNarrowsLongNameFiltersThroughTrigrams() {
+        StoredComparisonSummaryRow row =
+                new StoredComparisonSummaryRow(
+                        42L,
+                        "Sample comparison",
+                        "10.0.0.5",
+                        LocalDateTime.of(2024, 3, 1, 12, 30),
+                        "firebrick");
+        when(repository.searchSummariesByNameGrams(
+                        eq("%sample%"),
+                        eq("10.0.0.5%"),
+                        eq(Set.of("sam", "amp", "mpl", "ple")),
+                        eq(4L),
+                        any(Pageable.class)))
+                .thenReturn(new PageImpl<>(List.of(row), PageRequest.of(0, 5), 1));
+
+        Page<ComparisonSummary> page = store.search("sample", "10.0.0.5", PageRequest.of(0, 5));
+
+        assertThat(page.getContent())
+                .containsExactly(
+                        new ComparisonSummary(
+                                42L,
+                                "Sample comparison",
+                                "10.0.0.5",
+                                LocalDateTime.of(2024, 3, 1, 12, 30),
+                                "firebrick"));
+    }
+
+    @Test
+    void searchEscapesLikeWildcards() {
+        when(repository.searchSummaries(any(), any(), any(Pageable.class)))
+                .thenReturn(Page.empty());
+
+        store.search("", "50%_", PageRequest.of(0, 20));
+
+        verify(repository).searchSummaries(eq("%"), eq("50\\%\\_%"), any(Pageable.class));
+    }
+
+    @Test
+    void searchMatchesShortNameFiltersAndRequestersByPrefix() {
+        when(repository.searchSummaries(any(), any(), any(Pageable.class)))
+                .thenReturn(Page.empty());
+
+        store.search("ab", "10.0.", PageRequest.of(0, 20));
+
+        verify(repository).searchSummaries(eq("ab%"), eq("10.0.%"), any(Pageable.class));
+        verify(repository, never())
+                .searchSummariesByNameGrams(any(), any(), any(), anyLong(), any(Pageable.class));
+    }
+
+    @Test
+    void deleteReleasesFilesAndPurgesBlobs() {
+        store.delete(9L);
+
+        verify(comparisonFileStore).deleteFiles(9L);
+        verify(nameIndex).remove(9L);
+        verify(pathIndex).remove(9L);
+        verify(repository).deleteById(9L);
+        verify(contentBlobStore).purgeUnreferenced();
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.sourcecompare.infrastructure.segment;
+
+import com.example.sourcecompare.application.ComparisonResultStore.ComparisonSummary;
+import com.example.sourcecompare.application.ComparisonResultStore.PathMatch;
+import com.example.sourcecompare.application.ComparisonResultStore.StoredComparison;
+import com.example.sourcecompare.domain.ComparisonInputs;
+import com.example.sourcecompare.domain.ComparisonMode;
+import com.example.sourcecompare.domain.ComparisonResult;
+import com.example.sourcecompare.domain.DiffInfo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.PageRequest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SegmentFileComparisonResultStoreTest {
+
+    @TempDir Path directory;
+
+    @Test
+    void savedComparisonsSurviveRestartWithUpdatesAndDeletes() {
+        SegmentFileComparisonResultStore store = open();
+        long first = save(store, "Billing release", "com/acme/billing/InvoiceService.java");
+        long second = save(store, "Payments", "com/acme/pay/Gateway.java");
+        store.update(first, "firebrick", "Billing hotfix");
+        store.delete(second);
+
+        SegmentFileComparisonResultStore reopened = open();
+
+        assertThat(reopened.findSummary(second)).isEmpty();
+        ComparisonSummary summary = reopened.findSummary(first).orElseThrow();
+        assertThat(summary.name()).isEqualTo("Billing hotfix");
+        assertThat(summary.markColor()).isEqualTo("firebrick");
+        assertThat(
+                        reopened.find(first)
+                                .orElseThrow()
+                                .result()
+                                .getModified()
+                                .get("com/acme/billing/InvoiceService.java")
+                                .getDiff())
+                .isEqualTo("@@ -1 +1 @@");
+        assertThat(reopened.search("hotfix", "", PageRequest.of(0, 20)).getContent())
+                .extracting(ComparisonSummary::id)
+                .containsExactly(first);
+        assertThat(reopened.search("bi", "", PageRequest.of(0, 20)).getContent())
+                .extracting(ComparisonSummary::id)
+                .containsExactly(first);
+        assertThat(reopened.search("ho", "", PageRequest.of(0, 20)).getContent()).isEmpty();
+        assertThat(reopened.searchPaths("com.acme", 10))
+                .containsExactly(
+                        new PathMatch(first, "MODIFIED", "com/acme/billing/InvoiceService.java"));
+        assertThat(reopened.allocateId()).isGreaterThan(second);
+    }
+
+    @Test
+    void resultKeyFindsNewestComparisonOfTheSameInputs() {
+        SegmentFileComparisonResultStore store = open();
+        long first = save(store, "Upload", "A.java", "key-1");
+        long second = save(store, "Same upload", "A.java", "key-1");
+        save(store, "Other upload", "B.java", "key-2");
+        assertThat(store.findByResultKey("key-1")).contains(second);
+
+        store.delete(second);
+        SegmentFileComparisonResultStore reopened = open();
+
+        assertThat(reopened.findByResultKey("key-1")).contains(first);
+        assertThat(reopened.findByResultKey("key-3")).isEmpty();
+    }
+
+    @Test
+    void tornRecordAtEndOfSegmentIsCutOff() throws IOException {
+        SegmentFileComparisonResultStore store = open();
+        long id = save(store, "Before crash", "A.java");
+        Path segment = directory.resolve("results-000000.seg");
+        long intact = Files.size(segment);
+        Files.write(segment, new byte[] {0, 0, 0, 42, 0}, StandardOpenOption.APPEND);
+
+        SegmentFileComparisonResultStore reopened = open();
+
+        assertThat(Files.size(segment)).isEqualTo(intact);
+        assertThat(reopened.findSummary(id)).isPresent();
+    }
+
+    private SegmentFileComparisonResultStore open() {
+        return new SegmentFileComparisonResultStore(
+                directory, 1 << 20, false, new ObjectMapper().findAndRegisterModules());
+    }
+
+    private static long save(SegmentFileComparisonResultStore store, String name, String path) {
+        return save(store, name, path, null);
+    }
+
+    private static long save(
+            SegmentFileComparisonResultStore store, String name, String path, String resultKey) {
+        long id = store.allocateId();
+        ComparisonResult result =
+                new ComparisonResult(
+                        Map.of(),
+                        Map.of(),
+                        Map.of(path, new DiffInfo("@@ -1 +1 @@")),
+                        List.of(),
+                        null);
+        if (resultKey != null) {
+            result.setInputs(
+                    new ComparisonInputs(ComparisonMode.CLASS_VS_CLASS, null, null, resultKey));
+        }
+        store.save(
+                new StoredComparison(
+                        new ComparisonSummary(id, name, "10.0.0.5", null, null), result));
+        return id;
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.sourcecompare.infrastructure.snapshot;
+
+import com.example.sourcecompare.application.SideSnapshotStore;
+import com.example.sourcecompare.domain.FileInfo;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+class FileSideSnapshotStoreTest {
+
+    @TempDir Path directory;
+
+    @Test
+    void savedSideLoadsBackLazilyWithDigests() {
+        FileSideSnapshotStore store = new FileSideSnapshotStore(true, directory, 1 << 20);
+        Map<String, FileInfo> files = new LinkedHashMap<>();
+        files.put("com/acme/A.java", new FileInfo("com/acme/A.java", "class A {}"));
+        files.put("META-INF/MANIFEST.MF", new FileInfo("META-INF/MANIFEST.MF", ""));
+        files.put("missing.txt", new FileInfo("missing.txt", null));
+
+        String inputDigest = "ab".repeat(32);
+        store.save(
+                "v2-abc-READ_AND_FORMAT",
+                new SideSnapshotStore.Snapshot(files, Map.of("com/acme/A.java", inputDigest)));
+        SideSnapshotStore.Snapshot snapshot = store.load("v2-abc-READ_AND_FORMAT").orElseThrow();
+        Map<String, FileInfo> loaded = snapshot.files();
+
+        assertThat(loaded.keySet())
+                .containsExactly("com/acme/A.java", "META-INF/MANIFEST.MF", "missing.txt");
+        FileInfo a = loaded.get("com/acme/A.java");
+        assertThat(a.hasSameContent(new FileInfo("com/acme/A.java", "class A {}"))).isTrue();
+        assertThat(a.hasSameContent(new FileInfo("com/acme/A.java", "class B {}"))).isFalse();
+        assertThat(a.getContent()).isEqualTo("class A {}");
+        assertThat(loaded.get("META-INF/MANIFEST.MF").getContent()).isEmpty();
+        assertThat(loaded.get("missing.txt").getContent()).isNull();
+        assertThat(snapshot.inputDigests()).containsExactly(entry("com/acme/A.java", inputDigest));
+        assertThat(store.load("v2-other-READ_AND_FORMAT")).isEmpty();
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedSnapshotsBeyondTheBudget() throws Exception {
+        FileSideSnapshotStore store = new FileSideSnapshotStore(true, directory, 1);
+        SideSnapshotStore.Snapshot snapshot =
+                new SideSnapshotStore.Snapshot(
+                        Map.of("A.java", new FileInfo("A.java", "class A {}")), Map.of());
+
+        store.save("first", snapshot);
+        store.save("second", snapshot);
+
+        try (Stream<Path> snapshots = Files.list(directory)) {
+            assertThat(snapshots.count()).isLessThanOrEqualTo(1);
+        }
+    }
+
+    @Test
+    void disabledStoreKeepsNothing() {
+        FileSideSnapshotStore store = new FileSideSnapshotStore(false, directory, 1 << 20);
+
+        store.save(
+                "key",
+                new SideSnapshotStore.Snapshot(
+                        Map.of("A.java", new FileInfo("A.java", "class A {}")), Map.of()));
+
+        assertThat(store.load("key")).isEmpty();
+    }
+}